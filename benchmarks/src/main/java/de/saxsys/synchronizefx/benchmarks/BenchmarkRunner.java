@@ -0,0 +1,67 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled.
+ * 
+ * <p>
+ * Besides the operations per second this reports the bytes allocated per operation as
+ * <code>gc.alloc.rate.norm</code>. All command line options of JMH are supported, e.g. a regular expression to
+ * select the benchmarks to run.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     * 
+     * @param args The JMH command line options.
+     * @throws CommandLineOptionException When the command line options are invalid.
+     * @throws RunnerException When running the benchmarks failed.
+     * @throws IOException When the help could not be printed.
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        final Runner runner = new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class)
+                .build());
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
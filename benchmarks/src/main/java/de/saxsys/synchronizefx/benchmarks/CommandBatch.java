@@ -0,0 +1,168 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToList;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.ListCommand.ListVersionChange;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromList;
+import de.saxsys.synchronizefx.core.metamodel.commands.ReplaceInList;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetRootElement;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+/**
+ * Typical batches of commands that are sent over the network.
+ * 
+ * <p>
+ * The batches are created with a fixed random seed so that all runs use the same ids.
+ * </p>
+ */
+public enum CommandBatch {
+    /**
+     * A single change of a string property as it is sent for most user interactions.
+     */
+    SINGLE_PROPERTY_CHANGE {
+        @Override
+        List<Command> create() {
+            final Random random = new Random(SEED);
+            return Arrays.<Command> asList(new SetPropertyValue(randomId(random), randomId(random), new Value(
+                    "a changed task name")));
+        }
+    },
+
+    /**
+     * Some additions, replacements and removals in a list of observable objects.
+     */
+    LIST_EDITS {
+        @Override
+        List<Command> create() {
+            final Random random = new Random(SEED);
+            final UUID listId = randomId(random);
+            final List<Command> commands = new ArrayList<>();
+            for (int i = 0; i < LIST_EDITS_PER_TYPE; i++) {
+                commands.add(new AddToList(listId, versionChange(random), new Value(randomId(random)), i));
+                commands.add(new ReplaceInList(listId, versionChange(random), new Value(randomId(random)), i));
+                commands.add(new RemoveFromList(listId, versionChange(random), i, 1));
+            }
+            return commands;
+        }
+    },
+
+    /**
+     * The initial state of a domain model with about 10,000 objects like it is sent to new clients.
+     * 
+     * <p>
+     * The domain model has the same structure as the <code>ComplexDomainModel</code> used in the tests of
+     * synchronizefx-core. It contains 10 sprints with 10 stories each which contain 100 tasks each.
+     * </p>
+     */
+    SNAPSHOT {
+        @Override
+        List<Command> create() {
+            return new DomainModelSnapshot(new Random(SEED)).create(10, 10, 100);
+        }
+    };
+
+    private static final long SEED = 4711;
+    private static final int LIST_EDITS_PER_TYPE = 4;
+
+    /**
+     * @return A new list containing the commands of this batch.
+     */
+    abstract List<Command> create();
+
+    private static UUID randomId(final Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    private static ListVersionChange versionChange(final Random random) {
+        return new ListVersionChange(randomId(random), randomId(random));
+    }
+
+    /**
+     * Creates the commands for the initial state of a domain model with sprints, stories and tasks.
+     * 
+     * <p>
+     * Each object has a single property which is either a list or the name of a task.
+     * </p>
+     */
+    private static final class DomainModelSnapshot {
+        private static final String MODEL_CLASS = "de.saxsys.synchronizefx.core.testutils.ComplexDomainModel";
+
+        private final Random random;
+        private final List<Command> commands = new ArrayList<>();
+        private final Map<UUID, UUID> propertyIds = new HashMap<>();
+
+        DomainModelSnapshot(final Random random) {
+            this.random = random;
+        }
+
+        List<Command> create(final int sprints, final int storiesPerSprint, final int tasksPerStory) {
+            final UUID root = createObject(MODEL_CLASS, "sprints");
+            final UUID sprintList = propertyOf(root);
+            for (int sprint = 0; sprint < sprints; sprint++) {
+                final UUID sprintId = createObject(MODEL_CLASS + "$Sprint", "stories");
+                addToList(sprintList, sprintId, sprint);
+                for (int story = 0; story < storiesPerSprint; story++) {
+                    final UUID storyId = createObject(MODEL_CLASS + "$Story", "tasks");
+                    addToList(propertyOf(sprintId), storyId, story);
+                    for (int task = 0; task < tasksPerStory; task++) {
+                        final UUID taskId = createObject(MODEL_CLASS + "$Task", "name");
+                        commands.add(new SetPropertyValue(randomId(random), propertyOf(taskId), new Value("Task "
+                                + sprint + "." + story + "." + task)));
+                        addToList(propertyOf(storyId), taskId, task);
+                    }
+                }
+            }
+            final SetRootElement setRoot = new SetRootElement();
+            setRoot.setRootElementId(root);
+            commands.add(setRoot);
+            return commands;
+        }
+
+        private UUID createObject(final String className, final String property) {
+            final CreateObservableObject create = new CreateObservableObject();
+            create.setObjectId(randomId(random));
+            create.setClassName(className);
+            create.getPropertyNameToId().put(property, randomId(random));
+            commands.add(create);
+            propertyIds.put(create.getObjectId(), create.getPropertyNameToId().get(property));
+            return create.getObjectId();
+        }
+
+        private UUID propertyOf(final UUID objectId) {
+            return propertyIds.get(objectId);
+        }
+
+        private void addToList(final UUID listId, final UUID element, final int position) {
+            commands.add(new AddToList(listId, versionChange(random), new Value(element), position));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.CommandToBinaryByteBuf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast {@link CommandToBinaryByteBuf} encodes and decodes typical batches of commands.
+ * 
+ * <p>
+ * In contrast to {@link SerializerBenchmark} this includes the allocation of Netty buffers and the handling of the
+ * pipeline.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandToBinaryByteBufBenchmark {
+
+    /**
+     * The serializer used by the codec.
+     */
+    @Param
+    public SerializerType serializer;
+
+    /**
+     * The commands to encode.
+     */
+    @Param
+    public CommandBatch batch;
+
+    private EmbeddedChannel channel;
+    private List<Command> commands;
+    private ByteBuf encoded;
+
+    /**
+     * Creates a channel containing the codec and the commands.
+     */
+    @Setup
+    public void setUp() {
+        channel = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer.create()));
+        commands = batch.create();
+        channel.writeOutbound(commands);
+        encoded = channel.readOutbound();
+    }
+
+    /**
+     * Releases all buffers.
+     */
+    @TearDown
+    public void tearDown() {
+        encoded.release();
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Encodes the batch of commands.
+     */
+    @Benchmark
+    public void encode() {
+        channel.writeOutbound(commands);
+        final ByteBuf buffer = channel.readOutbound();
+        buffer.release();
+    }
+
+    /**
+     * Decodes the batch of commands.
+     * 
+     * @return The decoded commands.
+     */
+    @Benchmark
+    public Object decode() {
+        channel.writeInbound(encoded.retainedDuplicate());
+        return channel.readInbound();
+    }
+}
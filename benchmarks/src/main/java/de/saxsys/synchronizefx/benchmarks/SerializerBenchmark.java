@@ -0,0 +1,96 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast {@link Serializer}s serialize and deserialize typical batches of commands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    /**
+     * The serializer to measure.
+     */
+    @Param
+    public SerializerType serializer;
+
+    /**
+     * The commands to serialize.
+     */
+    @Param
+    public CommandBatch batch;
+
+    private Serializer cut;
+    private List<Command> commands;
+    private byte[] serialized;
+
+    /**
+     * Creates the serializer and the commands.
+     */
+    @Setup
+    public void setUp() {
+        cut = serializer.create();
+        commands = batch.create();
+        serialized = cut.serialize(commands);
+    }
+
+    /**
+     * Serializes the batch of commands.
+     * 
+     * @return The serialized commands.
+     */
+    @Benchmark
+    public byte[] serialize() {
+        return cut.serialize(commands);
+    }
+
+    /**
+     * Deserializes the batch of commands.
+     * 
+     * @return The deserialized commands.
+     */
+    @Benchmark
+    public List<Command> deserialize() {
+        return cut.deserialize(serialized);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.benchmarks;
+
+import de.saxsys.synchronizefx.binary.BinarySerializer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.kryo.KryoSerializer;
+
+/**
+ * The {@link Serializer} implementations that are compared in the benchmarks.
+ */
+public enum SerializerType {
+    /**
+     * The Kryo based default serializer.
+     */
+    KRYO {
+        @Override
+        Serializer create() {
+            return new KryoSerializer();
+        }
+    },
+
+    /**
+     * The serializer with a fixed binary format.
+     */
+    BINARY {
+        @Override
+        Serializer create() {
+            return new BinarySerializer();
+        }
+    };
+
+    /**
+     * @return A new instance of the serializer.
+     */
+    abstract Serializer create();
+}
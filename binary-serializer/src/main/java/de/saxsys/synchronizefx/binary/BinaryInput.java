@@ -0,0 +1,211 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+/**
+ * Reads the binary form of commands and values that was written with a {@link BinaryOutput}.
+ * 
+ * <p>
+ * All read methods throw a {@link SynchronizeFXException} when the input ends before the value was read completely.
+ * </p>
+ */
+public final class BinaryInput {
+
+    private static final int MAX_VAR_INT_SHIFT = 28;
+    private static final int MAX_VAR_LONG_SHIFT = 63;
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUATION_BIT = 0x80;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    /**
+     * Initializes an input that reads from a range of a byte array.
+     * 
+     * @param buffer The array to read from. It is not copied.
+     * @param offset The index of the first byte to read.
+     * @param length The number of bytes that can be read.
+     */
+    BinaryInput(final byte[] buffer, final int offset, final int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Reads a single byte.
+     * 
+     * @return The byte that was read.
+     */
+    public byte readByte() {
+        require(1);
+        return buffer[position++];
+    }
+
+    /**
+     * Reads bytes into a range of an array.
+     * 
+     * @param bytes The array to fill.
+     * @param offset The index of the first byte in the array to fill.
+     * @param length The number of bytes to read.
+     */
+    public void readBytes(final byte[] bytes, final int offset, final int length) {
+        require(length);
+        System.arraycopy(buffer, position, bytes, offset, length);
+        position += length;
+    }
+
+    /**
+     * Reads a boolean that was written with {@link BinaryOutput#writeBoolean(boolean)}.
+     * 
+     * @return The value that was read.
+     */
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    /**
+     * Reads an int that was written with {@link BinaryOutput#writeInt(int)}.
+     * 
+     * @return The value that was read.
+     */
+    public int readInt() {
+        require(4);
+        return getInt();
+    }
+
+    /**
+     * Reads a long that was written with {@link BinaryOutput#writeLong(long)}.
+     * 
+     * @return The value that was read.
+     */
+    public long readLong() {
+        require(8);
+        return getLong();
+    }
+
+    /**
+     * Reads an int that was written with {@link BinaryOutput#writeVarInt(int, boolean)}.
+     * 
+     * @param optimizePositive The same value that was passed when the int was written.
+     * @return The value that was read.
+     */
+    public int readVarInt(final boolean optimizePositive) {
+        int result = 0;
+        for (int shift = 0; shift <= MAX_VAR_INT_SHIFT; shift += 7) {
+            final byte current = readByte();
+            result |= (current & SEVEN_BITS) << shift;
+            if ((current & CONTINUATION_BIT) == 0) {
+                return optimizePositive ? result : (result >>> 1) ^ -(result & 1);
+            }
+        }
+        throw new SynchronizeFXException("Received a malformed variable length int.");
+    }
+
+    /**
+     * Reads a long that was written with {@link BinaryOutput#writeVarLong(long, boolean)}.
+     * 
+     * @param optimizePositive The same value that was passed when the long was written.
+     * @return The value that was read.
+     */
+    public long readVarLong(final boolean optimizePositive) {
+        long result = 0;
+        for (int shift = 0; shift <= MAX_VAR_LONG_SHIFT; shift += 7) {
+            final byte current = readByte();
+            result |= (long) (current & SEVEN_BITS) << shift;
+            if ((current & CONTINUATION_BIT) == 0) {
+                return optimizePositive ? result : (result >>> 1) ^ -(result & 1);
+            }
+        }
+        throw new SynchronizeFXException("Received a malformed variable length long.");
+    }
+
+    /**
+     * Reads a float that was written with {@link BinaryOutput#writeFloat(float)}.
+     * 
+     * @return The value that was read.
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    /**
+     * Reads a double that was written with {@link BinaryOutput#writeDouble(double)}.
+     * 
+     * @return The value that was read.
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads a string that was written with {@link BinaryOutput#writeString(String)}.
+     * 
+     * @return The value that was read.
+     */
+    public String readString() {
+        final int length = readVarInt(true);
+        require(length);
+        final String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return result;
+    }
+
+    /**
+     * Reads an {@link UUID} that was written with {@link BinaryOutput#writeUUID(UUID)}.
+     * 
+     * @return The id that was read.
+     */
+    public UUID readUUID() {
+        require(16);
+        final long mostSignificantBits = getLong();
+        return new UUID(mostSignificantBits, getLong());
+    }
+
+    /**
+     * @return The number of bytes that where not read yet.
+     */
+    int remaining() {
+        return limit - position;
+    }
+
+    private long getLong() {
+        final long high = getInt();
+        return high << 32 | getInt() & 0xFFFFFFFFL;
+    }
+
+    private int getInt() {
+        return (buffer[position++] & BYTE_MASK) << 24 | (buffer[position++] & BYTE_MASK) << 16
+                | (buffer[position++] & BYTE_MASK) << 8 | buffer[position++] & BYTE_MASK;
+    }
+
+    private void require(final int count) {
+        if (count < 0 || limit - position < count) {
+            throw new SynchronizeFXException("The serialized commands ended unexpectedly.");
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+/**
+ * A growable buffer to which the binary form of commands and values is written.
+ * 
+ * <p>
+ * All multi byte numbers are written in big endian byte order. Variable length numbers use 7 bits per byte where the
+ * highest bit tells whether another byte follows.
+ * </p>
+ * 
+ * @see BinaryInput
+ */
+public final class BinaryOutput {
+
+    private static final int MAX_VAR_INT_SIZE = 5;
+    private static final int MAX_VAR_LONG_SIZE = 10;
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUATION_BIT = 0x80;
+
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Initializes an empty output.
+     * 
+     * @param initialCapacity The size of the buffer in bytes before it has to grow the first time.
+     */
+    BinaryOutput(final int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Writes a single byte.
+     * 
+     * @param value The byte to write. Only the lowest 8 bits are used.
+     */
+    public void writeByte(final int value) {
+        require(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a range of a byte array.
+     * 
+     * @param bytes The array that contains the bytes to write.
+     * @param offset The index of the first byte to write.
+     * @param length The number of bytes to write.
+     */
+    public void writeBytes(final byte[] bytes, final int offset, final int length) {
+        require(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Writes a boolean as single byte.
+     * 
+     * @param value The value to write.
+     */
+    public void writeBoolean(final boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes an int with a fixed size of 4 bytes.
+     * 
+     * @param value The value to write.
+     */
+    public void writeInt(final int value) {
+        require(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a long with a fixed size of 8 bytes.
+     * 
+     * @param value The value to write.
+     */
+    public void writeLong(final long value) {
+        require(8);
+        putLong(value);
+    }
+
+    /**
+     * Writes an int with a variable size of 1 to 5 bytes.
+     * 
+     * @param value The value to write.
+     * @param optimizePositive <code>true</code> if small positive values should be written with fewer bytes,
+     *            <code>false</code> if small positive and negative values should be written with fewer bytes.
+     */
+    public void writeVarInt(final int value, final boolean optimizePositive) {
+        require(MAX_VAR_INT_SIZE);
+        int remaining = optimizePositive ? value : (value << 1) ^ (value >> 31);
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            buffer[position++] = (byte) ((remaining & SEVEN_BITS) | CONTINUATION_BIT);
+            remaining >>>= 7;
+        }
+        buffer[position++] = (byte) remaining;
+    }
+
+    /**
+     * Writes a long with a variable size of 1 to 10 bytes.
+     * 
+     * @param value The value to write.
+     * @param optimizePositive see {@link #writeVarInt(int, boolean)}
+     */
+    public void writeVarLong(final long value, final boolean optimizePositive) {
+        require(MAX_VAR_LONG_SIZE);
+        long remaining = optimizePositive ? value : (value << 1) ^ (value >> 63);
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            buffer[position++] = (byte) ((remaining & SEVEN_BITS) | CONTINUATION_BIT);
+            remaining >>>= 7;
+        }
+        buffer[position++] = (byte) remaining;
+    }
+
+    /**
+     * Writes a float with a fixed size of 4 bytes.
+     * 
+     * @param value The value to write.
+     */
+    public void writeFloat(final float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Writes a double with a fixed size of 8 bytes.
+     * 
+     * @param value The value to write.
+     */
+    public void writeDouble(final double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes a string as its UTF-8 byte count followed by its UTF-8 bytes.
+     * 
+     * @param value The string to write. It must not be <code>null</code>.
+     */
+    public void writeString(final String value) {
+        final int length = value.length();
+        final int start = position;
+        writeVarInt(length, true);
+        require(length);
+        for (int i = 0; i < length; i++) {
+            final char character = value.charAt(i);
+            if (character >= CONTINUATION_BIT) {
+                // Not ASCII, so the byte count differs from the char count.
+                position = start;
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length, true);
+                writeBytes(bytes, 0, bytes.length);
+                return;
+            }
+            buffer[position++] = (byte) character;
+        }
+    }
+
+    /**
+     * Writes an {@link UUID} with a fixed size of 16 bytes.
+     * 
+     * @param value The id to write. It must not be <code>null</code>.
+     */
+    public void writeUUID(final UUID value) {
+        require(16);
+        putLong(value.getMostSignificantBits());
+        putLong(value.getLeastSignificantBits());
+    }
+
+    /**
+     * Discards all written bytes.
+     */
+    void clear() {
+        position = 0;
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * @return The current size of the internal buffer in bytes.
+     */
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * The internal buffer. Only the bytes up to {@link #position()} are valid.
+     * 
+     * @return The internal buffer.
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return A copy of the bytes written.
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Writes the bytes written to this output to a stream.
+     * 
+     * @param destination The stream to write to.
+     * @throws IOException When writing to the stream failed.
+     */
+    void writeTo(final OutputStream destination) throws IOException {
+        destination.write(buffer, 0, position);
+    }
+
+    /**
+     * Appends all remaining bytes of a stream to this output.
+     * 
+     * @param source The stream to read from. It is read until its end but not closed.
+     * @throws IOException When reading from the stream failed.
+     */
+    void readFrom(final InputStream source) throws IOException {
+        while (true) {
+            require(1);
+            final int read = source.read(buffer, position, buffer.length - position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Appends the remaining bytes of a buffer to this output with a single bulk copy.
+     * 
+     * @param source The buffer to read from. Its position is moved to its limit.
+     */
+    void readFrom(final ByteBuffer source) {
+        final int length = source.remaining();
+        require(length);
+        source.get(buffer, position, length);
+        position += length;
+    }
+
+    private void putLong(final long value) {
+        buffer[position++] = (byte) (value >>> 56);
+        buffer[position++] = (byte) (value >>> 48);
+        buffer[position++] = (byte) (value >>> 40);
+        buffer[position++] = (byte) (value >>> 32);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void require(final int count) {
+        if (buffer.length - position < count) {
+            final int required = position + count;
+            if (required < 0) {
+                throw new SynchronizeFXException("The serialized commands exceed the maximal array size.");
+            }
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+}
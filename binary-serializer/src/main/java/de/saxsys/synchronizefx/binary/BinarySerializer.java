@@ -0,0 +1,222 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * Serializes SynchronizeFX {@link Command}s to a fixed binary format without using reflection.
+ * 
+ * <p>
+ * Each serialized list of commands starts with the {@link #FORMAT_VERSION}. The fields of each command are written
+ * in a fixed order by hand written code. Values of the types commonly used in JavaFX properties like strings, boxed
+ * primitives and enums are supported out of the box. Values of all other types need a {@link ValueCodec} that is
+ * registered with {@link #registerCodec(int, Class, ValueCodec)} on both sides of a connection.
+ * </p>
+ * 
+ * <p>
+ * All methods of this class are thread safe.
+ * </p>
+ */
+public class BinarySerializer implements StreamingSerializer {
+
+    /**
+     * The version of the binary format that is written by this serializer.
+     * 
+     * <p>
+     * It is increased on every incompatible change of the format. Serialized commands of other versions are
+     * rejected.
+     * </p>
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The default for {@link #BinarySerializer(int)}.
+     */
+    public static final int DEFAULT_MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final Values values = new Values();
+    private final CommandCodec commandCodec = new CommandCodec(values);
+    private final int maxRetainedBufferSize;
+    private final ThreadLocal<BinaryOutput> buffers = new ThreadLocal<BinaryOutput>() {
+        @Override
+        protected BinaryOutput initialValue() {
+            return new BinaryOutput(INITIAL_BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Initializes the serializer with a maximal retained buffer size of {@link #DEFAULT_MAX_RETAINED_BUFFER_SIZE}.
+     */
+    public BinarySerializer() {
+        this(DEFAULT_MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    /**
+     * Initializes the serializer.
+     * 
+     * <p>
+     * Each thread that uses this serializer keeps its own buffer which is reused for subsequent calls. If the buffer
+     * grew beyond <code>maxRetainedBufferSize</code> while serializing a large batch of commands, it is released
+     * afterwards.
+     * </p>
+     * 
+     * @param maxRetainedBufferSize The maximal size in bytes of buffers that are kept for reuse.
+     * @throws IllegalArgumentException When <code>maxRetainedBufferSize</code> is negative.
+     */
+    public BinarySerializer(final int maxRetainedBufferSize) {
+        if (maxRetainedBufferSize < 0) {
+            throw new IllegalArgumentException("The maximal retained buffer size must not be negative.");
+        }
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    /**
+     * Registers a codec for values of a class that is used in the domain model.
+     * 
+     * <p>
+     * The codec is used for values whose class is exactly <code>type</code>. The same codecs must be registered with
+     * the same ids on both sides of a connection. Use this method only before the first serialization or
+     * deserialization.
+     * </p>
+     * 
+     * @param id The id that identifies the codec in the serialized form. It must not be negative. Small ids need less
+     *            space.
+     * @param type The class of the values.
+     * @param codec The codec that writes and reads the values.
+     * @param <T> see type parameter.
+     * @throws IllegalArgumentException When the id is negative or a codec for the same id or class was already
+     *             registered.
+     */
+    public <T> void registerCodec(final int id, final Class<T> type, final ValueCodec<T> codec) {
+        values.register(id, type, codec);
+    }
+
+    @Override
+    public byte[] serialize(final List<Command> commands) {
+        final BinaryOutput output = acquireBuffer();
+        try {
+            write(commands, output);
+            return output.toBytes();
+        } finally {
+            releaseBuffer(output);
+        }
+    }
+
+    @Override
+    public void serialize(final List<Command> commands, final OutputStream destination) {
+        final BinaryOutput output = acquireBuffer();
+        try {
+            write(commands, output);
+            output.writeTo(destination);
+            destination.flush();
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Failed to write the serialized commands.", e);
+        } finally {
+            releaseBuffer(output);
+        }
+    }
+
+    @Override
+    public List<Command> deserialize(final byte[] commands) {
+        return read(new BinaryInput(commands, 0, commands.length));
+    }
+
+    @Override
+    public List<Command> deserialize(final InputStream source) {
+        final BinaryOutput buffer = acquireBuffer();
+        try {
+            buffer.readFrom(source);
+            return read(new BinaryInput(buffer.buffer(), 0, buffer.position()));
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Failed to read the serialized commands.", e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Deserializes SynchronizeFX {@link Command}s from the remaining bytes of a buffer.
+     * 
+     * Heap buffers are read in place without copying. The content of direct buffers is copied in bulk into the
+     * buffer that the current thread keeps for reuse so that no new array is allocated.
+     * 
+     * @param source see {@link StreamingSerializer#deserialize(ByteBuffer)}
+     * @return see {@link StreamingSerializer#deserialize(ByteBuffer)}
+     */
+    @Override
+    public List<Command> deserialize(final ByteBuffer source) {
+        final int length = source.remaining();
+        if (source.hasArray()) {
+            final List<Command> commands =
+                    read(new BinaryInput(source.array(), source.arrayOffset() + source.position(), length));
+            source.position(source.limit());
+            return commands;
+        }
+        final BinaryOutput buffer = acquireBuffer();
+        try {
+            buffer.readFrom(source);
+            return read(new BinaryInput(buffer.buffer(), 0, buffer.position()));
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private void write(final List<Command> commands, final BinaryOutput output) {
+        output.writeByte(FORMAT_VERSION);
+        commandCodec.write(commands, output);
+    }
+
+    private List<Command> read(final BinaryInput input) {
+        final byte version = input.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new SynchronizeFXException("Received commands in the binary format version " + version
+                    + " but only version " + FORMAT_VERSION + " is supported.");
+        }
+        final List<Command> commands = commandCodec.read(input);
+        if (input.remaining() != 0) {
+            throw new SynchronizeFXException("Received " + input.remaining()
+                    + " unexpected bytes after the serialized commands.");
+        }
+        return commands;
+    }
+
+    private BinaryOutput acquireBuffer() {
+        final BinaryOutput output = buffers.get();
+        output.clear();
+        return output;
+    }
+
+    private void releaseBuffer(final BinaryOutput output) {
+        if (output.capacity() > maxRetainedBufferSize) {
+            buffers.remove();
+        }
+    }
+}
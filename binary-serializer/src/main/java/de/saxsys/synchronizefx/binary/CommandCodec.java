@@ -0,0 +1,314 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToList;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.ListCommand;
+import de.saxsys.synchronizefx.core.metamodel.commands.ListCommand.ListVersionChange;
+import de.saxsys.synchronizefx.core.metamodel.commands.PutToMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromList;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ReplaceInList;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetRootElement;
+
+/**
+ * Writes and reads lists of {@link Command}s.
+ * 
+ * <p>
+ * A list starts with the number of commands. Each command starts with a type tag followed by its fields in a fixed
+ * order. Ids are written with 16 bytes, positions and counts as variable length ints and values with {@link Values}.
+ * </p>
+ */
+final class CommandCodec {
+
+    /**
+     * The maximal number of elements for which space is reserved before they where actually read.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private static final byte SET_PROPERTY_VALUE = 1;
+    private static final byte ADD_TO_LIST = 2;
+    private static final byte REMOVE_FROM_LIST = 3;
+    private static final byte REPLACE_IN_LIST = 4;
+    private static final byte CREATE_OBSERVABLE_OBJECT = 5;
+    private static final byte PUT_TO_MAP = 6;
+    private static final byte REMOVE_FROM_MAP = 7;
+    private static final byte ADD_TO_SET = 8;
+    private static final byte REMOVE_FROM_SET = 9;
+    private static final byte SET_ROOT_ELEMENT = 10;
+    private static final byte CLEAR_REFERENCES = 11;
+
+    private final Values values;
+
+    /**
+     * Initializes the codec.
+     * 
+     * @param values The codec used for the values contained in commands.
+     */
+    CommandCodec(final Values values) {
+        this.values = values;
+    }
+
+    /**
+     * Writes a list of commands.
+     * 
+     * @param commands The commands to write.
+     * @param output The output to write to.
+     */
+    void write(final List<Command> commands, final BinaryOutput output) {
+        output.writeVarInt(commands.size(), true);
+        for (final Command command : commands) {
+            write(command, output);
+        }
+    }
+
+    /**
+     * Reads a list of commands that was written with {@link #write(List, BinaryOutput)}.
+     * 
+     * @param input The input to read from.
+     * @return The commands that where read.
+     */
+    List<Command> read(final BinaryInput input) {
+        final int count = input.readVarInt(true);
+        if (count < 0) {
+            throw new SynchronizeFXException("Received a negative number of commands.");
+        }
+        final List<Command> commands = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            commands.add(readCommand(input));
+        }
+        return commands;
+    }
+
+    private void write(final Command command, final BinaryOutput output) {
+        if (command instanceof SetPropertyValue) {
+            writeSetPropertyValue((SetPropertyValue) command, output);
+        } else if (command instanceof CreateObservableObject) {
+            writeCreateObservableObject((CreateObservableObject) command, output);
+        } else if (command instanceof AddToList) {
+            writeAddToList((AddToList) command, output);
+        } else if (command instanceof RemoveFromList) {
+            writeRemoveFromList((RemoveFromList) command, output);
+        } else if (command instanceof ReplaceInList) {
+            writeReplaceInList((ReplaceInList) command, output);
+        } else if (command instanceof PutToMap) {
+            writePutToMap((PutToMap) command, output);
+        } else if (command instanceof RemoveFromMap) {
+            writeRemoveFromMap((RemoveFromMap) command, output);
+        } else if (command instanceof AddToSet) {
+            output.writeByte(ADD_TO_SET);
+            output.writeUUID(((AddToSet) command).getSetId());
+            values.write(((AddToSet) command).getValue(), output);
+        } else if (command instanceof RemoveFromSet) {
+            output.writeByte(REMOVE_FROM_SET);
+            output.writeUUID(((RemoveFromSet) command).getSetId());
+            values.write(((RemoveFromSet) command).getValue(), output);
+        } else if (command instanceof SetRootElement) {
+            output.writeByte(SET_ROOT_ELEMENT);
+            output.writeUUID(((SetRootElement) command).getRootElementId());
+        } else if (command instanceof ClearReferences) {
+            output.writeByte(CLEAR_REFERENCES);
+        } else {
+            throw new SynchronizeFXException("The command type " + command.getClass().getName()
+                    + " is not supported by the binary serializer.");
+        }
+    }
+
+    private Command readCommand(final BinaryInput input) {
+        final byte tag = input.readByte();
+        switch (tag) {
+            case SET_PROPERTY_VALUE:
+                return readSetPropertyValue(input);
+            case CREATE_OBSERVABLE_OBJECT:
+                return readCreateObservableObject(input);
+            case ADD_TO_LIST:
+                return readAddToList(input);
+            case REMOVE_FROM_LIST:
+                return readRemoveFromList(input);
+            case REPLACE_IN_LIST:
+                return readReplaceInList(input);
+            case PUT_TO_MAP:
+                return readPutToMap(input);
+            case REMOVE_FROM_MAP:
+                return readRemoveFromMap(input);
+            case ADD_TO_SET:
+                final AddToSet addToSet = new AddToSet();
+                addToSet.setSetId(input.readUUID());
+                addToSet.setValue(values.read(input));
+                return addToSet;
+            case REMOVE_FROM_SET:
+                final RemoveFromSet removeFromSet = new RemoveFromSet();
+                removeFromSet.setSetId(input.readUUID());
+                removeFromSet.setValue(values.read(input));
+                return removeFromSet;
+            case SET_ROOT_ELEMENT:
+                final SetRootElement setRootElement = new SetRootElement();
+                setRootElement.setRootElementId(input.readUUID());
+                return setRootElement;
+            case CLEAR_REFERENCES:
+                return new ClearReferences();
+            default:
+                throw new SynchronizeFXException("Received a command with the unknown type tag " + tag + ".");
+        }
+    }
+
+    // SetPropertyValue
+
+    private void writeSetPropertyValue(final SetPropertyValue command, final BinaryOutput output) {
+        output.writeByte(SET_PROPERTY_VALUE);
+        output.writeUUID(command.getCommandId());
+        output.writeUUID(command.getPropertyId());
+        values.write(command.getValue(), output);
+    }
+
+    private SetPropertyValue readSetPropertyValue(final BinaryInput input) {
+        final UUID commandId = input.readUUID();
+        final UUID propertyId = input.readUUID();
+        return new SetPropertyValue(commandId, propertyId, values.read(input));
+    }
+
+    // CreateObservableObject
+
+    private void writeCreateObservableObject(final CreateObservableObject command, final BinaryOutput output) {
+        output.writeByte(CREATE_OBSERVABLE_OBJECT);
+        output.writeUUID(command.getObjectId());
+        output.writeString(command.getClassName());
+        final Map<String, UUID> properties = command.getPropertyNameToId();
+        output.writeVarInt(properties.size(), true);
+        for (final Map.Entry<String, UUID> property : properties.entrySet()) {
+            output.writeString(property.getKey());
+            output.writeUUID(property.getValue());
+        }
+    }
+
+    private CreateObservableObject readCreateObservableObject(final BinaryInput input) {
+        final CreateObservableObject command = new CreateObservableObject();
+        command.setObjectId(input.readUUID());
+        command.setClassName(input.readString());
+        final int count = input.readVarInt(true);
+        if (count < 0) {
+            throw new SynchronizeFXException("Received a negative number of properties.");
+        }
+        final Map<String, UUID> properties = new HashMap<>(Math.min(count, MAX_INITIAL_CAPACITY) * 2);
+        for (int i = 0; i < count; i++) {
+            properties.put(input.readString(), input.readUUID());
+        }
+        command.setPropertyNameToId(properties);
+        return command;
+    }
+
+    // lists
+
+    private void writeAddToList(final AddToList command, final BinaryOutput output) {
+        output.writeByte(ADD_TO_LIST);
+        writeListCommand(command, output);
+        output.writeVarInt(command.getPosition(), true);
+        values.write(command.getValue(), output);
+    }
+
+    private AddToList readAddToList(final BinaryInput input) {
+        final UUID listId = input.readUUID();
+        final ListVersionChange versionChange = readVersionChange(input);
+        final int position = input.readVarInt(true);
+        return new AddToList(listId, versionChange, values.read(input), position);
+    }
+
+    private void writeRemoveFromList(final RemoveFromList command, final BinaryOutput output) {
+        output.writeByte(REMOVE_FROM_LIST);
+        writeListCommand(command, output);
+        output.writeVarInt(command.getStartPosition(), true);
+        output.writeVarInt(command.getRemoveCount(), true);
+    }
+
+    private RemoveFromList readRemoveFromList(final BinaryInput input) {
+        final UUID listId = input.readUUID();
+        final ListVersionChange versionChange = readVersionChange(input);
+        final int startPosition = input.readVarInt(true);
+        return new RemoveFromList(listId, versionChange, startPosition, input.readVarInt(true));
+    }
+
+    private void writeReplaceInList(final ReplaceInList command, final BinaryOutput output) {
+        output.writeByte(REPLACE_IN_LIST);
+        writeListCommand(command, output);
+        output.writeVarInt(command.getPosition(), true);
+        values.write(command.getValue(), output);
+    }
+
+    private ReplaceInList readReplaceInList(final BinaryInput input) {
+        final UUID listId = input.readUUID();
+        final ListVersionChange versionChange = readVersionChange(input);
+        final int position = input.readVarInt(true);
+        return new ReplaceInList(listId, versionChange, values.read(input), position);
+    }
+
+    private void writeListCommand(final ListCommand command, final BinaryOutput output) {
+        output.writeUUID(command.getListId());
+        output.writeUUID(command.getListVersionChange().getFromVersion());
+        output.writeUUID(command.getListVersionChange().getToVersion());
+    }
+
+    private ListVersionChange readVersionChange(final BinaryInput input) {
+        final UUID fromVersion = input.readUUID();
+        return new ListVersionChange(fromVersion, input.readUUID());
+    }
+
+    // maps
+
+    private void writePutToMap(final PutToMap command, final BinaryOutput output) {
+        output.writeByte(PUT_TO_MAP);
+        output.writeUUID(command.getMapId());
+        values.write(command.getKey(), output);
+        values.write(command.getValue(), output);
+    }
+
+    private PutToMap readPutToMap(final BinaryInput input) {
+        final PutToMap command = new PutToMap();
+        command.setMapId(input.readUUID());
+        command.setKey(values.read(input));
+        command.setValue(values.read(input));
+        return command;
+    }
+
+    private void writeRemoveFromMap(final RemoveFromMap command, final BinaryOutput output) {
+        output.writeByte(REMOVE_FROM_MAP);
+        output.writeUUID(command.getMapId());
+        values.write(command.getKey(), output);
+    }
+
+    private RemoveFromMap readRemoveFromMap(final BinaryInput input) {
+        final RemoveFromMap command = new RemoveFromMap();
+        command.setMapId(input.readUUID());
+        command.setKey(values.read(input));
+        return command;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+/**
+ * Writes and reads values of a user defined type that are used in domain models.
+ * 
+ * <p>
+ * Codecs are registered with {@link BinarySerializer#registerCodec(int, Class, ValueCodec)}. They are used for all
+ * values of the exact class they where registered for. Implementations must be thread safe.
+ * </p>
+ * 
+ * @param <T> The type of the values.
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Writes a value.
+     * 
+     * @param value The value to write. It is never <code>null</code>.
+     * @param output The output to write to.
+     */
+    void write(T value, BinaryOutput output);
+
+    /**
+     * Reads a value that was written with {@link #write(Object, BinaryOutput)}.
+     * 
+     * @param input The input to read from.
+     * @return The value that was read.
+     */
+    T read(BinaryInput input);
+}
@@ -0,0 +1,258 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+/**
+ * Writes and reads {@link Value}s.
+ * 
+ * <p>
+ * Each value starts with a type tag. Ids of observable objects, <code>null</code>, strings, the boxed primitive
+ * types, {@link UUID}s and enums are written with a tag of their own. Values of all other types are written with the
+ * {@link ValueCodec} that was registered for their class.
+ * </p>
+ * 
+ * <p>
+ * Enums are written as the name of their class and their ordinal. The constants of an enum class are looked up only
+ * once.
+ * </p>
+ */
+final class Values {
+
+    private static final byte NULL = 0;
+    private static final byte OBSERVABLE_OBJECT = 1;
+    private static final byte STRING = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte TRUE = 7;
+    private static final byte FALSE = 8;
+    private static final byte SHORT = 9;
+    private static final byte BYTE = 10;
+    private static final byte CHARACTER = 11;
+    private static final byte UUID_VALUE = 12;
+    private static final byte ENUM = 13;
+    private static final byte CUSTOM = 14;
+
+    private final ConcurrentMap<Class<?>, Registration<?>> codecsByType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Registration<?>> codecsById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object[]> enumConstants = new ConcurrentHashMap<>();
+
+    /**
+     * @see BinarySerializer#registerCodec(int, Class, ValueCodec)
+     * @param id see {@link BinarySerializer#registerCodec(int, Class, ValueCodec)}
+     * @param type see {@link BinarySerializer#registerCodec(int, Class, ValueCodec)}
+     * @param codec see {@link BinarySerializer#registerCodec(int, Class, ValueCodec)}
+     * @param <T> see {@link BinarySerializer#registerCodec(int, Class, ValueCodec)}
+     */
+    <T> void register(final int id, final Class<T> type, final ValueCodec<T> codec) {
+        if (id < 0) {
+            throw new IllegalArgumentException("The id of a codec must not be negative.");
+        }
+        final Registration<T> registration = new Registration<>(id, codec);
+        if (codecsById.putIfAbsent(id, registration) != null) {
+            throw new IllegalArgumentException("The codec id " + id + " is already in use.");
+        }
+        if (codecsByType.putIfAbsent(type, registration) != null) {
+            codecsById.remove(id);
+            throw new IllegalArgumentException("A codec for the class " + type.getName() + " is already registered.");
+        }
+    }
+
+    /**
+     * Writes a value.
+     * 
+     * @param value The value to write.
+     * @param output The output to write to.
+     */
+    void write(final Value value, final BinaryOutput output) {
+        if (value.getObservableObjectId() != null) {
+            output.writeByte(OBSERVABLE_OBJECT);
+            output.writeUUID(value.getObservableObjectId());
+            return;
+        }
+
+        final Object simpleValue = value.getSimpleObjectValue();
+        if (simpleValue == null) {
+            output.writeByte(NULL);
+            return;
+        }
+        final Class<?> type = simpleValue.getClass();
+        if (type == String.class) {
+            output.writeByte(STRING);
+            output.writeString((String) simpleValue);
+        } else if (type == Double.class) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) simpleValue);
+        } else if (type == Integer.class) {
+            output.writeByte(INTEGER);
+            output.writeVarInt((Integer) simpleValue, false);
+        } else if (type == Boolean.class) {
+            output.writeByte((Boolean) simpleValue ? TRUE : FALSE);
+        } else if (type == Long.class) {
+            output.writeByte(LONG);
+            output.writeVarLong((Long) simpleValue, false);
+        } else if (type == Float.class) {
+            output.writeByte(FLOAT);
+            output.writeFloat((Float) simpleValue);
+        } else {
+            writeRareType(simpleValue, type, output);
+        }
+    }
+
+    /**
+     * Reads a value that was written with {@link #write(Value, BinaryOutput)}.
+     * 
+     * @param input The input to read from.
+     * @return The value that was read.
+     */
+    Value read(final BinaryInput input) {
+        final byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return new Value((Object) null);
+            case OBSERVABLE_OBJECT:
+                return new Value(input.readUUID());
+            case STRING:
+                return new Value(input.readString());
+            case INTEGER:
+                return new Value(input.readVarInt(false));
+            case LONG:
+                return new Value(input.readVarLong(false));
+            case DOUBLE:
+                return new Value(input.readDouble());
+            case FLOAT:
+                return new Value(input.readFloat());
+            case TRUE:
+                return new Value(Boolean.TRUE);
+            case FALSE:
+                return new Value(Boolean.FALSE);
+            case SHORT:
+                return new Value((short) input.readVarInt(false));
+            case BYTE:
+                return new Value(input.readByte());
+            case CHARACTER:
+                return new Value((char) input.readVarInt(true));
+            case UUID_VALUE:
+                return new Value((Object) input.readUUID());
+            case ENUM:
+                return new Value(readEnum(input));
+            case CUSTOM:
+                return new Value(readCustom(input));
+            default:
+                throw new SynchronizeFXException("Received a value with the unknown type tag " + tag + ".");
+        }
+    }
+
+    private void writeRareType(final Object value, final Class<?> type, final BinaryOutput output) {
+        if (type == Short.class) {
+            output.writeByte(SHORT);
+            output.writeVarInt((Short) value, false);
+        } else if (type == Byte.class) {
+            output.writeByte(BYTE);
+            output.writeByte((Byte) value);
+        } else if (type == Character.class) {
+            output.writeByte(CHARACTER);
+            output.writeVarInt((Character) value, true);
+        } else if (type == UUID.class) {
+            output.writeByte(UUID_VALUE);
+            output.writeUUID((UUID) value);
+        } else if (value instanceof Enum) {
+            output.writeByte(ENUM);
+            output.writeString(((Enum<?>) value).getDeclaringClass().getName());
+            output.writeVarInt(((Enum<?>) value).ordinal(), true);
+        } else {
+            final Registration<?> registration = codecsByType.get(type);
+            if (registration == null) {
+                throw new SynchronizeFXException("There is no ValueCodec registered for values of the class "
+                        + type.getName() + ".");
+            }
+            output.writeByte(CUSTOM);
+            output.writeVarInt(registration.id, true);
+            registration.write(value, output);
+        }
+    }
+
+    private Object readEnum(final BinaryInput input) {
+        final String className = input.readString();
+        Object[] constants = enumConstants.get(className);
+        if (constants == null) {
+            constants = loadEnumConstants(className);
+            enumConstants.put(className, constants);
+        }
+        final int ordinal = input.readVarInt(true);
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new SynchronizeFXException("Received the unknown ordinal " + ordinal + " for the enum " + className
+                    + ".");
+        }
+        return constants[ordinal];
+    }
+
+    private Object[] loadEnumConstants(final String className) {
+        final Class<?> enumClass;
+        try {
+            enumClass = Class.forName(className);
+        } catch (final ClassNotFoundException e) {
+            throw new SynchronizeFXException("Received a value of the unknown enum " + className + ".", e);
+        }
+        if (!enumClass.isEnum()) {
+            throw new SynchronizeFXException("Received an enum value of the class " + className
+                    + " which is not an enum.");
+        }
+        return enumClass.getEnumConstants();
+    }
+
+    private Object readCustom(final BinaryInput input) {
+        final int id = input.readVarInt(true);
+        final Registration<?> registration = codecsById.get(id);
+        if (registration == null) {
+            throw new SynchronizeFXException("Received a value for the codec id " + id
+                    + " but no ValueCodec is registered for it.");
+        }
+        return registration.codec.read(input);
+    }
+
+    /**
+     * A {@link ValueCodec} and the id it was registered with.
+     * 
+     * @param <T> The type of the values the codec handles.
+     */
+    private static final class Registration<T> {
+        private final int id;
+        private final ValueCodec<T> codec;
+
+        Registration(final int id, final ValueCodec<T> codec) {
+            this.id = id;
+            this.codec = codec;
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(final Object value, final BinaryOutput output) {
+            codec.write((T) value, output);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToList;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.ListCommand.ListVersionChange;
+import de.saxsys.synchronizefx.core.metamodel.commands.PutToMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromList;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ReplaceInList;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetRootElement;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link BinarySerializer} restores all commands and values it serialized.
+ */
+public class BinarySerializerTest {
+
+    private final BinarySerializer cut = new BinarySerializer();
+
+    /**
+     * All value types that are supported without a {@link ValueCodec} should be restored.
+     */
+    @Test
+    public void shouldRestoreBuiltInValueTypes() {
+        final Object[] simpleValues = new Object[] {null, "", "some text", "\u00e4\u4e2d\ud83d\ude00", 0, -1,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, 5L, Long.MIN_VALUE, 1.5, Double.NaN, 2.5f, true, false,
+            (short) -3, (byte) 7, 'x', UUID.randomUUID(), TimeUnit.SECONDS };
+
+        for (final Object simpleValue : simpleValues) {
+            final Value restored = roundTrip(new Value(simpleValue));
+
+            assertThat(restored.getSimpleObjectValue()).isEqualTo(simpleValue);
+            assertThat(restored.getObservableObjectId()).isNull();
+        }
+    }
+
+    /**
+     * Values that reference observable objects should be restored.
+     */
+    @Test
+    public void shouldRestoreObservableObjectValues() {
+        final UUID id = UUID.randomUUID();
+
+        final Value restored = roundTrip(new Value(id));
+
+        assertThat(restored.getObservableObjectId()).isEqualTo(id);
+        assertThat(restored.getSimpleObjectValue()).isNull();
+    }
+
+    /**
+     * Values of classes with a registered {@link ValueCodec} should be written with that codec.
+     */
+    @Test
+    public void shouldUseRegisteredCodecs() {
+        cut.registerCodec(3, StringBuilder.class, new ValueCodec<StringBuilder>() {
+            @Override
+            public void write(final StringBuilder value, final BinaryOutput output) {
+                output.writeString(value.toString());
+            }
+
+            @Override
+            public StringBuilder read(final BinaryInput input) {
+                return new StringBuilder(input.readString());
+            }
+        });
+
+        final Value restored = roundTrip(new Value(new StringBuilder("built")));
+
+        assertThat(restored.getSimpleObjectValue().toString()).isEqualTo("built");
+    }
+
+    /**
+     * Values of classes without a {@link ValueCodec} can't be serialized.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldFailForValuesWithoutCodec() {
+        roundTrip(new Value(new StringBuilder("no codec")));
+    }
+
+    /**
+     * A codec id can only be used once.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateCodecIds() {
+        final ValueCodec<StringBuilder> codec = new ValueCodec<StringBuilder>() {
+            @Override
+            public void write(final StringBuilder value, final BinaryOutput output) {
+            }
+
+            @Override
+            public StringBuilder read(final BinaryInput input) {
+                return null;
+            }
+        };
+        cut.registerCodec(1, StringBuilder.class, codec);
+        cut.registerCodec(1, Object.class, new ValueCodec<Object>() {
+            @Override
+            public void write(final Object value, final BinaryOutput output) {
+            }
+
+            @Override
+            public Object read(final BinaryInput input) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * All fields of all command types should be restored.
+     */
+    @Test
+    public void shouldRestoreAllCommandTypes() {
+        final UUID id = UUID.randomUUID();
+        final ListVersionChange versionChange = new ListVersionChange(UUID.randomUUID(), UUID.randomUUID());
+        final Map<String, UUID> properties = new HashMap<>();
+        properties.put("first", UUID.randomUUID());
+        properties.put("second", UUID.randomUUID());
+        final CreateObservableObject create = new CreateObservableObject();
+        create.setObjectId(id);
+        create.setClassName("some.Class");
+        create.setPropertyNameToId(properties);
+        final PutToMap put = new PutToMap();
+        put.setMapId(id);
+        put.setKey(new Value("key"));
+        put.setValue(new Value(1));
+        final RemoveFromMap removeFromMap = new RemoveFromMap();
+        removeFromMap.setMapId(id);
+        removeFromMap.setKey(new Value("key"));
+        final AddToSet addToSet = new AddToSet();
+        addToSet.setSetId(id);
+        addToSet.setValue(new Value(2));
+        final RemoveFromSet removeFromSet = new RemoveFromSet();
+        removeFromSet.setSetId(id);
+        removeFromSet.setValue(new Value(3));
+        final SetRootElement root = new SetRootElement();
+        root.setRootElementId(id);
+
+        final List<Command> restored = cut.deserialize(cut.serialize(Arrays.<Command> asList(
+                new SetPropertyValue(id, id, new Value(4)), create, new AddToList(id, versionChange, new Value(5), 6),
+                new RemoveFromList(id, versionChange, 7, 8), new ReplaceInList(id, versionChange, new Value(9), 10),
+                put, removeFromMap, addToSet, removeFromSet, root, new ClearReferences())));
+
+        assertThat(restored).hasSize(11);
+        final SetPropertyValue setProperty = (SetPropertyValue) restored.get(0);
+        assertThat(setProperty.getCommandId()).isEqualTo(id);
+        assertThat(setProperty.getPropertyId()).isEqualTo(id);
+        assertThat(setProperty.getValue().getSimpleObjectValue()).isEqualTo(4);
+        final CreateObservableObject restoredCreate = (CreateObservableObject) restored.get(1);
+        assertThat(restoredCreate.getObjectId()).isEqualTo(id);
+        assertThat(restoredCreate.getClassName()).isEqualTo("some.Class");
+        assertThat(restoredCreate.getPropertyNameToId()).isEqualTo(properties);
+        final AddToList addToList = (AddToList) restored.get(2);
+        assertThat(addToList.getListId()).isEqualTo(id);
+        assertThat(addToList.getListVersionChange()).isEqualTo(versionChange);
+        assertThat(addToList.getValue().getSimpleObjectValue()).isEqualTo(5);
+        assertThat(addToList.getPosition()).isEqualTo(6);
+        final RemoveFromList removeFromList = (RemoveFromList) restored.get(3);
+        assertThat(removeFromList.getListVersionChange()).isEqualTo(versionChange);
+        assertThat(removeFromList.getStartPosition()).isEqualTo(7);
+        assertThat(removeFromList.getRemoveCount()).isEqualTo(8);
+        final ReplaceInList replace = (ReplaceInList) restored.get(4);
+        assertThat(replace.getValue().getSimpleObjectValue()).isEqualTo(9);
+        assertThat(replace.getPosition()).isEqualTo(10);
+        final PutToMap restoredPut = (PutToMap) restored.get(5);
+        assertThat(restoredPut.getMapId()).isEqualTo(id);
+        assertThat(restoredPut.getKey().getSimpleObjectValue()).isEqualTo("key");
+        assertThat(restoredPut.getValue().getSimpleObjectValue()).isEqualTo(1);
+        assertThat(((RemoveFromMap) restored.get(6)).getKey().getSimpleObjectValue()).isEqualTo("key");
+        assertThat(((AddToSet) restored.get(7)).getValue().getSimpleObjectValue()).isEqualTo(2);
+        assertThat(((RemoveFromSet) restored.get(8)).getValue().getSimpleObjectValue()).isEqualTo(3);
+        assertThat(((SetRootElement) restored.get(9)).getRootElementId()).isEqualTo(id);
+        assertThat(restored.get(10)).isInstanceOf(ClearReferences.class);
+    }
+
+    /**
+     * Streams and buffers should contain the same format as byte arrays.
+     */
+    @Test
+    public void shouldUseTheSameFormatForStreamsAndBuffers() {
+        final List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            commands.add(new SetPropertyValue(UUID.randomUUID(), new Value("value " + i)));
+        }
+        final byte[] serialized = cut.serialize(commands);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        cut.serialize(commands, stream);
+        final ByteBuffer buffer = ByteBuffer.wrap(serialized);
+        final List<Command> fromBuffer = cut.deserialize(buffer);
+        final List<Command> fromStream = cut.deserialize(new ByteArrayInputStream(serialized));
+
+        assertThat(stream.toByteArray()).isEqualTo(serialized);
+        assertThat(fromBuffer).isEqualTo(commands);
+        assertThat(fromStream).isEqualTo(commands);
+        assertThat(buffer.remaining()).isZero();
+    }
+
+    /**
+     * Direct buffers should be read from their position to their limit, also when a smaller message follows a
+     * larger one.
+     */
+    @Test
+    public void shouldReadDirectBuffers() {
+        final List<Command> large = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            large.add(new SetPropertyValue(UUID.randomUUID(), new Value("value " + i)));
+        }
+        final List<Command> small = Arrays.<Command> asList(new SetPropertyValue(UUID.randomUUID(), new Value(1)));
+
+        for (final List<Command> commands : Arrays.asList(large, small)) {
+            final byte[] serialized = cut.serialize(commands);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(serialized.length + 1);
+            buffer.put((byte) 42).put(serialized).flip();
+            buffer.position(1);
+
+            assertThat(cut.deserialize(buffer)).isEqualTo(commands);
+            assertThat(buffer.remaining()).isZero();
+        }
+    }
+
+    /**
+     * Commands serialized in another version of the format should be rejected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectOtherFormatVersions() {
+        final byte[] serialized = cut.serialize(Arrays.<Command> asList(new ClearReferences()));
+        serialized[0] = BinarySerializer.FORMAT_VERSION + 1;
+
+        cut.deserialize(serialized);
+    }
+
+    /**
+     * Incomplete serialized commands should be rejected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectTruncatedInput() {
+        final byte[] serialized =
+                cut.serialize(Arrays.<Command> asList(new SetPropertyValue(UUID.randomUUID(), new Value("text"))));
+
+        cut.deserialize(Arrays.copyOf(serialized, serialized.length - 1));
+    }
+
+    private Value roundTrip(final Value value) {
+        final List<Command> restored =
+                cut.deserialize(cut.serialize(Arrays.<Command> asList(new SetPropertyValue(UUID.randomUUID(),
+                        value))));
+        return ((SetPropertyValue) restored.get(0)).getValue();
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Keeps the {@link Output} and {@link Input} buffers of a {@link KryoSerializer} for reuse.
+ * 
+ * A new set of buffers is created for each {@link Thread} to ensure thread-safety. The buffers are reset rather than
+ * reallocated for every serialization. Buffers that grew larger than a configurable size while serializing a big
+ * batch of commands are dropped afterwards so that they are not retained forever.
+ */
+final class KryoBuffers extends ThreadLocal<KryoBuffers.Buffers> {
+
+    /**
+     * The size that buffers have initially.
+     */
+    static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(EMPTY);
+
+    private final int maxRetainedBufferSize;
+
+    /**
+     * Initializes the buffer cache.
+     * 
+     * @param maxRetainedBufferSize The size in bytes up to which a grown buffer is kept for reuse.
+     */
+    KryoBuffers(final int maxRetainedBufferSize) {
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    @Override
+    protected Buffers initialValue() {
+        return new Buffers();
+    }
+
+    /**
+     * The buffers of a single thread.
+     */
+    final class Buffers {
+        private final Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+        private final Input arrayInput = new Input(EMPTY);
+        private final Input streamInput = new Input(INITIAL_BUFFER_SIZE);
+        private final ByteBufferInput bufferInput = new ByteBufferInput(EMPTY_BUFFER);
+
+        /**
+         * An empty growable output whose content can be retrieved with {@link Output#toBytes()}.
+         * 
+         * @return The output. Pass it to {@link #release(Output)} when it is no longer needed.
+         */
+        Output output() {
+            output.clear();
+            return output;
+        }
+
+        /**
+         * An output that writes to a stream.
+         * 
+         * @param destination The stream to write to.
+         * @return The output. Pass it to {@link #release(Output)} when it is no longer needed.
+         */
+        Output output(final OutputStream destination) {
+            output.setOutputStream(destination);
+            return output;
+        }
+
+        /**
+         * An input that reads from an array without copying it.
+         * 
+         * @param buffer The array to read from.
+         * @param offset The index of the first byte to read.
+         * @param length The number of bytes to read.
+         * @return The input. Pass it to {@link #release(Input)} when it is no longer needed.
+         */
+        Input input(final byte[] buffer, final int offset, final int length) {
+            arrayInput.setBuffer(buffer, offset, length);
+            return arrayInput;
+        }
+
+        /**
+         * An input that reads from a {@link ByteBuffer} without copying it.
+         * 
+         * <p>
+         * This is intended for direct buffers whose content can't be accessed as an array. The input starts at the
+         * current position of the buffer but does not change the position of the passed buffer.
+         * </p>
+         * 
+         * @param buffer The buffer to read from.
+         * @return The input. Pass it to {@link #release(Input)} when it is no longer needed.
+         */
+        Input input(final ByteBuffer buffer) {
+            bufferInput.setBuffer(buffer.slice());
+            return bufferInput;
+        }
+
+        /**
+         * An input that reads from a stream.
+         * 
+         * @param source The stream to read from.
+         * @return The input. Pass it to {@link #release(Input)} when it is no longer needed.
+         */
+        Input input(final InputStream source) {
+            streamInput.setInputStream(source);
+            return streamInput;
+        }
+
+        /**
+         * Resets an output after usage and drops its buffer if it grew too large.
+         * 
+         * @param used The output that was retrieved from this instance.
+         */
+        void release(final Output used) {
+            used.setOutputStream(null);
+            if (used.getBuffer().length > maxRetainedBufferSize) {
+                used.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
+        }
+
+        /**
+         * Resets an input after usage so that it does not reference data or streams of the caller any more.
+         * 
+         * @param used The input that was retrieved from this instance.
+         */
+        void release(final Input used) {
+            if (used == arrayInput) {
+                arrayInput.setBuffer(EMPTY);
+            } else if (used == bufferInput) {
+                // ByteBufferInput.release() would free the direct memory of the callers buffer.
+                bufferInput.setBuffer(EMPTY_BUFFER);
+            } else {
+                streamInput.setInputStream(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * The serializer for a single connection that is created by {@link KryoSerializer#newConnectionSerializer()}.
+ * 
+ * @see ConnectionScopedSerializer#newConnectionSerializer()
+ */
+final class KryoConnectionSerializer implements StreamingSerializer {
+
+    private final KryoSerializer parent;
+    private final KryoConnectionState state;
+
+    /**
+     * Initializes the serializer.
+     * 
+     * @param parent The serializer that does the actual work.
+     * @param state The state of the connection.
+     */
+    KryoConnectionSerializer(final KryoSerializer parent, final KryoConnectionState state) {
+        this.parent = parent;
+        this.state = state;
+    }
+
+    @Override
+    public byte[] serialize(final List<Command> commands) {
+        return parent.serialize(commands, state);
+    }
+
+    @Override
+    public List<Command> deserialize(final byte[] commands) {
+        return parent.deserialize(commands, state);
+    }
+
+    @Override
+    public void serialize(final List<Command> commands, final OutputStream destination) {
+        parent.serialize(commands, destination, state);
+    }
+
+    @Override
+    public List<Command> deserialize(final InputStream source) {
+        return parent.deserialize(source, state);
+    }
+
+    @Override
+    public List<Command> deserialize(final ByteBuffer source) {
+        return parent.deserialize(source, state);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import de.saxsys.synchronizefx.kryo.serializer.ClassSchemas;
+import de.saxsys.synchronizefx.kryo.serializer.UUIDHandles;
+
+import com.esotericsoftware.kryo.Kryo;
+
+/**
+ * The state that is shared between both ends of a single connection.
+ * 
+ * The features that are used are announced as flags at the start of each serialized list of commands.
+ */
+final class KryoConnectionState {
+
+    /**
+     * The flag for {@link UUIDHandles}.
+     */
+    static final int FLAG_UUID_HANDLES = 1;
+
+    /**
+     * The flag for {@link ClassSchemas}.
+     */
+    static final int FLAG_CLASS_SCHEMAS = 2;
+
+    /**
+     * All flags that are supported by this version.
+     */
+    static final int KNOWN_FLAGS = FLAG_UUID_HANDLES | FLAG_CLASS_SCHEMAS;
+
+    private final UUIDHandles handles;
+    private final ClassSchemas schemas;
+
+    /**
+     * Initializes the state of a new connection.
+     * 
+     * @param maxUUIDHandles The maximal number of {@link UUIDHandles} or <code>0</code> if they should not be used.
+     * @param maxClassSchemas The maximal number of {@link ClassSchemas} or <code>0</code> if they should not be used.
+     */
+    KryoConnectionState(final int maxUUIDHandles, final int maxClassSchemas) {
+        this.handles = maxUUIDHandles == 0 ? null : new UUIDHandles(maxUUIDHandles);
+        this.schemas = maxClassSchemas == 0 ? null : new ClassSchemas(maxClassSchemas);
+    }
+
+    /**
+     * The features this side uses when serializing.
+     * 
+     * @return The flags of the features.
+     */
+    int flags() {
+        return (handles == null ? 0 : FLAG_UUID_HANDLES) | (schemas == null ? 0 : FLAG_CLASS_SCHEMAS);
+    }
+
+    /**
+     * Makes the state for the given features available to a {@link Kryo} instance.
+     * 
+     * @param kryo The instance that is about to be used.
+     * @param flags The features that where used by the side that serialized the data.
+     * @return <code>null</code> if all features are available or a description of the first missing feature.
+     */
+    String bind(final Kryo kryo, final int flags) {
+        if ((flags & FLAG_UUID_HANDLES) != 0) {
+            if (handles == null) {
+                return "UUID handles";
+            }
+            handles.bind(kryo);
+        }
+        if ((flags & FLAG_CLASS_SCHEMAS) != 0) {
+            if (schemas == null) {
+                return "class schemas";
+            }
+            schemas.bind(kryo);
+        }
+        return null;
+    }
+
+    /**
+     * Reverts {@link #bind(Kryo, int)}.
+     * 
+     * @param kryo The instance that was used.
+     */
+    static void unbind(final Kryo kryo) {
+        UUIDHandles.unbind(kryo);
+        ClassSchemas.unbind(kryo);
+    }
+}
@@ -24,14 +24,28 @@ import java.util.List;
 import java.util.UUID;
 
 import de.saxsys.synchronizefx.core.metamodel.commands.AddToList;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.PutToMap;
 import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromList;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromSet;
 import de.saxsys.synchronizefx.core.metamodel.commands.ReplaceInList;
 import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetRootElement;
 import de.saxsys.synchronizefx.core.metamodel.commands.Value;
 import de.saxsys.synchronizefx.kryo.serializer.AddToListSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.AddToSetSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.ClearReferencesSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.CreateObservableObjectSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.PutToMapSerializer;
 import de.saxsys.synchronizefx.kryo.serializer.RemoveFromListSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.RemoveFromMapSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.RemoveFromSetSerializer;
 import de.saxsys.synchronizefx.kryo.serializer.ReplaceInListSerializer;
 import de.saxsys.synchronizefx.kryo.serializer.SetPropertyValueSerializer;
+import de.saxsys.synchronizefx.kryo.serializer.SetRootElementSerializer;
 import de.saxsys.synchronizefx.kryo.serializer.UUIDSerializer;
 import de.saxsys.synchronizefx.kryo.serializer.ValueSerializer;
 
@@ -43,20 +57,42 @@ import com.esotericsoftware.kryo.Serializer;
  * registerend.
  * 
  * A new {@link Kryo} instance is created for each {@link Thread} to ensure thread-safety.
+ * 
+ * <p>
+ * The classes of SynchronizeFX are registered with fixed ids starting at {@link #FIRST_REGISTRATION_ID} so that
+ * they are transfered as small integers. The ids below are used by the default registrations of Kryo and by classes
+ * registered by the user. Classes registered by the user without an explicit id get the next free id.
+ * </p>
  */
 final class KryoInitializer extends ThreadLocal<Kryo> {
 
+    /**
+     * The registration id of the first SynchronizeFX class.
+     * 
+     * New classes must only be appended to the registrations in {@link #initialValue()}. Changing the order changes
+     * the wire format.
+     */
+    static final int FIRST_REGISTRATION_ID = 20;
+
     private List<CustomSerializers<?>> customSerializers = new LinkedList<>();
 
     @Override
     protected Kryo initialValue() {
         Kryo kryo = new Kryo();
-        kryo.register(UUID.class, new UUIDSerializer());
-        kryo.register(Value.class, new ValueSerializer());
-        kryo.register(SetPropertyValue.class, new SetPropertyValueSerializer());
-        kryo.register(AddToList.class, new AddToListSerializer());
-        kryo.register(RemoveFromList.class, new RemoveFromListSerializer());
-        kryo.register(ReplaceInList.class, new ReplaceInListSerializer());
+        int id = FIRST_REGISTRATION_ID;
+        kryo.register(UUID.class, new UUIDSerializer(), id++);
+        kryo.register(Value.class, new ValueSerializer(), id++);
+        kryo.register(SetPropertyValue.class, new SetPropertyValueSerializer(), id++);
+        kryo.register(AddToList.class, new AddToListSerializer(), id++);
+        kryo.register(RemoveFromList.class, new RemoveFromListSerializer(), id++);
+        kryo.register(ReplaceInList.class, new ReplaceInListSerializer(), id++);
+        kryo.register(CreateObservableObject.class, new CreateObservableObjectSerializer(), id++);
+        kryo.register(PutToMap.class, new PutToMapSerializer(), id++);
+        kryo.register(RemoveFromMap.class, new RemoveFromMapSerializer(), id++);
+        kryo.register(AddToSet.class, new AddToSetSerializer(), id++);
+        kryo.register(RemoveFromSet.class, new RemoveFromSetSerializer(), id++);
+        kryo.register(SetRootElement.class, new SetRootElementSerializer(), id++);
+        kryo.register(ClearReferences.class, new ClearReferencesSerializer(), id++);
 
         synchronized (customSerializers) {
             for (CustomSerializers<?> serializer : customSerializers) {
@@ -19,23 +19,70 @@
 
 package de.saxsys.synchronizefx.kryo;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.kryo.KryoBuffers.Buffers;
+import de.saxsys.synchronizefx.kryo.serializer.CommandListSerializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 /**
  * Serializes SynchronizeFX {@link Command}s by using the Kryo library.
+ * 
+ * <p>
+ * Each serialized list of commands starts with a byte of flags that tells which connection scoped compression
+ * features where used to create it. See {@link #setMaxUUIDHandlesPerConnection(int)} and
+ * {@link #setMaxClassSchemasPerConnection(int)}.
+ * </p>
  */
-public class KryoSerializer implements de.saxsys.synchronizefx.core.clientserver.Serializer {
+public class KryoSerializer implements StreamingSerializer, ConnectionScopedSerializer {
+    /**
+     * The default for {@link #KryoSerializer(int)}.
+     */
+    public static final int DEFAULT_MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
     private KryoInitializer kryo = new KryoInitializer();
+    private final CommandListSerializer commandListSerializer = new CommandListSerializer();
+    private final KryoBuffers buffers;
+    private int maxUUIDHandles;
+    private int maxClassSchemas;
+
+    /**
+     * Initializes the serializer with a maximal retained buffer size of {@link #DEFAULT_MAX_RETAINED_BUFFER_SIZE}.
+     */
+    public KryoSerializer() {
+        this(DEFAULT_MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    /**
+     * Initializes the serializer.
+     * 
+     * <p>
+     * Each thread that uses this serializer keeps its own buffers which are reused for subsequent calls. Buffers
+     * grow when large batches of commands like the initial state of a domain model are serialized. If a buffer grew
+     * beyond <code>maxRetainedBufferSize</code> it is released after the serialization finished.
+     * </p>
+     * 
+     * @param maxRetainedBufferSize The maximal size in bytes of buffers that are kept for reuse.
+     * @throws IllegalArgumentException When <code>maxRetainedBufferSize</code> is negative.
+     */
+    public KryoSerializer(final int maxRetainedBufferSize) {
+        if (maxRetainedBufferSize < 0) {
+            throw new IllegalArgumentException("The maximal retained buffer size must not be negative.");
+        }
+        this.buffers = new KryoBuffers(maxRetainedBufferSize);
+    }
 
     /**
      * Registers a class that may be send over the network.
@@ -53,6 +100,81 @@ public class KryoSerializer implements de.saxsys.synchronizefx.core.clientserver
         kryo.registerSerializableClass(clazz, serializer);
     }
 
+    /**
+     * Enables the replacement of {@link java.util.UUID}s by small handles for connection serializers.
+     * 
+     * <p>
+     * Serializers created by {@link #newConnectionSerializer()} assign a handle to the ids of properties, lists, maps,
+     * sets and observable objects the first time they are transfered and only send the handle afterwards. Ids that
+     * are unique for every command like the command id of
+     * {@link de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue} or the versions of list changes are
+     * always transfered completely. When the maximal number of handles is reached, new ids are
+     * transfered completely too.
+     * </p>
+     * 
+     * <p>
+     * This feature must be enabled with the same maximal handle count on both sides of a connection. It only has an
+     * effect for network layers that use {@link ConnectionScopedSerializer#newConnectionSerializer()}. Use this method
+     * only before the first connection serializer is created.
+     * </p>
+     * 
+     * @param maxHandles The maximal number of handles per connection and direction or <code>0</code> to disable this
+     *            feature which is the default.
+     * @throws IllegalArgumentException When <code>maxHandles</code> is negative.
+     */
+    public void setMaxUUIDHandlesPerConnection(final int maxHandles) {
+        if (maxHandles < 0) {
+            throw new IllegalArgumentException("The maximal number of UUID handles must not be negative.");
+        }
+        this.maxUUIDHandles = maxHandles;
+    }
+
+    /**
+     * Enables the transfer of class schemas for connection serializers.
+     * 
+     * <p>
+     * Serializers created by {@link #newConnectionSerializer()} transfer the class name and the property names of
+     * {@link de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject} commands only once per class.
+     * Later commands for objects of the same class only reference the schema and transfer the property ids in the
+     * order of the schema. When the maximal number of schemas is reached, the class and property names of new
+     * schemas are transfered with every command.
+     * </p>
+     * 
+     * <p>
+     * This feature must be enabled with the same maximal schema count on both sides of a connection. It only has an
+     * effect for network layers that use {@link ConnectionScopedSerializer#newConnectionSerializer()}. Use this method
+     * only before the first connection serializer is created.
+     * </p>
+     * 
+     * @param maxSchemas The maximal number of schemas per connection and direction or <code>0</code> to disable this
+     *            feature which is the default.
+     * @throws IllegalArgumentException When <code>maxSchemas</code> is negative.
+     */
+    public void setMaxClassSchemasPerConnection(final int maxSchemas) {
+        if (maxSchemas < 0) {
+            throw new IllegalArgumentException("The maximal number of class schemas must not be negative.");
+        }
+        this.maxClassSchemas = maxSchemas;
+    }
+
+    /**
+     * Creates a serializer for a single connection.
+     * 
+     * <p>
+     * When neither UUID handles nor class schemas are enabled, the serialized form does not depend on the connection
+     * and this instance is returned.
+     * </p>
+     * 
+     * @return The serializer for the new connection.
+     */
+    @Override
+    public StreamingSerializer newConnectionSerializer() {
+        if (maxUUIDHandles == 0 && maxClassSchemas == 0) {
+            return this;
+        }
+        return new KryoConnectionSerializer(this, new KryoConnectionState(maxUUIDHandles, maxClassSchemas));
+    }
+
     /**
      * Serializes SyncronizeFX {@link Command}s to bytes.
      * 
@@ -63,18 +185,7 @@ public class KryoSerializer implements de.saxsys.synchronizefx.core.clientserver
      */
     @Override
     public byte[] serialize(final List<Command> commands) {
-        final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        final Output output = new Output(outStream);
-        kryo.get().writeObject(output, commands);
-        output.close();
-        byte[] bytes = outStream.toByteArray();
-        try {
-            outStream.close();
-        } catch (IOException e) {
-            // This will not happen, as there is no real I/O. Everything happens in RAM.
-            e.printStackTrace();
-        }
-        return bytes;
+        return serialize(commands, (KryoConnectionState) null);
     }
 
     /**
@@ -87,8 +198,185 @@ public class KryoSerializer implements de.saxsys.synchronizefx.core.clientserver
      * @return The original {@link Command}s.
      */
     @Override
-    @SuppressWarnings("unchecked")
     public List<Command> deserialize(final byte[] commands) {
-        return kryo.get().readObject(new Input(commands), LinkedList.class);
+        return deserialize(commands, (KryoConnectionState) null);
+    }
+
+    /**
+     * Serializes SyncronizeFX {@link Command}s directly into a stream.
+     * 
+     * The result is the same as the one of {@link KryoSerializer#serialize(List)}. This method is thread safe.
+     * 
+     * @param commands The commands to serialize.
+     * @param destination The stream to write the serialized commands to. It is flushed but not closed.
+     */
+    @Override
+    public void serialize(final List<Command> commands, final OutputStream destination) {
+        serialize(commands, destination, null);
+    }
+
+    /**
+     * Deserializes SynchronizeFX {@link Command}s from a stream.
+     * 
+     * This method is thread save.
+     * 
+     * @param source A stream containing the serialized form of SynchronizeFX {@link Command}s that was created by
+     *            {@link KryoSerializer#serialize(List)} or {@link KryoSerializer#serialize(List, OutputStream)}.
+     * @return The original {@link Command}s.
+     */
+    @Override
+    public List<Command> deserialize(final InputStream source) {
+        return deserialize(source, (KryoConnectionState) null);
+    }
+
+    /**
+     * Deserializes SynchronizeFX {@link Command}s from the remaining bytes of a buffer.
+     * 
+     * Heap and direct buffers are read in place without copying. This method is thread save.
+     * 
+     * @param source A buffer containing the serialized form of SynchronizeFX {@link Command}s that was created by
+     *            {@link KryoSerializer#serialize(List)} or {@link KryoSerializer#serialize(List, OutputStream)}.
+     * @return The original {@link Command}s.
+     */
+    @Override
+    public List<Command> deserialize(final ByteBuffer source) {
+        return deserialize(source, null);
+    }
+
+    // Used by KryoConnectionSerializer. The state is optional.
+
+    /**
+     * @see #serialize(List)
+     * @param commands see {@link #serialize(List)}
+     * @param state The state of the connection or <code>null</code> if none should be used.
+     * @return see {@link #serialize(List)}
+     */
+    byte[] serialize(final List<Command> commands, final KryoConnectionState state) {
+        final Buffers threadBuffers = buffers.get();
+        final Output output = threadBuffers.output();
+        try {
+            write(commands, output, state);
+            return output.toBytes();
+        } finally {
+            threadBuffers.release(output);
+        }
+    }
+
+    /**
+     * @see #serialize(List, OutputStream)
+     * @param commands see {@link #serialize(List, OutputStream)}
+     * @param destination see {@link #serialize(List, OutputStream)}
+     * @param state The state of the connection or <code>null</code> if none should be used.
+     */
+    void serialize(final List<Command> commands, final OutputStream destination, final KryoConnectionState state) {
+        final Buffers threadBuffers = buffers.get();
+        final Output output = threadBuffers.output(destination);
+        try {
+            write(commands, output, state);
+        } finally {
+            threadBuffers.release(output);
+        }
+    }
+
+    /**
+     * @see #deserialize(byte[])
+     * @param commands see {@link #deserialize(byte[])}
+     * @param state The state of the connection or <code>null</code> if there is none.
+     * @return see {@link #deserialize(byte[])}
+     */
+    List<Command> deserialize(final byte[] commands, final KryoConnectionState state) {
+        final Buffers threadBuffers = buffers.get();
+        final Input input = threadBuffers.input(commands, 0, commands.length);
+        try {
+            return read(input, state);
+        } finally {
+            threadBuffers.release(input);
+        }
+    }
+
+    /**
+     * @see #deserialize(InputStream)
+     * @param source see {@link #deserialize(InputStream)}
+     * @param state The state of the connection or <code>null</code> if there is none.
+     * @return see {@link #deserialize(InputStream)}
+     */
+    List<Command> deserialize(final InputStream source, final KryoConnectionState state) {
+        final Buffers threadBuffers = buffers.get();
+        final Input input = threadBuffers.input(source);
+        try {
+            return read(input, state);
+        } finally {
+            threadBuffers.release(input);
+        }
+    }
+
+    /**
+     * @see #deserialize(ByteBuffer)
+     * @param source see {@link #deserialize(ByteBuffer)}
+     * @param state The state of the connection or <code>null</code> if there is none.
+     * @return see {@link #deserialize(ByteBuffer)}
+     */
+    List<Command> deserialize(final ByteBuffer source, final KryoConnectionState state) {
+        final Buffers threadBuffers = buffers.get();
+        final Input input;
+        if (source.hasArray()) {
+            input = threadBuffers.input(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        } else {
+            input = threadBuffers.input(source);
+        }
+        try {
+            final List<Command> commands = read(input, state);
+            source.position(source.limit());
+            return commands;
+        } finally {
+            threadBuffers.release(input);
+        }
+    }
+
+    private void write(final List<Command> commands, final Output output, final KryoConnectionState state) {
+        final Kryo threadKryo = kryo.get();
+        try {
+            if (state == null) {
+                output.writeByte(0);
+            } else {
+                final int flags = state.flags();
+                output.writeByte(flags);
+                state.bind(threadKryo, flags);
+            }
+            threadKryo.writeObject(output, commands, commandListSerializer);
+            output.flush();
+        } catch (final KryoException e) {
+            throw new SynchronizeFXException("Could not serialize the commands.", e);
+        } finally {
+            KryoConnectionState.unbind(threadKryo);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Command> read(final Input input, final KryoConnectionState state) {
+        final Kryo threadKryo = kryo.get();
+        try {
+            final int flags = input.readByte();
+            if ((flags & ~KryoConnectionState.KNOWN_FLAGS) != 0) {
+                throw new SynchronizeFXException("The received commands use unknown serialization features. "
+                        + "Ensure that both sides use the same version of the serializer.");
+            }
+            String missing = null;
+            if (state != null) {
+                missing = state.bind(threadKryo, flags);
+            } else if (flags != 0) {
+                missing = "connection scoped features";
+            }
+            if (missing != null) {
+                throw new SynchronizeFXException("The received commands use " + missing + ". Ensure that both sides "
+                        + "enabled it with the same settings and that the network layer creates connection "
+                        + "serializers.");
+            }
+            return threadKryo.readObject(input, List.class, commandListSerializer);
+        } catch (final KryoException e) {
+            throw new SynchronizeFXException("Could not deserialize the commands.", e);
+        } finally {
+            KryoConnectionState.unbind(threadKryo);
+        }
     }
 }
@@ -37,18 +37,23 @@ import com.esotericsoftware.kryo.io.Output;
  */
 public class AddToListSerializer extends Serializer<AddToList> {
 
+    private final ValueSerializer valueSerializer = new ValueSerializer();
+
     @Override
     public void write(final Kryo kryo, final Output output, final AddToList object) {
-        kryo.writeObject(output, object.getListId());
-        kryo.writeObject(output, object.getListVersionChange().getFromVersion());
-        kryo.writeObject(output, object.getListVersionChange().getToVersion());
-        kryo.writeObject(output, object.getValue());
-        output.writeInt(object.getPosition());
+        UUIDSerializer.writeId(kryo, output, object.getListId());
+        UUIDSerializer.writeUUID(output, object.getListVersionChange().getFromVersion());
+        UUIDSerializer.writeUUID(output, object.getListVersionChange().getToVersion());
+        valueSerializer.write(kryo, output, object.getValue());
+        output.writeInt(object.getPosition(), true);
     }
 
     @Override
     public AddToList read(final Kryo kryo, final Input input, final Class<AddToList> type) {
-        return new AddToList(kryo.readObject(input, UUID.class), new ListVersionChange(kryo.readObject(input,
-                UUID.class), kryo.readObject(input, UUID.class)), kryo.readObject(input, Value.class), input.readInt());
+        final UUID listId = UUIDSerializer.readId(kryo, input);
+        final ListVersionChange versionChange =
+                new ListVersionChange(UUIDSerializer.readUUID(input), UUIDSerializer.readUUID(input));
+        final Value value = valueSerializer.read(kryo, input, Value.class);
+        return new AddToList(listId, versionChange, value, input.readInt(true));
     }
 }
@@ -0,0 +1,50 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializes and deserializes {@link AddToSet} commands.
+ */
+public class AddToSetSerializer extends Serializer<AddToSet> {
+
+    private final ValueSerializer valueSerializer = new ValueSerializer();
+
+    @Override
+    public void write(final Kryo kryo, final Output output, final AddToSet object) {
+        UUIDSerializer.writeId(kryo, output, object.getSetId());
+        valueSerializer.write(kryo, output, object.getValue());
+    }
+
+    @Override
+    public AddToSet read(final Kryo kryo, final Input input, final Class<AddToSet> type) {
+        final AddToSet command = new AddToSet();
+        command.setSetId(UUIDSerializer.readId(kryo, input));
+        command.setValue(valueSerializer.read(kryo, input, Value.class));
+        return command;
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Transfers the class name and the property names of {@link CreateObservableObject} commands only once per
+ * connection.
+ * 
+ * <p>
+ * A schema consists of a class name and the sorted names of its properties. The first {@link CreateObservableObject}
+ * command with a new schema transfers it and assigns it the next free schema id. Later commands with the same schema
+ * only transfer the schema id and the ids of the properties in the order of the property names of the schema.
+ * </p>
+ * 
+ * <p>
+ * Each schema is written as a variable length integer tag. The tag <code>0</code> means that the class name and the
+ * property names and ids follow as pairs without assigning a schema id. The tag <code>1</code> means that the class
+ * name, the sorted property names and the property ids follow and that the schema gets the next free id. Tags from
+ * <code>2</code> on reference the schema <code>tag - 2</code> and are followed by the property ids only.
+ * </p>
+ * 
+ * <p>
+ * One instance holds the schemas of both directions of a single connection. The writing and the reading side are
+ * independent so they may be used by different threads.
+ * </p>
+ */
+public final class ClassSchemas {
+
+    /**
+     * The maximal number of properties for which space is reserved before they where actually read.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private static final int TAG_INLINE = 0;
+    private static final int TAG_REGISTER = 1;
+    private static final int FIRST_SCHEMA_TAG = 2;
+
+    private final Map<String, List<Schema>> sent = new HashMap<>();
+    private int sentCount;
+    private final List<Schema> received = new ArrayList<>();
+    private final int maxSchemas;
+
+    /**
+     * Initializes an empty schema table.
+     * 
+     * @param maxSchemas The maximal number of schemas to assign ids to per direction. When this number is reached
+     *            new schemas are transfered inline with every command. The peer must use the same limit.
+     */
+    public ClassSchemas(final int maxSchemas) {
+        this.maxSchemas = maxSchemas;
+    }
+
+    /**
+     * Makes this schema table available to the {@link CreateObservableObjectSerializer} calls done with a
+     * {@link Kryo} instance.
+     * 
+     * @param kryo The instance that is about to be used for a connection.
+     */
+    public void bind(final Kryo kryo) {
+        kryo.getContext().put(ClassSchemas.class, this);
+    }
+
+    /**
+     * Reverts {@link #bind(Kryo)}.
+     * 
+     * @param kryo The instance that was used for a connection.
+     */
+    public static void unbind(final Kryo kryo) {
+        kryo.getContext().remove(ClassSchemas.class);
+    }
+
+    /**
+     * The schema table that is currently bound to a {@link Kryo} instance.
+     * 
+     * @param kryo The instance to check.
+     * @return The table or <code>null</code> if none is bound.
+     */
+    static ClassSchemas of(final Kryo kryo) {
+        return (ClassSchemas) kryo.getContext().get(ClassSchemas.class);
+    }
+
+    /**
+     * Writes the class name and the properties of a command.
+     * 
+     * @param kryo The kryo instance that is currently used.
+     * @param output The output to write to.
+     * @param command The command thats schema and property ids should be written.
+     */
+    void write(final Kryo kryo, final Output output, final CreateObservableObject command) {
+        final Map<String, UUID> properties = command.getPropertyNameToId();
+        List<Schema> candidates = sent.get(command.getClassName());
+        if (candidates != null) {
+            for (final Schema schema : candidates) {
+                if (schema.matches(properties)) {
+                    output.writeInt(schema.id + FIRST_SCHEMA_TAG, true);
+                    writeIds(kryo, output, schema, properties);
+                    return;
+                }
+            }
+        }
+
+        if (sentCount >= maxSchemas) {
+            output.writeInt(TAG_INLINE, true);
+            output.writeString(command.getClassName());
+            output.writeInt(properties.size(), true);
+            for (final Map.Entry<String, UUID> property : properties.entrySet()) {
+                output.writeString(property.getKey());
+                UUIDSerializer.writeId(kryo, output, property.getValue());
+            }
+            return;
+        }
+
+        final String[] names = properties.keySet().toArray(new String[properties.size()]);
+        Arrays.sort(names);
+        final Schema schema = new Schema(sentCount++, command.getClassName(), names);
+        if (candidates == null) {
+            candidates = new LinkedList<>();
+            sent.put(command.getClassName(), candidates);
+        }
+        candidates.add(schema);
+
+        output.writeInt(TAG_REGISTER, true);
+        output.writeString(schema.className);
+        output.writeInt(names.length, true);
+        for (final String name : names) {
+            output.writeString(name);
+        }
+        writeIds(kryo, output, schema, properties);
+    }
+
+    /**
+     * Reads the class name and the properties of a command that where written with
+     * {@link #write(Kryo, Output, CreateObservableObject)} on the peer.
+     * 
+     * @param kryo The kryo instance that is currently used.
+     * @param input The input to read from.
+     * @param command The command to fill with the class name and the properties.
+     */
+    void read(final Kryo kryo, final Input input, final CreateObservableObject command) {
+        final int tag = input.readInt(true);
+        if (tag == TAG_INLINE) {
+            command.setClassName(input.readString());
+            final int propertyCount = readPropertyCount(input);
+            final Map<String, UUID> properties = new HashMap<>(capacityFor(propertyCount));
+            for (int i = 0; i < propertyCount; i++) {
+                properties.put(input.readString(), UUIDSerializer.readId(kryo, input));
+            }
+            command.setPropertyNameToId(properties);
+            return;
+        }
+
+        final Schema schema;
+        if (tag == TAG_REGISTER) {
+            if (received.size() >= maxSchemas) {
+                throw new SynchronizeFXException("The peer assigned more class schemas than allowed. "
+                        + "Ensure that both sides use the same maximal schema count.");
+            }
+            final String className = input.readString();
+            final int propertyCount = readPropertyCount(input);
+            final List<String> names = new ArrayList<>(Math.min(propertyCount, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < propertyCount; i++) {
+                names.add(input.readString());
+            }
+            schema = new Schema(received.size(), className, names.toArray(new String[names.size()]));
+            received.add(schema);
+        } else {
+            final int schemaId = tag - FIRST_SCHEMA_TAG;
+            if (schemaId < 0 || schemaId >= received.size()) {
+                throw new SynchronizeFXException("The peer referenced the unknown class schema " + schemaId + ".");
+            }
+            schema = received.get(schemaId);
+        }
+
+        // The strings of the schema are shared by all commands that use it.
+        command.setClassName(schema.className);
+        final Map<String, UUID> properties = new HashMap<>(capacityFor(schema.propertyNames.length));
+        for (final String name : schema.propertyNames) {
+            properties.put(name, UUIDSerializer.readId(kryo, input));
+        }
+        command.setPropertyNameToId(properties);
+    }
+
+    /**
+     * Reads the number of properties of a class sent by the peer.
+     * 
+     * @param input The input to read from.
+     * @return The number of properties which is not negative.
+     * @throws SynchronizeFXException When the peer sent a negative number.
+     */
+    static int readPropertyCount(final Input input) {
+        final int count = input.readInt(true);
+        if (count < 0) {
+            throw new SynchronizeFXException("The peer sent the invalid property count " + count + ".");
+        }
+        return count;
+    }
+
+    /**
+     * The initial capacity for a {@link HashMap} that should hold a number of entries without rehashing.
+     * 
+     * <p>
+     * The number of entries is received from the peer. Don't trust it blindly when allocating memory. Larger maps
+     * grow while the entries are actually read.
+     * </p>
+     * 
+     * @param entries The number of entries.
+     * @return The capacity.
+     */
+    static int capacityFor(final int entries) {
+        return Math.min(entries, MAX_INITIAL_CAPACITY) * 4 / 3 + 1;
+    }
+
+    private void writeIds(final Kryo kryo, final Output output, final Schema schema,
+            final Map<String, UUID> properties) {
+        for (final String name : schema.propertyNames) {
+            UUIDSerializer.writeId(kryo, output, properties.get(name));
+        }
+    }
+
+    /**
+     * The class name and the sorted property names of an observable object.
+     */
+    private static final class Schema {
+        private final int id;
+        private final String className;
+        private final String[] propertyNames;
+
+        Schema(final int id, final String className, final String[] propertyNames) {
+            this.id = id;
+            this.className = className;
+            this.propertyNames = propertyNames;
+        }
+
+        boolean matches(final Map<String, UUID> properties) {
+            if (properties.size() != propertyNames.length) {
+                return false;
+            }
+            for (final String name : propertyNames) {
+                if (!properties.containsKey(name)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializes and deserializes {@link ClearReferences} commands.
+ * 
+ * The command has no state so only its registration id is transfered.
+ */
+public class ClearReferencesSerializer extends Serializer<ClearReferences> {
+
+    @Override
+    public void write(final Kryo kryo, final Output output, final ClearReferences object) {
+        // The command has no state.
+    }
+
+    @Override
+    public ClearReferences read(final Kryo kryo, final Input input, final Class<ClearReferences> type) {
+        return new ClearReferences();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializes and deserializes the lists of {@link Command}s that are exchanged between peers.
+ * 
+ * <p>
+ * The number of commands is written as variable length integer. Each command is written with its registration id
+ * followed by the output of the {@link Serializer} that is registered for its class. All {@link Command} classes
+ * must therefore be registered in the {@link Kryo} instance that uses this serializer.
+ * </p>
+ */
+public class CommandListSerializer extends Serializer<List<Command>> {
+
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(final Kryo kryo, final Output output, final List<Command> object) {
+        output.writeInt(object.size(), true);
+        for (final Command command : object) {
+            final Registration registration = kryo.writeClass(output, command.getClass());
+            registration.getSerializer().write(kryo, output, command);
+        }
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public List<Command> read(final Kryo kryo, final Input input, final Class<List<Command>> type) {
+        final int size = input.readInt(true);
+        // Don't trust the size blindly when allocating memory.
+        final List<Command> commands = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            final Registration registration = kryo.readClass(input);
+            if (registration == null || !Command.class.isAssignableFrom(registration.getType())) {
+                throw new SynchronizeFXException("Received an object of the type ["
+                        + (registration == null ? null : registration.getType().getName())
+                        + "] where a SynchronizeFX command was expected.");
+            }
+            commands.add((Command) registration.getSerializer().read(kryo, input, registration.getType()));
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializes and deserializes {@link CreateObservableObject} commands.
+ */
+public class CreateObservableObjectSerializer extends Serializer<CreateObservableObject> {
+
+    @Override
+    public void write(final Kryo kryo, final Output output, final CreateObservableObject object) {
+        UUIDSerializer.writeId(kryo, output, object.getObjectId());
+        final ClassSchemas schemas = ClassSchemas.of(kryo);
+        if (schemas != null) {
+            schemas.write(kryo, output, object);
+            return;
+        }
+        output.writeString(object.getClassName());
+        final Map<String, UUID> properties = object.getPropertyNameToId();
+        output.writeInt(properties.size(), true);
+        for (final Entry<String, UUID> property : properties.entrySet()) {
+            output.writeString(property.getKey());
+            UUIDSerializer.writeId(kryo, output, property.getValue());
+        }
+    }
+
+    @Override
+    public CreateObservableObject read(final Kryo kryo, final Input input,
+            final Class<CreateObservableObject> type) {
+        final CreateObservableObject command = new CreateObservableObject();
+        command.setObjectId(UUIDSerializer.readId(kryo, input));
+        final ClassSchemas schemas = ClassSchemas.of(kryo);
+        if (schemas != null) {
+            schemas.read(kryo, input, command);
+            return command;
+        }
+        command.setClassName(input.readString());
+        final int propertyCount = ClassSchemas.readPropertyCount(input);
+        final Map<String, UUID> properties = new HashMap<>(ClassSchemas.capacityFor(propertyCount));
+        for (int i = 0; i < propertyCount; i++) {
+            properties.put(input.readString(), UUIDSerializer.readId(kryo, input));
+        }
+        command.setPropertyNameToId(properties);
+        return command;
+    }
+}
@@ -39,17 +39,19 @@ public class RemoveFromListSerializer extends Serializer<RemoveFromList> {
 
     @Override
     public void write(final Kryo kryo, final Output output, final RemoveFromList input) {
-        kryo.writeObject(output, input.getListId());
-        kryo.writeObject(output, input.getListVersionChange().getFromVersion());
-        kryo.writeObject(output, input.getListVersionChange().getToVersion());
-        output.writeInt(input.getStartPosition());
-        output.writeInt(input.getRemoveCount());
+        UUIDSerializer.writeId(kryo, output, input.getListId());
+        UUIDSerializer.writeUUID(output, input.getListVersionChange().getFromVersion());
+        UUIDSerializer.writeUUID(output, input.getListVersionChange().getToVersion());
+        output.writeInt(input.getStartPosition(), true);
+        output.writeInt(input.getRemoveCount(), true);
     }
 
     @Override
     public RemoveFromList read(final Kryo kryo, final Input input, final Class<RemoveFromList> clazz) {
-        return new RemoveFromList(kryo.readObject(input, UUID.class), new ListVersionChange(kryo.readObject(input,
-                UUID.class), kryo.readObject(input, UUID.class)), input.readInt(), input.readInt());
+        final UUID listId = UUIDSerializer.readId(kryo, input);
+        final ListVersionChange versionChange =
+                new ListVersionChange(UUIDSerializer.readUUID(input), UUIDSerializer.readUUID(input));
+        return new RemoveFromList(listId, versionChange, input.readInt(true), input.readInt(true));
     }
 
 }
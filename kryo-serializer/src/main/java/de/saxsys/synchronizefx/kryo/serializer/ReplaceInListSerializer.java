@@ -37,18 +37,23 @@ import com.esotericsoftware.kryo.io.Output;
  */
 public class ReplaceInListSerializer extends Serializer<ReplaceInList> {
 
+    private final ValueSerializer valueSerializer = new ValueSerializer();
+
     @Override
     public void write(final Kryo kryo, final Output output, final ReplaceInList input) {
-        kryo.writeObject(output, input.getListId());
-        kryo.writeObject(output, input.getListVersionChange().getFromVersion());
-        kryo.writeObject(output, input.getListVersionChange().getToVersion());
-        kryo.writeObject(output, input.getValue());
-        output.writeInt(input.getPosition());
+        UUIDSerializer.writeId(kryo, output, input.getListId());
+        UUIDSerializer.writeUUID(output, input.getListVersionChange().getFromVersion());
+        UUIDSerializer.writeUUID(output, input.getListVersionChange().getToVersion());
+        valueSerializer.write(kryo, output, input.getValue());
+        output.writeInt(input.getPosition(), true);
     }
 
     @Override
     public ReplaceInList read(final Kryo kryo, final Input input, final Class<ReplaceInList> type) {
-        return new ReplaceInList(kryo.readObject(input, UUID.class), new ListVersionChange(kryo.readObject(input,
-                UUID.class), kryo.readObject(input, UUID.class)), kryo.readObject(input, Value.class), input.readInt());
+        final UUID listId = UUIDSerializer.readId(kryo, input);
+        final ListVersionChange versionChange =
+                new ListVersionChange(UUIDSerializer.readUUID(input), UUIDSerializer.readUUID(input));
+        final Value value = valueSerializer.read(kryo, input, Value.class);
+        return new ReplaceInList(listId, versionChange, value, input.readInt(true));
     }
 }
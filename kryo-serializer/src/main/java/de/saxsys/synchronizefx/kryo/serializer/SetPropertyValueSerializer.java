@@ -36,16 +36,19 @@ import com.esotericsoftware.kryo.io.Output;
  */
 public class SetPropertyValueSerializer extends Serializer<SetPropertyValue> {
 
+    private final ValueSerializer valueSerializer = new ValueSerializer();
+
     @Override
     public void write(final Kryo kryo, final Output output, final SetPropertyValue object) {
-        kryo.writeObject(output, object.getCommandId());
-        kryo.writeObject(output, object.getPropertyId());
-        kryo.writeObject(output, object.getValue());
+        UUIDSerializer.writeUUID(output, object.getCommandId());
+        UUIDSerializer.writeId(kryo, output, object.getPropertyId());
+        valueSerializer.write(kryo, output, object.getValue());
     }
 
     @Override
     public SetPropertyValue read(final Kryo kryo, final Input input, final Class<SetPropertyValue> type) {
-        return new SetPropertyValue(kryo.readObject(input, UUID.class), kryo.readObject(input, UUID.class),
-                kryo.readObject(input, Value.class));
+        final UUID commandId = UUIDSerializer.readUUID(input);
+        final UUID propertyId = UUIDSerializer.readId(kryo, input);
+        return new SetPropertyValue(commandId, propertyId, valueSerializer.read(kryo, input, Value.class));
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Replaces {@link UUID}s that where already transfered over a connection by small handles.
+ * 
+ * <p>
+ * Each {@link UUID} is written as a variable length integer tag optionally followed by the 16 bytes of the id. The
+ * tag <code>0</code> means that the id follows and was not assigned a handle. The tag <code>1</code> means that the
+ * id follows and is assigned the next free handle. Tags from <code>2</code> on reference the handle
+ * <code>tag - 2</code>. Handles are assigned in ascending order starting with <code>0</code>.
+ * </p>
+ * 
+ * <p>
+ * One instance holds the handles of both directions of a single connection. The writing and the reading side are
+ * independent so they may be used by different threads.
+ * </p>
+ */
+public final class UUIDHandles {
+
+    private static final int TAG_RAW = 0;
+    private static final int TAG_REGISTER = 1;
+    private static final int FIRST_HANDLE_TAG = 2;
+
+    private final Map<UUID, Integer> sent = new HashMap<>();
+    private final List<UUID> received = new ArrayList<>();
+    private final int maxHandles;
+
+    /**
+     * Initializes an empty handle table.
+     * 
+     * @param maxHandles The maximal number of handles to assign per direction. When this number is reached new ids
+     *            are transfered completely. The peer must use the same limit.
+     */
+    public UUIDHandles(final int maxHandles) {
+        this.maxHandles = maxHandles;
+    }
+
+    /**
+     * Makes this handle table available to the {@link UUIDSerializer#writeId(Kryo, Output, UUID)} and
+     * {@link UUIDSerializer#readId(Kryo, Input)} calls done with a {@link Kryo} instance.
+     * 
+     * @param kryo The instance that is about to be used for a connection.
+     */
+    public void bind(final Kryo kryo) {
+        kryo.getContext().put(UUIDHandles.class, this);
+    }
+
+    /**
+     * Reverts {@link #bind(Kryo)}.
+     * 
+     * @param kryo The instance that was used for a connection.
+     */
+    public static void unbind(final Kryo kryo) {
+        kryo.getContext().remove(UUIDHandles.class);
+    }
+
+    /**
+     * The handle table that is currently bound to a {@link Kryo} instance.
+     * 
+     * @param kryo The instance to check.
+     * @return The table or <code>null</code> if none is bound.
+     */
+    static UUIDHandles of(final Kryo kryo) {
+        return (UUIDHandles) kryo.getContext().get(UUIDHandles.class);
+    }
+
+    /**
+     * Writes an id using a handle if possible.
+     * 
+     * @param output The output to write to.
+     * @param id The id to write.
+     */
+    void write(final Output output, final UUID id) {
+        final Integer handle = sent.get(id);
+        if (handle != null) {
+            output.writeInt(handle + FIRST_HANDLE_TAG, true);
+            return;
+        }
+        if (sent.size() < maxHandles) {
+            sent.put(id, sent.size());
+            output.writeInt(TAG_REGISTER, true);
+        } else {
+            output.writeInt(TAG_RAW, true);
+        }
+        UUIDSerializer.writeUUID(output, id);
+    }
+
+    /**
+     * Reads an id that was written with {@link #write(Output, UUID)} on the peer.
+     * 
+     * @param input The input to read from.
+     * @return The id.
+     */
+    UUID read(final Input input) {
+        final int tag = input.readInt(true);
+        if (tag == TAG_RAW) {
+            return UUIDSerializer.readUUID(input);
+        }
+        if (tag == TAG_REGISTER) {
+            if (received.size() >= maxHandles) {
+                throw new SynchronizeFXException("The peer assigned more UUID handles than allowed. "
+                        + "Ensure that both sides use the same maximal handle count.");
+            }
+            final UUID id = UUIDSerializer.readUUID(input);
+            received.add(id);
+            return id;
+        }
+        final int handle = tag - FIRST_HANDLE_TAG;
+        if (handle < 0 || handle >= received.size()) {
+            throw new SynchronizeFXException("The peer referenced the unknown UUID handle " + handle + ".");
+        }
+        return received.get(handle);
+    }
+}
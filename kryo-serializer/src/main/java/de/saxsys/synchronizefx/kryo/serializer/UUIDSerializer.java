@@ -35,12 +35,67 @@ import com.esotericsoftware.kryo.io.Output;
 public final class UUIDSerializer extends Serializer<UUID> {
     @Override
     public UUID read(final Kryo kryo, final Input input, final Class<UUID> type) {
-        return new UUID(input.readLong(), input.readLong());
+        return readUUID(input);
     }
 
     @Override
     public void write(final Kryo kryo, final Output output, final UUID object) {
-        output.writeLong(object.getMostSignificantBits());
-        output.writeLong(object.getLeastSignificantBits());
+        writeUUID(output, object);
+    }
+
+    /**
+     * Writes an {@link UUID} that is not <code>null</code> without the reference and class information that
+     * {@link Kryo#writeObject(Output, Object)} would add.
+     * 
+     * @param output The output to write to.
+     * @param uuid The id to write.
+     */
+    public static void writeUUID(final Output output, final UUID uuid) {
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Reads an {@link UUID} that was written with {@link #writeUUID(Output, UUID)}.
+     * 
+     * @param input The input to read from.
+     * @return The id that was read.
+     */
+    public static UUID readUUID(final Input input) {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    /**
+     * Writes the id of an object that is likely to be transfered multiple times over the same connection.
+     * 
+     * If {@link UUIDHandles} are bound to the {@link Kryo} instance, the id is written as handle, otherwise the same
+     * way as {@link #writeUUID(Output, UUID)} does.
+     * 
+     * @param kryo The kryo instance that is currently used.
+     * @param output The output to write to.
+     * @param id The id to write. It must not be <code>null</code>.
+     */
+    public static void writeId(final Kryo kryo, final Output output, final UUID id) {
+        final UUIDHandles handles = UUIDHandles.of(kryo);
+        if (handles == null) {
+            writeUUID(output, id);
+        } else {
+            handles.write(output, id);
+        }
+    }
+
+    /**
+     * Reads an id that was written with {@link #writeId(Kryo, Output, UUID)}.
+     * 
+     * @param kryo The kryo instance that is currently used.
+     * @param input The input to read from.
+     * @return The id that was read.
+     */
+    public static UUID readId(final Kryo kryo, final Input input) {
+        final UUIDHandles handles = UUIDHandles.of(kryo);
+        if (handles == null) {
+            return readUUID(input);
+        }
+        return handles.read(input);
     }
-}
\ No newline at end of file
+}
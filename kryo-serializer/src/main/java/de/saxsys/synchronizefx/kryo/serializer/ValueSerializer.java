@@ -19,12 +19,14 @@
 
 package de.saxsys.synchronizefx.kryo.serializer;
 
-import java.util.UUID;
+import java.util.HashMap;
+import java.util.Map;
 
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Value;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
@@ -32,36 +34,115 @@ import com.esotericsoftware.kryo.io.Output;
 /**
  * Serializes and deserializes {@link Value} messages.
  * 
+ * <p>
+ * Each value starts with a type tag. The types that are commonly used in JavaFX properties like numbers, booleans,
+ * strings and enums are written directly with a tag of their own. All other simple objects are written with
+ * {@link Kryo#writeClassAndObject(Output, Object)}.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 public class ValueSerializer extends Serializer<Value> {
 
+    private static final byte NULL = 0;
+    private static final byte OBJECT = 1;
+    private static final byte OBSERVABLE_OBJECT = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte TRUE = 7;
+    private static final byte FALSE = 8;
+    private static final byte STRING = 9;
+    private static final byte ENUM = 10;
+
+    private final Map<Class<?>, Object[]> enumConstants = new HashMap<>();
+
     @Override
     public void write(final Kryo kryo, final Output output, final Value object) {
-        if (object.getObservableObjectId() == null) {
-            if (object.getSimpleObjectValue() == null) {
-                output.writeByte(0);
-            } else {
-                output.writeByte(1);
-                kryo.writeClassAndObject(output, object.getSimpleObjectValue());
-            }
+        if (object.getObservableObjectId() != null) {
+            output.writeByte(OBSERVABLE_OBJECT);
+            UUIDSerializer.writeId(kryo, output, object.getObservableObjectId());
+            return;
+        }
+
+        final Object value = object.getSimpleObjectValue();
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            output.writeString((String) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value, false);
+        } else if (value instanceof Boolean) {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value, false);
+        } else if (value instanceof Float) {
+            output.writeByte(FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Enum) {
+            output.writeByte(ENUM);
+            kryo.writeClass(output, ((Enum<?>) value).getDeclaringClass());
+            output.writeInt(((Enum<?>) value).ordinal(), true);
         } else {
-            output.writeByte(2);
-            kryo.writeObject(output, object.getObservableObjectId());
+            output.writeByte(OBJECT);
+            kryo.writeClassAndObject(output, value);
         }
     }
 
     @Override
     public Value read(final Kryo kryo, final Input input, final Class<Value> type) {
         switch (input.readByte()) {
-            case 0:
+            case NULL:
                 return new Value(null);
-            case 1:
+            case OBJECT:
                 return new Value(kryo.readClassAndObject(input));
-            case 2:
-                return new Value(kryo.readObject(input, UUID.class));
+            case OBSERVABLE_OBJECT:
+                return new Value(UUIDSerializer.readId(kryo, input));
+            case INTEGER:
+                return new Value(input.readInt(false));
+            case LONG:
+                return new Value(input.readLong(false));
+            case DOUBLE:
+                return new Value(input.readDouble());
+            case FLOAT:
+                return new Value(input.readFloat());
+            case TRUE:
+                return new Value(Boolean.TRUE);
+            case FALSE:
+                return new Value(Boolean.FALSE);
+            case STRING:
+                return new Value(input.readString());
+            case ENUM:
+                return new Value(readEnum(kryo, input));
             default:
                 throw new SynchronizeFXException("Received a Value message of an unknown type.");
         }
     }
+
+    private Object readEnum(final Kryo kryo, final Input input) {
+        final Registration registration = kryo.readClass(input);
+        final Class<?> enumClass = registration == null ? null : registration.getType();
+        if (enumClass == null || !enumClass.isEnum()) {
+            throw new SynchronizeFXException("Received an enum value of a type that is not an enum.");
+        }
+        // Class#getEnumConstants() copies the constants on every call.
+        Object[] constants = enumConstants.get(enumClass);
+        if (constants == null) {
+            constants = enumClass.getEnumConstants();
+            enumConstants.put(enumClass, constants);
+        }
+        final int ordinal = input.readInt(true);
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new SynchronizeFXException("Received the unknown ordinal " + ordinal + " for the enum "
+                    + enumClass.getName() + ".");
+        }
+        return constants[ordinal];
+    }
 }
@@ -0,0 +1,151 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+import de.saxsys.synchronizefx.kryo.KryoBuffers.Buffers;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link KryoBuffers} reuses the buffers of a thread and drops buffers that grew too large.
+ */
+public class KryoBuffersTest {
+
+    private static final int MAX_RETAINED = 2 * KryoBuffers.INITIAL_BUFFER_SIZE;
+
+    private final KryoBuffers buffers = new KryoBuffers(MAX_RETAINED);
+
+    /**
+     * Subsequent serializations on the same thread should get the same output and an empty buffer.
+     */
+    @Test
+    public void shouldReuseTheOutputOfAThread() {
+        final Buffers threadBuffers = buffers.get();
+        final Output first = threadBuffers.output();
+        first.writeInt(42);
+        final byte[] array = first.getBuffer();
+        threadBuffers.release(first);
+
+        final Output second = buffers.get().output();
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.getBuffer()).isSameAs(array);
+        assertThat(second.position()).isEqualTo(0);
+    }
+
+    /**
+     * A buffer that grew below the retained size should be kept for the next serialization.
+     */
+    @Test
+    public void shouldKeepBuffersThatDidNotGrowTooLarge() {
+        final Buffers threadBuffers = buffers.get();
+        final Output output = threadBuffers.output();
+        output.writeBytes(new byte[KryoBuffers.INITIAL_BUFFER_SIZE + 1]);
+        final byte[] grown = output.getBuffer();
+        threadBuffers.release(output);
+
+        assertThat(grown.length).isGreaterThan(KryoBuffers.INITIAL_BUFFER_SIZE).isLessThanOrEqualTo(MAX_RETAINED);
+        assertThat(threadBuffers.output().getBuffer()).isSameAs(grown);
+    }
+
+    /**
+     * A buffer that grew beyond the retained size should be replaced by a small one after the serialization.
+     */
+    @Test
+    public void shouldDropBuffersThatGrewTooLarge() {
+        final Buffers threadBuffers = buffers.get();
+        final Output output = threadBuffers.output();
+        output.writeBytes(new byte[MAX_RETAINED + 1]);
+        threadBuffers.release(output);
+
+        assertThat(threadBuffers.output().getBuffer().length).isEqualTo(KryoBuffers.INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Released inputs should not reference the data of the caller any more.
+     */
+    @Test
+    public void shouldForgetTheDataOfReleasedInputs() {
+        final Buffers threadBuffers = buffers.get();
+        final byte[] data = new byte[] {1, 2, 3 };
+        final Input input = threadBuffers.input(data, 0, data.length);
+        assertThat(input.readByte()).isEqualTo((byte) 1);
+
+        threadBuffers.release(input);
+
+        assertThat(input.getBuffer()).isNotSameAs(data);
+    }
+
+    /**
+     * Each thread should get its own buffers.
+     * 
+     * @throws InterruptedException not expected
+     */
+    @Test
+    public void shouldUseSeparateBuffersForEachThread() throws InterruptedException {
+        final AtomicReference<Output> other = new AtomicReference<>();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(buffers.get().output());
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(other.get()).isNotNull().isNotSameAs(buffers.get().output());
+    }
+
+    /**
+     * The serializer should produce correct results for small batches after a batch that exceeded the retained
+     * buffer size.
+     */
+    @Test
+    public void shouldSerializeCorrectlyAfterALargeBatch() {
+        final KryoSerializer serializer = new KryoSerializer(KryoBuffers.INITIAL_BUFFER_SIZE);
+        final List<Command> large = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            large.add(new SetPropertyValue(UUID.randomUUID(), new Value("value " + i)));
+        }
+        final List<Command> small = new ArrayList<>();
+        small.add(new SetPropertyValue(UUID.randomUUID(), new Value("small")));
+
+        final byte[] before = serializer.serialize(small);
+        assertThat(serializer.serialize(large).length).isGreaterThan(KryoBuffers.INITIAL_BUFFER_SIZE);
+        final byte[] after = serializer.serialize(small);
+
+        assertThat(after).isEqualTo(before);
+        final SetPropertyValue received = (SetPropertyValue) serializer.deserialize(after).get(0);
+        assertThat(received.getValue().getSimpleObjectValue()).isEqualTo("small");
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the serializers created by {@link KryoSerializer#newConnectionSerializer()} transfer commands correctly
+ * over several frames when UUID handles and class schemas are enabled.
+ */
+public class KryoConnectionSerializerTest {
+
+    private static final int MAX_HANDLES = 64;
+    private static final int MAX_SCHEMAS = 4;
+
+    private final StreamingSerializer sender = connectionSerializer();
+    private final StreamingSerializer receiver = connectionSerializer();
+
+    /**
+     * Objects of the same class and changes of the same property should be transfered correctly and get smaller
+     * once the schema and the handles are known to the peer.
+     */
+    @Test
+    public void shouldReuseSchemasAndHandlesInLaterFrames() {
+        final UUID property = UUID.randomUUID();
+        final List<Integer> sizes = new ArrayList<>();
+
+        for (int frame = 0; frame < 5; frame++) {
+            final List<Command> commands = new ArrayList<>();
+            commands.add(create("example.Person", "name", "age"));
+            commands.add(new SetPropertyValue(property, new Value("value " + frame)));
+
+            sizes.add(roundTrip(commands));
+        }
+
+        assertThat(sizes.get(4)).isLessThan(sizes.get(0));
+        assertThat(sizes.get(4)).isEqualTo(sizes.get(1));
+    }
+
+    /**
+     * Commands should still be transfered correctly when all handles and schemas of the connection are assigned.
+     */
+    @Test
+    public void shouldTransferCommandsWhenHandlesAndSchemasRunOut() {
+        for (int frame = 0; frame < 10; frame++) {
+            final List<Command> commands = new ArrayList<>();
+            commands.add(create("example.Class" + frame, "a", "b", "c"));
+            commands.add(create("example.Class" + (frame / 2), "a", "b", "c"));
+            commands.add(new SetPropertyValue(UUID.randomUUID(), new Value("value " + frame)));
+
+            roundTrip(commands);
+        }
+    }
+
+    /**
+     * The serializer that is not bound to a connection should refuse data that needs the state of a connection.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectConnectionScopedDataWithoutConnection() {
+        final List<Command> commands = new ArrayList<>();
+        commands.add(create("example.Person", "name"));
+
+        new KryoSerializer().deserialize(sender.serialize(commands));
+    }
+
+    private int roundTrip(final List<Command> commands) {
+        final byte[] serialized = sender.serialize(commands);
+        final List<Command> received = receiver.deserialize(serialized);
+
+        assertThat(received.size()).isEqualTo(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            assertSame(commands.get(i), received.get(i));
+        }
+        return serialized.length;
+    }
+
+    private static void assertSame(final Command expected, final Command actual) {
+        if (expected instanceof CreateObservableObject) {
+            final CreateObservableObject create = (CreateObservableObject) expected;
+            assertThat(actual).isInstanceOf(CreateObservableObject.class);
+            assertThat(((CreateObservableObject) actual).getObjectId()).isEqualTo(create.getObjectId());
+            assertThat(((CreateObservableObject) actual).getClassName()).isEqualTo(create.getClassName());
+            assertThat(((CreateObservableObject) actual).getPropertyNameToId()).isEqualTo(
+                    create.getPropertyNameToId());
+        } else {
+            final SetPropertyValue set = (SetPropertyValue) expected;
+            assertThat(actual).isEqualTo(set);
+            assertThat(((SetPropertyValue) actual).getPropertyId()).isEqualTo(set.getPropertyId());
+            assertThat(((SetPropertyValue) actual).getValue().getSimpleObjectValue()).isEqualTo(
+                    set.getValue().getSimpleObjectValue());
+        }
+    }
+
+    private static CreateObservableObject create(final String className, final String... properties) {
+        final Map<String, UUID> propertyNameToId = new HashMap<>();
+        for (final String property : properties) {
+            propertyNameToId.put(property, UUID.randomUUID());
+        }
+        final CreateObservableObject command = new CreateObservableObject();
+        command.setObjectId(UUID.randomUUID());
+        command.setClassName(className);
+        command.setPropertyNameToId(propertyNameToId);
+        return command;
+    }
+
+    private static StreamingSerializer connectionSerializer() {
+        final KryoSerializer serializer = new KryoSerializer();
+        serializer.setMaxUUIDHandlesPerConnection(MAX_HANDLES);
+        serializer.setMaxClassSchemasPerConnection(MAX_SCHEMAS);
+        return serializer.newConnectionSerializer();
+    }
+}
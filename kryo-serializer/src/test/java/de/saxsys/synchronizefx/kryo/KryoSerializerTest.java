@@ -0,0 +1,171 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToList;
+import de.saxsys.synchronizefx.core.metamodel.commands.AddToSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.ListCommand.ListVersionChange;
+import de.saxsys.synchronizefx.core.metamodel.commands.PutToMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromList;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromMap;
+import de.saxsys.synchronizefx.core.metamodel.commands.RemoveFromSet;
+import de.saxsys.synchronizefx.core.metamodel.commands.ReplaceInList;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetRootElement;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link KryoSerializer} transfers all SynchronizeFX commands with the serializers registered for them.
+ */
+public class KryoSerializerTest {
+
+    private final KryoSerializer serializer = new KryoSerializer();
+
+    /**
+     * Every command type should be restored with all of its fields.
+     * 
+     * <p>
+     * The commands are compared by their string representation which contains all fields except for
+     * {@link ReplaceInList} which has none.
+     * </p>
+     */
+    @Test
+    public void shouldTransferAllCommandTypes() {
+        final List<Command> commands = allCommands();
+
+        final List<Command> received = serializer.deserialize(serializer.serialize(commands));
+
+        assertThat(received).hasSameSizeAs(commands);
+        for (int i = 0; i < commands.size(); i++) {
+            assertThat(received.get(i)).isInstanceOf(commands.get(i).getClass());
+            if (!(commands.get(i) instanceof ReplaceInList)) {
+                assertThat(received.get(i).toString()).isEqualTo(commands.get(i).toString());
+            }
+        }
+        assertThat(received.get(0)).isEqualTo(commands.get(0));
+        final ReplaceInList replace = (ReplaceInList) commands.get(3);
+        final ReplaceInList receivedReplace = (ReplaceInList) received.get(3);
+        assertThat(receivedReplace.getListId()).isEqualTo(replace.getListId());
+        assertThat(receivedReplace.getListVersionChange()).isEqualTo(replace.getListVersionChange());
+        assertThat(receivedReplace.getPosition()).isEqualTo(replace.getPosition());
+        assertThat(receivedReplace.getValue().getSimpleObjectValue()).isEqualTo(42L);
+    }
+
+    /**
+     * The names of the command classes should not be part of the serialized form.
+     */
+    @Test
+    public void shouldNotTransferClassNames() {
+        final String serialized = new String(serializer.serialize(allCommands()), StandardCharsets.ISO_8859_1);
+
+        assertThat(serialized).doesNotContain("de.saxsys");
+    }
+
+    /**
+     * Direct buffers should be read from their position to their limit and be consumed afterwards.
+     */
+    @Test
+    public void shouldReadDirectBuffers() {
+        final List<Command> commands = allCommands();
+        final byte[] serialized = serializer.serialize(commands);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(serialized.length + 2);
+        buffer.put((byte) 42).put(serialized).put((byte) 42).flip();
+        buffer.position(1).limit(serialized.length + 1);
+
+        final List<Command> received = serializer.deserialize(buffer);
+
+        assertThat(received).hasSameSizeAs(commands);
+        assertThat(received.get(0)).isEqualTo(commands.get(0));
+        assertThat(buffer.position()).isEqualTo(buffer.limit());
+        assertThat(serializer.deserialize(serialized)).hasSameSizeAs(commands);
+    }
+
+    /**
+     * Registered classes that are no commands should be rejected where a command is expected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectObjectsThatAreNoCommands() {
+        final Output output = new Output(32);
+        output.writeByte(0);
+        output.writeInt(1, true);
+        // Kryo writes registration ids shifted by 2. The first registration is the UUID.
+        output.writeInt(KryoInitializer.FIRST_REGISTRATION_ID + 2, true);
+        output.writeLong(1);
+        output.writeLong(2);
+
+        serializer.deserialize(output.toBytes());
+    }
+
+    private static List<Command> allCommands() {
+        final UUID objectId = UUID.randomUUID();
+        final ListVersionChange version = new ListVersionChange(UUID.randomUUID(), UUID.randomUUID());
+
+        final CreateObservableObject create = new CreateObservableObject();
+        create.setObjectId(objectId);
+        create.setClassName("example.Person");
+        create.setPropertyNameToId(Collections.singletonMap("name", UUID.randomUUID()));
+        final PutToMap put = new PutToMap();
+        put.setMapId(UUID.randomUUID());
+        put.setKey(new Value("key"));
+        put.setValue(new Value(objectId));
+        final RemoveFromMap removeFromMap = new RemoveFromMap();
+        removeFromMap.setMapId(UUID.randomUUID());
+        removeFromMap.setKey(new Value(7));
+        final AddToSet addToSet = new AddToSet();
+        addToSet.setSetId(UUID.randomUUID());
+        addToSet.setValue(new Value(2.5));
+        final RemoveFromSet removeFromSet = new RemoveFromSet();
+        removeFromSet.setSetId(UUID.randomUUID());
+        removeFromSet.setValue(new Value(true));
+        final SetRootElement root = new SetRootElement();
+        root.setRootElementId(objectId);
+
+        final List<Command> commands = new ArrayList<>();
+        commands.add(new SetPropertyValue(UUID.randomUUID(), new Value("name")));
+        commands.add(new AddToList(UUID.randomUUID(), version, new Value(objectId), 3));
+        commands.add(new RemoveFromList(UUID.randomUUID(), version, 300, 2));
+        commands.add(new ReplaceInList(UUID.randomUUID(), version, new Value(42L), 0));
+        commands.add(create);
+        commands.add(put);
+        commands.add(removeFromMap);
+        commands.add(addToSet);
+        commands.add(removeFromSet);
+        commands.add(root);
+        commands.add(new ClearReferences());
+        return commands;
+    }
+}
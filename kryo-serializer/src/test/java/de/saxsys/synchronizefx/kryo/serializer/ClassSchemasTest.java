@@ -0,0 +1,72 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link ClassSchemas} does not trust the property count that the peer sent.
+ */
+public class ClassSchemasTest {
+
+    private static final int TAG_REGISTER = 1;
+
+    private final ClassSchemas schemas = new ClassSchemas(10);
+
+    /**
+     * A schema that announces a huge number of properties but ends early should fail without reserving memory for all
+     * of them.
+     */
+    @Test(expected = KryoException.class)
+    public void shouldFailOnTruncatedSchemaWithHugePropertyCount() {
+        final Output output = schema(Integer.MAX_VALUE);
+        output.writeString("name");
+
+        read(output);
+    }
+
+    /**
+     * A negative property count should be rejected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectNegativePropertyCount() {
+        read(schema(-1));
+    }
+
+    private static Output schema(final int propertyCount) {
+        final Output output = new Output(64);
+        output.writeInt(TAG_REGISTER, true);
+        output.writeString("example.Person");
+        output.writeInt(propertyCount, true);
+        return output;
+    }
+
+    private void read(final Output output) {
+        schemas.read(new Kryo(), new Input(output.toBytes()), new CreateObservableObject());
+    }
+}
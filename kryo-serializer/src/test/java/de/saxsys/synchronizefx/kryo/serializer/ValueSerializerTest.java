@@ -0,0 +1,170 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.kryo.serializer;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link ValueSerializer} restores the values of all types with their exact type.
+ */
+public class ValueSerializerTest {
+
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_ENUM = 10;
+
+    private final Kryo kryo = new Kryo();
+    private final ValueSerializer serializer = new ValueSerializer();
+
+    /**
+     * The types with a tag of their own should be restored with the same type and value.
+     */
+    @Test
+    public void shouldRestoreTaggedTypes() {
+        assertRoundTrip(null);
+        assertRoundTrip(-42);
+        assertRoundTrip(Integer.MIN_VALUE);
+        assertRoundTrip(Long.MAX_VALUE);
+        assertRoundTrip(Math.PI);
+        assertRoundTrip(Double.NaN);
+        assertRoundTrip(1.5f);
+        assertRoundTrip(true);
+        assertRoundTrip(false);
+        assertRoundTrip("text");
+        assertRoundTrip("");
+        assertRoundTrip(Direction.LEFT);
+        assertRoundTrip(Direction.RIGHT);
+    }
+
+    /**
+     * Values of other types and ids of observable objects should still be transfered.
+     */
+    @Test
+    public void shouldRestoreOtherObjectsAndObservableObjects() {
+        assertRoundTrip(new BigDecimal("1.25"));
+
+        final UUID id = UUID.randomUUID();
+        final Value received = roundTrip(new Value(id));
+        assertThat(received.getObservableObjectId()).isEqualTo(id);
+        assertThat(received.getSimpleObjectValue()).isNull();
+    }
+
+    /**
+     * Small numbers and booleans should only need the tag and a few bytes.
+     */
+    @Test
+    public void shouldWriteSmallValuesCompactly() {
+        assertThat(serialize(new Value(1)).length).isEqualTo(2);
+        assertThat(serialize(new Value(-1L)).length).isEqualTo(2);
+        assertThat(serialize(new Value(true)).length).isEqualTo(1);
+    }
+
+    /**
+     * An ordinal that does not exist in the enum should be rejected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectUnknownEnumOrdinals() {
+        final Output output = new Output(64, -1);
+        output.writeByte(TAG_ENUM);
+        kryo.writeClass(output, Direction.class);
+        output.writeInt(Direction.values().length, true);
+
+        read(output.toBytes());
+    }
+
+    /**
+     * A class that is not an enum should be rejected where an enum is expected.
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectEnumValuesOfOtherClasses() {
+        final Output output = new Output(64, -1);
+        output.writeByte(TAG_ENUM);
+        kryo.writeClass(output, String.class);
+        output.writeInt(0, true);
+
+        read(output.toBytes());
+    }
+
+    /**
+     * An integer should be read with its own tag without a class lookup.
+     */
+    @Test
+    public void shouldReadIntegersWithoutClassInformation() {
+        final Output output = new Output(8);
+        output.writeByte(TAG_INTEGER);
+        output.writeInt(-3, false);
+
+        assertThat(read(output.toBytes()).getSimpleObjectValue()).isEqualTo(-3);
+    }
+
+    private void assertRoundTrip(final Object value) {
+        final Object received = roundTrip(new Value(value)).getSimpleObjectValue();
+        if (value == null) {
+            assertThat(received).isNull();
+        } else {
+            assertThat(received).isInstanceOf(value.getClass()).isEqualTo(value);
+        }
+    }
+
+    private Value roundTrip(final Value value) {
+        return read(serialize(value));
+    }
+
+    private byte[] serialize(final Value value) {
+        final Output output = new Output(64, -1);
+        serializer.write(kryo, output, value);
+        return output.toBytes();
+    }
+
+    private Value read(final byte[] serialized) {
+        return serializer.read(kryo, new Input(serialized), Value.class);
+    }
+
+    /**
+     * An enum whose constants have bodies of their own so that their classes differ from the enum class.
+     */
+    private enum Direction {
+        LEFT {
+            @Override
+            int sign() {
+                return -1;
+            }
+        },
+        RIGHT {
+            @Override
+            int sign() {
+                return 1;
+            }
+        };
+
+        abstract int sign();
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+
+/**
+ * The commands that are held back for a single slow client according to a {@link SlowConsumerPolicy}.
+ * 
+ * <p>
+ * Commands are kept in the order in which they where added. When commands are conflated, a
+ * {@link SetPropertyValue} command replaces a held back {@link SetPropertyValue} command for the same property. The
+ * replacement is moved to the end of the backlog so that all commands the new value depends on precede it.
+ * </p>
+ * 
+ * <p>
+ * Commands the client waits for must not be conflated. A client ignores all changes of a property it changed itself
+ * until the server echoed its own {@link SetPropertyValue} command. Such echoes are added as commands that can't be
+ * conflated. They are neither replaced nor do they replace other commands.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+public final class CommandBacklog {
+
+    private final SlowConsumerPolicy policy;
+    private final boolean conflate;
+    private final Map<Object, Command> commands = new LinkedHashMap<>();
+    private long sequence;
+
+    /**
+     * Initializes an empty backlog.
+     * 
+     * @param policy The policy that defines how commands are held back.
+     */
+    public CommandBacklog(final SlowConsumerPolicy policy) {
+        this.policy = policy;
+        this.conflate = policy.getStrategy() == SlowConsumerPolicy.Strategy.CONFLATE;
+    }
+
+    /**
+     * Holds back commands for the client that may be conflated.
+     * 
+     * @param toAdd The commands that could not be sent to the client.
+     * @return <code>true</code> if the commands where added and <code>false</code> if the limit of the policy was
+     *         exceeded. In the latter case the client should be disconnected.
+     * @see #add(List, boolean)
+     */
+    public boolean add(final List<Command> toAdd) {
+        return add(toAdd, true);
+    }
+
+    /**
+     * Holds back commands for the client.
+     * 
+     * @param toAdd The commands that could not be sent to the client.
+     * @param conflatable <code>false</code> if the client waits for the commands, like for the echo of its own
+     *            changes, so that they must be sent even if the policy conflates commands.
+     * @return <code>true</code> if the commands where added and <code>false</code> if the limit of the policy was
+     *         exceeded. In the latter case the client should be disconnected.
+     */
+    public boolean add(final List<Command> toAdd, final boolean conflatable) {
+        for (final Command command : toAdd) {
+            if (conflate && conflatable && command instanceof SetPropertyValue) {
+                final Object property = ((SetPropertyValue) command).getPropertyId();
+                commands.remove(property);
+                commands.put(property, command);
+            } else {
+                commands.put(sequence++, command);
+            }
+        }
+        return commands.size() <= policy.getMaxQueuedCommands();
+    }
+
+    /**
+     * Removes all held back commands.
+     * 
+     * @return The commands in the order in which they should be sent to the client.
+     */
+    public List<Command> drain() {
+        final List<Command> drained = new ArrayList<>(commands.values());
+        commands.clear();
+        return drained;
+    }
+
+    /**
+     * @return The number of commands that are currently held back.
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * @return <code>true</code> if no commands are held back.
+     */
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+/**
+ * A {@link Serializer} that can use state which is shared between both ends of a single connection to produce a
+ * smaller serialized form.
+ * 
+ * <p>
+ * Network layers that support this should call {@link #newConnectionSerializer()} once for every connection and use
+ * the returned instance for all data exchanged over that connection. Network layers that don't support it can use
+ * the {@link Serializer} methods of this interface as usual.
+ * </p>
+ */
+public interface ConnectionScopedSerializer extends Serializer {
+
+    /**
+     * Creates a serializer that must only be used for a single connection.
+     * 
+     * <p>
+     * Other than the usual {@link Serializer} contract the returned instance is stateful. The results of
+     * {@link Serializer#serialize(java.util.List)} must be transfered to the peer of the connection in the same order
+     * in which they where created and must not be send to other peers. {@link Serializer#deserialize(byte[])} must be
+     * called in the order in which the data was received from the peer. Serialization and deserialization may happen in
+     * different threads but each of both must not be called concurrently.
+     * </p>
+     * 
+     * <p>
+     * Data serialized by the returned instance may only be deserializable by a connection serializer of a compatible
+     * {@link ConnectionScopedSerializer} on the peer.
+     * </p>
+     * 
+     * <p>
+     * Implementations that don't use any connection state in their current configuration may return themselves.
+     * Network layers can share data serialized by such instances between connections.
+     * </p>
+     * 
+     * @return The serializer for the new connection.
+     */
+    Serializer newConnectionSerializer();
+}
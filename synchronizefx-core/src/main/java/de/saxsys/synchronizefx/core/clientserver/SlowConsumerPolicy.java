@@ -0,0 +1,134 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+/**
+ * Defines how a server treats clients that receive commands slower than they are produced.
+ * 
+ * <p>
+ * A client is slow when the network layer can't hand over further data to its connection, e.g. because the send
+ * buffer of the connection is full. Commands for such a client are held back in a {@link CommandBacklog} until the
+ * connection can take data again. The policy decides what happens to these commands and limits how many of them are
+ * held back. A client that exceeds the limit is disconnected. It can connect again to receive the current state of
+ * the domain model. This way a single stalled connection can't exhaust the memory of the server.
+ * </p>
+ */
+public final class SlowConsumerPolicy {
+
+    /**
+     * The default for the maximal number of commands held back per client.
+     */
+    public static final int DEFAULT_MAX_QUEUED_COMMANDS = 100000;
+
+    /**
+     * The possible reactions to slow clients.
+     */
+    public enum Strategy {
+        /**
+         * Holds back all commands up to the limit.
+         */
+        BUFFER,
+
+        /**
+         * Holds back commands up to the limit but replaces held back
+         * {@link de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue} commands when a newer one for the
+         * same property is sent.
+         */
+        CONFLATE,
+
+        /**
+         * Disconnects a client as soon as commands would have to be held back for it.
+         */
+        DISCONNECT
+    }
+
+    private final Strategy strategy;
+    private final int maxQueuedCommands;
+
+    private SlowConsumerPolicy(final Strategy strategy, final int maxQueuedCommands) {
+        if (maxQueuedCommands < 0) {
+            throw new IllegalArgumentException("The maximal number of queued commands must not be negative.");
+        }
+        this.strategy = strategy;
+        this.maxQueuedCommands = maxQueuedCommands;
+    }
+
+    /**
+     * Holds back all commands for slow clients and disconnects them when the limit is exceeded.
+     * 
+     * @param maxQueuedCommands The maximal number of commands held back per client.
+     * @return The policy.
+     * @throws IllegalArgumentException When <code>maxQueuedCommands</code> is negative.
+     */
+    public static SlowConsumerPolicy buffer(final int maxQueuedCommands) {
+        return new SlowConsumerPolicy(Strategy.BUFFER, maxQueuedCommands);
+    }
+
+    /**
+     * Holds back commands for slow clients, keeps only the latest value change of each property and disconnects the
+     * clients when the limit is exceeded nevertheless.
+     * 
+     * <p>
+     * This suits domain models with frequently changing properties like positions of sliders where intermediate
+     * values don't need to reach slow clients. Changes a client made itself are always echoed to it, because the
+     * client waits for them.
+     * </p>
+     * 
+     * @param maxQueuedCommands The maximal number of commands held back per client after conflation.
+     * @return The policy.
+     * @throws IllegalArgumentException When <code>maxQueuedCommands</code> is negative.
+     */
+    public static SlowConsumerPolicy conflate(final int maxQueuedCommands) {
+        return new SlowConsumerPolicy(Strategy.CONFLATE, maxQueuedCommands);
+    }
+
+    /**
+     * Disconnects slow clients immediately.
+     * 
+     * <p>
+     * Note that the connection of a new client may be busy for a while with the initial state of a large domain
+     * model. The network layer should allow enough buffered data for this.
+     * </p>
+     * 
+     * @return The policy.
+     */
+    public static SlowConsumerPolicy disconnect() {
+        return new SlowConsumerPolicy(Strategy.DISCONNECT, 0);
+    }
+
+    /**
+     * @return The reaction to slow clients.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return The maximal number of commands held back per client.
+     */
+    public int getMaxQueuedCommands() {
+        return maxQueuedCommands;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowConsumerPolicy [strategy=" + strategy + ", maxQueuedCommands=" + maxQueuedCommands + "]";
+    }
+}
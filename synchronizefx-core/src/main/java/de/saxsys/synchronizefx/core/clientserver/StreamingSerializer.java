@@ -0,0 +1,93 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * A {@link Serializer} that can write to and read from buffers supplied by the caller.
+ * 
+ * <p>
+ * {@link Serializer#serialize(List)} and {@link Serializer#deserialize(byte[])} force implementations and network
+ * layers to allocate a new <code>byte[]</code> for every batch of commands. Network layers that manage their own
+ * buffers should prefer the methods in this interface. The serialized form must be the same as the one produced by
+ * {@link Serializer#serialize(List)} so that peers can mix both styles.
+ * </p>
+ * 
+ * <p>
+ * Use {@link StreamingSerializerAdapter#adapt(Serializer)} to use {@link Serializer}s that don't implement this
+ * interface with code that expects a {@link StreamingSerializer}.
+ * </p>
+ */
+public interface StreamingSerializer extends Serializer {
+
+    /**
+     * Serializes a list with commands and writes the result to a stream.
+     * 
+     * This method must be implemented thread safe.
+     * 
+     * @param commands The commands that should be serialized.
+     * @param destination The stream to write the serialized form of the commands to. The stream is flushed but not
+     *            closed by this method.
+     * @throws SynchronizeFXException When the serialisation failed. When this exception is thrown, the serializer
+     *             must still be able to serialize valid objects. The content of <code>destination</code> is undefined
+     *             in this case.
+     */
+    void serialize(List<Command> commands, OutputStream destination) throws SynchronizeFXException;
+
+    /**
+     * Deserializes commands that where created by {@link #serialize(List, OutputStream)} or
+     * {@link Serializer#serialize(List)} from a stream.
+     * 
+     * This method must be implemented thread safe.
+     * 
+     * @param source A stream that contains exactly the serialized form of one list of commands. The stream is not
+     *            closed by this method.
+     * @return The commands that where encoded in the stream.
+     * @throws SynchronizeFXException When the deserialisation failed. When this exception is thrown, the serializer
+     *             must still be able to deserialize valid objects.
+     */
+    List<Command> deserialize(InputStream source) throws SynchronizeFXException;
+
+    /**
+     * Deserializes commands that where created by {@link #serialize(List, OutputStream)} or
+     * {@link Serializer#serialize(List)} from a buffer.
+     * 
+     * <p>
+     * The buffer may be a heap or a direct buffer. Implementations must respect its position and limit and must not
+     * assume that a backing array, if any, starts at the position of the buffer.
+     * </p>
+     * 
+     * This method must be implemented thread safe.
+     * 
+     * @param source A buffer thats remaining bytes contain exactly the serialized form of one list of commands. The
+     *            position of the buffer is advanced to its limit.
+     * @return The commands that where encoded in the buffer.
+     * @throws SynchronizeFXException When the deserialisation failed. When this exception is thrown, the serializer
+     *             must still be able to deserialize valid objects.
+     */
+    List<Command> deserialize(ByteBuffer source) throws SynchronizeFXException;
+}
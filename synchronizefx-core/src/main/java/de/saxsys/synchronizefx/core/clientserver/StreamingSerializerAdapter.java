@@ -0,0 +1,114 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * Makes a {@link Serializer} usable where a {@link StreamingSerializer} is expected.
+ * 
+ * <p>
+ * The adapted serializer still creates intermediate <code>byte[]</code>s. It only exists so that network layers
+ * don't need to distinguish between both kinds of serializers.
+ * </p>
+ */
+public final class StreamingSerializerAdapter implements StreamingSerializer {
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final Serializer serializer;
+
+    private StreamingSerializerAdapter(final Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Returns a {@link StreamingSerializer} for an arbitrary {@link Serializer}.
+     * 
+     * @param serializer The serializer to adapt.
+     * @return The serializer itself if it already is a {@link StreamingSerializer} or an adapter that delegates to
+     *         it if not.
+     */
+    public static StreamingSerializer adapt(final Serializer serializer) {
+        if (serializer instanceof StreamingSerializer) {
+            return (StreamingSerializer) serializer;
+        }
+        return new StreamingSerializerAdapter(serializer);
+    }
+
+    @Override
+    public byte[] serialize(final List<Command> commands) throws SynchronizeFXException {
+        return serializer.serialize(commands);
+    }
+
+    @Override
+    public List<Command> deserialize(final byte[] commands) throws SynchronizeFXException {
+        return serializer.deserialize(commands);
+    }
+
+    @Override
+    public void serialize(final List<Command> commands, final OutputStream destination)
+        throws SynchronizeFXException {
+        try {
+            destination.write(serializer.serialize(commands));
+            destination.flush();
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Could not write the serialized commands to the destination stream.", e);
+        }
+    }
+
+    @Override
+    public List<Command> deserialize(final InputStream source) throws SynchronizeFXException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            int read = source.read(buffer);
+            while (read >= 0) {
+                bytes.write(buffer, 0, read);
+                read = source.read(buffer);
+            }
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Could not read the serialized commands from the source stream.", e);
+        }
+        return serializer.deserialize(bytes.toByteArray());
+    }
+
+    @Override
+    public List<Command> deserialize(final ByteBuffer source) throws SynchronizeFXException {
+        final byte[] bytes;
+        if (source.hasArray() && source.arrayOffset() == 0 && source.position() == 0
+                && source.limit() == source.array().length) {
+            bytes = source.array();
+            source.position(source.limit());
+        } else {
+            bytes = new byte[source.remaining()];
+            source.get(bytes);
+        }
+        return serializer.deserialize(bytes);
+    }
+}
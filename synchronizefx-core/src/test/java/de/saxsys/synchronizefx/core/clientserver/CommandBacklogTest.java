@@ -0,0 +1,107 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link CommandBacklog} holds back commands as defined by its {@link SlowConsumerPolicy}.
+ */
+public class CommandBacklogTest {
+
+    private final UUID property = UUID.randomUUID();
+    private final SetPropertyValue firstChange = new SetPropertyValue(property, new Value(1));
+    private final ClearReferences otherCommand = new ClearReferences();
+    private final SetPropertyValue secondChange = new SetPropertyValue(property, new Value(2));
+
+    /**
+     * All commands should be kept in order when they are buffered.
+     */
+    @Test
+    public void shouldKeepAllCommandsWhenBuffering() {
+        final CommandBacklog cut = new CommandBacklog(SlowConsumerPolicy.buffer(3));
+
+        assertThat(cut.add(Arrays.<Command> asList(firstChange, otherCommand))).isTrue();
+        assertThat(cut.add(Arrays.<Command> asList(secondChange))).isTrue();
+
+        assertThat(cut.size()).isEqualTo(3);
+        assertThat(cut.drain()).containsExactly(firstChange, otherCommand, secondChange);
+        assertThat(cut.isEmpty()).isTrue();
+    }
+
+    /**
+     * A newer value for the same property should replace the older one and be moved to the end.
+     */
+    @Test
+    public void shouldReplaceOlderValuesOfTheSamePropertyWhenConflating() {
+        final CommandBacklog cut = new CommandBacklog(SlowConsumerPolicy.conflate(2));
+
+        assertThat(cut.add(Arrays.<Command> asList(firstChange, otherCommand))).isTrue();
+        assertThat(cut.add(Arrays.<Command> asList(secondChange))).isTrue();
+
+        assertThat(cut.drain()).containsExactly(otherCommand, secondChange);
+    }
+
+    /**
+     * The echo of a change of the client should neither be replaced by a newer value nor replace an older one.
+     */
+    @Test
+    public void shouldKeepEchoesWhenConflating() {
+        final SetPropertyValue echo = new SetPropertyValue(property, new Value(3));
+        final CommandBacklog cut = new CommandBacklog(SlowConsumerPolicy.conflate(3));
+
+        assertThat(cut.add(Arrays.<Command> asList(firstChange))).isTrue();
+        assertThat(cut.add(Arrays.<Command> asList(echo), false)).isTrue();
+        assertThat(cut.add(Arrays.<Command> asList(secondChange))).isTrue();
+
+        assertThat(cut.drain()).containsExactly(echo, secondChange);
+    }
+
+    /**
+     * Exceeding the limit should be reported.
+     */
+    @Test
+    public void shouldReportExceededLimit() {
+        final CommandBacklog cut = new CommandBacklog(SlowConsumerPolicy.buffer(2));
+
+        assertThat(cut.add(Arrays.<Command> asList(firstChange, otherCommand))).isTrue();
+        assertThat(cut.add(Arrays.<Command> asList(secondChange))).isFalse();
+    }
+
+    /**
+     * The disconnect strategy should not allow to hold back any command.
+     */
+    @Test
+    public void shouldNotHoldBackCommandsWhenDisconnecting() {
+        final CommandBacklog cut = new CommandBacklog(SlowConsumerPolicy.disconnect());
+
+        assertThat(cut.add(Arrays.<Command> asList(otherCommand))).isFalse();
+    }
+}
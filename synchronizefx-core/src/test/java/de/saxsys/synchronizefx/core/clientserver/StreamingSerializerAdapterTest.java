@@ -0,0 +1,117 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.core.clientserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that {@link StreamingSerializerAdapter} passes exactly the serialized bytes to the adapted serializer.
+ */
+public class StreamingSerializerAdapterTest {
+
+    private static final byte[] SERIALIZED = new byte[] {1, 2, 3, 4 };
+
+    private final List<Command> commands = Arrays.<Command> asList(new ClearReferences());
+
+    private Serializer serializer;
+    private StreamingSerializer cut;
+
+    /**
+     * Creates the adapter for a mocked {@link Serializer}.
+     */
+    @Before
+    public void setUp() {
+        serializer = mock(Serializer.class);
+        when(serializer.serialize(commands)).thenReturn(SERIALIZED);
+        when(serializer.deserialize(SERIALIZED)).thenReturn(commands);
+        cut = StreamingSerializerAdapter.adapt(serializer);
+    }
+
+    /**
+     * {@link StreamingSerializer}s should not be wrapped.
+     */
+    @Test
+    public void shouldNotAdaptStreamingSerializers() {
+        final StreamingSerializer streaming = mock(StreamingSerializer.class);
+
+        assertThat(StreamingSerializerAdapter.adapt(streaming)).isSameAs(streaming);
+    }
+
+    /**
+     * The serialized form should be written to the stream.
+     */
+    @Test
+    public void shouldWriteSerializedFormToStream() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        cut.serialize(commands, out);
+
+        assertThat(out.toByteArray()).isEqualTo(SERIALIZED);
+    }
+
+    /**
+     * The complete content of a stream should be deserialized.
+     */
+    @Test
+    public void shouldReadSerializedFormFromStream() {
+        assertThat(cut.deserialize(new ByteArrayInputStream(SERIALIZED))).isEqualTo(commands);
+    }
+
+    /**
+     * Only the remaining bytes of a buffer should be deserialized even when it shares a larger array.
+     */
+    @Test
+    public void shouldOnlyReadRemainingBytesOfBuffer() {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[] {9, 9, 1, 2, 3, 4, 9 });
+        buffer.position(2);
+        buffer.limit(6);
+
+        assertThat(cut.deserialize(buffer.slice())).isEqualTo(commands);
+        verify(serializer).deserialize(SERIALIZED);
+    }
+
+    /**
+     * Direct buffers should be supported too and be consumed completely.
+     */
+    @Test
+    public void shouldReadDirectBuffers() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(SERIALIZED.length);
+        buffer.put(SERIALIZED);
+        buffer.flip();
+
+        assertThat(cut.deserialize(buffer)).isEqualTo(commands);
+        assertThat(buffer.remaining()).isEqualTo(0);
+    }
+}
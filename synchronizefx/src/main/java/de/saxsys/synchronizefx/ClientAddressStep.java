@@ -32,4 +32,31 @@ public interface ClientAddressStep {
      * @return The builder to provide a fluent API.
      */
     ClientCallbackStep address(String address);
+
+    /**
+     * Connects to a server on the same host over a Unix domain socket instead of TCP.
+     * 
+     * <p>
+     * The server must have been created with {@link OptionalServerStep#domainSocket(String)}. Unix domain sockets
+     * are only available on Linux.
+     * </p>
+     * 
+     * @param socketPath The path of the socket file the server listens on.
+     * @return The builder to provide a fluent API.
+     */
+    ClientCallbackStep domainSocket(String socketPath);
+
+    /**
+     * Connects to a server in the same JVM without serializing commands.
+     * 
+     * <p>
+     * The server must have been created with {@link OptionalServerStep#inJvm(String)}. Values of properties that are
+     * not observable objects are shared by reference with the server and should therefore be immutable. The
+     * serializer and all network specific options are not used for such clients.
+     * </p>
+     * 
+     * @param serverName The name of the server to connect to.
+     * @return The builder to provide a fluent API.
+     */
+    ClientCallbackStep inJvm(String serverName);
 }
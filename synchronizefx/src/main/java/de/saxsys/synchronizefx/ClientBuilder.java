@@ -22,9 +22,20 @@ package de.saxsys.synchronizefx;
 import java.util.concurrent.Executor;
 
 import de.saxsys.synchronizefx.core.clientserver.ClientCallback;
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferClient;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxClient;
+import de.saxsys.synchronizefx.injvm.InJvmClient;
 import de.saxsys.synchronizefx.kryo.KryoSerializer;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
+import de.saxsys.synchronizefx.netty.base.client.NettyBasicClient;
 import de.saxsys.synchronizefx.netty.tcp.NettyClient;
+import de.saxsys.synchronizefx.netty.unix.NettyDomainSocketClient;
 
 import com.esotericsoftware.kryo.Serializer;
 
@@ -36,9 +47,20 @@ class ClientBuilder implements ClientCallbackStep, OptionalClientStep, ClientAdd
 
     private int port = DEFAULT_PORT;
     private String address = "localhost";
+    private String socketPath;
+    private String inJvmServerName;
     private final KryoSerializer serializer = new KryoSerializer();
+    private de.saxsys.synchronizefx.core.clientserver.Serializer commandSerializer = serializer;
     private ClientCallback callback;
     private Executor changeExecutor;
+    private FrameCompression compression;
+    private NettyTransport transport = NettyTransport.NIO;
+    private NettyEventLoops eventLoops;
+    private SessionResumption sessionResumption;
+    private MulticastLane multicastLane;
+    private FrameLimits frameLimits = new FrameLimits();
+    private TlsContext tls;
+    private String channelName;
 
 
     @Override
@@ -46,6 +68,19 @@ class ClientBuilder implements ClientCallbackStep, OptionalClientStep, ClientAdd
         this.address = address;
         return this;
     }
+
+    @Override
+    public ClientCallbackStep domainSocket(final String socketPath) {
+        this.socketPath = socketPath;
+        return this;
+    }
+
+    @Override
+    public ClientCallbackStep inJvm(final String serverName) {
+        this.inJvmServerName = serverName;
+        return this;
+    }
+
     @Override
     public OptionalClientStep callback(final ClientCallback callback) {
         this.callback = callback;
@@ -70,13 +105,86 @@ class ClientBuilder implements ClientCallbackStep, OptionalClientStep, ClientAdd
         return this;
     }
 
+    @Override
+    public OptionalClientStep serializer(final de.saxsys.synchronizefx.core.clientserver.Serializer serializer) {
+        this.commandSerializer = serializer;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep compression() {
+        this.compression = new FrameCompression();
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep transport(final NettyTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep eventLoops(final NettyEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep sessionResumption(final SessionResumption sessionResumption) {
+        this.sessionResumption = sessionResumption;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep multicastLane(final MulticastLane multicastLane) {
+        this.multicastLane = multicastLane;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep frameLimits(final FrameLimits frameLimits) {
+        this.frameLimits = frameLimits;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep tls(final TlsContext tls) {
+        this.tls = tls;
+        return this;
+    }
+
+    @Override
+    public OptionalClientStep channel(final String channelName) {
+        this.channelName = channelName;
+        return this;
+    }
+
     @Override
     public SynchronizeFxClient build() {
-        final NettyClient netty = new NettyClient(address, port, serializer);
+        final CommandTransferClient transmitter = inJvmServerName == null ? buildNettyClient()
+                : new InJvmClient(inJvmServerName);
         if (changeExecutor == null) {
-            return new SynchronizeFxClient(netty, callback);
+            return new SynchronizeFxClient(transmitter, callback);
+        } else {
+            return new SynchronizeFxClient(transmitter, callback, changeExecutor);
+        }
+    }
+
+    private NettyBasicClient buildNettyClient() {
+        final NettyBasicClient netty;
+        if (socketPath == null) {
+            netty = new NettyClient(address, port, channelName, commandSerializer, compression);
+        } else if (channelName == null) {
+            netty = new NettyDomainSocketClient(socketPath, commandSerializer, compression);
         } else {
-            return new SynchronizeFxClient(netty, callback, changeExecutor);
+            throw new IllegalStateException("Channels can't be selected over Unix domain sockets.");
         }
+        netty.setTransport(transport);
+        netty.setEventLoops(eventLoops);
+        netty.setSessionResumption(sessionResumption);
+        netty.setMulticastLane(multicastLane);
+        netty.setFrameLimits(frameLimits);
+        netty.setTls(tls);
+        return netty;
     }
 }
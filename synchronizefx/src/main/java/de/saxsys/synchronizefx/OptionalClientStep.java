@@ -25,7 +25,20 @@ import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxClient;
  * Optional Steps for the client and the final build step.
  */
 public interface OptionalClientStep extends OptionalStep<OptionalClientStep> {
-    
+
+    /**
+     * Sets the name of the domain model to connect to when the server serves many of them on the same port.
+     * 
+     * <p>
+     * This is needed for servers created with {@link de.saxsys.synchronizefx.netty.tcp.NettyMultiplexingServer}. It
+     * must not be used for servers that serve only a single domain model or for Unix domain sockets.
+     * </p>
+     * 
+     * @param channelName The name of the channel the domain model is served at.
+     * @return The builder to provide a fluent API.
+     */
+    OptionalClientStep channel(final String channelName);
+
     /**
      * Creates a client instance to request a domain model from a server.
      * 
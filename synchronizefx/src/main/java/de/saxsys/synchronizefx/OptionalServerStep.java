@@ -20,12 +20,58 @@
 package de.saxsys.synchronizefx;
 
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicMultiplexingServer;
 
 /**
  * Optional Steps for the server and the final build step.
  */
 public interface OptionalServerStep extends OptionalStep<OptionalServerStep> {
 
+    /**
+     * Listens on a Unix domain socket for clients on the same host instead of a TCP port.
+     * 
+     * <p>
+     * This has less latency and needs less CPU time than TCP connections over the loopback interface. Unix domain
+     * sockets are only available on Linux. The port is not used when this method is called.
+     * </p>
+     * 
+     * @param socketPath The path of the socket file to create.
+     * @return The builder to provide a fluent API.
+     */
+    OptionalServerStep domainSocket(final String socketPath);
+
+    /**
+     * Serves clients in the same JVM only and passes commands to them without serializing them.
+     * 
+     * <p>
+     * This is meant for several independent parts of one application, like windows or plugins, that share a domain
+     * model. Values of properties that are not observable objects are shared by reference with the clients and
+     * should therefore be immutable. The serializer and all network specific options are not used for such servers.
+     * </p>
+     * 
+     * @param serverName The name clients use to connect to the server. It must be unique in the JVM.
+     * @return The builder to provide a fluent API.
+     * @see ClientAddressStep#inJvm(String)
+     */
+    OptionalServerStep inJvm(final String serverName);
+
+    /**
+     * Serves the domain model as a channel of a server that serves many domain models on the same port.
+     * 
+     * <p>
+     * Clients select the domain model with {@link OptionalClientStep#channel(String)}. The port and all network
+     * specific options are those of the passed server and the options of this builder are not used for them. The
+     * passed server must be started on its own with {@link NettyBasicMultiplexingServer#start()}.
+     * </p>
+     * 
+     * @param server The server that accepts the connections for all channels.
+     * @param channelName The name clients use to select this domain model. It must be unique for the server.
+     * @return The builder to provide a fluent API.
+     * @see NettyBasicMultiplexingServer#newChannel(Object, String, java.util.concurrent.Executor,
+     *      de.saxsys.synchronizefx.core.clientserver.ServerCallback)
+     */
+    OptionalServerStep channel(final NettyBasicMultiplexingServer server, final String channelName);
+
     /**
      * Creates a server instance for serving a domain model.
      * 
@@ -21,6 +21,13 @@ package de.saxsys.synchronizefx;
 
 import java.util.concurrent.Executor;
 
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
+
 import com.esotericsoftware.kryo.Serializer;
 
 /**
@@ -59,6 +66,20 @@ public interface OptionalStep<K> {
      */
     <T> K customSerializer(final Class<T> clazz, final Serializer<T> serializer);
 
+    /**
+     * Replaces the Kryo based serializer that converts SynchronizeFX commands to bytes and back.
+     * 
+     * <p>
+     * An alternative is the <code>BinarySerializer</code> of the binary-serializer module which uses a fixed binary
+     * format. Both sides of a connection must use the same serializer. Serializers registered with
+     * {@link #customSerializer(Class, Serializer)} are only used by the default Kryo based serializer.
+     * </p>
+     * 
+     * @param serializer The serializer to use.
+     * @return The builder to provide a fluent API.
+     */
+    K serializer(final de.saxsys.synchronizefx.core.clientserver.Serializer serializer);
+
     /**
      * Sets a custom executor for changes done on the domain model.
      * 
@@ -81,4 +102,118 @@ public interface OptionalStep<K> {
      * @return The builder to provide a fluent API.
      */
     K modelChangeExecutor(final Executor executor);
+
+    /**
+     * Compresses the messages that are sent to the other side of the connection.
+     * 
+     * <p>
+     * The messages of a connection are compressed with a single deflate stream that is kept for the whole connection.
+     * This way repetitive changes like updates to the same properties compress well. Small messages are sent
+     * uncompressed.
+     * </p>
+     * 
+     * <p>
+     * Compression changes the format of the messages. It must therefore be enabled on the server and on all of its
+     * clients. A connection where only one side enables it fails.
+     * </p>
+     * 
+     * <p>
+     * This is useful for large domain models or slow connections where the network bandwidth is the bottleneck.
+     * </p>
+     * 
+     * @return The builder to provide a fluent API.
+     */
+    K compression();
+
+    /**
+     * Sets the I/O implementation that is used for the network connections.
+     * 
+     * <p>
+     * If this method is not used, the portable {@link NettyTransport#NIO} transport is used. On Linux
+     * {@link NettyTransport#EPOLL} reduces the number of system calls and the latency with many connections.
+     * {@link NettyTransport#AUTO} uses it when it is available and falls back to {@link NettyTransport#NIO}
+     * otherwise.
+     * </p>
+     * 
+     * @param transport The transport to use.
+     * @return The builder to provide a fluent API.
+     */
+    K transport(final NettyTransport transport);
+
+    /**
+     * Sets the threads that handle the network connections.
+     * 
+     * <p>
+     * If this method is not used, each server and client creates its own threads. Passing the same
+     * {@link NettyEventLoops} to many servers and clients lets them share a small pool of threads instead. Its
+     * transport replaces the one set with {@link #transport(NettyTransport)}. Shared event loops are not shut down
+     * together with the servers and clients using them.
+     * </p>
+     * 
+     * @param eventLoops The event loops to use.
+     * @return The builder to provide a fluent API.
+     */
+    K eventLoops(final NettyEventLoops eventLoops);
+
+    /**
+     * Lets clients resume their sessions after they lost the connection to the server.
+     * 
+     * <p>
+     * If this method is not used, the loss of the connection is reported immediately and a new client has to receive
+     * the whole domain model again. With session resumption the client reconnects on its own and only the messages
+     * missed in the meantime are exchanged. The loss is reported when the session can't be resumed within the
+     * timeout. Servers and clients must both enable session resumption.
+     * </p>
+     * 
+     * @param sessionResumption The settings for the sessions.
+     * @return The builder to provide a fluent API.
+     */
+    K sessionResumption(final SessionResumption sessionResumption);
+
+    /**
+     * Sends value changes of frequently updated properties over UDP multicast instead of the connection of each
+     * client.
+     * 
+     * <p>
+     * Only changes of the properties declared with {@link MulticastLane#lossy(Class, String...)} are sent this way.
+     * Datagrams may get lost, so only properties for which the latest value is all that matters should be declared.
+     * Their latest values are sent over the regular connections periodically too. Servers and clients must use the
+     * same settings.
+     * </p>
+     * 
+     * @param multicastLane The settings for the multicast lane.
+     * @return The builder to provide a fluent API.
+     */
+    K multicastLane(final MulticastLane multicastLane);
+
+    /**
+     * Sets the limits for the frames exchanged between server and clients.
+     * 
+     * <p>
+     * If this method is not used, frames of up to {@link FrameLimits#DEFAULT_MAX_FRAME_SIZE} bytes are accepted and
+     * the domain model is sent to new clients in chunks of {@link FrameLimits#DEFAULT_COMMANDS_PER_CHUNK} commands.
+     * Servers and clients should use the same limits.
+     * </p>
+     * 
+     * @param frameLimits The limits to use.
+     * @return The builder to provide a fluent API.
+     */
+    K frameLimits(final FrameLimits frameLimits);
+
+    /**
+     * Encrypts the network connections with TLS.
+     * 
+     * <p>
+     * Servers need a configuration with their key and certificate, e.g. from
+     * {@link TlsContext#forServer(java.io.File, java.io.File, de.saxsys.synchronizefx.netty.base.TlsEngine)}.
+     * Clients need a configuration that validates the certificate of the server, e.g. from
+     * {@link TlsContext#forClient(javax.net.ssl.TrustManagerFactory, de.saxsys.synchronizefx.netty.base.TlsEngine)}.
+     * A configuration should be created once and passed to all servers or clients as its context and the cached TLS
+     * sessions are shared by all of them.
+     * </p>
+     * 
+     * @param tls The TLS configuration.
+     * @return The builder to provide a fluent API.
+     */
+    K tls(final TlsContext tls);
 }
@@ -21,10 +21,22 @@ package de.saxsys.synchronizefx;
 
 import java.util.concurrent.Executor;
 
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
 import de.saxsys.synchronizefx.core.clientserver.ServerCallback;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.injvm.InJvmServer;
 import de.saxsys.synchronizefx.kryo.KryoSerializer;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicMultiplexingServer;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicServer;
 import de.saxsys.synchronizefx.netty.tcp.NettyServer;
+import de.saxsys.synchronizefx.netty.unix.NettyDomainSocketServer;
 
 import com.esotericsoftware.kryo.Serializer;
 
@@ -35,11 +47,23 @@ class ServerBuilder implements ServerModelStep, ServerCallbackStep, OptionalServ
     private static final int DEFAULT_PORT = 54263;
 
     private int port = DEFAULT_PORT;
+    private String socketPath;
+    private String inJvmName;
+    private NettyBasicMultiplexingServer multiplexingServer;
+    private String channelName;
     private final KryoSerializer serializer = new KryoSerializer();
+    private de.saxsys.synchronizefx.core.clientserver.Serializer commandSerializer = serializer;
     private ServerCallback callback;
     private Object model;
 
     private Executor changeExecutor;
+    private FrameCompression compression;
+    private NettyTransport transport = NettyTransport.NIO;
+    private NettyEventLoops eventLoops;
+    private SessionResumption sessionResumption;
+    private MulticastLane multicastLane;
+    private FrameLimits frameLimits = new FrameLimits();
+    private TlsContext tls;
 
     @Override
     public OptionalServerStep port(final int port) {
@@ -47,6 +71,25 @@ class ServerBuilder implements ServerModelStep, ServerCallbackStep, OptionalServ
         return this;
     }
 
+    @Override
+    public OptionalServerStep domainSocket(final String socketPath) {
+        this.socketPath = socketPath;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep inJvm(final String serverName) {
+        this.inJvmName = serverName;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep channel(final NettyBasicMultiplexingServer server, final String channelName) {
+        this.multiplexingServer = server;
+        this.channelName = channelName;
+        return this;
+    }
+
     @Override
     public <T> OptionalServerStep customSerializer(final Class<T> clazz, final Serializer<T> serializer) {
         this.serializer.registerSerializableClass(clazz, serializer);
@@ -72,13 +115,75 @@ class ServerBuilder implements ServerModelStep, ServerCallbackStep, OptionalServ
     }
 
     @Override
-    public SynchronizeFxServer build() {
-        final NettyServer netty = new NettyServer(port, serializer);
+    public OptionalServerStep serializer(final de.saxsys.synchronizefx.core.clientserver.Serializer serializer) {
+        this.commandSerializer = serializer;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep compression() {
+        this.compression = new FrameCompression();
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep transport(final NettyTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep eventLoops(final NettyEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep sessionResumption(final SessionResumption sessionResumption) {
+        this.sessionResumption = sessionResumption;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep multicastLane(final MulticastLane multicastLane) {
+        this.multicastLane = multicastLane;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep frameLimits(final FrameLimits frameLimits) {
+        this.frameLimits = frameLimits;
+        return this;
+    }
+
+    @Override
+    public OptionalServerStep tls(final TlsContext tls) {
+        this.tls = tls;
+        return this;
+    }
 
+    @Override
+    public SynchronizeFxServer build() {
+        if (multiplexingServer != null) {
+            return multiplexingServer.newChannel(model, channelName, changeExecutor, callback);
+        }
+        final CommandTransferServer transmitter = inJvmName == null ? buildNettyServer() : new InJvmServer(inJvmName);
         if (changeExecutor == null) {
-            return new SynchronizeFxServer(model, netty, callback);
+            return new SynchronizeFxServer(model, transmitter, callback);
         } else {
-            return new SynchronizeFxServer(model, netty, changeExecutor, callback);
+            return new SynchronizeFxServer(model, transmitter, changeExecutor, callback);
         }
     }
+
+    private NettyBasicServer buildNettyServer() {
+        final NettyBasicServer netty = socketPath == null ? new NettyServer(port, commandSerializer, compression)
+                : new NettyDomainSocketServer(socketPath, commandSerializer, compression);
+        netty.setTransport(transport);
+        netty.setEventLoops(eventLoops);
+        netty.setSessionResumption(sessionResumption);
+        netty.setMulticastLane(multicastLane);
+        netty.setFrameLimits(frameLimits);
+        netty.setTls(tls);
+        return netty;
+    }
 }
@@ -19,14 +19,28 @@
 
 package de.saxsys.synchronizefx;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
 import java.util.concurrent.Executor;
 
 import de.saxsys.synchronizefx.core.clientserver.ClientCallback;
 import de.saxsys.synchronizefx.core.clientserver.ServerCallback;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxClient;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.kryo.KryoSerializer;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
+import de.saxsys.synchronizefx.netty.base.TlsEngine;
+import de.saxsys.synchronizefx.netty.tcp.NettyMultiplexingServer;
 
 import com.esotericsoftware.kryo.Serializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.ssl.SslContext;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -85,7 +99,8 @@ public class SynchronizeFxStepBuilderTest {
         final SynchronizeFxClient client =
                 SynchronizeFxBuilder.create().client().address("192.168.0.1").callback(clientCallback).port(16789)
                         .customSerializer(Double.class, doubleSerializer)
-                        .customSerializer(Integer.class, integerSerializer).build();
+                        .customSerializer(Integer.class, integerSerializer).compression()
+                        .transport(NettyTransport.AUTO).channel("model").build();
         Assert.assertNotNull(client);
     }
 
@@ -108,7 +123,170 @@ public class SynchronizeFxStepBuilderTest {
         final SynchronizeFxServer server =
                 SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
                         .customSerializer(Double.class, doubleSerializer).port(16789)
-                        .customSerializer(Integer.class, integerSerializer).modelChangeExecutor(changeExecutor).build();
+                        .customSerializer(Integer.class, integerSerializer).modelChangeExecutor(changeExecutor)
+                        .compression().transport(NettyTransport.AUTO).build();
         Assert.assertNotNull(server);
     }
+
+    /**
+     * Checks if a client and a server are build with a serializer that replaces the default one.
+     */
+    @Test
+    public void testAlternativeSerializer() {
+        final de.saxsys.synchronizefx.core.clientserver.Serializer serializer =
+                mock(de.saxsys.synchronizefx.core.clientserver.Serializer.class);
+
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .serializer(serializer).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .serializer(serializer).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that share the same event loops.
+     */
+    @Test
+    public void testSharedEventLoops() {
+        final NettyEventLoops eventLoops =
+                new NettyEventLoops(NettyTransport.NIO, mock(EventLoopGroup.class), mock(EventLoopGroup.class));
+
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .eventLoops(eventLoops).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .eventLoops(eventLoops).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that can resume sessions.
+     */
+    @Test
+    public void testSessionResumption() {
+        final SessionResumption sessionResumption = new SessionResumption(16, 1024, 1000);
+
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .sessionResumption(sessionResumption).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .sessionResumption(sessionResumption).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that encrypt their connections.
+     */
+    @Test
+    public void testTls() {
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .tls(TlsContext.insecureClient(TlsEngine.JDK)).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .tls(TlsContext.of(mock(SslContext.class))).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that use custom frame limits.
+     */
+    @Test
+    public void testFrameLimits() {
+        final FrameLimits frameLimits = new FrameLimits(1024 * 1024, 256);
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .frameLimits(frameLimits).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .frameLimits(frameLimits).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that send lossy value changes over a multicast lane.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void testMulticastLane() throws Exception {
+        final NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        final MulticastLane multicastLane =
+                new MulticastLane(new InetSocketAddress("239.255.42.99", 54264), loopback).lossy(Object.class, "value");
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback)
+                        .multicastLane(multicastLane).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .multicastLane(multicastLane).build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that communicate over a Unix domain socket.
+     */
+    @Test
+    public void testDomainSocket() {
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().domainSocket("/tmp/synchronizefx.sock").callback(clientCallback)
+                        .build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .domainSocket("/tmp/synchronizefx.sock").build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if a client and a server are build that communicate inside the same JVM.
+     */
+    @Test
+    public void testInJvm() {
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().inJvm("builder-test").callback(clientCallback).build();
+        final SynchronizeFxServer server =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback).inJvm("builder-test")
+                        .build();
+
+        Assert.assertNotNull(client);
+        Assert.assertNotNull(server);
+    }
+
+    /**
+     * Checks if servers for several domain models are build that share the port of a multiplexing server.
+     */
+    @Test
+    public void testMultiplexingServerChannels() {
+        final NettyMultiplexingServer multiplexing = new NettyMultiplexingServer(16790, new KryoSerializer());
+        final SynchronizeFxServer first =
+                SynchronizeFxBuilder.create().server().model(modelObject).callback(serverCallback)
+                        .channel(multiplexing, "first").build();
+        final SynchronizeFxServer second =
+                SynchronizeFxBuilder.create().server().model(new Object()).callback(serverCallback)
+                        .modelChangeExecutor(changeExecutor).channel(multiplexing, "second").build();
+        final SynchronizeFxClient client =
+                SynchronizeFxBuilder.create().client().address("localhost").callback(clientCallback).port(16790)
+                        .channel("second").build();
+
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNotNull(client);
+    }
 }
@@ -0,0 +1,101 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.injvm;
+
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferClient;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * A {@link CommandTransferClient} that connects to an {@link InJvmServer} in the same JVM.
+ */
+public class InJvmClient implements CommandTransferClient {
+
+    private final String serverName;
+
+    private NetworkToTopologyCallbackClient callback;
+    private volatile InJvmConnection connection;
+
+    /**
+     * Initializes the client.
+     * 
+     * @param serverName The name of the server to connect to.
+     */
+    public InJvmClient(final String serverName) {
+        this.serverName = serverName;
+    }
+
+    @Override
+    public void setTopologyCallback(final NetworkToTopologyCallbackClient callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void connect() throws SynchronizeFXException {
+        final InJvmServer server = InJvmServer.lookup(serverName);
+        if (server == null) {
+            throw new SynchronizeFXException("There is no started in-JVM server with the name " + serverName + ".");
+        }
+        connection = server.connect(this);
+    }
+
+    @Override
+    public void send(final List<Command> commands) {
+        final InJvmConnection current = connection;
+        if (current != null) {
+            current.sendToServer(InJvmServer.share(commands));
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        final InJvmConnection current = connection;
+        connection = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Passes commands received from the server to the topology layer.
+     * 
+     * @param commands The commands.
+     */
+    void recive(final List<Command> commands) {
+        if (connection != null) {
+            callback.recive(commands);
+        }
+    }
+
+    /**
+     * Informs the topology layer that the server was shut down.
+     * 
+     * @param closed The connection that was closed by the server.
+     */
+    void serverShutsDown(final InJvmConnection closed) {
+        if (connection == closed) {
+            connection = null;
+            callback.onServerDisconnect();
+        }
+    }
+}
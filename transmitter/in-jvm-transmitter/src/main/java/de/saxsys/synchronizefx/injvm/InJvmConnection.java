@@ -0,0 +1,139 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.injvm;
+
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * The connection between an {@link InJvmServer} and one of its {@link InJvmClient}s.
+ * 
+ * <p>
+ * Instances of this class represent the client in the server callbacks.
+ * </p>
+ */
+final class InJvmConnection {
+
+    private final InJvmServer server;
+    private final InJvmClient client;
+    private final Mailbox toServer;
+    private final Mailbox toClient;
+    private volatile boolean closed;
+
+    /**
+     * Initializes the connection.
+     * 
+     * @param server The server side of the connection.
+     * @param client The client side of the connection.
+     * @param toServer The mailbox to deliver messages to the server.
+     * @param toClient The mailbox to deliver messages to the client.
+     */
+    InJvmConnection(final InJvmServer server, final InJvmClient client, final Mailbox toServer,
+            final Mailbox toClient) {
+        this.server = server;
+        this.client = client;
+        this.toServer = toServer;
+        this.toClient = toClient;
+    }
+
+    /**
+     * Passes commands from the client to the server.
+     * 
+     * @param commands The commands. They must not be modified afterwards.
+     */
+    void sendToServer(final List<Command> commands) {
+        if (closed) {
+            return;
+        }
+        toServer.post(new Runnable() {
+            @Override
+            public void run() {
+                server.recive(commands, InJvmConnection.this);
+            }
+        });
+    }
+
+    /**
+     * Passes commands from the server to the client.
+     * 
+     * @param commands The commands. They must not be modified afterwards.
+     */
+    void sendToClient(final List<Command> commands) {
+        if (closed) {
+            return;
+        }
+        toClient.post(new Runnable() {
+            @Override
+            public void run() {
+                client.recive(commands);
+            }
+        });
+    }
+
+    /**
+     * Informs the server about the new client.
+     */
+    void open() {
+        toServer.post(new Runnable() {
+            @Override
+            public void run() {
+                server.onConnect(InJvmConnection.this);
+            }
+        });
+    }
+
+    /**
+     * Closes the connection on behalf of the client.
+     */
+    void close() {
+        closed = true;
+        server.disconnect(this);
+    }
+
+    /**
+     * Closes the connection on behalf of the server.
+     * 
+     * <p>
+     * The client is informed after it received all commands that were sent to it before.
+     * </p>
+     */
+    void serverShutsDown() {
+        closed = true;
+        toClient.post(new Runnable() {
+            @Override
+            public void run() {
+                client.serverShutsDown(InJvmConnection.this);
+            }
+        });
+    }
+
+    /**
+     * @return <code>true</code> if the client or the server closed the connection.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "in-JVM client " + System.identityHashCode(client) + " of " + server;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.injvm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * A {@link CommandTransferServer} for {@link InJvmClient}s in the same JVM.
+ * 
+ * <p>
+ * Clients find the server by its name. Commands are passed to them without serializing them. The server uses its own
+ * threads to deliver them so that neither side runs the code of the other side in its threads.
+ * </p>
+ */
+public class InJvmServer implements CommandTransferServer {
+
+    private static final ConcurrentMap<String, InJvmServer> SERVERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final List<InJvmConnection> connections = new CopyOnWriteArrayList<>();
+    private final List<InJvmConnection> clients = new CopyOnWriteArrayList<>();
+
+    private NetworkToTopologyCallbackServer callback;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    /**
+     * Initializes the server.
+     * 
+     * @param name The name clients use to connect to this server. It must be unique among all started servers in
+     *            this JVM.
+     */
+    public InJvmServer(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Looks up a started server.
+     * 
+     * @param name The name of the server.
+     * @return The server or <code>null</code> if no server with this name is started.
+     */
+    static InJvmServer lookup(final String name) {
+        return SERVERS.get(name);
+    }
+
+    @Override
+    public void setTopologyLayerCallback(final NetworkToTopologyCallbackServer callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void start() throws SynchronizeFXException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "SynchronizeFX in-JVM server " + name + " "
+                        + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        running = true;
+        if (SERVERS.putIfAbsent(name, this) != null) {
+            running = false;
+            executor.shutdown();
+            throw new SynchronizeFXException("An in-JVM server with the name " + name + " is already started.");
+        }
+    }
+
+    /**
+     * Connects a new client to this server.
+     * 
+     * @param client The client.
+     * @return The connection to the client.
+     * @throws SynchronizeFXException When the server was shut down.
+     */
+    InJvmConnection connect(final InJvmClient client) throws SynchronizeFXException {
+        if (!running) {
+            throw new SynchronizeFXException("The in-JVM server " + name + " was shut down.");
+        }
+        final InJvmConnection connection =
+                new InJvmConnection(this, client, new Mailbox(executor), new Mailbox(executor));
+        connections.add(connection);
+        connection.open();
+        return connection;
+    }
+
+    /**
+     * Informs the topology layer about a new client.
+     * 
+     * @param connection The connection to the client.
+     */
+    void onConnect(final InJvmConnection connection) {
+        if (!connection.isClosed()) {
+            callback.onConnect(connection);
+        }
+    }
+
+    /**
+     * Passes commands received from a client to the topology layer.
+     * 
+     * @param commands The commands.
+     * @param connection The connection to the client that sent them.
+     */
+    void recive(final List<Command> commands, final InJvmConnection connection) {
+        if (!connection.isClosed()) {
+            callback.recive(commands, connection);
+        }
+    }
+
+    /**
+     * Removes a client that closed its connection.
+     * 
+     * @param connection The connection to the client.
+     */
+    void disconnect(final InJvmConnection connection) {
+        connections.remove(connection);
+        clients.remove(connection);
+    }
+
+    @Override
+    public void onConnectFinished(final Object client) {
+        clients.add((InJvmConnection) client);
+    }
+
+    @Override
+    public void sendToAll(final List<Command> commands) {
+        final List<Command> shared = share(commands);
+        for (final InJvmConnection client : clients) {
+            client.sendToClient(shared);
+        }
+    }
+
+    @Override
+    public void send(final List<Command> commands, final Object client) {
+        ((InJvmConnection) client).sendToClient(share(commands));
+    }
+
+    @Override
+    public void sendToAllExcept(final List<Command> commands, final Object nonReciver) {
+        final List<Command> shared = share(commands);
+        for (final InJvmConnection client : clients) {
+            if (client != nonReciver) {
+                client.sendToClient(shared);
+            }
+        }
+    }
+
+    /**
+     * Copies commands into a list that can be passed to any number of receivers.
+     * 
+     * @param commands The commands.
+     * @return An unmodifiable copy of the commands.
+     */
+    static List<Command> share(final List<Command> commands) {
+        return Collections.unmodifiableList(new ArrayList<>(commands));
+    }
+
+    @Override
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        SERVERS.remove(name, this);
+        for (final InJvmConnection connection : connections) {
+            connection.serverShutsDown();
+        }
+        connections.clear();
+        clients.clear();
+        // Already posted messages are still delivered.
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "in-JVM server " + name;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.injvm;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks one after another in the order they were posted without blocking the threads that post them.
+ * 
+ * <p>
+ * Tasks are added to a lock-free queue. The first task posted to an empty mailbox schedules a drain of the queue on
+ * the executor so that at most one thread runs the tasks of a mailbox at a time.
+ * </p>
+ */
+final class Mailbox {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Mailbox.class);
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Executor executor;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Initializes the mailbox.
+     * 
+     * @param executor The executor to run the tasks with.
+     */
+    Mailbox(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a task to run after all tasks that were posted before.
+     * 
+     * @param task The task.
+     * @return <code>true</code> if the task will be run and <code>false</code> if the executor does not accept tasks
+     *         anymore.
+     */
+    boolean post(final Runnable task) {
+        tasks.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(drain);
+            } catch (final RejectedExecutionException e) {
+                tasks.clear();
+                pending.set(0);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        do {
+            try {
+                tasks.poll().run();
+            } catch (final RuntimeException e) {
+                // Following tasks must still be run.
+                LOG.error("A task failed.", e);
+            }
+        } while (pending.decrementAndGet() != 0);
+    }
+}
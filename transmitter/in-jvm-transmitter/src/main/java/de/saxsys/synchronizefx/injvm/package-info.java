@@ -0,0 +1,32 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A {@link de.saxsys.synchronizefx.core.clientserver.CommandTransferServer} and a
+ * {@link de.saxsys.synchronizefx.core.clientserver.CommandTransferClient} for servers and clients in the same JVM.
+ * 
+ * <p>
+ * Commands are passed as objects instead of being serialized. Each direction of a connection is a lock-free queue
+ * that is drained by a thread of the server. The lists of commands are copied into unmodifiable lists once and then
+ * shared by all receivers. SynchronizeFX never modifies commands after they were created but values of properties
+ * that are not observable objects are shared by reference between the server and its clients. These values should
+ * therefore be immutable, like <code>String</code>s, <code>Integer</code>s or enums.
+ * </p>
+ */
+package de.saxsys.synchronizefx.injvm;
@@ -0,0 +1,181 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.injvm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link InJvmServer} and {@link InJvmClient} pass commands between each other.
+ */
+public class InJvmTransmitterTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final String name = UUID.randomUUID().toString();
+    private final RecordingServerCallback serverCallback = new RecordingServerCallback();
+    private final RecordingClientCallback clientCallback = new RecordingClientCallback();
+
+    private InJvmServer server;
+    private InJvmClient client;
+
+    /**
+     * Starts a server and connects a client to it.
+     * 
+     * @throws Exception not expected
+     */
+    @Before
+    public void connect() throws Exception {
+        server = new InJvmServer(name);
+        server.setTopologyLayerCallback(serverCallback);
+        server.start();
+
+        client = new InJvmClient(name);
+        client.setTopologyCallback(clientCallback);
+        client.connect();
+        assertThat(serverCallback.connected.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Shuts the server down.
+     */
+    @After
+    public void shutdown() {
+        server.shutdown();
+    }
+
+    /**
+     * Commands should be passed in order as the same objects in unmodifiable lists.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldPassTheSameCommandsInOrder() throws Exception {
+        final Command first = new ClearReferences();
+        final Command second = new ClearReferences();
+
+        client.send(Arrays.asList(first));
+        client.send(Arrays.asList(second));
+        server.sendToAll(Arrays.asList(first, second));
+
+        assertThat(serverCallback.received.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(clientCallback.received.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(serverCallback.commands).containsExactly(first, second);
+        assertThat(clientCallback.commands).containsExactly(first, second);
+        assertThat(clientCallback.unmodifiable).isTrue();
+    }
+
+    /**
+     * Clients should be informed when the server shuts down.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldInformClientsAboutShutdown() throws Exception {
+        server.shutdown();
+
+        assertThat(clientCallback.disconnected.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Names of started servers must be unique.
+     * 
+     * @throws Exception expected
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldFailToStartTwoServersWithTheSameName() throws Exception {
+        new InJvmServer(name).start();
+    }
+
+    /**
+     * Records what the server receives.
+     */
+    private class RecordingServerCallback implements NetworkToTopologyCallbackServer {
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private final CountDownLatch received = new CountDownLatch(2);
+        private final List<Command> commands = new ArrayList<>();
+
+        @Override
+        public void recive(final List<Command> newCommands, final Object sender) {
+            commands.addAll(newCommands);
+            received.countDown();
+        }
+
+        @Override
+        public void onConnect(final Object newClient) {
+            server.onConnectFinished(newClient);
+            connected.countDown();
+        }
+
+        @Override
+        public void onClientConnectionError(final Object failedClient, final SynchronizeFXException e) {
+        }
+
+        @Override
+        public void onFatalError(final SynchronizeFXException e) {
+        }
+    }
+
+    /**
+     * Records what the client receives.
+     */
+    private static class RecordingClientCallback implements NetworkToTopologyCallbackClient {
+        private final CountDownLatch received = new CountDownLatch(1);
+        private final CountDownLatch disconnected = new CountDownLatch(1);
+        private final List<Command> commands = new ArrayList<>();
+        private boolean unmodifiable;
+
+        @Override
+        public void recive(final List<Command> newCommands) {
+            commands.addAll(newCommands);
+            try {
+                newCommands.clear();
+            } catch (final UnsupportedOperationException e) {
+                unmodifiable = true;
+            }
+            received.countDown();
+        }
+
+        @Override
+        public void onError(final SynchronizeFXException e) {
+        }
+
+        @Override
+        public void onServerDisconnect() {
+            disconnected.countDown();
+        }
+    }
+}
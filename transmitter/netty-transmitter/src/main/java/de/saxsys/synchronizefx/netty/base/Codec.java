@@ -40,10 +40,12 @@ public interface Codec {
      * Data recieved over the network enteres the handlers as it comes in in the form of {@link ByteBuf}s. Usually a
      * large message will be recieved in multiple small chunks. A chunk can also contain data of multiple messages.
      * The handlers added to this pipeline must ensure that further handlers recieve coherent {@link Serializer}
-     * messages in form of {@link ByteBuf}s.
+     * messages in form of {@link ByteBuf}s. Messages that are larger than {@link FrameLimits#getMaxFrameSize()}
+     * must be rejected before they are read into memory as a whole.
      * </p>
      * 
      * @param pipeline The pipeline to add the handler to.
+     * @param limits The limits for the messages of the connection.
      */
-    void addToPipeline(ChannelPipeline pipeline);
+    void addToPipeline(ChannelPipeline pipeline, FrameLimits limits);
 }
@@ -19,53 +19,175 @@
 
 package de.saxsys.synchronizefx.netty.base;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
 
 /**
  * Translates Netty {@link ByteBuf}s to {@link List}s of SynchronizeFX {@link Command}s using a {@link Serializer}.
  * 
+ * <p>
+ * Commands are serialized directly into buffers of the channels allocator and deserialized directly from the
+ * received buffers. Received buffers that consist of a single memory region are passed to the serializer as
+ * {@link java.nio.ByteBuffer} views so that neither heap nor direct buffers are copied. Buffers that are composed of
+ * several regions, like reassembled fragmented websocket frames, are streamed. {@link Serializer}s that are no
+ * {@link StreamingSerializer}s are adapted with {@link StreamingSerializerAdapter}.
+ * </p>
+ * 
+ * <p>
+ * When the size of buffers is limited, lists of commands are split into several buffers before they are serialized.
+ * The number of commands per buffer is estimated from the size of the commands serialized so far so that a buffer
+ * is filled to half the maximum frame size on average. For connection serializers the estimate is the largest one
+ * seen so far. The commands keep their order, so the peer executes them as if they were sent in a single buffer.
+ * The output of a connection serializer is never discarded, because the serializer may have recorded handles or
+ * schemas for it that the peer must receive. When a buffer of such a serializer exceeds the limit anyway, no buffer
+ * of the list is written and the channel is closed.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this codec. If the serializer is a {@link ConnectionScopedSerializer}, the
+ * codec uses a connection serializer for its channel.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 public class CommandToBinaryByteBuf extends MessageToMessageCodec<ByteBuf, List<Command>> {
 
-    private final Serializer serializer;
+    private static final int INITIAL_BYTES_PER_COMMAND = 1024;
+
+    private final StreamingSerializer serializer;
+    private final boolean stateful;
+    private final int maxFrameSize;
+    private int bytesPerCommand = INITIAL_BYTES_PER_COMMAND;
 
     /**
-     * Initializes the codec.
+     * Initializes a codec that does not limit the size of the buffers it creates.
      * 
      * @param serializer The implementation for serializing and deserializing <code>byte[]</code> to SynchronizeFX
      *            commands.
      */
     public CommandToBinaryByteBuf(final Serializer serializer) {
-        this.serializer = serializer;
+        this(serializer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Initializes the codec.
+     * 
+     * @param serializer The implementation for serializing and deserializing <code>byte[]</code> to SynchronizeFX
+     *            commands.
+     * @param maxFrameSize The size in bytes of the largest buffer this codec creates.
+     */
+    public CommandToBinaryByteBuf(final Serializer serializer, final int maxFrameSize) {
+        final Serializer channelSerializer = serializer instanceof ConnectionScopedSerializer
+                ? ((ConnectionScopedSerializer) serializer).newConnectionSerializer() : serializer;
+        this.serializer = StreamingSerializerAdapter.adapt(channelSerializer);
+        this.stateful = channelSerializer != serializer;
+        this.maxFrameSize = maxFrameSize;
     }
 
     @Override
     protected void decode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out) throws Exception {
-        byte[] data;
-        if (msg.hasArray()) {
-            data = msg.array();
+        if (msg.nioBufferCount() == 1) {
+            // Heap, direct and single component buffers expose their readable bytes without copying them.
+            final int readable = msg.readableBytes();
+            out.add(serializer.deserialize(msg.nioBuffer(msg.readerIndex(), readable)));
+            msg.skipBytes(readable);
         } else {
-            data = new byte[msg.readableBytes()];
-            msg.readBytes(data);
+            out.add(serializer.deserialize(new ByteBufInputStream(msg)));
         }
-
-        out.add(serializer.deserialize(data));
     }
 
     @Override
     protected void encode(final ChannelHandlerContext ctx, final List<Command> msg, final List<Object> out)
         throws Exception {
-        final ByteBuf buffer = Unpooled.wrappedBuffer(serializer.serialize(msg));
-        buffer.retain();
-        out.add(buffer);
+        if (maxFrameSize == Integer.MAX_VALUE) {
+            out.add(serialize(serializer, msg, ctx.alloc()));
+            return;
+        }
+        final List<ByteBuf> frames = new ArrayList<>();
+        try {
+            encodeBounded(msg, ctx.alloc(), frames);
+        } catch (final RuntimeException e) {
+            for (final ByteBuf frame : frames) {
+                frame.release();
+            }
+            if (stateful) {
+                // The peer would not know the handles and schemas the serializer recorded for the discarded buffers.
+                ctx.close();
+            }
+            throw e;
+        }
+        out.addAll(frames);
+    }
+
+    private void encodeBounded(final List<Command> commands, final ByteBufAllocator allocator,
+            final List<ByteBuf> frames) {
+        int start = 0;
+        while (start < commands.size()) {
+            final int count = Math.min(commands.size() - start, Math.max(1, maxFrameSize / 2 / bytesPerCommand));
+            final ByteBuf buffer = serialize(serializer, commands.subList(start, start + count), allocator);
+            final int size = buffer.readableBytes();
+            final int average = Math.max(1, (size + count - 1) / count);
+            // Connection serializers can't retry, so their estimate only grows to keep the risk of a failure low.
+            bytesPerCommand = stateful ? Math.max(bytesPerCommand, average) : average;
+            if (size <= maxFrameSize) {
+                frames.add(buffer);
+                start += count;
+                continue;
+            }
+            buffer.release();
+            if (count == 1) {
+                throw new TooLongFrameException("A single command needs " + size
+                        + " bytes in serialized form which exceeds the maximum frame size of " + maxFrameSize
+                        + " bytes.");
+            }
+            if (stateful) {
+                throw new TooLongFrameException(count + " commands needed " + size
+                        + " bytes in serialized form which exceeds the maximum frame size of " + maxFrameSize
+                        + " bytes. They can't be serialized again in smaller parts by a connection serializer.");
+            }
+            // Stateless serializers can serialize the same commands again. The new estimate yields smaller parts.
+        }
+        if (commands.isEmpty()) {
+            frames.add(serialize(serializer, commands, allocator));
+        }
+    }
+
+    /**
+     * Serializes commands into a new buffer in the same form as this codec does.
+     * 
+     * <p>
+     * This allows to serialize commands once and write the resulting buffer to several channels. The buffer passes
+     * this codec unchanged.
+     * </p>
+     * 
+     * @param serializer The serializer to use.
+     * @param commands The commands to serialize.
+     * @param allocator The allocator for the buffer.
+     * @return The buffer containing the serialized commands. The caller is responsible for releasing it.
+     */
+    public static ByteBuf serialize(final StreamingSerializer serializer, final List<Command> commands,
+        final ByteBufAllocator allocator) {
+        final ByteBuf buffer = allocator.buffer();
+        try {
+            serializer.serialize(commands, new ByteBufOutputStream(buffer));
+        } catch (final RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
     }
 }
@@ -0,0 +1,93 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * The settings for combining the flushes of a connection into fewer writes to the socket.
+ * 
+ * <p>
+ * Each batch of commands is written and flushed on its own. When many small batches are sent in a short time, every
+ * flush results in a system call and usually an own TCP segment. With flush batching, flushes are delayed until the
+ * current iteration of the event loop is over. All commands written in the meantime are flushed together. To keep
+ * the latency predictable, pending writes are flushed at the latest when {@link #getMaxPendingFlushes()} flushes
+ * where requested.
+ * </p>
+ * 
+ * <p>
+ * Delaying flushes adds latency to single commands on otherwise idle connections, so flush batching is disabled by
+ * default. It pays off for connections that carry many small batches of commands.
+ * </p>
+ * 
+ * @see FlushConsolidationHandler
+ */
+public final class FlushBatching {
+
+    /**
+     * The default number of flushes after which pending writes are flushed immediately.
+     */
+    public static final int DEFAULT_MAX_PENDING_FLUSHES = 256;
+
+    private final int maxPendingFlushes;
+
+    /**
+     * Initializes settings that flush at the latest after {@link #DEFAULT_MAX_PENDING_FLUSHES} requested flushes.
+     */
+    public FlushBatching() {
+        this(DEFAULT_MAX_PENDING_FLUSHES);
+    }
+
+    /**
+     * Initializes flush batching settings.
+     * 
+     * @param maxPendingFlushes The number of requested flushes after which pending writes are flushed immediately.
+     * @throws IllegalArgumentException When <code>maxPendingFlushes</code> is not positive.
+     */
+    public FlushBatching(final int maxPendingFlushes) {
+        if (maxPendingFlushes < 1) {
+            throw new IllegalArgumentException("The maximal number of pending flushes must be positive.");
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+    }
+
+    /**
+     * @return The number of requested flushes after which pending writes are flushed immediately.
+     */
+    public int getMaxPendingFlushes() {
+        return maxPendingFlushes;
+    }
+
+    /**
+     * Creates a handler that combines the flushes of a channel with these settings.
+     * 
+     * <p>
+     * The handler must be placed in front of all handlers that flush. Each channel needs its own handler.
+     * </p>
+     * 
+     * @return The handler.
+     */
+    public ChannelHandler newHandler() {
+        // Commands are written by the model thread and not while reading, so flushes outside of reads are combined
+        // as well.
+        return new FlushConsolidationHandler(maxPendingFlushes, true);
+    }
+}
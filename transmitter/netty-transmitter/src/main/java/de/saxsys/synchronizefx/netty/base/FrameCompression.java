@@ -0,0 +1,85 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.util.zip.Deflater;
+
+/**
+ * The settings for compressing the frames a peer sends over a connection.
+ * 
+ * <p>
+ * Frames are compressed with a single deflate stream per connection and direction. The dictionary of this stream is
+ * kept across frames so that repetitive changes like updates to the same properties compress well. Frames that are
+ * smaller than {@link #getThreshold()} bytes are sent uncompressed.
+ * </p>
+ * 
+ * @see FrameCompressionHandler
+ */
+public final class FrameCompression {
+
+    /**
+     * The default size in bytes below which frames are not compressed.
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    private final int threshold;
+    private final int level;
+
+    /**
+     * Initializes compression settings with the {@link #DEFAULT_THRESHOLD} and the default compression level of
+     * {@link Deflater}.
+     */
+    public FrameCompression() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Initializes compression settings.
+     * 
+     * @param threshold The size in bytes below which frames are sent uncompressed.
+     * @param level The compression level from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException When the threshold is negative or the level is out of range.
+     */
+    public FrameCompression(final int threshold, final int level) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The compression threshold must not be negative.");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("The compression level must be between 0 and 9.");
+        }
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * @return The size in bytes below which frames are sent uncompressed.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return The compression level passed to the {@link Deflater}.
+     */
+    public int getLevel() {
+        return level;
+    }
+}
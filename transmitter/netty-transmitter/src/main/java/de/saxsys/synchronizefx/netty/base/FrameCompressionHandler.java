@@ -0,0 +1,256 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Optionally compresses the frames of a connection with a deflate stream that persists across frames.
+ * 
+ * <p>
+ * This handler must be placed between the handlers that split the incoming data into frames and the
+ * {@link CommandToBinaryByteBuf}. It changes the format of the frames, so both peers of a connection need this
+ * handler or neither does. Connections without compression don't use it and keep the plain frame format. Each frame
+ * is prefixed with a single byte that tells whether it is raw or deflated.
+ * </p>
+ * 
+ * <p>
+ * When the channel becomes active, each peer sends a hello frame announcing that it accepts deflated frames. The
+ * channel active event is not passed to the following handlers until the hello frame of the other peer was received.
+ * This way the server knows whether it may compress before it sends the initial domain model and a peer that does
+ * not use compression is detected before any commands are exchanged. Frames are only compressed if the other peer
+ * accepts deflated frames and the frame is at least {@link FrameCompression#getThreshold()} bytes large.
+ * </p>
+ * 
+ * <p>
+ * Deflated frames are inflated only up to the maximum frame size so that small frames can't expand to arbitrarily
+ * large ones.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this handler.
+ * </p>
+ */
+public class FrameCompressionHandler extends MessageToMessageCodec<ByteBuf, ByteBuf> {
+
+    private static final byte HELLO = 0;
+    private static final byte RAW = 1;
+    private static final byte DEFLATED = 2;
+
+    private static final int ACCEPTS_DEFLATED = 1;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final FrameCompression compression;
+    private final int maxFrameSize;
+
+    private boolean helloReceived;
+    private boolean peerAcceptsDeflated;
+    private Deflater deflater;
+    private Inflater inflater;
+
+    /**
+     * Initializes the handler.
+     * 
+     * @param compression The settings for compressing outgoing frames.
+     */
+    public FrameCompressionHandler(final FrameCompression compression) {
+        this(compression, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Initializes the handler.
+     * 
+     * @param compression The settings for compressing outgoing frames.
+     * @param maxFrameSize The size in bytes up to which incoming frames are inflated.
+     */
+    public FrameCompressionHandler(final FrameCompression compression, final int maxFrameSize) {
+        this.compression = compression;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * The size in bytes that a frame produced by this handler can have at most.
+     * 
+     * <p>
+     * Deflating data that can't be compressed makes it slightly larger. The result includes this overhead and the
+     * header of the frame.
+     * </p>
+     * 
+     * @param maxFrameSize The size in bytes of the largest frame passed to this handler.
+     * @return The size of the largest frame this handler passes on.
+     */
+    public static int maxEncodedSize(final int maxFrameSize) {
+        // The bound zlib uses for raw deflate streams plus the marker of a sync flush and the frame header.
+        final long bound = (long) maxFrameSize + (maxFrameSize >> 12) + (maxFrameSize >> 14) + (maxFrameSize >> 25)
+                + 13 + 5 + 1;
+        return (int) Math.min(bound, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        final ByteBuf hello = ctx.alloc().buffer(2).writeByte(HELLO).writeByte(ACCEPTS_DEFLATED);
+        ctx.writeAndFlush(hello).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        end();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        end();
+    }
+
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out)
+        throws Exception {
+        if (!peerAcceptsDeflated || msg.readableBytes() < compression.getThreshold()) {
+            final ByteBuf header = ctx.alloc().buffer(1).writeByte(RAW);
+            out.add(ctx.alloc().compositeBuffer(2).addComponents(true, header, msg.retain()));
+        } else {
+            out.add(deflate(ctx, msg));
+        }
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out) throws Exception {
+        if (!msg.isReadable()) {
+            throw new CorruptedFrameException("Received an empty frame.");
+        }
+        final byte type = msg.readByte();
+        if (!helloReceived) {
+            if (type != HELLO || !msg.isReadable()) {
+                throw new CorruptedFrameException("The peer did not start the connection with a valid hello frame.");
+            }
+            helloReceived = true;
+            peerAcceptsDeflated = (msg.readByte() & ACCEPTS_DEFLATED) != 0;
+            ctx.fireChannelActive();
+            return;
+        }
+        switch (type) {
+            case RAW:
+                out.add(msg.retain());
+                break;
+            case DEFLATED:
+                out.add(inflate(ctx, msg));
+                break;
+            default:
+                throw new CorruptedFrameException("Received a frame of the unknown type " + type + ".");
+        }
+    }
+
+    private ByteBuf deflate(final ChannelHandlerContext ctx, final ByteBuf msg) {
+        if (deflater == null) {
+            deflater = new Deflater(compression.getLevel(), true);
+        }
+        if (msg.hasArray()) {
+            deflater.setInput(msg.array(), msg.arrayOffset() + msg.readerIndex(), msg.readableBytes());
+        } else {
+            deflater.setInput(toArray(msg));
+        }
+
+        final ByteBuf frame = ctx.alloc().heapBuffer(Math.min(msg.readableBytes(), CHUNK_SIZE) + 1);
+        try {
+            frame.writeByte(DEFLATED);
+            int writable;
+            int written;
+            do {
+                frame.ensureWritable(CHUNK_SIZE);
+                writable = frame.writableBytes();
+                written = deflater.deflate(frame.array(), frame.arrayOffset() + frame.writerIndex(), writable,
+                        Deflater.SYNC_FLUSH);
+                frame.writerIndex(frame.writerIndex() + written);
+            } while (written == writable);
+            return frame;
+        } catch (final RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+    }
+
+    private ByteBuf inflate(final ChannelHandlerContext ctx, final ByteBuf msg) throws DataFormatException {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        if (msg.hasArray()) {
+            inflater.setInput(msg.array(), msg.arrayOffset() + msg.readerIndex(), msg.readableBytes());
+        } else {
+            inflater.setInput(toArray(msg));
+        }
+
+        final ByteBuf frame =
+                ctx.alloc().heapBuffer((int) Math.min((long) msg.readableBytes() * 2, maxFrameSize) + CHUNK_SIZE);
+        boolean success = false;
+        try {
+            int writable;
+            int read;
+            do {
+                frame.ensureWritable(CHUNK_SIZE);
+                writable = frame.writableBytes();
+                read = inflater.inflate(frame.array(), frame.arrayOffset() + frame.writerIndex(), writable);
+                frame.writerIndex(frame.writerIndex() + read);
+                if (frame.readableBytes() > maxFrameSize) {
+                    throw new TooLongFrameException("A compressed frame inflates to more than the maximum frame "
+                            + "size of " + maxFrameSize + " bytes.");
+                }
+            } while (read == writable);
+            if (!inflater.needsInput() || inflater.finished() || inflater.needsDictionary()) {
+                throw new CorruptedFrameException("The compressed frame ended unexpectedly.");
+            }
+            success = true;
+            return frame;
+        } finally {
+            if (!success) {
+                frame.release();
+            }
+        }
+    }
+
+    private byte[] toArray(final ByteBuf msg) {
+        final byte[] array = new byte[msg.readableBytes()];
+        msg.getBytes(msg.readerIndex(), array);
+        return array;
+    }
+
+    private void end() {
+        peerAcceptsDeflated = false;
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+/**
+ * The limits for the frames that are exchanged over a connection.
+ * 
+ * <p>
+ * Each frame contains the serialized form of a list of commands. Lists whose serialized form is larger than
+ * {@link #getMaxFrameSize()} bytes are split into several frames before they are sent. Received frames that are
+ * larger are rejected without reading them into memory and the connection is closed. This protects peers from
+ * running out of memory because of malicious or unexpectedly large messages. A single command that is larger than
+ * the limit can't be sent.
+ * </p>
+ * 
+ * <p>
+ * The initial state of the domain model is sent to new clients in chunks of {@link #getCommandsPerChunk()}
+ * commands. A chunk is only serialized when the connection can take further data, so that a large domain model is
+ * never held in serialized form as a whole. The client executes the chunks in order as they arrive.
+ * </p>
+ * 
+ * <p>
+ * Servers and clients should use the same limits.
+ * </p>
+ */
+public final class FrameLimits {
+
+    /**
+     * The default size in bytes of the largest frame that is sent or accepted.
+     */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default number of commands of the initial domain model that are sent in a single frame.
+     */
+    public static final int DEFAULT_COMMANDS_PER_CHUNK = 1024;
+
+    private final int maxFrameSize;
+    private final int commandsPerChunk;
+
+    /**
+     * Initializes limits with {@link #DEFAULT_MAX_FRAME_SIZE} and {@link #DEFAULT_COMMANDS_PER_CHUNK}.
+     */
+    public FrameLimits() {
+        this(DEFAULT_MAX_FRAME_SIZE, DEFAULT_COMMANDS_PER_CHUNK);
+    }
+
+    /**
+     * Initializes frame limits.
+     * 
+     * @param maxFrameSize The size in bytes of the largest serialized list of commands that is sent or accepted in a
+     *            single frame.
+     * @param commandsPerChunk The number of commands of the initial domain model that are sent in a single frame.
+     * @throws IllegalArgumentException When one of the arguments is not positive.
+     */
+    public FrameLimits(final int maxFrameSize, final int commandsPerChunk) {
+        if (maxFrameSize < 1) {
+            throw new IllegalArgumentException("The maximum frame size must be positive.");
+        }
+        if (commandsPerChunk < 1) {
+            throw new IllegalArgumentException("The number of commands per chunk must be positive.");
+        }
+        this.maxFrameSize = maxFrameSize;
+        this.commandsPerChunk = commandsPerChunk;
+    }
+
+    /**
+     * @return The size in bytes of the largest serialized list of commands that is sent or accepted in a single
+     *         frame.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * @return The number of commands of the initial domain model that are sent in a single frame.
+     */
+    public int getCommandsPerChunk() {
+        return commandsPerChunk;
+    }
+}
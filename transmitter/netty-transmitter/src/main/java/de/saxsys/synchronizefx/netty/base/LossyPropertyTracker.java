@@ -0,0 +1,110 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+
+/**
+ * Learns the ids of the properties that are declared as lossy in a {@link MulticastLane} from the commands that
+ * create observable objects.
+ * 
+ * <p>
+ * The commands that create an object always pass the TCP connection before any change of its properties can be sent
+ * over the multicast lane. The ids of properties of objects that are no longer part of the domain model are kept.
+ * This class is Thread-safe.
+ * </p>
+ */
+public final class LossyPropertyTracker {
+
+    private final MulticastLane lane;
+    private final Set<UUID> lossyProperties = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+    private final ConcurrentMap<String, Set<String>> lossyFieldsByClass = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes the tracker.
+     * 
+     * @param lane The settings that declare the lossy properties.
+     */
+    public LossyPropertyTracker(final MulticastLane lane) {
+        this.lane = lane;
+    }
+
+    /**
+     * Remembers the lossy properties of the objects that are created by commands.
+     * 
+     * @param commands The commands that passed the TCP connection.
+     */
+    public void learn(final List<Command> commands) {
+        for (final Command command : commands) {
+            if (!(command instanceof CreateObservableObject)) {
+                continue;
+            }
+            final CreateObservableObject creation = (CreateObservableObject) command;
+            final Set<String> lossyFields = lossyFieldsOf(creation.getClassName());
+            if (lossyFields.isEmpty() || creation.getPropertyNameToId() == null) {
+                continue;
+            }
+            for (final Map.Entry<String, UUID> property : creation.getPropertyNameToId().entrySet()) {
+                if (lossyFields.contains(property.getKey())) {
+                    lossyProperties.add(property.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a command may be sent over the multicast lane.
+     * 
+     * @param command The command.
+     * @return <code>true</code> if the command changes a known lossy property to a value that is no observable
+     *         object.
+     */
+    public boolean isLossy(final Command command) {
+        if (!(command instanceof SetPropertyValue)) {
+            return false;
+        }
+        final SetPropertyValue change = (SetPropertyValue) command;
+        return change.getValue() != null && change.getValue().isSimpleObject()
+                && lossyProperties.contains(change.getPropertyId());
+    }
+
+    private Set<String> lossyFieldsOf(final String className) {
+        Set<String> fields = lossyFieldsByClass.get(className);
+        if (fields == null) {
+            try {
+                fields = lane.lossyFieldsOf(Class.forName(className));
+            } catch (final ClassNotFoundException e) {
+                fields = Collections.emptySet();
+            }
+            lossyFieldsByClass.putIfAbsent(className, fields);
+        }
+        return fields;
+    }
+}
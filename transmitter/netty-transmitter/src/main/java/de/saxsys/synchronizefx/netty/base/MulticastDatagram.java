@@ -0,0 +1,129 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+/**
+ * A datagram of the {@link MulticastLane}.
+ * 
+ * <p>
+ * A datagram starts with a magic number, the id of the server that sent it and a sequence number that the server
+ * increases for each datagram. The serialized commands follow.
+ * </p>
+ */
+public final class MulticastDatagram {
+
+    /**
+     * The maximal size of a datagram in bytes. This avoids fragmentation on the usual local networks.
+     */
+    public static final int MAX_SIZE = 1400;
+
+    private static final int MAGIC = 0x53465844;
+    private static final int HEADER_SIZE = 20;
+
+    private final long serverId;
+    private final long sequence;
+    private final List<Command> commands;
+
+    private MulticastDatagram(final long serverId, final long sequence, final List<Command> commands) {
+        this.serverId = serverId;
+        this.sequence = sequence;
+        this.commands = commands;
+    }
+
+    /**
+     * Writes commands into a new datagram.
+     * 
+     * @param serializer The serializer for the commands.
+     * @param serverId The id of the sending server.
+     * @param sequence The sequence number of the datagram.
+     * @param commands The commands.
+     * @param allocator The allocator for the buffer.
+     * @return The content of the datagram. The caller is responsible for releasing it.
+     * @throws SynchronizeFXException When the commands could not be serialized.
+     */
+    public static ByteBuf encode(final StreamingSerializer serializer, final long serverId, final long sequence,
+            final List<Command> commands, final ByteBufAllocator allocator) throws SynchronizeFXException {
+        final ByteBuf buffer = allocator.buffer();
+        try {
+            buffer.writeInt(MAGIC).writeLong(serverId).writeLong(sequence);
+            serializer.serialize(commands, new ByteBufOutputStream(buffer));
+        } catch (final RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads the content of a datagram.
+     * 
+     * @param serializer The serializer for the commands.
+     * @param content The content of the datagram.
+     * @return The datagram or <code>null</code> if the content is no datagram of a multicast lane.
+     * @throws SynchronizeFXException When the commands could not be deserialized.
+     */
+    public static MulticastDatagram decode(final StreamingSerializer serializer, final ByteBuf content)
+        throws SynchronizeFXException {
+        if (content.readableBytes() < HEADER_SIZE || content.readInt() != MAGIC) {
+            return null;
+        }
+        final long serverId = content.readLong();
+        final long sequence = content.readLong();
+        final List<Command> commands;
+        if (content.nioBufferCount() == 1) {
+            commands = serializer.deserialize(content.nioBuffer());
+        } else {
+            commands = serializer.deserialize(new ByteBufInputStream(content));
+        }
+        return new MulticastDatagram(serverId, sequence, commands);
+    }
+
+    /**
+     * @return The id of the server that sent the datagram.
+     */
+    public long getServerId() {
+        return serverId;
+    }
+
+    /**
+     * @return The sequence number of the datagram.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The commands in the datagram.
+     */
+    public List<Command> getCommands() {
+        return commands;
+    }
+}
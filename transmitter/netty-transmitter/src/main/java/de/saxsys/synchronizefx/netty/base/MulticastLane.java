@@ -0,0 +1,183 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The settings for sending changes of frequently updated properties to all clients as UDP multicast datagrams.
+ * 
+ * <p>
+ * Properties like cursor positions or values of sliders may change many times a second while only their latest
+ * value is of interest. Sending each change over the TCP connection of every client costs the server a write per
+ * client. With a multicast lane, value changes of properties declared as lossy with
+ * {@link #lossy(Class, String...)} are sent once to a multicast group instead. Each datagram carries a sequence
+ * number so that clients drop datagrams that are older than the last value they applied for a property.
+ * </p>
+ * 
+ * <p>
+ * Datagrams may get lost. The TCP connections remain the source of truth: the creation of objects and all other
+ * changes are still sent over them and the latest values of lossy properties that changed are sent over them every
+ * {@link #getRefreshIntervalMillis()} milliseconds. Changes that don't fit into a single datagram or that reference
+ * observable objects are sent over TCP too.
+ * </p>
+ * 
+ * <p>
+ * The server and the clients must use the same settings. Each server needs its own group or port. The multicast
+ * lane always uses the NIO transport.
+ * </p>
+ */
+public final class MulticastLane {
+
+    /**
+     * The default interval in milliseconds in which the latest values of changed lossy properties are sent over TCP.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The default time to live of datagrams which keeps them in the local network.
+     */
+    public static final int DEFAULT_TIME_TO_LIVE = 1;
+
+    private static final int MAX_TIME_TO_LIVE = 255;
+
+    private final InetSocketAddress group;
+    private final NetworkInterface networkInterface;
+    private final long refreshIntervalMillis;
+    private final int timeToLive;
+    private final Map<Class<?>, Set<String>> lossyFields = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes settings with {@link #DEFAULT_REFRESH_INTERVAL_MILLIS} and {@link #DEFAULT_TIME_TO_LIVE}.
+     * 
+     * @param group The address of the multicast group and the port to send the datagrams to.
+     * @param networkInterface The network interface to send and receive the datagrams on.
+     * @throws IllegalArgumentException When <code>group</code> is no multicast address or
+     *             <code>networkInterface</code> is <code>null</code>.
+     */
+    public MulticastLane(final InetSocketAddress group, final NetworkInterface networkInterface) {
+        this(group, networkInterface, DEFAULT_REFRESH_INTERVAL_MILLIS, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Initializes multicast lane settings.
+     * 
+     * @param group The address of the multicast group and the port to send the datagrams to.
+     * @param networkInterface The network interface to send and receive the datagrams on.
+     * @param refreshIntervalMillis The interval in milliseconds in which the latest values of changed lossy
+     *            properties are sent over TCP.
+     * @param timeToLive The number of routers a datagram may pass.
+     * @throws IllegalArgumentException When <code>group</code> is no multicast address, <code>networkInterface</code>
+     *             is <code>null</code>, <code>refreshIntervalMillis</code> is not positive or <code>timeToLive</code>
+     *             is not between 0 and 255.
+     */
+    public MulticastLane(final InetSocketAddress group, final NetworkInterface networkInterface,
+            final long refreshIntervalMillis, final int timeToLive) {
+        if (group == null || group.getAddress() == null || !group.getAddress().isMulticastAddress()) {
+            throw new IllegalArgumentException("The group must be a resolved multicast address.");
+        }
+        if (networkInterface == null) {
+            throw new IllegalArgumentException("The network interface must not be null.");
+        }
+        if (refreshIntervalMillis < 1) {
+            throw new IllegalArgumentException("The refresh interval must be positive.");
+        }
+        if (timeToLive < 0 || timeToLive > MAX_TIME_TO_LIVE) {
+            throw new IllegalArgumentException("The time to live must be between 0 and " + MAX_TIME_TO_LIVE + ".");
+        }
+        this.group = group;
+        this.networkInterface = networkInterface;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Declares properties whose value changes are sent over the multicast lane.
+     * 
+     * <p>
+     * Use this method only before the server or client is started. The declaration applies to subclasses of
+     * <code>type</code> too.
+     * </p>
+     * 
+     * @param type The class of the domain model that declares the properties.
+     * @param fieldNames The names of the fields that hold the properties.
+     * @return These settings to allow chaining.
+     */
+    public MulticastLane lossy(final Class<?> type, final String... fieldNames) {
+        Set<String> fields = lossyFields.get(type);
+        if (fields == null) {
+            fields = new HashSet<>();
+            lossyFields.put(type, fields);
+        }
+        fields.addAll(Arrays.asList(fieldNames));
+        return this;
+    }
+
+    /**
+     * Collects the names of the fields declared as lossy for a class and its super classes.
+     * 
+     * @param type The class.
+     * @return The field names.
+     */
+    Set<String> lossyFieldsOf(final Class<?> type) {
+        final Set<String> fields = new HashSet<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            final Set<String> declared = lossyFields.get(current);
+            if (declared != null) {
+                fields.addAll(declared);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return The address of the multicast group and the port to send the datagrams to.
+     */
+    public InetSocketAddress getGroup() {
+        return group;
+    }
+
+    /**
+     * @return The network interface to send and receive the datagrams on.
+     */
+    public NetworkInterface getNetworkInterface() {
+        return networkInterface;
+    }
+
+    /**
+     * @return The interval in milliseconds in which the latest values of changed lossy properties are sent over TCP.
+     */
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    /**
+     * @return The number of routers a datagram may pass.
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+}
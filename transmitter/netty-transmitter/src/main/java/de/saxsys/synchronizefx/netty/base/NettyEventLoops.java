@@ -0,0 +1,170 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+/**
+ * The threads that handle the network I/O of Netty based servers and clients.
+ * 
+ * <p>
+ * By default each server and client creates its own event loops. An instance of this class can be passed to many
+ * of them instead so that they share a small pool of threads. Servers accept connections with the acceptor group
+ * and handle them with the I/O group. Clients only use the I/O group.
+ * </p>
+ * 
+ * <p>
+ * Servers and clients never shut down shared event loops. Call {@link #shutdownGracefully()} after all of them are
+ * shut down.
+ * </p>
+ */
+public final class NettyEventLoops {
+
+    private final NettyTransport transport;
+    private final EventLoopGroup acceptorGroup;
+    private final EventLoopGroup ioGroup;
+    private final boolean createdGroups;
+
+    /**
+     * Creates new event loops with a fixed number of threads.
+     * 
+     * @param transport The I/O implementation of the event loops.
+     * @param acceptorThreads The number of threads that accept new connections for servers. A single thread is
+     *            enough for all servers unless connections are opened at a very high rate.
+     * @param ioThreads The number of threads that handle all connections. <code>0</code> chooses the default of
+     *            Netty which is twice the number of available processors.
+     * @throws IllegalArgumentException When <code>transport</code> is <code>null</code>, when
+     *             <code>acceptorThreads</code> is less than 1 or when <code>ioThreads</code> is negative.
+     * @throws SynchronizeFXException When {@link NettyTransport#EPOLL} was requested but is not available on the
+     *             current system.
+     */
+    public NettyEventLoops(final NettyTransport transport, final int acceptorThreads, final int ioThreads)
+        throws SynchronizeFXException {
+        if (transport == null) {
+            throw new IllegalArgumentException("The transport must not be null.");
+        }
+        if (acceptorThreads < 1) {
+            throw new IllegalArgumentException("At least one acceptor thread is needed but " + acceptorThreads
+                    + " were requested.");
+        }
+        if (ioThreads < 0) {
+            throw new IllegalArgumentException("The number of I/O threads must not be negative but was " + ioThreads
+                    + ".");
+        }
+        this.transport = transport.resolve();
+        this.acceptorGroup = this.transport.newEventLoopGroup(acceptorThreads);
+        this.ioGroup = this.transport.newEventLoopGroup(ioThreads);
+        this.createdGroups = true;
+    }
+
+    /**
+     * Uses event loops that are managed by the user of this class.
+     * 
+     * <p>
+     * {@link #shutdownGracefully()} will not shut down these event loops.
+     * </p>
+     * 
+     * @param transport The I/O implementation the event loops were created for. It is used to choose the type of
+     *            the channels. For {@link NettyTransport#AUTO} it is derived from the type of the event loops.
+     * @param acceptorGroup The event loops that accept new connections for servers. The same group as
+     *            <code>ioGroup</code> may be passed.
+     * @param ioGroup The event loops that handle all connections.
+     * @throws IllegalArgumentException When one of the arguments is <code>null</code> or when the event loops were
+     *             created for another transport than <code>transport</code> or for different transports.
+     * @throws SynchronizeFXException When {@link NettyTransport#EPOLL} was passed but is not available on the
+     *             current system.
+     */
+    public NettyEventLoops(final NettyTransport transport, final EventLoopGroup acceptorGroup,
+            final EventLoopGroup ioGroup) throws SynchronizeFXException {
+        if (transport == null || acceptorGroup == null || ioGroup == null) {
+            throw new IllegalArgumentException("The transport and the event loop groups must not be null.");
+        }
+        final NettyTransport acceptorTransport = NettyTransport.of(acceptorGroup);
+        final NettyTransport ioTransport = NettyTransport.of(ioGroup);
+        if (acceptorTransport != null && ioTransport != null && acceptorTransport != ioTransport) {
+            throw new IllegalArgumentException("The acceptor event loops were created for the " + acceptorTransport
+                    + " transport but the I/O event loops for the " + ioTransport + " transport.");
+        }
+        // The type of event loops that are not created by Netty itself is unknown. Trust the caller for them.
+        final NettyTransport used = ioTransport != null ? ioTransport : acceptorTransport;
+        if (used == null) {
+            this.transport = transport.resolve();
+        } else if (transport == NettyTransport.AUTO || transport == used) {
+            this.transport = used;
+        } else {
+            throw new IllegalArgumentException("The event loops were created for the " + used
+                    + " transport but the " + transport + " transport was requested.");
+        }
+        this.acceptorGroup = acceptorGroup;
+        this.ioGroup = ioGroup;
+        this.createdGroups = false;
+    }
+
+    /**
+     * The I/O implementation of the event loops.
+     * 
+     * @return Either {@link NettyTransport#NIO} or {@link NettyTransport#EPOLL}.
+     */
+    public NettyTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * The event loops that accept new connections for servers.
+     * 
+     * @return The event loops.
+     */
+    public EventLoopGroup getAcceptorGroup() {
+        return acceptorGroup;
+    }
+
+    /**
+     * The event loops that handle all connections.
+     * 
+     * @return The event loops.
+     */
+    public EventLoopGroup getIoGroup() {
+        return ioGroup;
+    }
+
+    /**
+     * Stops the threads of the event loops if they were created by this instance.
+     * 
+     * <p>
+     * New connections are no longer accepted immediately. Connections that are still open are closed after the
+     * I/O threads have finished their pending work.
+     * </p>
+     */
+    public void shutdownGracefully() {
+        if (!createdGroups) {
+            return;
+        }
+        acceptorGroup.shutdownGracefully().addListener(new GenericFutureListener<Future<Object>>() {
+            @Override
+            public void operationComplete(final Future<Object> future) throws Exception {
+                ioGroup.shutdownGracefully();
+            }
+        });
+    }
+}
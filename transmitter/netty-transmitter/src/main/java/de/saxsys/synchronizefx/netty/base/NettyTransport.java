@@ -0,0 +1,178 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * The I/O implementation that Netty based servers and clients use for their connections.
+ */
+public enum NettyTransport {
+
+    /**
+     * The portable transport based on Java NIO selectors.
+     */
+    NIO,
+
+    /**
+     * The native transport for Linux based on edge-triggered epoll.
+     * 
+     * <p>
+     * It needs less system calls than {@link #NIO} and produces less garbage which reduces the latency with many
+     * connections. Starting a server or client with this transport fails when the native library is not available.
+     * </p>
+     */
+    EPOLL,
+
+    /**
+     * Uses {@link #EPOLL} when it is available on the current system and {@link #NIO} otherwise.
+     */
+    AUTO;
+
+    /**
+     * Determines the transport that is actually used.
+     * 
+     * @return {@link #NIO} or {@link #EPOLL}.
+     * @throws SynchronizeFXException When {@link #EPOLL} was requested but is not available on the current system.
+     */
+    public NettyTransport resolve() throws SynchronizeFXException {
+        switch (this) {
+            case EPOLL:
+                if (!Epoll.isAvailable()) {
+                    throw new SynchronizeFXException("The epoll transport is not available on this system.",
+                            Epoll.unavailabilityCause());
+                }
+                return EPOLL;
+            case AUTO:
+                return Epoll.isAvailable() ? EPOLL : NIO;
+            default:
+                return NIO;
+        }
+    }
+
+    /**
+     * Determines the transport that event loops were created for.
+     * 
+     * @param group The event loops.
+     * @return {@link #NIO} or {@link #EPOLL} or <code>null</code> if the type of the event loops is unknown.
+     */
+    public static NettyTransport of(final EventLoopGroup group) {
+        if (group instanceof EpollEventLoopGroup) {
+            return EPOLL;
+        }
+        if (group instanceof NioEventLoopGroup || group instanceof NioEventLoop) {
+            return NIO;
+        }
+        if (group instanceof EventLoop) {
+            // A single event loop of epoll is not public but its parent is.
+            final EventLoopGroup parent = ((EventLoop) group).parent();
+            return parent == null || parent == group ? null : of(parent);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the event loops that handle connections of this transport.
+     * 
+     * @return The event loops.
+     * @throws SynchronizeFXException When {@link #EPOLL} was requested but is not available on the current system.
+     */
+    public EventLoopGroup newEventLoopGroup() throws SynchronizeFXException {
+        return newEventLoopGroup(0);
+    }
+
+    /**
+     * Creates the event loops that handle connections of this transport.
+     * 
+     * @param threads The number of threads or <code>0</code> for the default of Netty which is twice the number of
+     *            available processors.
+     * @return The event loops.
+     * @throws SynchronizeFXException When {@link #EPOLL} was requested but is not available on the current system.
+     */
+    public EventLoopGroup newEventLoopGroup(final int threads) throws SynchronizeFXException {
+        return resolve() == EPOLL ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    /**
+     * The type of channels that accept connections of this transport.
+     * 
+     * @return The channel type.
+     * @throws SynchronizeFXException When {@link #EPOLL} was requested but is not available on the current system.
+     */
+    public Class<? extends ServerChannel> serverChannelType() throws SynchronizeFXException {
+        return resolve() == EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * The type of channels for TCP connections of this transport.
+     * 
+     * @return The channel type.
+     * @throws SynchronizeFXException When {@link #EPOLL} was requested but is not available on the current system.
+     */
+    public Class<? extends SocketChannel> socketChannelType() throws SynchronizeFXException {
+        return resolve() == EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * The type of channels that accept connections over Unix domain sockets.
+     * 
+     * @return The channel type.
+     * @throws SynchronizeFXException When this transport does not resolve to {@link #EPOLL} as the other transports
+     *             don't support Unix domain sockets.
+     */
+    public Class<? extends ServerChannel> domainServerChannelType() throws SynchronizeFXException {
+        failIfNoDomainSockets();
+        return EpollServerDomainSocketChannel.class;
+    }
+
+    /**
+     * The type of channels for connections over Unix domain sockets.
+     * 
+     * @return The channel type.
+     * @throws SynchronizeFXException When this transport does not resolve to {@link #EPOLL} as the other transports
+     *             don't support Unix domain sockets.
+     */
+    public Class<? extends Channel> domainSocketChannelType() throws SynchronizeFXException {
+        failIfNoDomainSockets();
+        return EpollDomainSocketChannel.class;
+    }
+
+    private void failIfNoDomainSockets() throws SynchronizeFXException {
+        if (resolve() != EPOLL) {
+            throw new SynchronizeFXException("Unix domain sockets are only supported by the epoll transport.");
+        }
+    }
+}
@@ -42,6 +42,12 @@ import org.slf4j.LoggerFactory;
 /**
  * A factory for {@link SSLEngine}s which doesn't validate the SSL certificate of the server.
  * 
+ * <p>
+ * The servers and clients of this library use {@link TlsContext} instead, which shares a Netty context between
+ * connections, resumes TLS sessions and can use the OpenSSL engine. See {@link TlsContext#insecureClient()} for the
+ * equivalent of this factory.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 public final class NonValidatingSSLEngineFactory {
@@ -79,12 +85,16 @@ public final class NonValidatingSSLEngineFactory {
      * @return The new engine
      */
     public static SSLEngine createEngine(final boolean clientMode) {
+        SSLEngine engine = getContext().createSSLEngine();
+        engine.setUseClientMode(clientMode);
+        return engine;
+    }
+
+    private static synchronized SSLContext getContext() throws SynchronizeFXException {
         if (context == null) {
             context = createContext();
         }
-        SSLEngine engine = context.createSSLEngine();
-        engine.setUseClientMode(clientMode);
-        return engine;
+        return context;
     }
 
     private static SSLContext createContext() throws SynchronizeFXException {
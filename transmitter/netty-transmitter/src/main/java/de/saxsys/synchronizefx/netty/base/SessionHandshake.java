@@ -0,0 +1,118 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.util.UUID;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * The messages that clients and servers exchange to start or resume a session.
+ * 
+ * <p>
+ * When {@link SessionResumption} is enabled, the first message of a client is either {@link #NEW} or
+ * {@link #RESUME} followed by the id of the session and the number of messages the client received. The server
+ * answers with {@link #ACCEPTED} followed by the id of a new session, {@link #RESUMED} followed by the number of
+ * messages the server received in this session or {@link #REJECTED}. All further messages contain commands.
+ * </p>
+ */
+public final class SessionHandshake {
+
+    /**
+     * The client requests a new session.
+     */
+    public static final byte NEW = 1;
+
+    /**
+     * The client wants to resume a session.
+     */
+    public static final byte RESUME = 2;
+
+    /**
+     * The server started a new session.
+     */
+    public static final byte ACCEPTED = 3;
+
+    /**
+     * The server resumed the requested session.
+     */
+    public static final byte RESUMED = 4;
+
+    /**
+     * The server does not know the requested session anymore or can't resend the messages the client missed.
+     */
+    public static final byte REJECTED = 5;
+
+    private SessionHandshake() {
+    }
+
+    /**
+     * Creates a message that has only a type.
+     * 
+     * @param allocator The allocator for the message.
+     * @param type Either {@link #NEW} or {@link #REJECTED}.
+     * @return The message.
+     */
+    public static ByteBuf message(final ByteBufAllocator allocator, final byte type) {
+        return allocator.buffer(1).writeByte(type);
+    }
+
+    /**
+     * Creates a message that contains the id of a session.
+     * 
+     * @param allocator The allocator for the message.
+     * @param type Either {@link #RESUME} or {@link #ACCEPTED}.
+     * @param sessionId The id of the session.
+     * @param count The number of received messages for {@link #RESUME}. It is ignored for {@link #ACCEPTED}.
+     * @return The message.
+     */
+    public static ByteBuf message(final ByteBufAllocator allocator, final byte type, final UUID sessionId,
+            final long count) {
+        final ByteBuf message = allocator.buffer(25).writeByte(type);
+        message.writeLong(sessionId.getMostSignificantBits()).writeLong(sessionId.getLeastSignificantBits());
+        if (type == RESUME) {
+            message.writeLong(count);
+        }
+        return message;
+    }
+
+    /**
+     * Creates a message that contains a number of received messages.
+     * 
+     * @param allocator The allocator for the message.
+     * @param type The type of the message which is {@link #RESUMED}.
+     * @param count The number of received messages.
+     * @return The message.
+     */
+    public static ByteBuf message(final ByteBufAllocator allocator, final byte type, final long count) {
+        return allocator.buffer(9).writeByte(type).writeLong(count);
+    }
+
+    /**
+     * Reads the id of a session from a message.
+     * 
+     * @param message The message whose type was already read.
+     * @return The session id.
+     */
+    public static UUID readSessionId(final ByteBuf message) {
+        return new UUID(message.readLong(), message.readLong());
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+/**
+ * The settings for resuming the session of a client after its connection to the server was interrupted.
+ * 
+ * <p>
+ * Without session resumption a client whose connection drops has to be created again and the server sends it the
+ * whole domain model. With session resumption the client reconnects on its own and presents the number of messages
+ * it received. As long as the server still knows all messages the client missed, only these are sent again. Both
+ * sides keep the last {@link #getHistorySize()} messages they sent for this purpose. The server keeps at most
+ * {@link #getMaxHistoryBytes()} bytes of them per client so that the initial transfer of large domain models is not
+ * kept for long. When the missed messages are no
+ * longer known or the client couldn't reconnect within {@link #getTimeoutMillis()}, the connection loss is reported
+ * as before so that the client can be recreated and receive the whole domain model.
+ * </p>
+ * 
+ * <p>
+ * The server and the client must both enable session resumption. The serializer of the server must not keep state
+ * per connection because messages are sent again on a new connection.
+ * </p>
+ */
+public final class SessionResumption {
+
+    /**
+     * The default number of sent messages that are kept to be sent again.
+     */
+    public static final int DEFAULT_HISTORY_SIZE = 1024;
+
+    /**
+     * The default time in milliseconds in which a client must resume its session.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * The default number of bytes of sent messages the server keeps per client.
+     */
+    public static final long DEFAULT_MAX_HISTORY_BYTES = 16 * 1024 * 1024;
+
+    private final int historySize;
+    private final long maxHistoryBytes;
+    private final long timeoutMillis;
+
+    /**
+     * Initializes settings with {@link #DEFAULT_HISTORY_SIZE}, {@link #DEFAULT_MAX_HISTORY_BYTES} and
+     * {@link #DEFAULT_TIMEOUT_MILLIS}.
+     */
+    public SessionResumption() {
+        this(DEFAULT_HISTORY_SIZE, DEFAULT_MAX_HISTORY_BYTES, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Initializes session resumption settings.
+     * 
+     * @param historySize The number of sent messages that are kept to be sent again.
+     * @param maxHistoryBytes The number of bytes of sent messages the server keeps per client at most.
+     * @param timeoutMillis The time in milliseconds in which a client tries to reconnect and for which the server
+     *            keeps the session of a disconnected client.
+     * @throws IllegalArgumentException When one of the arguments is not positive.
+     */
+    public SessionResumption(final int historySize, final long maxHistoryBytes, final long timeoutMillis) {
+        if (historySize < 1) {
+            throw new IllegalArgumentException("The history size must be positive.");
+        }
+        if (maxHistoryBytes < 1) {
+            throw new IllegalArgumentException("The maximal size of the history in bytes must be positive.");
+        }
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("The session timeout must be positive.");
+        }
+        this.historySize = historySize;
+        this.maxHistoryBytes = maxHistoryBytes;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return The number of sent messages that are kept to be sent again.
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * @return The number of bytes of sent messages the server keeps per client at most.
+     */
+    public long getMaxHistoryBytes() {
+        return maxHistoryBytes;
+    }
+
+    /**
+     * @return The time in milliseconds in which a client tries to reconnect and for which the server keeps the
+     *         session of a disconnected client.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManagerFactory;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The TLS configuration that encrypted connections of servers and clients are created from.
+ * 
+ * <p>
+ * An instance wraps a single Netty {@link SslContext} that is shared by all connections it is used for. Creating the
+ * context is expensive, so an instance should be created once and passed to all servers or clients that use the same
+ * keys and trust. Instances are immutable and can be used from any thread.
+ * </p>
+ * 
+ * <p>
+ * The contexts created by the factory methods of this class cache up to {@link #DEFAULT_SESSION_CACHE_SIZE} TLS
+ * sessions for {@link #DEFAULT_SESSION_TIMEOUT_SECONDS} seconds. A client that connects again to the same server can
+ * resume its previous TLS session with an abbreviated handshake instead of negotiating a new one. This makes frequent
+ * reconnects considerably cheaper. Clients cache their sessions per host and port of the server. Only TLS 1.2 and,
+ * where the engine supports it, TLS 1.3 are enabled.
+ * </p>
+ * 
+ * <p>
+ * The {@link TlsEngine} chooses between the TLS implementation of the JDK and the faster native one of Netty. The
+ * native engine needs no special hardware but a <code>netty-tcnative</code> library on the class path.
+ * </p>
+ */
+public final class TlsContext {
+
+    /**
+     * The default number of TLS sessions that are cached for resumption.
+     */
+    public static final long DEFAULT_SESSION_CACHE_SIZE = 1024;
+
+    /**
+     * The default time in seconds for which cached TLS sessions can be resumed.
+     */
+    public static final long DEFAULT_SESSION_TIMEOUT_SECONDS = 3600;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TlsContext.class);
+
+    private static TlsContext sharedInsecureClient;
+
+    private final SslContext sslContext;
+    private final boolean verifyHostname;
+
+    private TlsContext(final SslContext sslContext, final boolean verifyHostname) {
+        this.sslContext = sslContext;
+        this.verifyHostname = verifyHostname;
+    }
+
+    /**
+     * Creates the configuration for servers from PEM encoded files.
+     * 
+     * @param keyCertChainFile A PEM file containing the certificate chain of the server.
+     * @param keyFile A PEM file containing the PKCS#8 private key of the server.
+     * @param engine The TLS implementation to use.
+     * @return The configuration.
+     * @throws SynchronizeFXException When the files can't be read or the engine is not available.
+     */
+    public static TlsContext forServer(final File keyCertChainFile, final File keyFile, final TlsEngine engine)
+        throws SynchronizeFXException {
+        final SslContextBuilder builder;
+        try {
+            builder = SslContextBuilder.forServer(keyCertChainFile, keyFile);
+        } catch (final IllegalArgumentException e) {
+            throw new SynchronizeFXException("The key or certificate of the server could not be read.", e);
+        }
+        return new TlsContext(build(builder, engine), false);
+    }
+
+    /**
+     * Creates the configuration for servers from a {@link KeyManagerFactory}.
+     * 
+     * @param keyManagerFactory The factory that provides the key and certificate of the server.
+     * @param engine The TLS implementation to use.
+     * @return The configuration.
+     * @throws SynchronizeFXException When the engine is not available or the context can't be initialized.
+     */
+    public static TlsContext forServer(final KeyManagerFactory keyManagerFactory, final TlsEngine engine)
+        throws SynchronizeFXException {
+        return new TlsContext(build(SslContextBuilder.forServer(keyManagerFactory), engine), false);
+    }
+
+    /**
+     * Creates the configuration for clients that validate the certificate and the host name of the server.
+     * 
+     * @param trustManagerFactory The factory for the trust managers that validate the certificate of the server or
+     *            <code>null</code> to use the trusted certificates of the JVM.
+     * @param engine The TLS implementation to use.
+     * @return The configuration.
+     * @throws SynchronizeFXException When the engine is not available or the context can't be initialized.
+     */
+    public static TlsContext forClient(final TrustManagerFactory trustManagerFactory, final TlsEngine engine)
+        throws SynchronizeFXException {
+        return new TlsContext(build(SslContextBuilder.forClient().trustManager(trustManagerFactory), engine), true);
+    }
+
+    /**
+     * Creates the configuration for clients that accept any certificate of the server.
+     * 
+     * <p>
+     * The connections are encrypted but not protected against man-in-the-middle attacks.
+     * </p>
+     * 
+     * @param engine The TLS implementation to use.
+     * @return The configuration.
+     * @throws SynchronizeFXException When the engine is not available or the context can't be initialized.
+     */
+    public static TlsContext insecureClient(final TlsEngine engine) throws SynchronizeFXException {
+        return new TlsContext(build(
+                SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE), engine), false);
+    }
+
+    /**
+     * The shared configuration for clients that accept any certificate of the server.
+     * 
+     * <p>
+     * This configuration is used by clients that require encryption, like websocket clients for <code>wss</code>
+     * URIs, but that were not given a configuration. It uses {@link TlsEngine#AUTO}.
+     * </p>
+     * 
+     * @return The configuration.
+     * @throws SynchronizeFXException When the context can't be initialized.
+     * @see #insecureClient(TlsEngine)
+     */
+    public static synchronized TlsContext insecureClient() throws SynchronizeFXException {
+        if (sharedInsecureClient == null) {
+            sharedInsecureClient = insecureClient(TlsEngine.AUTO);
+        }
+        return sharedInsecureClient;
+    }
+
+    /**
+     * Wraps a context that was configured by the caller.
+     * 
+     * @param sslContext The context to use for all connections.
+     * @return The configuration.
+     */
+    public static TlsContext of(final SslContext sslContext) {
+        return new TlsContext(sslContext, false);
+    }
+
+    /**
+     * @return The context that is shared by all connections that use this configuration.
+     */
+    public SslContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Creates the handler that encrypts a new connection.
+     * 
+     * @param allocator The allocator for the buffers of the handler.
+     * @param peer The address of the server for client connections. Clients resume TLS sessions only with servers
+     *            whose address is known. <code>null</code> for server connections or if the address is unknown.
+     * @return The handler.
+     */
+    public SslHandler newHandler(final ByteBufAllocator allocator, final SocketAddress peer) {
+        final SslHandler handler;
+        if (peer instanceof InetSocketAddress) {
+            final InetSocketAddress address = (InetSocketAddress) peer;
+            handler = sslContext.newHandler(allocator, address.getHostString(), address.getPort());
+        } else {
+            handler = sslContext.newHandler(allocator);
+        }
+        final SSLEngine engine = handler.engine();
+        if (verifyHostname) {
+            final SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        if (LOG.isDebugEnabled()) {
+            handler.handshakeFuture().addListener(new GenericFutureListener<Future<? super Channel>>() {
+                @Override
+                public void operationComplete(final Future<? super Channel> future) throws Exception {
+                    if (future.isSuccess()) {
+                        LOG.debug("Using " + engine.getSession().getProtocol() + " with the cipher "
+                                + engine.getSession().getCipherSuite() + " for an encrypted connection.");
+                    }
+                }
+            });
+        }
+        return handler;
+    }
+
+    private static SslContext build(final SslContextBuilder builder, final TlsEngine engine)
+        throws SynchronizeFXException {
+        final SslProvider provider = engine.resolve();
+        builder.sslProvider(provider).protocols(protocols(provider)).sessionCacheSize(DEFAULT_SESSION_CACHE_SIZE)
+                .sessionTimeout(DEFAULT_SESSION_TIMEOUT_SECONDS);
+        try {
+            return builder.build();
+        } catch (final SSLException e) {
+            throw new SynchronizeFXException("Could not initialize the encryption for the connections.", e);
+        }
+    }
+
+    private static String[] protocols(final SslProvider provider) {
+        final boolean tls13 = provider == SslProvider.JDK ? jdkSupportsTls13() : openSslSupportsTls13();
+        return tls13 ? new String[] {"TLSv1.3", "TLSv1.2" } : new String[] {"TLSv1.2" };
+    }
+
+    private static boolean jdkSupportsTls13() {
+        try {
+            return Arrays.asList(SSLContext.getDefault().getSupportedSSLParameters().getProtocols())
+                    .contains("TLSv1.3");
+        } catch (final NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static boolean openSslSupportsTls13() {
+        // Netty 4.1.48 does not tell publicly whether the linked native library supports TLS 1.3, so an engine is
+        // asked for the protocols it supports.
+        final SslContext probe;
+        try {
+            probe = SslContextBuilder.forClient().sslProvider(SslProvider.OPENSSL).build();
+        } catch (final SSLException e) {
+            return false;
+        }
+        final SSLEngine engine = probe.newEngine(ByteBufAllocator.DEFAULT);
+        try {
+            return Arrays.asList(engine.getSupportedProtocols()).contains("TLSv1.3");
+        } finally {
+            ReferenceCountUtil.release(engine);
+            ReferenceCountUtil.release(probe);
+        }
+    }
+}
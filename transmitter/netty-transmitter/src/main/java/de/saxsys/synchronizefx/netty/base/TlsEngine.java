@@ -0,0 +1,74 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslProvider;
+
+/**
+ * The implementation of TLS that is used for encrypted connections.
+ */
+public enum TlsEngine {
+
+    /**
+     * The implementation of the JDK.
+     */
+    JDK,
+
+    /**
+     * The native implementation of Netty based on OpenSSL or BoringSSL.
+     * 
+     * <p>
+     * It encrypts considerably faster than {@link #JDK} and produces less garbage. It requires one of the
+     * <code>netty-tcnative</code> libraries on the class path, e.g. <code>netty-tcnative-boringssl-static</code> which
+     * contains BoringSSL for common platforms. Creating a {@link TlsContext} with this engine fails when the native
+     * library is not available.
+     * </p>
+     */
+    OPENSSL,
+
+    /**
+     * Uses {@link #OPENSSL} when it is available on the current system and {@link #JDK} otherwise.
+     */
+    AUTO;
+
+    /**
+     * Determines the implementation that is actually used.
+     * 
+     * @return {@link SslProvider#OPENSSL} or {@link SslProvider#JDK}.
+     * @throws SynchronizeFXException When {@link #OPENSSL} was requested but is not available on the current system.
+     */
+    public SslProvider resolve() throws SynchronizeFXException {
+        switch (this) {
+            case OPENSSL:
+                if (!OpenSsl.isAvailable()) {
+                    throw new SynchronizeFXException("The OpenSSL engine is not available on this system.",
+                            OpenSsl.unavailabilityCause());
+                }
+                return SslProvider.OPENSSL;
+            case AUTO:
+                return OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+            default:
+                return SslProvider.JDK;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package de.saxsys.synchronizefx.netty.base.client;
 
+import java.net.SocketAddress;
 import java.util.concurrent.TimeUnit;
 
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferClient;
@@ -26,17 +27,23 @@ import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.netty.base.Codec;
 import de.saxsys.synchronizefx.netty.base.CommandToBinaryByteBuf;
-import de.saxsys.synchronizefx.netty.base.NonValidatingSSLEngineFactory;
+import de.saxsys.synchronizefx.netty.base.FlushBatching;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
 
 /**
- * Initializes all channel handlers for the socket channel to the server.
+ * Initializes all channel handlers for the channel to the server.
+ * 
+ * <p>
+ * The channel is either a TCP socket or a Unix domain socket.
+ * </p>
  */
-public class BasicChannelInitializerClient extends ChannelInitializer<SocketChannel> {
+public class BasicChannelInitializerClient extends ChannelInitializer<Channel> {
 
     /**
      * If no data was received from the server in this time (in milliseconds) a Ping Frame is send as keep alive.
@@ -44,6 +51,11 @@ public class BasicChannelInitializerClient extends ChannelInitializer<SocketChan
     private static final int KEEP_ALIVE = 20000;
 
     private NetworkToTopologyCallbackClient callback;
+    private FlushBatching flushBatching;
+    private ClientSession session;
+    private FrameLimits frameLimits = new FrameLimits();
+    private TlsContext tls;
+    private SocketAddress peer;
 
     private final Codec codec;
     private final boolean useSSL;
@@ -69,18 +81,71 @@ public class BasicChannelInitializerClient extends ChannelInitializer<SocketChan
         this.callback = callback;
     }
 
+    /**
+     * Sets how the flushes of the channel are combined.
+     * 
+     * @param flushBatching The settings or <code>null</code> if each flush should reach the socket immediately.
+     */
+    void setFlushBatching(final FlushBatching flushBatching) {
+        this.flushBatching = flushBatching;
+    }
+
+    /**
+     * Sets the session that the channel starts or resumes.
+     * 
+     * @param session The session or <code>null</code> if the client can't resume sessions.
+     */
+    void setSession(final ClientSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Sets the limits for the frames of the channel.
+     * 
+     * @param frameLimits The limits.
+     */
+    void setFrameLimits(final FrameLimits frameLimits) {
+        this.frameLimits = frameLimits;
+    }
+
+    /**
+     * Sets the TLS configuration that the channel is encrypted with.
+     * 
+     * @param tls The configuration or <code>null</code> if the channel should only be encrypted when this
+     *            initializer was told to use SSL. {@link TlsContext#insecureClient()} is used in this case.
+     * @param peer The address of the server which is used to resume TLS sessions.
+     */
+    void setTls(final TlsContext tls, final SocketAddress peer) {
+        this.tls = tls;
+        this.peer = peer;
+    }
+
+    /**
+     * @return The implementation for serializing and deserializing <code>byte[]</code> to SynchronizeFX commands.
+     */
+    Serializer getSerializer() {
+        return serializer;
+    }
+
     @Override
-    protected void initChannel(final SocketChannel channel) throws Exception {
+    protected void initChannel(final Channel channel) throws Exception {
         final ChannelPipeline pipeline = channel.pipeline();
 
-        if (useSSL) {
-            pipeline.addLast("tls", NonValidatingSSLEngineFactory.createSslHandler(true));
+        final TlsContext channelTls = tls == null && useSSL ? TlsContext.insecureClient() : tls;
+        if (channelTls != null) {
+            pipeline.addLast("tls", channelTls.newHandler(channel.alloc(), peer));
+        }
+        if (flushBatching != null) {
+            pipeline.addLast("flush-batching", flushBatching.newHandler());
         }
         pipeline.addLast("keep-alive", new IdleStateHandler(KEEP_ALIVE, 0, 0, TimeUnit.MILLISECONDS));
 
-        codec.addToPipeline(pipeline);
+        codec.addToPipeline(pipeline, frameLimits);
 
-        pipeline.addLast("message-to-command", new CommandToBinaryByteBuf(serializer));
+        if (session != null) {
+            pipeline.addLast("session", new ClientSessionHandler(session));
+        }
+        pipeline.addLast("message-to-command", new CommandToBinaryByteBuf(serializer, frameLimits.getMaxFrameSize()));
 
         pipeline.addLast("command-handler", new InboundCommandHandlerClient(callback));
         pipeline.addLast("event-handler", new NetworkEventHandlerClient(callback));
@@ -0,0 +1,167 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+
+/**
+ * The state of a client that outlives a single connection when {@link SessionResumption} is enabled.
+ * 
+ * <p>
+ * The session counts the messages the client sent and received and keeps the latest sent messages so that the
+ * server can get the messages it missed when the client reconnects. Messages that are sent while the client is not
+ * connected are sent when the session is resumed.
+ * </p>
+ * 
+ * <p>
+ * All methods of this class are Thread-safe.
+ * </p>
+ */
+final class ClientSession {
+
+    private final int historySize;
+    private final Deque<List<Command>> history = new ArrayDeque<>();
+
+    private UUID id;
+    private long sentCount;
+    private long receivedCount;
+    private Channel channel;
+    private boolean rejected;
+
+    /**
+     * Initializes a session that is not yet accepted by the server.
+     * 
+     * @param historySize The number of sent messages that are kept to be sent again.
+     */
+    ClientSession(final int historySize) {
+        this.historySize = historySize;
+    }
+
+    /**
+     * Creates the first message for a new connection.
+     * 
+     * @param allocator The allocator for the message.
+     * @return A request for a new session or to resume this session if it was already accepted by the server.
+     */
+    synchronized ByteBuf handshake(final ByteBufAllocator allocator) {
+        if (id == null) {
+            return SessionHandshake.message(allocator, SessionHandshake.NEW);
+        }
+        return SessionHandshake.message(allocator, SessionHandshake.RESUME, id, receivedCount);
+    }
+
+    /**
+     * Starts to use the session that the server created for this client.
+     * 
+     * @param sessionId The id of the new session.
+     * @param newChannel The connection to the server.
+     */
+    synchronized void accepted(final UUID sessionId, final Channel newChannel) {
+        this.id = sessionId;
+        sendFrom(0, newChannel);
+    }
+
+    /**
+     * Continues this session with a new connection and sends the messages the server missed.
+     * 
+     * @param serverReceivedCount The number of messages the server received in this session.
+     * @param newChannel The new connection to the server.
+     * @return <code>true</code> if the session was resumed and <code>false</code> if the server missed messages that
+     *         are no longer known.
+     */
+    synchronized boolean resumed(final long serverReceivedCount, final Channel newChannel) {
+        if (serverReceivedCount > sentCount || serverReceivedCount < sentCount - history.size()) {
+            return false;
+        }
+        sendFrom(serverReceivedCount, newChannel);
+        return true;
+    }
+
+    private void sendFrom(final long serverReceivedCount, final Channel newChannel) {
+        long sequence = sentCount - history.size();
+        for (final List<Command> commands : history) {
+            sequence++;
+            if (sequence > serverReceivedCount) {
+                newChannel.write(commands);
+            }
+        }
+        newChannel.flush();
+        channel = newChannel;
+    }
+
+    /**
+     * Marks that the server does not know this session anymore.
+     */
+    synchronized void reject() {
+        rejected = true;
+    }
+
+    /**
+     * @return <code>true</code> if the server does not know this session anymore.
+     */
+    synchronized boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * Unbinds this session from a connection that was closed.
+     * 
+     * @param closed The closed connection.
+     */
+    synchronized void detach(final Channel closed) {
+        if (channel == closed) {
+            channel = null;
+        }
+    }
+
+    /**
+     * Sends commands to the server or keeps them until the session is resumed.
+     * 
+     * @param commands The commands to send.
+     */
+    synchronized void send(final List<Command> commands) {
+        sentCount++;
+        history.addLast(commands);
+        if (history.size() > historySize) {
+            history.removeFirst();
+        }
+        if (channel != null) {
+            channel.writeAndFlush(commands);
+        }
+    }
+
+    /**
+     * Counts a message received from the server.
+     */
+    synchronized void received() {
+        receivedCount++;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.client;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts or resumes the {@link ClientSession} when the connection to the server is established and counts the
+ * messages received from the server.
+ * 
+ * <p>
+ * This handler expects framed messages. The connection is reported as active to the following handlers when the
+ * server accepted or resumed the session.
+ * </p>
+ */
+class ClientSessionHandler extends ChannelDuplexHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientSessionHandler.class);
+
+    private final ClientSession session;
+    private boolean established;
+
+    /**
+     * Initializes the handler.
+     * 
+     * @param session The session of the client.
+     */
+    ClientSessionHandler(final ClientSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        ctx.writeAndFlush(session.handshake(ctx.alloc()));
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (established) {
+            session.received();
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        final ByteBuf handshake = (ByteBuf) msg;
+        try {
+            final byte type = handshake.readByte();
+            if (type == SessionHandshake.ACCEPTED) {
+                established = true;
+                session.accepted(SessionHandshake.readSessionId(handshake), ctx.channel());
+                ctx.fireChannelActive();
+            } else if (type == SessionHandshake.RESUMED && session.resumed(handshake.readLong(), ctx.channel())) {
+                established = true;
+                LOG.info("Resumed the session with the server.");
+                ctx.fireChannelActive();
+            } else if (type == SessionHandshake.RESUMED || type == SessionHandshake.REJECTED) {
+                session.reject();
+                throw new SynchronizeFXException("The session with the server could not be resumed. "
+                        + "Messages were lost while the connection was interrupted.");
+            } else {
+                throw new SynchronizeFXException("The server sent an unknown session handshake of type " + type
+                        + ".");
+            }
+        } finally {
+            handshake.release();
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        session.detach(ctx.channel());
+        ctx.fireChannelInactive();
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.client;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.netty.base.LossyPropertyTracker;
+import de.saxsys.synchronizefx.netty.base.MulticastDatagram;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the value changes of lossy properties from the {@link MulticastLane} of a server.
+ * 
+ * <p>
+ * This class sits between the TCP connection and the topology layer to learn which properties are lossy from the
+ * commands received over TCP. Changes from datagrams are only passed on for these properties and only if no newer
+ * datagram for the same property was received before. Changes that this client made itself are dropped because the
+ * server sends them back over TCP anyway.
+ * </p>
+ */
+final class MulticastReceiver implements NetworkToTopologyCallbackClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MulticastReceiver.class);
+
+    /**
+     * The number of ids of own changes that are remembered.
+     */
+    private static final int MAX_OWN_CHANGES = 4096;
+
+    private final MulticastLane lane;
+    private final StreamingSerializer serializer;
+    private final NetworkToTopologyCallbackClient delegate;
+    private final LossyPropertyTracker tracker;
+    private final Set<UUID> ownChanges;
+
+    // Only accessed by the thread that receives the datagrams.
+    private final Map<UUID, Long> latestSequences = new HashMap<>();
+    private Long serverId;
+
+    private EventLoopGroup group;
+
+    /**
+     * Initializes the receiver.
+     * 
+     * @param lane The settings of the multicast lane.
+     * @param serializer The serializer for the commands.
+     * @param delegate The callback that receives all commands.
+     */
+    MulticastReceiver(final MulticastLane lane, final Serializer serializer,
+            final NetworkToTopologyCallbackClient delegate) {
+        this.lane = lane;
+        this.serializer = StreamingSerializerAdapter.adapt(serializer instanceof ConnectionScopedSerializer
+                ? ((ConnectionScopedSerializer) serializer).newConnectionSerializer() : serializer);
+        this.delegate = delegate;
+        this.tracker = new LossyPropertyTracker(lane);
+        this.ownChanges = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<UUID, Boolean>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<UUID, Boolean> eldest) {
+                return size() > MAX_OWN_CHANGES;
+            }
+        }));
+    }
+
+    /**
+     * Joins the multicast group.
+     * 
+     * @throws SynchronizeFXException When the group could not be joined.
+     */
+    void start() throws SynchronizeFXException {
+        final InternetProtocolFamily family = lane.getGroup().getAddress() instanceof Inet6Address
+                ? InternetProtocolFamily.IPv6 : InternetProtocolFamily.IPv4;
+        group = new NioEventLoopGroup(1);
+        final Bootstrap bootstrap = new Bootstrap().group(group).channelFactory(new ChannelFactory<Channel>() {
+            @Override
+            public Channel newChannel() {
+                return new NioDatagramChannel(family);
+            }
+        });
+        bootstrap.option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.IP_MULTICAST_IF, lane.getNetworkInterface())
+                .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                    @Override
+                    protected void channelRead0(final ChannelHandlerContext ctx, final DatagramPacket msg) {
+                        receive(msg.content());
+                    }
+
+                    @Override
+                    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+                        LOG.warn("An error occured on the multicast lane.", cause);
+                    }
+                });
+
+        final ChannelFuture bound = bootstrap.bind(new InetSocketAddress(lane.getGroup().getPort()))
+                .awaitUninterruptibly();
+        if (bound.isSuccess()) {
+            final ChannelFuture joined = ((NioDatagramChannel) bound.channel())
+                    .joinGroup(lane.getGroup(), lane.getNetworkInterface()).awaitUninterruptibly();
+            if (joined.isSuccess()) {
+                return;
+            }
+            stop();
+            throw new SynchronizeFXException("The multicast group " + lane.getGroup() + " could not be joined.",
+                    joined.cause());
+        }
+        stop();
+        throw new SynchronizeFXException("The socket for the multicast lane could not be opened.", bound.cause());
+    }
+
+    /**
+     * Leaves the multicast group.
+     */
+    void stop() {
+        if (group != null) {
+            group.shutdownGracefully();
+            group = null;
+        }
+    }
+
+    /**
+     * Remembers the lossy changes this client sends to the server.
+     * 
+     * @param commands The commands that are sent.
+     */
+    void sent(final List<Command> commands) {
+        for (final Command command : commands) {
+            if (tracker.isLossy(command)) {
+                ownChanges.add(((SetPropertyValue) command).getCommandId());
+            }
+        }
+    }
+
+    private void receive(final ByteBuf content) {
+        final MulticastDatagram datagram;
+        try {
+            datagram = MulticastDatagram.decode(serializer, content);
+        } catch (final SynchronizeFXException e) {
+            LOG.warn("A datagram of the multicast lane could not be read.", e);
+            return;
+        }
+        if (datagram == null) {
+            return;
+        }
+        if (serverId == null || serverId != datagram.getServerId()) {
+            // The sequence numbers of a restarted server start again.
+            serverId = datagram.getServerId();
+            latestSequences.clear();
+        }
+
+        final List<Command> changes = new ArrayList<>();
+        for (final Command command : datagram.getCommands()) {
+            if (!tracker.isLossy(command)) {
+                // The object of the property is not known yet or the settings of the server differ.
+                continue;
+            }
+            final SetPropertyValue change = (SetPropertyValue) command;
+            final Long latest = latestSequences.get(change.getPropertyId());
+            if (latest != null && latest >= datagram.getSequence()) {
+                continue;
+            }
+            latestSequences.put(change.getPropertyId(), datagram.getSequence());
+            if (!ownChanges.remove(change.getCommandId())) {
+                changes.add(change);
+            }
+        }
+        if (!changes.isEmpty()) {
+            delegate.recive(changes);
+        }
+    }
+
+    @Override
+    public void recive(final List<Command> commands) {
+        tracker.learn(commands);
+        delegate.recive(commands);
+    }
+
+    @Override
+    public void onError(final SynchronizeFXException error) {
+        delegate.onError(error);
+    }
+
+    @Override
+    public void onServerDisconnect() {
+        delegate.onServerDisconnect();
+    }
+}
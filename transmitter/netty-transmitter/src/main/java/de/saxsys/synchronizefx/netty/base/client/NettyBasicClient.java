@@ -21,20 +21,30 @@ package de.saxsys.synchronizefx.netty.base.client;
 
 import java.net.SocketAddress;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferClient;
 import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.FlushBatching;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
@@ -43,6 +53,35 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Contains the base client implementation for all Netty based {@link CommandTransferClient}s.
+ * 
+ * <p>
+ * By default the buffers for the connection are taken from {@link PooledByteBufAllocator#DEFAULT}. Commands are
+ * serialized directly into these buffers and passed through framing and websocket codecs without copying them.
+ * </p>
+ * 
+ * <p>
+ * Unless {@link NettyEventLoops} are passed to {@link #setEventLoops(NettyEventLoops)} each client creates its own
+ * event loop with a single thread.
+ * </p>
+ * 
+ * <p>
+ * Clients that connect to a {@link DomainSocketAddress} use a Unix domain socket to a server on the same host. They
+ * always use the {@link NettyTransport#EPOLL} transport.
+ * </p>
+ * 
+ * <p>
+ * When {@link SessionResumption} is enabled, the client tries to reconnect when the connection to the server is
+ * lost. Only the messages that were missed in the meantime are exchanged then. The loss of the connection is
+ * reported to the callback only when the session could not be resumed within its timeout.
+ * </p>
+ * 
+ * <p>
+ * With a {@link MulticastLane}, value changes of lossy properties are also received from a multicast group.
+ * </p>
+ * 
+ * <p>
+ * A {@link TlsContext} encrypts the connection. Its context is shared by all clients it is passed to.
+ * </p>
  */
 public abstract class NettyBasicClient implements CommandTransferClient {
 
@@ -51,6 +90,14 @@ public abstract class NettyBasicClient implements CommandTransferClient {
      * The timeout for connection attempts in milliseconds.
      */
     private static final int TIMEOUT = 10000;
+    /**
+     * The delay in milliseconds before the first attempt to reconnect. It is doubled for each further attempt.
+     */
+    private static final long FIRST_RECONNECT_DELAY = 100;
+    /**
+     * The maximal delay in milliseconds between two attempts to reconnect.
+     */
+    private static final long MAX_RECONNECT_DELAY = 5000;
 
     /**
      * The event loop that handles network actions.
@@ -71,13 +118,33 @@ public abstract class NettyBasicClient implements CommandTransferClient {
     protected Channel channel;
 
     private final SocketAddress address;
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private NettyTransport transport = NettyTransport.NIO;
+    private FlushBatching flushBatching;
+    private FrameLimits frameLimits = new FrameLimits();
+    private NettyEventLoops eventLoops;
+    private boolean ownsEventLoopGroup;
+    private SessionResumption sessionResumption;
+    private MulticastLane multicastLane;
+    private TlsContext tls;
 
     private NetworkToTopologyCallbackClient callback;
+    private ClientSession session;
+    private MulticastReceiver multicast;
+    private Bootstrap bootstrap;
+    private volatile boolean disconnecting;
+
+    // Use "reconnectLock" for synchronized access to the state of reconnection attempts.
+    private final Object reconnectLock = new Object();
+    private long reconnectDeadline;
+    private long reconnectDelay;
+    private SynchronizeFXException connectionLoss;
 
     /**
      * Initializes the client.
      * 
-     * @param address The address to {@link #connect()} to.
+     * @param address The address to {@link #connect()} to. This is either an {@link java.net.InetSocketAddress} or a
+     *            {@link DomainSocketAddress}.
      */
     public NettyBasicClient(final SocketAddress address) {
         this.address = address;
@@ -91,6 +158,132 @@ public abstract class NettyBasicClient implements CommandTransferClient {
      */
     protected abstract BasicChannelInitializerClient createChannelInitializer();
 
+    /**
+     * Sets the allocator for the buffers of the connection.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. A {@link PooledByteBufAllocator} reduces the garbage
+     * produced at high message rates. Whether it prefers direct or heap buffers can be chosen when creating it.
+     * </p>
+     * 
+     * @param allocator The allocator to use. The default is {@link PooledByteBufAllocator#DEFAULT}.
+     * @throws IllegalArgumentException When <code>allocator</code> is <code>null</code>.
+     */
+    public void setAllocator(final ByteBufAllocator allocator) {
+        if (allocator == null) {
+            throw new IllegalArgumentException("The allocator must not be null.");
+        }
+        this.allocator = allocator;
+    }
+
+    /**
+     * Sets how the flushes of the connection are combined into fewer writes to the socket.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called.
+     * </p>
+     * 
+     * @param flushBatching The settings or <code>null</code> if each flush should reach the socket immediately. This is
+     *            the default.
+     */
+    public void setFlushBatching(final FlushBatching flushBatching) {
+        this.flushBatching = flushBatching;
+    }
+
+    /**
+     * Sets the limits for the frames exchanged with the server.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. The server should use the same limits.
+     * </p>
+     * 
+     * @param frameLimits The limits to use. The default are {@link FrameLimits#FrameLimits()}.
+     * @throws IllegalArgumentException When <code>frameLimits</code> is <code>null</code>.
+     */
+    public void setFrameLimits(final FrameLimits frameLimits) {
+        if (frameLimits == null) {
+            throw new IllegalArgumentException("The frame limits must not be null.");
+        }
+        this.frameLimits = frameLimits;
+    }
+
+    /**
+     * Encrypts the connection to the server with TLS.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. The same configuration should be passed to all
+     * clients so that they share its context. When the client reconnects, it resumes its previous TLS session if the
+     * server still knows it.
+     * </p>
+     * 
+     * @param tls The TLS configuration or <code>null</code> if the connection should not be encrypted unless the
+     *            concrete client requires it, e.g. for a <code>wss</code> URI. {@link TlsContext#insecureClient()} is
+     *            used in this case.
+     */
+    public void setTls(final TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Sets the I/O implementation for the connection.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. It has no effect when shared event loops are set
+     * with {@link #setEventLoops(NettyEventLoops)} as their transport is used then.
+     * </p>
+     * 
+     * @param transport The transport to use. The default is {@link NettyTransport#NIO}.
+     * @throws IllegalArgumentException When <code>transport</code> is <code>null</code>.
+     */
+    public void setTransport(final NettyTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("The transport must not be null.");
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the event loops that handle the connection of this client.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. Event loops set here can be shared with other
+     * clients and servers and are not shut down when this client disconnects.
+     * </p>
+     * 
+     * @param eventLoops The event loops to use or <code>null</code> if this client should create its own.
+     */
+    public void setEventLoops(final NettyEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    /**
+     * Enables the client to resume its session when the connection to the server is lost.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. The server must enable session resumption too.
+     * </p>
+     * 
+     * @param sessionResumption The settings for the session or <code>null</code> if the loss of the connection
+     *            should be reported immediately which is the default.
+     */
+    public void setSessionResumption(final SessionResumption sessionResumption) {
+        this.sessionResumption = sessionResumption;
+    }
+
+    /**
+     * Receives value changes of lossy properties over UDP multicast.
+     * 
+     * <p>
+     * Use this method only before {@link #connect()} is called. The server must use the same settings.
+     * </p>
+     * 
+     * @param multicastLane The settings of the multicast lane or <code>null</code> if all commands are received
+     *            over the connection to the server which is the default.
+     */
+    public void setMulticastLane(final MulticastLane multicastLane) {
+        this.multicastLane = multicastLane;
+    }
+
     @Override
     public void setTopologyCallback(final NetworkToTopologyCallbackClient callback) {
         this.callback = callback;
@@ -98,13 +291,44 @@ public abstract class NettyBasicClient implements CommandTransferClient {
 
     @Override
     public void connect() throws SynchronizeFXException {
-        this.eventLoopGroup = new NioEventLoopGroup();
+        final boolean domainSocket = address instanceof DomainSocketAddress;
+        final NettyTransport activeTransport;
+        if (eventLoops == null) {
+            activeTransport = domainSocket ? NettyTransport.EPOLL.resolve() : transport.resolve();
+            // A single connection can't use more than one thread.
+            this.eventLoopGroup = activeTransport.newEventLoopGroup(1);
+            this.ownsEventLoopGroup = true;
+        } else {
+            activeTransport = eventLoops.getTransport();
+            this.eventLoopGroup = eventLoops.getIoGroup();
+            this.ownsEventLoopGroup = false;
+        }
+        disconnecting = false;
         BasicChannelInitializerClient channelInitializer = createChannelInitializer();
-        channelInitializer.setTopologyCallback(callback);
+        NetworkToTopologyCallbackClient channelCallback;
+        if (sessionResumption == null) {
+            this.session = null;
+            channelCallback = callback;
+        } else {
+            this.session = new ClientSession(sessionResumption.getHistorySize());
+            channelCallback = new ReconnectingCallback();
+        }
+        if (multicastLane == null) {
+            this.multicast = null;
+        } else {
+            this.multicast = new MulticastReceiver(multicastLane, channelInitializer.getSerializer(), channelCallback);
+            channelCallback = multicast;
+        }
+        channelInitializer.setTopologyCallback(channelCallback);
+        channelInitializer.setSession(session);
+        channelInitializer.setFlushBatching(flushBatching);
+        channelInitializer.setFrameLimits(frameLimits);
+        channelInitializer.setTls(tls, address);
 
-        Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
-                .option(ChannelOption.ALLOCATOR, UnpooledByteBufAllocator.DEFAULT)
+        bootstrap = new Bootstrap();
+        bootstrap.group(eventLoopGroup)
+                .channel(domainSocket ? activeTransport.domainSocketChannelType() : activeTransport.socketChannelType())
+                .option(ChannelOption.ALLOCATOR, allocator)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, TIMEOUT).handler(channelInitializer);
 
         LOG.info("Connecting to server");
@@ -119,13 +343,23 @@ public abstract class NettyBasicClient implements CommandTransferClient {
                 throw new SynchronizeFXException("Connection to the server failed.", future.cause());
             }
             this.channel = future.channel();
-            channel.closeFuture().addListener(new GenericFutureListener<Future<? super Void>>() {
-                @Override
-                public void operationComplete(final Future<? super Void> future) throws Exception {
-                    // stop the event loop
-                    eventLoopGroup.shutdownGracefully();
+            if (multicast != null) {
+                try {
+                    multicast.start();
+                } catch (final SynchronizeFXException e) {
+                    disconnect();
+                    throw e;
                 }
-            });
+            }
+            if (session == null) {
+                channel.closeFuture().addListener(new GenericFutureListener<Future<? super Void>>() {
+                    @Override
+                    public void operationComplete(final Future<? super Void> future) throws Exception {
+                        // stop the event loop
+                        shutdownEventLoopGroup();
+                    }
+                });
+            }
         } catch (InterruptedException e) {
             disconnect();
             throw new SynchronizeFXException(e);
@@ -134,15 +368,157 @@ public abstract class NettyBasicClient implements CommandTransferClient {
 
     @Override
     public void send(final List<Command> commands) {
-        channel.writeAndFlush(commands);
+        if (multicast != null) {
+            multicast.sent(commands);
+        }
+        if (session != null) {
+            session.send(commands);
+        } else {
+            channel.writeAndFlush(commands);
+        }
     }
 
     @Override
     public void disconnect() {
+        disconnecting = true;
         if (channel != null && channel.isOpen()) {
             channel.close();
         }
         channel = null;
-        eventLoopGroup.shutdownGracefully();
+        shutdownEventLoopGroup();
+    }
+
+    private void shutdownEventLoopGroup() {
+        if (multicast != null) {
+            multicast.stop();
+        }
+        if (ownsEventLoopGroup) {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Starts to reconnect to the server unless the session can't be resumed anymore.
+     * 
+     * @param error The error that caused the loss of the connection or <code>null</code> if the server closed it.
+     */
+    private void connectionLost(final SynchronizeFXException error) {
+        if (disconnecting) {
+            report(error);
+            return;
+        }
+        if (session.isRejected()) {
+            report(error);
+            shutdownEventLoopGroup();
+            return;
+        }
+        synchronized (reconnectLock) {
+            if (reconnectDeadline != 0) {
+                return;
+            }
+            reconnectDeadline = System.currentTimeMillis() + sessionResumption.getTimeoutMillis();
+            reconnectDelay = FIRST_RECONNECT_DELAY;
+            connectionLoss = error;
+        }
+        LOG.info("The connection to the server was lost. Trying to resume the session.", error);
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        final long delay;
+        synchronized (reconnectLock) {
+            delay = reconnectDelay;
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+            if (System.currentTimeMillis() + delay > reconnectDeadline) {
+                giveUp();
+                return;
+            }
+        }
+        try {
+            eventLoopGroup.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            synchronized (reconnectLock) {
+                giveUp();
+            }
+        }
+    }
+
+    private void reconnect() {
+        if (disconnecting) {
+            return;
+        }
+        bootstrap.connect(address).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    scheduleReconnect();
+                    return;
+                }
+                synchronized (reconnectLock) {
+                    // The session handshake is done on the new connection. If it fails, a new loss is reported.
+                    reconnectDeadline = 0;
+                }
+                channel = future.channel();
+                if (disconnecting) {
+                    channel.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Reports that the session could not be resumed in time. The caller must hold the <code>reconnectLock</code>.
+     */
+    private void giveUp() {
+        reconnectDeadline = 0;
+        final SynchronizeFXException error = connectionLoss;
+        connectionLoss = null;
+        LOG.info("The session with the server could not be resumed in time.");
+        // The callback is informed on an event loop thread so that it is not called while the lock is held.
+        try {
+            eventLoopGroup.execute(new Runnable() {
+                @Override
+                public void run() {
+                    report(error);
+                    shutdownEventLoopGroup();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            report(error);
+        }
+    }
+
+    private void report(final SynchronizeFXException error) {
+        if (error == null) {
+            callback.onServerDisconnect();
+        } else {
+            callback.onError(error);
+        }
+    }
+
+    /**
+     * Passes received commands to the core and turns the loss of the connection into attempts to reconnect.
+     */
+    private class ReconnectingCallback implements NetworkToTopologyCallbackClient {
+
+        @Override
+        public void recive(final List<Command> commands) {
+            callback.recive(commands);
+        }
+
+        @Override
+        public void onError(final SynchronizeFXException error) {
+            connectionLost(error);
+        }
+
+        @Override
+        public void onServerDisconnect() {
+            connectionLost(null);
+        }
     }
 }
@@ -22,24 +22,39 @@ package de.saxsys.synchronizefx.netty.base.server;
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
 import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
 import de.saxsys.synchronizefx.netty.base.Codec;
 import de.saxsys.synchronizefx.netty.base.CommandToBinaryByteBuf;
+import de.saxsys.synchronizefx.netty.base.FlushBatching;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
 import de.saxsys.synchronizefx.netty.base.NonValidatingSSLEngineFactory;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.group.ChannelGroup;
 
 /**
- * Initializes a server side socket channel to the client.
+ * Initializes a server side channel to the client.
+ * 
+ * <p>
+ * The channel is either a TCP socket or a Unix domain socket.
+ * </p>
  */
-public class BasicChannelInitializerServer extends ChannelInitializer<SocketChannel> {
+public class BasicChannelInitializerServer extends ChannelInitializer<Channel> {
 
     private final Serializer serializer;
     private final Codec codec;
     private final boolean useSSL;
 
     private NetworkToTopologyCallbackServer userCallback;
+    private FlushBatching flushBatching;
+    private SlowConsumerPolicy slowConsumerPolicy;
+    private ChannelGroup channels;
+    private ServerSessions sessions;
+    private FrameLimits frameLimits = new FrameLimits();
+    private TlsContext tls;
 
 
     /**
@@ -55,16 +70,40 @@ public class BasicChannelInitializerServer extends ChannelInitializer<SocketChan
     }
 
     @Override
-    protected void initChannel(final SocketChannel channel) throws Exception {
+    protected void initChannel(final Channel channel) throws Exception {
         final ChannelPipeline pipeline = channel.pipeline();
 
-        if (useSSL) {
+        if (tls != null) {
+            pipeline.addLast("tls", tls.newHandler(channel.alloc(), null));
+        } else if (useSSL) {
             pipeline.addLast("tls", NonValidatingSSLEngineFactory.createSslHandler(false));
         }
+        if (flushBatching != null) {
+            pipeline.addLast("flush-batching", flushBatching.newHandler());
+        }
 
-        codec.addToPipeline(pipeline);
+        codec.addToPipeline(pipeline, frameLimits);
 
-        pipeline.addLast("message-to-command", new CommandToBinaryByteBuf(serializer));
+        addCommandHandlers(pipeline);
+    }
+
+    /**
+     * Adds the handlers that translate between buffers and commands and pass received commands to the user callback.
+     * 
+     * @param pipeline The pipeline of a channel whose framing is already set up.
+     */
+    void addCommandHandlers(final ChannelPipeline pipeline) {
+        if (channels != null) {
+            channels.add(pipeline.channel());
+        }
+        if (sessions != null) {
+            pipeline.addLast("session", new ServerSessionHandler(sessions));
+        }
+        pipeline.addLast("message-to-command", new CommandToBinaryByteBuf(serializer, frameLimits.getMaxFrameSize()));
+        pipeline.addLast("command-chunks", new ChunkedCommandsHandler());
+        if (slowConsumerPolicy != null) {
+            pipeline.addLast("slow-consumer", new SlowConsumerHandler(slowConsumerPolicy));
+        }
 
         pipeline.addLast("command-handler", new InboundCommandHandlerServer(userCallback));
         pipeline.addLast("event-handler", new NetworkEventHandlerServer(userCallback));
@@ -79,4 +118,59 @@ public class BasicChannelInitializerServer extends ChannelInitializer<SocketChan
     void setTopologyCallback(final NetworkToTopologyCallbackServer callback) {
         this.userCallback = callback;
     }
+
+    /**
+     * Sets how the flushes of the channels are combined.
+     * 
+     * @param flushBatching The settings or <code>null</code> if each flush should reach the socket immediately.
+     */
+    void setFlushBatching(final FlushBatching flushBatching) {
+        this.flushBatching = flushBatching;
+    }
+
+    /**
+     * Sets how commands for slow clients are held back.
+     * 
+     * @param policy The policy or <code>null</code> if commands should never be held back.
+     */
+    void setSlowConsumerPolicy(final SlowConsumerPolicy policy) {
+        this.slowConsumerPolicy = policy;
+    }
+
+    /**
+     * Sets the group that all initialized channels are added to.
+     * 
+     * @param channels The group or <code>null</code> if the channels should not be added to a group.
+     */
+    void setChannelGroup(final ChannelGroup channels) {
+        this.channels = channels;
+    }
+
+    /**
+     * Sets the sessions that the clients of the channels start or resume.
+     * 
+     * @param sessions The sessions or <code>null</code> if clients can't resume their sessions.
+     */
+    void setSessions(final ServerSessions sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Sets the limits for the frames of the channels.
+     * 
+     * @param frameLimits The limits.
+     */
+    void setFrameLimits(final FrameLimits frameLimits) {
+        this.frameLimits = frameLimits;
+    }
+
+    /**
+     * Sets the TLS configuration that the channels are encrypted with.
+     * 
+     * @param tls The configuration or <code>null</code> if the channels should not be encrypted with a shared
+     *            configuration.
+     */
+    void setTls(final TlsContext tls) {
+        this.tls = tls;
+    }
 }
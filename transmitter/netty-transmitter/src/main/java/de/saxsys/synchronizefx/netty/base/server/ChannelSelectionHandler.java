@@ -0,0 +1,132 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.CharsetUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the name of the channel a client wants to use from the first message it sends and passes the connection to
+ * this channel.
+ * 
+ * <p>
+ * The first message must contain nothing but the UTF-8 encoded channel name. Clients that select an unknown channel
+ * or don't select any channel in time are disconnected.
+ * </p>
+ */
+class ChannelSelectionHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelSelectionHandler.class);
+
+    /**
+     * The time in milliseconds in which a client must select a channel.
+     */
+    private static final long TIMEOUT = 10000;
+
+    private final NettyBasicMultiplexingServer parent;
+    private final long timeoutMillis;
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * Initializes an instance with all its dependencies.
+     * 
+     * @param parent The server that knows the available channels.
+     */
+    ChannelSelectionHandler(final NettyBasicMultiplexingServer parent) {
+        this(parent, TIMEOUT);
+    }
+
+    /**
+     * Initializes an instance with all its dependencies.
+     * 
+     * @param parent The server that knows the available channels.
+     * @param timeoutMillis The time in milliseconds in which a client must select a channel.
+     */
+    ChannelSelectionHandler(final NettyBasicMultiplexingServer parent, final long timeoutMillis) {
+        this.parent = parent;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        timeout = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                LOG.warn("The client at address " + ctx.channel().remoteAddress()
+                        + " did not select a channel in time. Closing the connection to this client.");
+                ctx.close();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        final String channelName;
+        try {
+            channelName = ((ByteBuf) msg).toString(CharsetUtil.UTF_8);
+        } finally {
+            ((ByteBuf) msg).release();
+        }
+        cancelTimeout();
+
+        final MultiplexedChannel channel = parent.getChannel(channelName);
+        if (channel == null || !channel.attach(ctx.pipeline())) {
+            LOG.warn("The client at address " + ctx.channel().remoteAddress() + " selected the channel \"" + channelName
+                    + "\" which is not available. Closing the connection to this client.");
+            ctx.close();
+            return;
+        }
+        // The handlers of the channel are added behind this one and need to know that the connection is active.
+        ctx.fireChannelActive();
+        ctx.pipeline().remove(this);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        cancelTimeout();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+        LOG.warn("An error occured while the client at address " + ctx.channel().remoteAddress()
+                + " selected a channel. Closing the connection to this client.", cause);
+        ctx.close();
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+}
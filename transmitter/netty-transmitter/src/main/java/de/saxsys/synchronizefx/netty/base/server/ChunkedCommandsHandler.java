@@ -0,0 +1,179 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Writes {@link CommandChunks} chunk by chunk while the channel can take further data.
+ * 
+ * <p>
+ * The next chunk is only passed on when the channel is writable. So only as much of a large list of commands is
+ * serialized as fits below the high water mark of the channel. Messages that are written while chunks are pending
+ * are held back until all chunks were written so that the client receives everything in order. The write of
+ * {@link CommandChunks} completes when its last chunk was written.
+ * </p>
+ * 
+ * <p>
+ * When the connection is lost before all chunks were written, the session of the client, if any, is ended. The
+ * client missed parts of the chunks and can't resume the session.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this handler.
+ * </p>
+ */
+class ChunkedCommandsHandler extends ChannelDuplexHandler {
+
+    private final Queue<PendingWrite> pending = new ArrayDeque<>();
+    private CommandChunks current;
+    private ChannelPromise currentPromise;
+    private boolean writing;
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        if (!writing && current == null && pending.isEmpty() && !(msg instanceof CommandChunks)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        pending.add(new PendingWrite(msg, promise));
+        writePending(ctx);
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        writePending(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable() && current != null) {
+            writePending(ctx);
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        discard(ctx);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        discard(ctx);
+    }
+
+    private void writePending(final ChannelHandlerContext ctx) {
+        // Writes may flush and a flush may fire channelWritabilityChanged on the same call stack.
+        if (writing) {
+            return;
+        }
+        writing = true;
+        try {
+            writeWhileWritable(ctx);
+        } finally {
+            writing = false;
+        }
+    }
+
+    private void writeWhileWritable(final ChannelHandlerContext ctx) {
+        while (true) {
+            if (current != null) {
+                if (!ctx.channel().isWritable()) {
+                    return;
+                }
+                final List<Command> chunk = current.next();
+                final ChannelPromise chunkPromise;
+                if (current.hasNext()) {
+                    chunkPromise = ctx.newPromise();
+                    chunkPromise.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+                } else {
+                    chunkPromise = currentPromise;
+                    current = null;
+                    currentPromise = null;
+                }
+                ctx.write(chunk, chunkPromise);
+                continue;
+            }
+            final PendingWrite next = pending.poll();
+            if (next == null) {
+                return;
+            }
+            if (next.message instanceof CommandChunks) {
+                current = (CommandChunks) next.message;
+                currentPromise = next.promise;
+            } else {
+                ctx.write(next.message, next.promise);
+            }
+        }
+    }
+
+    private void discard(final ChannelHandlerContext ctx) {
+        final ClosedChannelException cause = new ClosedChannelException();
+        for (PendingWrite write = pending.poll(); write != null; write = pending.poll()) {
+            ReferenceCountUtil.release(write.message);
+            write.promise.tryFailure(cause);
+        }
+        if (current == null) {
+            return;
+        }
+        currentPromise.tryFailure(cause);
+        current = null;
+        currentPromise = null;
+        final ServerSession session = ServerSession.of(ctx.channel());
+        if (session != null) {
+            session.expire();
+        }
+    }
+
+    /**
+     * A message that is held back until all pending chunks were written.
+     */
+    private static final class PendingWrite {
+        private final Object message;
+        private final ChannelPromise promise;
+
+        /**
+         * Initializes the write.
+         * 
+         * @param message The message to write.
+         * @param promise The promise of the write.
+         */
+        PendingWrite(final Object message, final ChannelPromise promise) {
+            this.message = message;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * A large list of commands that is written to a channel in chunks.
+ * 
+ * <p>
+ * Instances of this class are written to channels instead of the list itself. The {@link ChunkedCommandsHandler} of
+ * the channel passes the chunks on one after another.
+ * </p>
+ */
+final class CommandChunks {
+
+    private final List<Command> commands;
+    private final int commandsPerChunk;
+    private int next;
+
+    /**
+     * Initializes the chunks.
+     * 
+     * @param commands The commands to write.
+     * @param commandsPerChunk The maximum number of commands in a chunk.
+     */
+    CommandChunks(final List<Command> commands, final int commandsPerChunk) {
+        this.commands = commands;
+        this.commandsPerChunk = commandsPerChunk;
+    }
+
+    /**
+     * @return <code>true</code> if there are chunks left that were not yet retrieved with {@link #next()}.
+     */
+    boolean hasNext() {
+        return next < commands.size();
+    }
+
+    /**
+     * Retrieves the next chunk.
+     * 
+     * @return The commands of the chunk.
+     */
+    List<Command> next() {
+        final int end = Math.min(next + commandsPerChunk, commands.size());
+        final List<Command> chunk = commands.subList(next, end);
+        next = end;
+        return chunk;
+    }
+}
@@ -47,6 +47,6 @@ class InboundCommandHandlerServer extends SimpleChannelInboundHandler<List<Comma
 
     @Override
     protected void channelRead0(final ChannelHandlerContext client, final List<Command> commands) throws Exception {
-        callback.recive(commands, client.channel());
+        callback.recive(commands, ServerSession.clientOf(client.channel()));
     }
 }
@@ -0,0 +1,226 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.net.Inet6Address;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.netty.base.LossyPropertyTracker;
+import de.saxsys.synchronizefx.netty.base.MulticastDatagram;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the value changes of lossy properties over the {@link MulticastLane} of a {@link NettyBasicServer}.
+ * 
+ * <p>
+ * The latest value of each lossy property that changed is sent over the TCP connections again in the refresh
+ * interval of the lane so that clients that lost datagrams get it eventually.
+ * </p>
+ */
+final class MulticastSender {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MulticastSender.class);
+
+    private final NettyBasicServer server;
+    private final MulticastLane lane;
+    private final StreamingSerializer serializer;
+    private final ByteBufAllocator allocator;
+    private final LossyPropertyTracker tracker;
+    private final long serverId = UUID.randomUUID().getMostSignificantBits();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<UUID, Command> changed = new ConcurrentHashMap<>();
+
+    private EventLoopGroup group;
+    private Channel channel;
+
+    /**
+     * Initializes the sender.
+     * 
+     * @param server The server whose TCP connections are used to refresh the values.
+     * @param lane The settings of the multicast lane.
+     * @param serializer The serializer for the commands. It must not keep state per connection.
+     * @param allocator The allocator for the datagrams.
+     */
+    MulticastSender(final NettyBasicServer server, final MulticastLane lane, final StreamingSerializer serializer,
+            final ByteBufAllocator allocator) {
+        this.server = server;
+        this.lane = lane;
+        this.serializer = serializer;
+        this.allocator = allocator;
+        this.tracker = new LossyPropertyTracker(lane);
+    }
+
+    /**
+     * Opens the socket for the datagrams and starts to refresh the values of changed properties.
+     * 
+     * @throws SynchronizeFXException When the socket could not be opened.
+     */
+    void start() throws SynchronizeFXException {
+        final InternetProtocolFamily family = lane.getGroup().getAddress() instanceof Inet6Address
+                ? InternetProtocolFamily.IPv6 : InternetProtocolFamily.IPv4;
+        group = new NioEventLoopGroup(1);
+        final Bootstrap bootstrap = new Bootstrap().group(group).channelFactory(new ChannelFactory<Channel>() {
+            @Override
+            public Channel newChannel() {
+                return new NioDatagramChannel(family);
+            }
+        });
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator)
+                .option(ChannelOption.IP_MULTICAST_IF, lane.getNetworkInterface())
+                .option(ChannelOption.IP_MULTICAST_TTL, lane.getTimeToLive())
+                .option(ChannelOption.IP_MULTICAST_LOOP_DISABLED, false).handler(new ChannelInboundHandlerAdapter());
+
+        final ChannelFuture future = bootstrap.bind(0).awaitUninterruptibly();
+        if (!future.isSuccess()) {
+            group.shutdownGracefully();
+            throw new SynchronizeFXException("The socket for the multicast lane could not be opened.",
+                    future.cause());
+        }
+        channel = future.channel();
+        group.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, lane.getRefreshIntervalMillis(), lane.getRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the value changes of lossy properties over the multicast lane.
+     * 
+     * <p>
+     * The properties of objects that are created by the commands are not lossy yet because the clients don't know
+     * them before they received the commands over TCP.
+     * </p>
+     * 
+     * @param commands The commands that should be sent to all clients.
+     * @return The commands that still need to be sent over TCP. This is the passed list itself when no command was
+     *         sent over the multicast lane.
+     */
+    List<Command> divert(final List<Command> commands) {
+        List<Command> lossy = null;
+        List<Command> reliable = null;
+        for (int i = 0; i < commands.size(); i++) {
+            final Command command = commands.get(i);
+            if (tracker.isLossy(command)) {
+                if (lossy == null) {
+                    lossy = new ArrayList<>();
+                    reliable = new ArrayList<>(commands.subList(0, i));
+                }
+                lossy.add(command);
+            } else if (reliable != null) {
+                reliable.add(command);
+            }
+        }
+        tracker.learn(commands);
+        if (lossy == null) {
+            return commands;
+        }
+
+        final ByteBuf datagram;
+        try {
+            datagram = MulticastDatagram.encode(serializer, serverId, sequence.incrementAndGet(), lossy, allocator);
+        } catch (final SynchronizeFXException e) {
+            LOG.warn("Value changes could not be serialized for the multicast lane. Sending them over TCP.", e);
+            return commands;
+        }
+        if (datagram.readableBytes() > MulticastDatagram.MAX_SIZE) {
+            datagram.release();
+            return commands;
+        }
+        channel.writeAndFlush(new DatagramPacket(datagram, lane.getGroup()));
+        for (final Command command : lossy) {
+            changed.put(((SetPropertyValue) command).getPropertyId(), command);
+        }
+        return reliable.isEmpty() ? Collections.<Command> emptyList() : reliable;
+    }
+
+    /**
+     * Remembers the lossy properties of objects that are created by commands sent to single clients.
+     * 
+     * @param commands The commands.
+     */
+    void learn(final List<Command> commands) {
+        tracker.learn(commands);
+    }
+
+    /**
+     * Sends the latest values of the lossy properties that changed since the last refresh over TCP.
+     */
+    private void refresh() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        final List<Command> latest = new ArrayList<>(changed.size());
+        for (final Map.Entry<UUID, Command> change : changed.entrySet()) {
+            // A newer change that arrives meanwhile stays for the next refresh.
+            if (changed.remove(change.getKey(), change.getValue())) {
+                latest.add(change.getValue());
+            }
+        }
+        if (!latest.isEmpty()) {
+            server.sendToAllReliably(latest);
+        }
+    }
+
+    /**
+     * Closes the socket for the datagrams.
+     */
+    void shutdown() {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (group != null) {
+            group.shutdownGracefully();
+            group = null;
+        }
+        changed.clear();
+    }
+}
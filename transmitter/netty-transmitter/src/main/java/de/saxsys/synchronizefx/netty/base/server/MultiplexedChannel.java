@@ -0,0 +1,96 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * A {@link NettyBasicServer} that does not listen on a port on its own but gets the connections of the clients that
+ * selected it from a {@link NettyBasicMultiplexingServer}.
+ */
+class MultiplexedChannel extends NettyBasicServer {
+
+    private final NettyBasicMultiplexingServer parent;
+    private final Serializer serializer;
+    private final String name;
+    private volatile BasicChannelInitializerServer channelInitializer;
+
+    /**
+     * Initializes an instance with all its dependencies.
+     * 
+     * @param parent The server that accepts the connections for this channel.
+     * @param name The name clients use to select this channel.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param slowConsumerPolicy Defines how commands for clients that receive them too slowly are treated.
+     */
+    MultiplexedChannel(final NettyBasicMultiplexingServer parent, final String name, final Serializer serializer,
+            final SlowConsumerPolicy slowConsumerPolicy) {
+        super(0, serializer);
+        this.parent = parent;
+        this.name = name;
+        this.serializer = serializer;
+        setSlowConsumerPolicy(slowConsumerPolicy);
+    }
+
+    @Override
+    protected BasicChannelInitializerServer createChannelInitializer() {
+        // Only the command handlers are used. The framing is set up by the parent.
+        return new BasicChannelInitializerServer(serializer, null, false);
+    }
+
+    @Override
+    void bind(final BasicChannelInitializerServer initializer) {
+        this.channelInitializer = initializer;
+    }
+
+    @Override
+    void unbind() {
+        channelInitializer = null;
+        parent.channelCloses(this);
+    }
+
+    /**
+     * Passes a new connection to this channel.
+     * 
+     * @param pipeline The pipeline of the connection whose framing is already set up.
+     * @return <code>true</code> if this channel took the connection and <code>false</code> if it is not started or
+     *         already shut down.
+     */
+    boolean attach(final ChannelPipeline pipeline) {
+        final BasicChannelInitializerServer initializer = channelInitializer;
+        if (initializer == null) {
+            return false;
+        }
+        initializer.addCommandHandlers(pipeline);
+        return true;
+    }
+
+    /**
+     * The name clients use to select this channel.
+     * 
+     * @return The name.
+     */
+    String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,405 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.ServerCallback;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FlushBatching;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * Contains the base implementation for Netty based servers that serve many {@link SynchronizeFxServer}s on a single
+ * port.
+ * 
+ * <p>
+ * Each managed {@link SynchronizeFxServer} is identified by a channel name and keeps its own domain model. The first
+ * message a client sends after connecting must contain nothing but the UTF-8 encoded name of the channel it wants to
+ * use. Clients that select an unknown channel are disconnected. All channels share the port and the event loops of
+ * this server.
+ * </p>
+ * 
+ * <p>
+ * All methods of this class are Thread-safe.
+ * </p>
+ */
+public abstract class NettyBasicMultiplexingServer {
+
+    private final int port;
+    private final Serializer serializer;
+
+    // Use "channels" for synchronized access to all other fields.
+    private final Map<String, MultiplexedChannel> channels = new HashMap<>();
+    private NettyEventLoops eventLoops;
+    private NettyTransport transport = NettyTransport.NIO;
+    private FlushBatching flushBatching;
+    private FrameLimits frameLimits = new FrameLimits();
+    private TlsContext tls;
+    private SlowConsumerPolicy slowConsumerPolicy =
+            SlowConsumerPolicy.buffer(SlowConsumerPolicy.DEFAULT_MAX_QUEUED_COMMANDS);
+    private WriteBufferWaterMark writeBufferWaterMark;
+    private SessionResumption sessionResumption;
+
+    private NettyEventLoops activeEventLoops;
+    private Channel serverChannel;
+    private final ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param serializer The serializer that should be used by all channels to serialize SynchronizeFX messages.
+     */
+    public NettyBasicMultiplexingServer(final int port, final Serializer serializer) {
+        this.port = port;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Creates the codec that frames the messages of all connections.
+     * 
+     * @return The codec.
+     */
+    protected abstract Codec createCodec();
+
+    /**
+     * Sets the I/O implementation for all connections.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. It has no effect when shared event loops are set with
+     * {@link #setEventLoops(NettyEventLoops)} as their transport is used then.
+     * </p>
+     * 
+     * @param transport The transport to use. The default is {@link NettyTransport#NIO}.
+     * @throws IllegalArgumentException When <code>transport</code> is <code>null</code>.
+     */
+    public void setTransport(final NettyTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("The transport must not be null.");
+        }
+        synchronized (channels) {
+            this.transport = transport;
+        }
+    }
+
+    /**
+     * Sets the event loops that accept and handle the connections of all channels.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Event loops set here can be shared with other servers
+     * and clients and are not shut down when this server is shut down.
+     * </p>
+     * 
+     * @param eventLoops The event loops to use or <code>null</code> if this server should create its own.
+     */
+    public void setEventLoops(final NettyEventLoops eventLoops) {
+        synchronized (channels) {
+            this.eventLoops = eventLoops;
+        }
+    }
+
+    /**
+     * Sets how the flushes of all connections are combined into fewer writes to the socket.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called.
+     * </p>
+     * 
+     * @param flushBatching The settings or <code>null</code> if each flush should reach the socket immediately. This is
+     *            the default.
+     */
+    public void setFlushBatching(final FlushBatching flushBatching) {
+        synchronized (channels) {
+            this.flushBatching = flushBatching;
+        }
+    }
+
+    /**
+     * Sets the limits for the frames exchanged with the clients.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called and before channels are created.
+     * </p>
+     * 
+     * @param frameLimits The limits to use. The default are {@link FrameLimits#FrameLimits()}.
+     * @throws IllegalArgumentException When <code>frameLimits</code> is <code>null</code>.
+     * @see NettyBasicServer#setFrameLimits(FrameLimits)
+     */
+    public void setFrameLimits(final FrameLimits frameLimits) {
+        if (frameLimits == null) {
+            throw new IllegalArgumentException("The frame limits must not be null.");
+        }
+        synchronized (channels) {
+            this.frameLimits = frameLimits;
+        }
+    }
+
+    /**
+     * Encrypts the connections of all clients with TLS.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called.
+     * </p>
+     * 
+     * @param tls The TLS configuration of the server or <code>null</code> if the connections should not be
+     *            encrypted which is the default.
+     * @see NettyBasicServer#setTls(TlsContext)
+     */
+    public void setTls(final TlsContext tls) {
+        synchronized (channels) {
+            this.tls = tls;
+        }
+    }
+
+    /**
+     * Sets how commands for clients that receive them slower than they are produced are treated.
+     * 
+     * <p>
+     * The policy is used by all channels that are created afterwards.
+     * </p>
+     * 
+     * @param policy The policy to use. The default holds back up to
+     *            {@link SlowConsumerPolicy#DEFAULT_MAX_QUEUED_COMMANDS} commands per client.
+     * @throws IllegalArgumentException When <code>policy</code> is <code>null</code>.
+     * @see NettyBasicServer#setSlowConsumerPolicy(SlowConsumerPolicy)
+     */
+    public void setSlowConsumerPolicy(final SlowConsumerPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The slow consumer policy must not be null.");
+        }
+        synchronized (channels) {
+            this.slowConsumerPolicy = policy;
+        }
+    }
+
+    /**
+     * Sets the amount of data waiting to be sent after which a connection is no longer writable and when it becomes
+     * writable again.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called.
+     * </p>
+     * 
+     * @param waterMark The water marks in bytes or <code>null</code> to use the defaults of Netty.
+     * @see NettyBasicServer#setWriteBufferWaterMark(WriteBufferWaterMark)
+     */
+    public void setWriteBufferWaterMark(final WriteBufferWaterMark waterMark) {
+        synchronized (channels) {
+            this.writeBufferWaterMark = waterMark;
+        }
+    }
+
+    /**
+     * Enables clients to resume their sessions after they lost their connection.
+     * 
+     * <p>
+     * The settings are used by all channels that are created afterwards.
+     * </p>
+     * 
+     * @param sessionResumption The settings for the sessions or <code>null</code> if every connection of a client
+     *            should start from scratch which is the default.
+     * @see NettyBasicServer#setSessionResumption(SessionResumption)
+     */
+    public void setSessionResumption(final SessionResumption sessionResumption) {
+        synchronized (channels) {
+            this.sessionResumption = sessionResumption;
+        }
+    }
+
+    /**
+     * Creates a new {@link SynchronizeFxServer} that synchronizes it's own model.
+     * 
+     * <p>
+     * Clients can select the channel as soon as {@link SynchronizeFxServer#start()} was called.
+     * </p>
+     * 
+     * @param root The root object of the model that should be synchronized.
+     * @param channelName The name of the channel at which clients can connect to the new server.
+     * @param modelChangeExecutor An executor that should be used for all changes on the shared domain model or
+     *            <code>null</code> to use a default one. This executor <b>must</b> ensure that only one command
+     *            passed to it is executed at the same time.
+     * @param callback Used to inform the user of this class on errors. The methods in the callback are not called
+     *            before you call {@link SynchronizeFxServer#start()}
+     * @throws IllegalArgumentException When a {@link SynchronizeFxServer} was already created with the given channel
+     *             name and has not yet been shut down.
+     * @return The created server
+     */
+    public SynchronizeFxServer newChannel(final Object root, final String channelName,
+            final Executor modelChangeExecutor, final ServerCallback callback) {
+        final MultiplexedChannel channel = createChannel(channelName);
+        return modelChangeExecutor == null ? new SynchronizeFxServer(root, channel, callback)
+                : new SynchronizeFxServer(root, channel, modelChangeExecutor, callback);
+    }
+
+    /**
+     * Like {@link #newChannel(Object, String, Executor, ServerCallback)} but with a default model change executor.
+     * 
+     * @see #newChannel(Object, String, Executor, ServerCallback)
+     * @param root see {@link #newChannel(Object, String, Executor, ServerCallback)}
+     * @param channelName see {@link #newChannel(Object, String, Executor, ServerCallback)}
+     * @param callback see {@link #newChannel(Object, String, Executor, ServerCallback)}
+     * @return see {@link #newChannel(Object, String, Executor, ServerCallback)}
+     */
+    public SynchronizeFxServer newChannel(final Object root, final String channelName, final ServerCallback callback) {
+        return newChannel(root, channelName, null, callback);
+    }
+
+    /**
+     * Starts to listen for new connections.
+     * 
+     * @throws SynchronizeFXException When the server could not be started.
+     */
+    public void start() throws SynchronizeFXException {
+        synchronized (channels) {
+            // One thread is enough to accept the connections on a single port.
+            activeEventLoops = eventLoops == null ? new NettyEventLoops(transport, 1, 0) : eventLoops;
+            final Codec codec = createCodec();
+            final FlushBatching connectionFlushBatching = flushBatching;
+            final FrameLimits connectionFrameLimits = frameLimits;
+            final TlsContext connectionTls = tls;
+
+            final ServerBootstrap bootstrap = new ServerBootstrap();
+            bootstrap.group(activeEventLoops.getAcceptorGroup(), activeEventLoops.getIoGroup())
+                    .channel(activeEventLoops.getTransport().serverChannelType())
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel channel) throws Exception {
+                            connections.add(channel);
+                            final ChannelPipeline pipeline = channel.pipeline();
+                            if (connectionTls != null) {
+                                pipeline.addLast("tls", connectionTls.newHandler(channel.alloc(), null));
+                            }
+                            if (connectionFlushBatching != null) {
+                                pipeline.addLast("flush-batching", connectionFlushBatching.newHandler());
+                            }
+                            codec.addToPipeline(pipeline, connectionFrameLimits);
+                            pipeline.addLast("channel-selection",
+                                    new ChannelSelectionHandler(NettyBasicMultiplexingServer.this));
+                        }
+                    }).option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .childOption(ChannelOption.TCP_NODELAY, true).childOption(ChannelOption.SO_KEEPALIVE, true);
+            if (writeBufferWaterMark != null) {
+                bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark);
+            }
+
+            serverChannel = bootstrap.bind(port).syncUninterruptibly().channel();
+        }
+    }
+
+    /**
+     * Shuts down all channels and this server and disconnects all remaining clients.
+     */
+    public void shutdown() {
+        final List<MultiplexedChannel> toShutdown;
+        synchronized (channels) {
+            toShutdown = new ArrayList<>(channels.values());
+        }
+        for (final MultiplexedChannel channel : toShutdown) {
+            channel.shutdown();
+        }
+        synchronized (channels) {
+            if (serverChannel != null) {
+                serverChannel.close();
+                serverChannel = null;
+            }
+            // Closes also the connections that have not yet selected a channel.
+            connections.close();
+            if (activeEventLoops != null && activeEventLoops != eventLoops) {
+                activeEventLoops.shutdownGracefully();
+            }
+            activeEventLoops = null;
+        }
+    }
+
+    // Used by MultiplexedChannel and ChannelSelectionHandler
+
+    /**
+     * Creates the network layer of a new channel and makes it available for clients.
+     * 
+     * @param channelName The name of the channel.
+     * @return The channel. Clients can select it as soon as it was started.
+     * @throws IllegalArgumentException When a channel with this name already exists.
+     */
+    MultiplexedChannel createChannel(final String channelName) {
+        synchronized (channels) {
+            if (channels.containsKey(channelName)) {
+                throw new IllegalArgumentException("A new SynchronizeFX channel with the name \"" + channelName
+                        + "\" should be created but a channel with this name does already exist.");
+            }
+            final MultiplexedChannel channel =
+                    new MultiplexedChannel(this, channelName, serializer, slowConsumerPolicy);
+            channel.setSessionResumption(sessionResumption);
+            channel.setFrameLimits(frameLimits);
+            channels.put(channelName, channel);
+            return channel;
+        }
+    }
+
+    /**
+     * Looks up the channel with a given name.
+     * 
+     * @param channelName The name of the channel.
+     * @return The channel or <code>null</code> if no channel with this name exists.
+     */
+    MultiplexedChannel getChannel(final String channelName) {
+        synchronized (channels) {
+            return channels.get(channelName);
+        }
+    }
+
+    /**
+     * This is called when a channel is shut down and should therefore no longer accept new connections.
+     * 
+     * @param channel The channel that closes.
+     */
+    void channelCloses(final MultiplexedChannel channel) {
+        synchronized (channels) {
+            if (channels.get(channel.getName()) == channel) {
+                channels.remove(channel.getName());
+            }
+        }
+    }
+}
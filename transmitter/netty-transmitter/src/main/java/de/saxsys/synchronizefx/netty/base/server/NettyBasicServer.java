@@ -19,45 +19,154 @@
 
 package de.saxsys.synchronizefx.netty.base.server;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Iterator;
 import java.util.List;
 
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
 import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.CommandToBinaryByteBuf;
+import de.saxsys.synchronizefx.netty.base.FlushBatching;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+import de.saxsys.synchronizefx.netty.base.NettyEventLoops;
+import de.saxsys.synchronizefx.netty.base.NettyTransport;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+import de.saxsys.synchronizefx.netty.base.TlsContext;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelMatcher;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.util.concurrent.Future;
-import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
 /**
  * Contains the base server implementation for all Netty based {@link CommandTransferServer}s.
+ * 
+ * <p>
+ * When a serializer is passed to this class, commands that are sent to several clients are serialized only once. The
+ * resulting buffer is shared by all channels so that only framing, compression and encryption are done per channel.
+ * When the commands that are echoed to the sender of a change are the same as the ones that were sent to all other
+ * clients, the buffer is reused for the echo too. {@link ConnectionScopedSerializer}s whose connection serializers
+ * keep state can't share their serialized form between connections, so every channel serializes the commands on its
+ * own in this case.
+ * </p>
+ * 
+ * <p>
+ * By default the buffers for all connections are taken from {@link PooledByteBufAllocator#DEFAULT}.
+ * </p>
+ * 
+ * <p>
+ * The initial state of the domain model is written to new clients in chunks as specified by the {@link FrameLimits}.
+ * A chunk is serialized only when the connection of the client can take further data.
+ * </p>
+ * 
+ * <p>
+ * Commands for clients whose connections can't take further data are held back according to a
+ * {@link SlowConsumerPolicy}. This keeps a single stalled connection from exhausting the memory of the server.
+ * </p>
+ * 
+ * <p>
+ * Unless {@link NettyEventLoops} are passed to {@link #setEventLoops(NettyEventLoops)} each server creates its own
+ * event loops with a single thread for accepting connections.
+ * </p>
+ * 
+ * <p>
+ * Servers that listen on a {@link DomainSocketAddress} accept connections of clients on the same host over a Unix
+ * domain socket. They always use the {@link NettyTransport#EPOLL} transport.
+ * </p>
+ * 
+ * <p>
+ * When {@link SessionResumption} is enabled, clients are represented by sessions instead of channels. A client that
+ * reconnects within the timeout of the session gets only the messages it missed instead of the whole domain model.
+ * </p>
+ * 
+ * <p>
+ * With a {@link MulticastLane}, value changes of lossy properties are sent once to a multicast group instead of
+ * over the connection of each client.
+ * </p>
+ * 
+ * <p>
+ * A {@link TlsContext} encrypts the connections of all clients with a single shared context.
+ * </p>
  */
 public abstract class NettyBasicServer implements CommandTransferServer {
 
-    private NioEventLoopGroup connectionAccptorGroup;
-    private NioEventLoopGroup clientConnectionGroup;
+    private NettyEventLoops eventLoops;
+    private NettyEventLoops activeEventLoops;
+    private Channel serverChannel;
 
     private ChannelGroup clients = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // Contains also the channels that are not yet ready to receive commands.
+    private ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
-    private final int port;
+    private final SocketAddress localAddress;
+    private final Serializer serializer;
+    private StreamingSerializer broadcastSerializer;
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private NettyTransport transport = NettyTransport.NIO;
+    private FlushBatching flushBatching;
+    private FrameLimits frameLimits = new FrameLimits();
+    private SlowConsumerPolicy slowConsumerPolicy =
+            SlowConsumerPolicy.buffer(SlowConsumerPolicy.DEFAULT_MAX_QUEUED_COMMANDS);
+    private WriteBufferWaterMark writeBufferWaterMark;
+    private SessionResumption sessionResumption;
+    private ServerSessions sessions;
+    private MulticastLane multicastLane;
+    private TlsContext tls;
+    private MulticastSender multicast;
     private NetworkToTopologyCallbackServer callback;
 
+    private final Object echoLock = new Object();
+    private SerializedCommands echo;
+
     /**
-     * Initializes an instance.
+     * Initializes an instance where each channel serializes the commands sent to it on its own.
      * 
      * @param port The port to listen on when the server is {@link #start()}ed.
      */
     public NettyBasicServer(final int port) {
-        this.port = port;
+        this(port, null);
+    }
+
+    /**
+     * Initializes an instance that serializes commands sent to several clients only once.
+     * 
+     * @param port The port to listen on when the server is {@link #start()}ed.
+     * @param serializer The serializer that is used by the channels of this server or <code>null</code> if each
+     *            channel should serialize the commands sent to it on its own.
+     */
+    public NettyBasicServer(final int port, final Serializer serializer) {
+        this(new InetSocketAddress(port), serializer);
+    }
+
+    /**
+     * Initializes an instance that serializes commands sent to several clients only once.
+     * 
+     * @param localAddress The address to listen on when the server is {@link #start()}ed. This is either an
+     *            {@link InetSocketAddress} or a {@link DomainSocketAddress}.
+     * @param serializer The serializer that is used by the channels of this server or <code>null</code> if each
+     *            channel should serialize the commands sent to it on its own.
+     */
+    public NettyBasicServer(final SocketAddress localAddress, final Serializer serializer) {
+        this.localAddress = localAddress;
+        this.serializer = serializer;
     }
 
     /**
@@ -68,20 +177,285 @@ public abstract class NettyBasicServer implements CommandTransferServer {
      */
     protected abstract BasicChannelInitializerServer createChannelInitializer();
 
+    /**
+     * Sets the allocator for the buffers of all connections.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. A {@link PooledByteBufAllocator} reduces the garbage
+     * produced at high message rates. Whether it prefers direct or heap buffers can be chosen when creating it.
+     * </p>
+     * 
+     * @param allocator The allocator to use. The default is {@link PooledByteBufAllocator#DEFAULT}.
+     * @throws IllegalArgumentException When <code>allocator</code> is <code>null</code>.
+     */
+    public void setAllocator(final ByteBufAllocator allocator) {
+        if (allocator == null) {
+            throw new IllegalArgumentException("The allocator must not be null.");
+        }
+        this.allocator = allocator;
+    }
+
+    /**
+     * Sets how the flushes of all connections are combined into fewer writes to the socket.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called.
+     * </p>
+     * 
+     * @param flushBatching The settings or <code>null</code> if each flush should reach the socket immediately. This is
+     *            the default.
+     */
+    public void setFlushBatching(final FlushBatching flushBatching) {
+        this.flushBatching = flushBatching;
+    }
+
+    /**
+     * Sets the limits for the frames exchanged with the clients.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Clients should use the same limits.
+     * </p>
+     * 
+     * @param frameLimits The limits to use. The default are {@link FrameLimits#FrameLimits()}.
+     * @throws IllegalArgumentException When <code>frameLimits</code> is <code>null</code>.
+     */
+    public void setFrameLimits(final FrameLimits frameLimits) {
+        if (frameLimits == null) {
+            throw new IllegalArgumentException("The frame limits must not be null.");
+        }
+        this.frameLimits = frameLimits;
+    }
+
+    /**
+     * Encrypts the connections of all clients with TLS.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Clients must encrypt their connections too. TLS
+     * sessions are cached as configured by the context so that reconnecting clients can resume them.
+     * </p>
+     * 
+     * @param tls The TLS configuration of the server or <code>null</code> if the connections should not be
+     *            encrypted which is the default.
+     */
+    public void setTls(final TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Sets the I/O implementation for all connections.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. It has no effect when shared event loops are set with
+     * {@link #setEventLoops(NettyEventLoops)} as their transport is used then.
+     * </p>
+     * 
+     * @param transport The transport to use. The default is {@link NettyTransport#NIO}.
+     * @throws IllegalArgumentException When <code>transport</code> is <code>null</code>.
+     */
+    public void setTransport(final NettyTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("The transport must not be null.");
+        }
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the event loops that accept and handle the connections of this server.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Event loops set here can be shared with other servers
+     * and clients and are not shut down when this server is shut down.
+     * </p>
+     * 
+     * @param eventLoops The event loops to use or <code>null</code> if this server should create its own.
+     */
+    public void setEventLoops(final NettyEventLoops eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    /**
+     * Sets how commands for clients that receive them slower than they are produced are treated.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. A client is considered slow while its channel is not
+     * writable, i.e. more data than the high water mark of {@link #setWriteBufferWaterMark(WriteBufferWaterMark)} is
+     * waiting to be sent to it.
+     * </p>
+     * 
+     * @param policy The policy to use. The default holds back up to
+     *            {@link SlowConsumerPolicy#DEFAULT_MAX_QUEUED_COMMANDS} commands per client.
+     * @throws IllegalArgumentException When <code>policy</code> is <code>null</code>.
+     */
+    public void setSlowConsumerPolicy(final SlowConsumerPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The slow consumer policy must not be null.");
+        }
+        this.slowConsumerPolicy = policy;
+    }
+
+    /**
+     * Sets the amount of data waiting to be sent after which a channel is no longer writable and when it becomes
+     * writable again.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. The high water mark should be large enough for the
+     * initial state of the domain model if clients should not be treated as slow while receiving it.
+     * </p>
+     * 
+     * @param waterMark The water marks in bytes or <code>null</code> to use the defaults of Netty.
+     */
+    public void setWriteBufferWaterMark(final WriteBufferWaterMark waterMark) {
+        this.writeBufferWaterMark = waterMark;
+    }
+
+    /**
+     * Enables clients to resume their sessions after they lost their connection.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Clients must enable session resumption too. The
+     * messages of a session are resent as they were serialized, so the serializer of this server must be passed to
+     * the constructor and must not keep state per connection.
+     * </p>
+     * 
+     * @param sessionResumption The settings for the sessions or <code>null</code> if every connection of a client
+     *            should start from scratch which is the default.
+     */
+    public void setSessionResumption(final SessionResumption sessionResumption) {
+        this.sessionResumption = sessionResumption;
+    }
+
+    /**
+     * Sends value changes of lossy properties over UDP multicast.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. Clients must use the same settings. The serializer of
+     * this server must be passed to the constructor and must not keep state per connection.
+     * </p>
+     * 
+     * @param multicastLane The settings of the multicast lane or <code>null</code> if all commands should be sent
+     *            over the connections of the clients which is the default.
+     */
+    public void setMulticastLane(final MulticastLane multicastLane) {
+        this.multicastLane = multicastLane;
+    }
+
+    /**
+     * The number of commands currently held back for a client because it receives them too slowly.
+     * 
+     * @param client The client as passed to {@link NetworkToTopologyCallbackServer#onConnect(Object)}.
+     * @return The command count.
+     * @see #setSlowConsumerPolicy(SlowConsumerPolicy)
+     */
+    public int getQueuedCommands(final Object client) {
+        final Channel channel = ServerSession.channelOf(client);
+        if (channel == null) {
+            return 0;
+        }
+        final SlowConsumerHandler handler = channel.pipeline().get(SlowConsumerHandler.class);
+        return handler == null ? 0 : handler.getQueuedCommands();
+    }
+
+    /**
+     * The number of bytes that are waiting to be sent to a client.
+     * 
+     * @param client The client as passed to {@link NetworkToTopologyCallbackServer#onConnect(Object)}.
+     * @return The byte count.
+     */
+    public long getPendingWriteBytes(final Object client) {
+        final Channel channel = ServerSession.channelOf(client);
+        if (channel == null) {
+            return 0;
+        }
+        final ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
     @Override
     public void start() throws SynchronizeFXException {
-        this.connectionAccptorGroup = new NioEventLoopGroup();
-        this.clientConnectionGroup = new NioEventLoopGroup();
+        this.broadcastSerializer = createBroadcastSerializer();
+        if (sessionResumption != null && broadcastSerializer == null) {
+            throw new SynchronizeFXException("Sessions can only be resumed with a serializer that is passed to the "
+                    + "server and does not keep state per connection.");
+        }
+        if (multicastLane != null && broadcastSerializer == null) {
+            throw new SynchronizeFXException("The multicast lane can only be used with a serializer that is passed to "
+                    + "the server and does not keep state per connection.");
+        }
+        this.sessions = sessionResumption == null ? null : new ServerSessions(sessionResumption, callback);
 
         BasicChannelInitializerServer channelInitializer = createChannelInitializer();
         channelInitializer.setTopologyCallback(callback);
+        channelInitializer.setFlushBatching(flushBatching);
+        channelInitializer.setSlowConsumerPolicy(slowConsumerPolicy);
+        channelInitializer.setChannelGroup(connections);
+        channelInitializer.setSessions(sessions);
+        channelInitializer.setFrameLimits(frameLimits);
+        channelInitializer.setTls(tls);
+
+        bind(channelInitializer);
+        if (multicastLane != null) {
+            multicast = new MulticastSender(this, multicastLane, broadcastSerializer, allocator);
+            try {
+                multicast.start();
+            } catch (final SynchronizeFXException e) {
+                multicast = null;
+                unbind();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Starts to accept connections whose pipelines are set up by the passed initializer.
+     * 
+     * @param channelInitializer The initializer for the channels of new connections.
+     * @throws SynchronizeFXException When the connections can't be accepted.
+     */
+    void bind(final BasicChannelInitializerServer channelInitializer) throws SynchronizeFXException {
+        final boolean domainSocket = localAddress instanceof DomainSocketAddress;
+        // One thread is enough to accept the connections on a single port.
+        this.activeEventLoops = eventLoops == null
+                ? new NettyEventLoops(domainSocket ? NettyTransport.EPOLL : transport, 1, 0) : eventLoops;
 
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.group(connectionAccptorGroup, clientConnectionGroup).channel(NioServerSocketChannel.class)
-                .childHandler(channelInitializer).childOption(ChannelOption.TCP_NODELAY, true)
-                .childOption(ChannelOption.SO_KEEPALIVE, true);
+        bootstrap.group(activeEventLoops.getAcceptorGroup(), activeEventLoops.getIoGroup())
+                .option(ChannelOption.ALLOCATOR, allocator).childHandler(channelInitializer)
+                .childOption(ChannelOption.ALLOCATOR, allocator);
+        if (domainSocket) {
+            bootstrap.channel(activeEventLoops.getTransport().domainServerChannelType());
+        } else {
+            bootstrap.channel(activeEventLoops.getTransport().serverChannelType())
+                    .childOption(ChannelOption.TCP_NODELAY, true).childOption(ChannelOption.SO_KEEPALIVE, true);
+        }
+        if (writeBufferWaterMark != null) {
+            bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark);
+        }
+
+        serverChannel = bootstrap.bind(localAddress).syncUninterruptibly().channel();
+    }
+
+    /**
+     * Stops to accept new connections and releases the resources that were needed to accept them.
+     */
+    void unbind() {
+        if (serverChannel != null) {
+            serverChannel.close();
+            serverChannel = null;
+        }
+        if (activeEventLoops != null && activeEventLoops != eventLoops) {
+            activeEventLoops.shutdownGracefully();
+        }
+    }
 
-        bootstrap.bind(port).syncUninterruptibly();
+    private StreamingSerializer createBroadcastSerializer() {
+        if (serializer == null) {
+            return null;
+        }
+        if (serializer instanceof ConnectionScopedSerializer
+                && ((ConnectionScopedSerializer) serializer).newConnectionSerializer() != serializer) {
+            return null;
+        }
+        return StreamingSerializerAdapter.adapt(serializer);
     }
 
     @Override
@@ -91,36 +465,181 @@ public abstract class NettyBasicServer implements CommandTransferServer {
 
     @Override
     public void onConnectFinished(final Object client) {
-        clients.add((Channel) client);
+        if (client instanceof ServerSession) {
+            ((ServerSession) client).connectFinished();
+        } else {
+            clients.add((Channel) client);
+        }
     }
 
     @Override
     public void sendToAll(final List<Command> commands) {
-        clients.writeAndFlush(commands);
+        final List<Command> reliable = multicast == null ? commands : multicast.divert(commands);
+        if (!reliable.isEmpty()) {
+            sendToAllReliably(reliable);
+        }
+    }
+
+    /**
+     * Sends commands to all clients over their connections.
+     * 
+     * @param commands The commands to send.
+     */
+    void sendToAllReliably(final List<Command> commands) {
+        final SerializedCommands serialized = serialize(commands);
+        if (sessions != null) {
+            sessions.writeToAll(serialized == null ? commands : serialized, null);
+            return;
+        }
+        // The channel group writes a retained duplicate of buffers to each channel and releases the original.
+        clients.writeAndFlush(serialized == null ? commands : serialized);
     }
 
     @Override
     public void send(final List<Command> commands, final Object client) {
-        ((Channel) client).writeAndFlush(commands);
+        if (multicast != null) {
+            // The initial state of the domain model is only sent to single clients.
+            multicast.learn(commands);
+        }
+        final SerializedCommands serialized = takeEcho(commands);
+        final Object message;
+        if (serialized != null) {
+            message = serialized;
+        } else if (commands.size() > frameLimits.getCommandsPerChunk()) {
+            message = new CommandChunks(commands, frameLimits.getCommandsPerChunk());
+        } else {
+            message = commands;
+        }
+        if (client instanceof ServerSession) {
+            ((ServerSession) client).write(message);
+            return;
+        }
+        ((Channel) client).writeAndFlush(message);
     }
 
     @Override
-    public void sendToAllExcept(final List<Command> commands, final Object nonReciver) {
-        clients.writeAndFlush(commands, new ChannelMatcher() {
+    public void sendToAllExcept(final List<Command> toSend, final Object nonReciver) {
+        final List<Command> commands = multicast == null ? toSend : multicast.divert(toSend);
+        if (commands.isEmpty()) {
+            return;
+        }
+        final ChannelMatcher matcher = new ChannelMatcher() {
             @Override
             public boolean matches(final Channel candidate) {
                 return candidate != nonReciver;
             }
-        });
+        };
+        final SerializedCommands serialized = serialize(commands);
+        if (serialized != null) {
+            keepEcho(serialized.retain());
+        }
+        if (sessions != null) {
+            sessions.writeToAll(serialized == null ? commands : serialized, nonReciver);
+        } else {
+            clients.writeAndFlush(serialized == null ? commands : serialized, matcher);
+        }
+    }
+
+    /**
+     * Serializes commands once for all channels if possible.
+     * 
+     * @param commands The commands to serialize.
+     * @return The serialized commands or <code>null</code> if each channel has to serialize them on its own.
+     */
+    private SerializedCommands serialize(final List<Command> commands) {
+        if (broadcastSerializer == null) {
+            return null;
+        }
+        try {
+            final ByteBuf buffer = CommandToBinaryByteBuf.serialize(broadcastSerializer, commands, allocator);
+            if (buffer.readableBytes() > frameLimits.getMaxFrameSize()) {
+                // The channels split the commands into several frames on their own.
+                buffer.release();
+                return null;
+            }
+            return new SerializedCommands(commands, buffer);
+        } catch (final SynchronizeFXException e) {
+            // Let the channels fail on their own so that the usual handling of connection errors applies.
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the serialized form of commands sent to all clients but the sender of a change.
+     * 
+     * <p>
+     * The sender usually receives the same commands as an echo right afterwards.
+     * </p>
+     * 
+     * @param serialized The serialized commands. This method takes over the responsibility to release them.
+     */
+    private void keepEcho(final SerializedCommands serialized) {
+        synchronized (echoLock) {
+            releaseEcho();
+            echo = serialized;
+        }
+    }
+
+    /**
+     * Retrieves the kept serialized form of commands if they are the same as the commands that should be sent.
+     * 
+     * <p>
+     * A kept serialized form is only used once. It is released if it can't be used.
+     * </p>
+     * 
+     * @param commands The commands that should be sent.
+     * @return The serialized form which the caller has to release or <code>null</code> if there is no serialized
+     *         form for the commands.
+     */
+    private SerializedCommands takeEcho(final List<Command> commands) {
+        synchronized (echoLock) {
+            if (echo == null) {
+                return null;
+            }
+            if (!sameCommands(echo.commands(), commands)) {
+                releaseEcho();
+                return null;
+            }
+            final SerializedCommands taken = echo;
+            echo = null;
+            return taken;
+        }
+    }
+
+    private void releaseEcho() {
+        if (echo != null) {
+            echo.release();
+            echo = null;
+        }
+    }
+
+    private boolean sameCommands(final List<Command> kept, final List<Command> toSend) {
+        if (kept.size() != toSend.size()) {
+            return false;
+        }
+        final Iterator<Command> keptIterator = kept.iterator();
+        for (final Command command : toSend) {
+            if (keptIterator.next() != command) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void shutdown() {
-        connectionAccptorGroup.shutdownGracefully().addListener(new GenericFutureListener<Future<Object>>() {
-            @Override
-            public void operationComplete(final Future<Object> future) throws Exception {
-                clientConnectionGroup.shutdownGracefully();
-            }
-        });
+        synchronized (echoLock) {
+            releaseEcho();
+        }
+        if (multicast != null) {
+            multicast.shutdown();
+            multicast = null;
+        }
+        // Shared event loops keep running so the connections of this server need to be closed explicitly.
+        connections.close();
+        if (sessions != null) {
+            sessions.clear();
+        }
+        unbind();
     };
 }
@@ -54,7 +54,7 @@ class NetworkEventHandlerServer extends ChannelDuplexHandler {
     @Override
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
         LOG.info("A client connected from the address " + ctx.channel().remoteAddress());
-        userCallback.onConnect(ctx.channel());
+        userCallback.onConnect(ServerSession.clientOf(ctx.channel()));
         ctx.fireChannelActive();
     }
 
@@ -71,7 +71,10 @@ class NetworkEventHandlerServer extends ChannelDuplexHandler {
                         + ". Closing the connection to this client.";
         LOG.warn(message, cause);
         ctx.channel().close();
-        userCallback.onClientConnectionError(ctx.channel(), new SynchronizeFXException(message, cause));
+        // Clients with a session are reported when they do not reconnect in time.
+        if (ServerSession.of(ctx.channel()) == null) {
+            userCallback.onClientConnectionError(ctx.channel(), new SynchronizeFXException(message, cause));
+        }
     }
 
     @Override
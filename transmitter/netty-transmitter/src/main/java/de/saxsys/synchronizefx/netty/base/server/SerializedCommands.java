@@ -0,0 +1,69 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * Commands that where serialized once to be written to several channels.
+ * 
+ * <p>
+ * The commands are kept next to their serialized form so that they can still be held back and conflated for slow
+ * clients. {@link io.netty.channel.group.ChannelGroup}s write a retained duplicate of this holder to each channel.
+ * </p>
+ */
+class SerializedCommands extends DefaultByteBufHolder {
+
+    private final List<Command> commands;
+
+    /**
+     * Initializes the holder.
+     * 
+     * @param commands The commands that where serialized.
+     * @param serialized The serialized form of the commands.
+     */
+    SerializedCommands(final List<Command> commands, final ByteBuf serialized) {
+        super(serialized);
+        this.commands = commands;
+    }
+
+    /**
+     * @return The commands that where serialized.
+     */
+    List<Command> commands() {
+        return commands;
+    }
+
+    @Override
+    public SerializedCommands replace(final ByteBuf content) {
+        return new SerializedCommands(commands, content);
+    }
+
+    @Override
+    public SerializedCommands retain() {
+        super.retain();
+        return this;
+    }
+}
@@ -0,0 +1,323 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * The state of a client that outlives a single connection when {@link SessionResumption} is enabled.
+ * 
+ * <p>
+ * Instances of this class are passed to the core as clients instead of the channels. The session counts the messages
+ * it sent and received and keeps the latest sent messages so that a client that reconnects can get the messages it
+ * missed. Messages that are sent while the client is not connected are held back until it reconnects.
+ * </p>
+ * 
+ * <p>
+ * All methods of this class are Thread-safe.
+ * </p>
+ */
+final class ServerSession {
+
+    private static final AttributeKey<ServerSession> SESSION = AttributeKey.valueOf(ServerSession.class, "session");
+
+    private final UUID id;
+    private final ServerSessions sessions;
+    private final SessionResumption settings;
+
+    private final Deque<ByteBuf> history = new ArrayDeque<>();
+    private long historyBytes;
+    private final List<Object> pending = new ArrayList<>();
+    private long sentCount;
+    private long receivedCount;
+    private Channel channel;
+    private boolean connectFinished;
+    private boolean expired;
+    private ScheduledFuture<?> expiry;
+
+    /**
+     * Initializes a new session.
+     * 
+     * @param id The id of the session.
+     * @param sessions The sessions of the server that this session belongs to.
+     * @param settings The settings for the history of the session.
+     */
+    ServerSession(final UUID id, final ServerSessions sessions, final SessionResumption settings) {
+        this.id = id;
+        this.sessions = sessions;
+        this.settings = settings;
+    }
+
+    /**
+     * The object that represents the client of a channel in the core.
+     * 
+     * @param channel The channel to a client.
+     * @return The session of the channel or the channel itself if it has no session.
+     */
+    static Object clientOf(final Channel channel) {
+        final ServerSession session = channel.attr(SESSION).get();
+        return session == null ? channel : session;
+    }
+
+    /**
+     * The channel that currently connects to a client.
+     * 
+     * @param client The client as passed to the core.
+     * @return The channel or <code>null</code> if the client is currently not connected.
+     */
+    static Channel channelOf(final Object client) {
+        if (client instanceof ServerSession) {
+            return ((ServerSession) client).getChannel();
+        }
+        return (Channel) client;
+    }
+
+    /**
+     * The session that a channel belongs to.
+     * 
+     * @param channel The channel.
+     * @return The session or <code>null</code> if the channel does not belong to a session.
+     */
+    static ServerSession of(final Channel channel) {
+        return channel.attr(SESSION).get();
+    }
+
+    /**
+     * @return The id of this session.
+     */
+    UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return The channel that currently connects to the client or <code>null</code> if it is not connected.
+     */
+    synchronized Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Binds this session to the first connection of the client.
+     * 
+     * @param newChannel The connection.
+     */
+    synchronized void attach(final Channel newChannel) {
+        this.channel = newChannel;
+        newChannel.attr(SESSION).set(this);
+    }
+
+    /**
+     * Binds this session to a new connection of the client and resends the messages the client missed.
+     * 
+     * @param ctx The context of the {@link ServerSessionHandler} of the new connection.
+     * @param clientReceivedCount The number of messages the client received in this session.
+     * @return <code>true</code> if the session was resumed and <code>false</code> if the client missed messages that
+     *         are no longer known.
+     */
+    synchronized boolean resume(final ChannelHandlerContext ctx, final long clientReceivedCount) {
+        final long firstInHistory = sentCount - history.size();
+        if (expired || clientReceivedCount > sentCount || clientReceivedCount < firstInHistory) {
+            return false;
+        }
+        cancelExpiry();
+        if (channel != null) {
+            // The old connection was lost but the server has not noticed it yet. It is unbound first so that closing
+            // it does not schedule the expiry of this session.
+            final Channel old = channel;
+            channel = null;
+            old.close();
+        }
+
+        ctx.write(SessionHandshake.message(ctx.alloc(), SessionHandshake.RESUMED, receivedCount));
+        long sequence = firstInHistory;
+        for (final ByteBuf message : history) {
+            sequence++;
+            if (sequence > clientReceivedCount) {
+                ctx.write(message.retainedDuplicate());
+            }
+        }
+        channel = ctx.channel();
+        channel.attr(SESSION).set(this);
+        for (final Object message : pending) {
+            channel.write(message);
+        }
+        pending.clear();
+        channel.flush();
+        return true;
+    }
+
+    /**
+     * Unbinds this session from a connection that was closed.
+     * 
+     * <p>
+     * The session expires if the client does not reconnect in time.
+     * </p>
+     * 
+     * @param closed The closed connection.
+     */
+    synchronized void detach(final Channel closed) {
+        if (channel != closed || expired) {
+            return;
+        }
+        channel = null;
+        try {
+            expiry = closed.eventLoop().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire();
+                }
+            }, settings.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // The event loop is shut down so the client can't reconnect anyway.
+            expire();
+        }
+    }
+
+    /**
+     * Sends a message to the client or holds it back until the client reconnects.
+     * 
+     * @param message The commands to send. This method takes over the responsibility to release them.
+     */
+    synchronized void write(final Object message) {
+        if (expired) {
+            ReferenceCountUtil.release(message);
+            return;
+        }
+        if (channel != null) {
+            channel.writeAndFlush(message);
+            return;
+        }
+        pending.add(message);
+        if (pending.size() > settings.getHistorySize()) {
+            expire();
+        }
+    }
+
+    /**
+     * Remembers a message that is about to be sent to the client.
+     * 
+     * <p>
+     * Messages that are still written to a connection after the session moved to a new one are sent through the
+     * new connection.
+     * </p>
+     * 
+     * @param ctx The context of the {@link ServerSessionHandler} of the connection the message is written to.
+     * @param message The serialized message.
+     * @return <code>true</code> if the message should be written to the connection of <code>ctx</code> and
+     *         <code>false</code> if it was passed to another connection.
+     */
+    synchronized boolean record(final ChannelHandlerContext ctx, final ByteBuf message) {
+        if (channel != null && channel != ctx.channel()) {
+            channel.writeAndFlush(message);
+            return false;
+        }
+        sentCount++;
+        history.addLast(message.retainedDuplicate());
+        historyBytes += message.readableBytes();
+        while (history.size() > settings.getHistorySize()
+                || (historyBytes > settings.getMaxHistoryBytes() && history.size() > 1)) {
+            final ByteBuf removed = history.removeFirst();
+            historyBytes -= removed.readableBytes();
+            removed.release();
+        }
+        return true;
+    }
+
+    /**
+     * Counts a message received from the client.
+     */
+    synchronized void received() {
+        receivedCount++;
+    }
+
+    /**
+     * Marks that the client received the domain model and should get all further changes.
+     */
+    synchronized void connectFinished() {
+        connectFinished = true;
+    }
+
+    /**
+     * @return <code>true</code> if the client should get all changes of the domain model.
+     */
+    synchronized boolean isConnectFinished() {
+        return connectFinished;
+    }
+
+    /**
+     * Ends this session so that the client can't resume it.
+     */
+    void expire() {
+        sessions.expire(this);
+    }
+
+    /**
+     * Ends this session and releases the messages it keeps.
+     * 
+     * <p>
+     * This method is used by {@link ServerSessions}. Use {@link #expire()} to end a session.
+     * </p>
+     * 
+     * @return <code>true</code> if the session was ended and <code>false</code> if it was already expired.
+     */
+    synchronized boolean release() {
+        if (expired) {
+            return false;
+        }
+        expired = true;
+        cancelExpiry();
+        for (final ByteBuf message : history) {
+            message.release();
+        }
+        history.clear();
+        historyBytes = 0;
+        for (final Object message : pending) {
+            ReferenceCountUtil.release(message);
+        }
+        pending.clear();
+        if (channel != null) {
+            channel.close();
+        }
+        return true;
+    }
+
+    private void cancelExpiry() {
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts or resumes the {@link ServerSession} of a connection and keeps track of the messages that are exchanged in
+ * it.
+ * 
+ * <p>
+ * This handler expects framed messages. The first message of a client is a {@link SessionHandshake}. The connection
+ * is reported as active to the following handlers only when it starts a new session. For a resumed session the
+ * client is already known to the core.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this handler.
+ * </p>
+ */
+class ServerSessionHandler extends ChannelDuplexHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServerSessionHandler.class);
+
+    private final ServerSessions sessions;
+    private ServerSession session;
+
+    /**
+     * Initializes the handler.
+     * 
+     * @param sessions The sessions of the server.
+     */
+    ServerSessionHandler(final ServerSessions sessions) {
+        this.sessions = sessions;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+        // The following handlers are informed when the client told whether it starts or resumes a session.
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (session != null) {
+            session.received();
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        final ByteBuf handshake = (ByteBuf) msg;
+        try {
+            final byte type = handshake.readByte();
+            if (type == SessionHandshake.NEW) {
+                session = sessions.create(ctx.channel());
+                ctx.writeAndFlush(SessionHandshake.message(ctx.alloc(), SessionHandshake.ACCEPTED, session.getId(), 0));
+                ctx.fireChannelActive();
+            } else if (type == SessionHandshake.RESUME) {
+                resume(ctx, SessionHandshake.readSessionId(handshake), handshake.readLong());
+            } else {
+                throw new SynchronizeFXException("The client at address " + ctx.channel().remoteAddress()
+                        + " sent an unknown session handshake of type " + type + ".");
+            }
+        } finally {
+            handshake.release();
+        }
+    }
+
+    private void resume(final ChannelHandlerContext ctx, final UUID id, final long receivedCount) {
+        final ServerSession resumed = sessions.get(id);
+        if (resumed != null && resumed.resume(ctx, receivedCount)) {
+            session = resumed;
+            LOG.info("The client at address " + ctx.channel().remoteAddress() + " resumed the session " + id + ".");
+            return;
+        }
+        LOG.info("The client at address " + ctx.channel().remoteAddress() + " can't resume the session " + id
+                + ". It needs to connect again.");
+        ctx.writeAndFlush(SessionHandshake.message(ctx.alloc(), SessionHandshake.REJECTED)).addListener(
+                ChannelFutureListener.CLOSE);
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        if (session != null && msg instanceof ByteBuf && !session.record(ctx, (ByteBuf) msg)) {
+            promise.trySuccess();
+            return;
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        if (session != null) {
+            session.detach(ctx.channel());
+        }
+        ctx.fireChannelInactive();
+    }
+}
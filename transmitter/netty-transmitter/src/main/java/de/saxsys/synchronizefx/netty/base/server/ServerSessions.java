@@ -0,0 +1,129 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ServerSession}s of all clients of a server.
+ * 
+ * <p>
+ * All methods of this class are Thread-safe.
+ * </p>
+ */
+final class ServerSessions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServerSessions.class);
+
+    private final ConcurrentMap<UUID, ServerSession> sessions = new ConcurrentHashMap<>();
+    private final SessionResumption settings;
+    private final NetworkToTopologyCallbackServer callback;
+
+    /**
+     * Initializes an instance without any sessions.
+     * 
+     * @param settings The settings for all sessions.
+     * @param callback The callback that is informed when a client did not reconnect in time.
+     */
+    ServerSessions(final SessionResumption settings, final NetworkToTopologyCallbackServer callback) {
+        this.settings = settings;
+        this.callback = callback;
+    }
+
+    /**
+     * Starts a new session for a client.
+     * 
+     * @param channel The first connection of the client.
+     * @return The new session.
+     */
+    ServerSession create(final Channel channel) {
+        final ServerSession session = new ServerSession(UUID.randomUUID(), this, settings);
+        session.attach(channel);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Looks up a session.
+     * 
+     * @param id The id of the session.
+     * @return The session or <code>null</code> if there is no session with this id.
+     */
+    ServerSession get(final UUID id) {
+        return sessions.get(id);
+    }
+
+    /**
+     * Ends a session whose client did not reconnect in time or can't be resumed.
+     * 
+     * @param session The session to end.
+     */
+    void expire(final ServerSession session) {
+        sessions.remove(session.getId(), session);
+        if (session.release()) {
+            final String message = "The client of the session " + session.getId()
+                    + " did not reconnect in time or missed too many messages.";
+            LOG.info(message);
+            callback.onClientConnectionError(session, new SynchronizeFXException(message));
+        }
+    }
+
+    /**
+     * Sends a message to all clients that received the domain model.
+     * 
+     * @param message The commands to send. This method takes over the responsibility to release them.
+     * @param nonReceiver The client that should not receive the message or <code>null</code> if all clients should.
+     */
+    void writeToAll(final Object message, final Object nonReceiver) {
+        try {
+            for (final ServerSession session : sessions.values()) {
+                if (session != nonReceiver && session.isConnectFinished()) {
+                    session.write(message instanceof ByteBufHolder ? ((ByteBufHolder) message).retainedDuplicate()
+                            : message);
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    /**
+     * Ends all sessions without informing the callback.
+     */
+    void clear() {
+        for (final ServerSession session : sessions.values()) {
+            session.release();
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.CommandBacklog;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds back commands for a client whose connection is not writable according to a {@link SlowConsumerPolicy}.
+ * 
+ * <p>
+ * A channel is not writable when more data than its high water mark is waiting to be sent. Commands written in this
+ * state are added to a {@link CommandBacklog} instead of being passed on. When the channel becomes writable again,
+ * all held back commands are written as a single batch. When the backlog exceeds the limit of the policy, the
+ * connection is closed and the write fails so that the usual handling of client errors applies.
+ * </p>
+ * 
+ * <p>
+ * The handler remembers the ids of the {@link SetPropertyValue} commands the client sent. Messages that contain the
+ * echo of such a command are held back without conflating them, because the client ignores further changes of the
+ * property until it received the echo.
+ * </p>
+ * 
+ * <p>
+ * When the client has a {@link ServerSession}, the commands held back when the connection is lost are passed on so
+ * that they are sent when the client resumes the session. A client that is disconnected because of the policy can't
+ * resume its session as it would miss the dropped commands.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this handler.
+ * </p>
+ */
+class SlowConsumerHandler extends ChannelDuplexHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowConsumerHandler.class);
+
+    private final SlowConsumerPolicy policy;
+    private final CommandBacklog backlog;
+    private final Set<UUID> awaitedEchoes = new HashSet<>();
+    private volatile int queuedCommands;
+    private boolean disconnected;
+
+    /**
+     * Initializes the handler.
+     * 
+     * @param policy The policy that defines how commands for slow clients are held back.
+     */
+    SlowConsumerHandler(final SlowConsumerPolicy policy) {
+        this.policy = policy;
+        this.backlog = new CommandBacklog(policy);
+    }
+
+    /**
+     * The number of commands that are currently held back for the client.
+     * 
+     * <p>
+     * This method can be called from any thread.
+     * </p>
+     * 
+     * @return The command count.
+     */
+    int getQueuedCommands() {
+        return queuedCommands;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (msg instanceof List) {
+            for (final Object command : (List<?>) msg) {
+                if (command instanceof SetPropertyValue) {
+                    awaitedEchoes.add(((SetPropertyValue) command).getCommandId());
+                }
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        final List<Command> commands;
+        if (msg instanceof SerializedCommands) {
+            commands = ((SerializedCommands) msg).commands();
+        } else if (msg instanceof List) {
+            commands = (List<Command>) msg;
+        } else {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final boolean echo = removeAwaitedEchoes(commands);
+        if (disconnected || (backlog.isEmpty() && ctx.channel().isWritable())) {
+            ctx.write(msg instanceof SerializedCommands ? ((SerializedCommands) msg).content() : msg, promise);
+            return;
+        }
+
+        ReferenceCountUtil.release(msg);
+        if (!backlog.add(commands, !echo)) {
+            disconnectSlowClient(ctx, promise);
+            return;
+        }
+        queuedCommands = backlog.size();
+        promise.trySuccess();
+        if (ctx.channel().isWritable()) {
+            writeBacklog(ctx);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable() && !backlog.isEmpty()) {
+            writeBacklog(ctx);
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        if (ServerSession.of(ctx.channel()) != null && !disconnected && !backlog.isEmpty()) {
+            // The session remembers the commands so that they are sent again when the client reconnects.
+            writeBacklog(ctx);
+        } else {
+            backlog.drain();
+            queuedCommands = 0;
+        }
+        disconnected = true;
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * Checks whether commands contain echoes the client waits for and forgets about these echoes.
+     * 
+     * @param commands The commands that are written to the client.
+     * @return <code>true</code> if at least one of the commands is an echo the client waits for.
+     */
+    private boolean removeAwaitedEchoes(final List<Command> commands) {
+        if (awaitedEchoes.isEmpty()) {
+            return false;
+        }
+        boolean echo = false;
+        for (final Command command : commands) {
+            if (command instanceof SetPropertyValue
+                    && awaitedEchoes.remove(((SetPropertyValue) command).getCommandId())) {
+                echo = true;
+            }
+        }
+        return echo;
+    }
+
+    private void writeBacklog(final ChannelHandlerContext ctx) {
+        final List<Command> pending = backlog.drain();
+        queuedCommands = 0;
+        ctx.write(pending).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
+    private void disconnectSlowClient(final ChannelHandlerContext ctx, final ChannelPromise promise) {
+        disconnected = true;
+        backlog.drain();
+        queuedCommands = 0;
+        final String message = "The client at address " + ctx.channel().remoteAddress()
+                + " does not receive commands fast enough for the " + policy + ".";
+        LOG.warn(message + " Disconnecting it so that it can resynchronize.");
+        promise.tryFailure(new SynchronizeFXException(message));
+        final ServerSession session = ServerSession.of(ctx.channel());
+        if (session != null) {
+            session.expire();
+        }
+        ctx.close();
+    }
+}
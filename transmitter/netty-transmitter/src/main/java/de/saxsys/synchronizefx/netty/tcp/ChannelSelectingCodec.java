@@ -0,0 +1,64 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.tcp;
+
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * Extends a codec by sending the name of the channel the client wants to use as first message to the server.
+ * 
+ * @see NettyMultiplexingServer
+ */
+class ChannelSelectingCodec implements Codec {
+
+    private final Codec codec;
+    private final String channelName;
+
+    /**
+     * Initializes the codec.
+     * 
+     * @param codec The codec that frames the messages.
+     * @param channelName The name of the channel to select.
+     */
+    ChannelSelectingCodec(final Codec codec, final String channelName) {
+        this.codec = codec;
+        this.channelName = channelName;
+    }
+
+    @Override
+    public void addToPipeline(final ChannelPipeline pipeline, final FrameLimits limits) {
+        codec.addToPipeline(pipeline, limits);
+        pipeline.addLast("channel-selection", new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+                // This is written before any handler behind this one can send commands.
+                ctx.writeAndFlush(ByteBufUtil.writeUtf8(ctx.alloc(), channelName));
+                ctx.fireChannelActive();
+                ctx.pipeline().remove(this);
+            }
+        });
+    }
+}
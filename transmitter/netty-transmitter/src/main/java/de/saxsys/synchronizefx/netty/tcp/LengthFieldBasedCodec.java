@@ -20,6 +20,9 @@
 package de.saxsys.synchronizefx.netty.tcp;
 
 import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.FrameCompressionHandler;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
 
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
@@ -28,12 +31,40 @@ import io.netty.handler.codec.LengthFieldPrepender;
 /**
  * A codec that collects coherent messages by prepending the size of the message to the message itself.
  * 
+ * <p>
+ * If compression is enabled, the messages are compressed with a {@link FrameCompressionHandler}. Both sides of a
+ * connection must enable it then. Without compression the messages are sent as they are. Messages whose announced
+ * size exceeds the {@link FrameLimits} are discarded without reading them into memory.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
-class LengthFieldBasedCodec implements Codec {
+public class LengthFieldBasedCodec implements Codec {
+
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    private final FrameCompression compression;
+
+    /**
+     * Initializes the codec.
+     * 
+     * @param compression The settings for compressing the messages of a connection or <code>null</code> if they
+     *            should not be compressed.
+     */
+    public LengthFieldBasedCodec(final FrameCompression compression) {
+        this.compression = compression;
+    }
+
     @Override
-    public void addToPipeline(final ChannelPipeline pipeline) {
-        pipeline.addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
-        pipeline.addLast(new LengthFieldPrepender(4));
+    public void addToPipeline(final ChannelPipeline pipeline, final FrameLimits limits) {
+        final int maxFrameSize = compression == null ? limits.getMaxFrameSize()
+                : FrameCompressionHandler.maxEncodedSize(limits.getMaxFrameSize());
+        // The maximal length of the decoder includes the length field.
+        final int maxFrameLength = (int) Math.min((long) maxFrameSize + LENGTH_FIELD_SIZE, Integer.MAX_VALUE);
+        pipeline.addLast(new LengthFieldBasedFrameDecoder(maxFrameLength, 0, LENGTH_FIELD_SIZE, 0, LENGTH_FIELD_SIZE));
+        pipeline.addLast(new LengthFieldPrepender(LENGTH_FIELD_SIZE));
+        if (compression != null) {
+            pipeline.addLast("compression", new FrameCompressionHandler(compression, limits.getMaxFrameSize()));
+        }
     }
 }
@@ -23,6 +23,7 @@ import java.net.InetSocketAddress;
 
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxClient;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
 import de.saxsys.synchronizefx.netty.base.client.BasicChannelInitializerClient;
 import de.saxsys.synchronizefx.netty.base.client.NettyBasicClient;
 
@@ -39,6 +40,8 @@ import de.saxsys.synchronizefx.netty.base.client.NettyBasicClient;
 public class NettyClient extends NettyBasicClient {
 
     private final Serializer serializer;
+    private final FrameCompression compression;
+    private final String channelName;
 
     /**
      * Takes the required informations to connect to a server but doesn't actually connect to it.
@@ -50,13 +53,53 @@ public class NettyClient extends NettyBasicClient {
      * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
      */
     public NettyClient(final String serverAdress, final int port, final Serializer serializer) {
+        this(serverAdress, port, serializer, null);
+    }
+
+    /**
+     * Takes the required informations to connect to a server but doesn't actually connect to it.
+     * 
+     * The opening of the connection is done by {@link SynchronizeFxClient}.
+     * 
+     * @param serverAdress The domain name or IP address of a server to connect to.
+     * @param port The port of the server to connect to.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to the server or <code>null</code> if the
+     *            connection should not be compressed. Compression must be enabled on the server as well.
+     */
+    public NettyClient(final String serverAdress, final int port, final Serializer serializer,
+            final FrameCompression compression) {
+        this(serverAdress, port, null, serializer, compression);
+    }
+
+    /**
+     * Takes the required informations to connect to a channel of a {@link NettyMultiplexingServer} but doesn't
+     * actually connect to it.
+     * 
+     * The opening of the connection is done by {@link SynchronizeFxClient}.
+     * 
+     * @param serverAdress The domain name or IP address of a server to connect to.
+     * @param port The port of the server to connect to.
+     * @param channelName The name of the channel to connect to or <code>null</code> if the server is a
+     *            {@link NettyServer} that serves only a single domain model.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to the server or <code>null</code> if the
+     *            connection should not be compressed. Compression must be enabled on the server as well.
+     */
+    public NettyClient(final String serverAdress, final int port, final String channelName,
+            final Serializer serializer, final FrameCompression compression) {
         super(new InetSocketAddress(serverAdress, port));
         this.serializer = serializer;
+        this.compression = compression;
+        this.channelName = channelName;
     }
 
     @Override
     protected BasicChannelInitializerClient createChannelInitializer() {
-        LengthFieldBasedCodec codec = new LengthFieldBasedCodec();
-        return new BasicChannelInitializerClient(serializer, codec, false);
+        final LengthFieldBasedCodec codec = new LengthFieldBasedCodec(compression);
+        if (channelName == null) {
+            return new BasicChannelInitializerClient(serializer, codec, false);
+        }
+        return new BasicChannelInitializerClient(serializer, new ChannelSelectingCodec(codec, channelName), false);
     }
 }
@@ -0,0 +1,68 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.tcp;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicMultiplexingServer;
+
+/**
+ * A server side transmitter implementation for SynchronizeFX that uses Netty and serves many
+ * {@link SynchronizeFxServer}s on a single port.
+ * 
+ * <p>
+ * Clients select the {@link SynchronizeFxServer} they want to connect to by passing its channel name to
+ * {@link NettyClient#NettyClient(String, int, String, Serializer, FrameCompression)}.
+ * </p>
+ */
+public class NettyMultiplexingServer extends NettyBasicMultiplexingServer {
+
+    private final FrameCompression compression;
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     */
+    public NettyMultiplexingServer(final int port, final Serializer serializer) {
+        this(port, serializer, null);
+    }
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to clients or <code>null</code> if the
+     *            connections should not be compressed. Compression must be enabled on the clients as well.
+     */
+    public NettyMultiplexingServer(final int port, final Serializer serializer, final FrameCompression compression) {
+        super(port, serializer);
+        this.compression = compression;
+    }
+
+    @Override
+    protected Codec createCodec() {
+        return new LengthFieldBasedCodec(compression);
+    }
+}
@@ -21,6 +21,7 @@ package de.saxsys.synchronizefx.netty.tcp;
 
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
 import de.saxsys.synchronizefx.netty.base.server.BasicChannelInitializerServer;
 import de.saxsys.synchronizefx.netty.base.server.NettyBasicServer;
 
@@ -37,6 +38,7 @@ import de.saxsys.synchronizefx.netty.base.server.NettyBasicServer;
 public class NettyServer extends NettyBasicServer {
 
     private Serializer serializer;
+    private final FrameCompression compression;
 
     /**
      * Takes the required informations needed to start the server but doesn't actually start it.
@@ -47,13 +49,28 @@ public class NettyServer extends NettyBasicServer {
      * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
      */
     public NettyServer(final int port, final Serializer serializer) {
-        super(port);
+        this(port, serializer, null);
+    }
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * The starting of the server is done by {@link SynchronizeFxServer}.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to clients or <code>null</code> if the
+     *            connections should not be compressed. Compression must be enabled on the clients as well.
+     */
+    public NettyServer(final int port, final Serializer serializer, final FrameCompression compression) {
+        super(port, serializer);
         this.serializer = serializer;
+        this.compression = compression;
     }
 
     @Override
     protected BasicChannelInitializerServer createChannelInitializer() {
-        return new BasicChannelInitializerServer(serializer, new LengthFieldBasedCodec(), false);
+        return new BasicChannelInitializerServer(serializer, new LengthFieldBasedCodec(compression), false);
     }
     
 }
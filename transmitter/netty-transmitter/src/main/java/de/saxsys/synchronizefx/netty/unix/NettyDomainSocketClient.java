@@ -0,0 +1,77 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.unix;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxClient;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.client.BasicChannelInitializerClient;
+import de.saxsys.synchronizefx.netty.base.client.NettyBasicClient;
+import de.saxsys.synchronizefx.netty.tcp.LengthFieldBasedCodec;
+
+import io.netty.channel.unix.DomainSocketAddress;
+
+/**
+ * A client side transmitter implementation for SynchronizeFX that connects to a {@link NettyDomainSocketServer} on
+ * the same host.
+ * 
+ * <p>
+ * This class is intended to be used as input for {@link SynchronizeFxClient}.
+ * </p>
+ */
+public class NettyDomainSocketClient extends NettyBasicClient {
+
+    private final Serializer serializer;
+    private final FrameCompression compression;
+
+    /**
+     * Takes the required informations to connect to a server but doesn't actually connect to it.
+     * 
+     * The opening of the connection is done by {@link SynchronizeFxClient}.
+     * 
+     * @param socketPath The path of the socket file the server listens on.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     */
+    public NettyDomainSocketClient(final String socketPath, final Serializer serializer) {
+        this(socketPath, serializer, null);
+    }
+
+    /**
+     * Takes the required informations to connect to a server but doesn't actually connect to it.
+     * 
+     * The opening of the connection is done by {@link SynchronizeFxClient}.
+     * 
+     * @param socketPath The path of the socket file the server listens on.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to the server or <code>null</code> if the
+     *            connection should not be compressed. Compression must be enabled on the server as well.
+     */
+    public NettyDomainSocketClient(final String socketPath, final Serializer serializer,
+            final FrameCompression compression) {
+        super(new DomainSocketAddress(socketPath));
+        this.serializer = serializer;
+        this.compression = compression;
+    }
+
+    @Override
+    protected BasicChannelInitializerClient createChannelInitializer() {
+        return new BasicChannelInitializerClient(serializer, new LengthFieldBasedCodec(compression), false);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.unix;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.server.BasicChannelInitializerServer;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicServer;
+import de.saxsys.synchronizefx.netty.tcp.LengthFieldBasedCodec;
+
+import io.netty.channel.unix.DomainSocketAddress;
+
+/**
+ * A server side transmitter implementation for SynchronizeFX that accepts clients on the same host over a Unix
+ * domain socket.
+ * 
+ * <p>
+ * This class is intended to be used as input for {@link SynchronizeFxServer}. The socket file is created when the
+ * server is started and removed when it is shut down. Starting the server fails when the file already exists.
+ * </p>
+ */
+public class NettyDomainSocketServer extends NettyBasicServer {
+
+    private final Serializer serializer;
+    private final FrameCompression compression;
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * The starting of the server is done by {@link SynchronizeFxServer}.
+     * 
+     * @param socketPath The path of the socket file to listen on for new connections.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     */
+    public NettyDomainSocketServer(final String socketPath, final Serializer serializer) {
+        this(socketPath, serializer, null);
+    }
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * The starting of the server is done by {@link SynchronizeFxServer}.
+     * 
+     * @param socketPath The path of the socket file to listen on for new connections.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression The settings for compressing the messages sent to clients or <code>null</code> if the
+     *            connections should not be compressed. Compression must be enabled on the clients as well.
+     */
+    public NettyDomainSocketServer(final String socketPath, final Serializer serializer,
+            final FrameCompression compression) {
+        super(new DomainSocketAddress(socketPath), serializer);
+        this.serializer = serializer;
+        this.compression = compression;
+    }
+
+    @Override
+    protected BasicChannelInitializerServer createChannelInitializer() {
+        return new BasicChannelInitializerServer(serializer, new LengthFieldBasedCodec(compression), false);
+    }
+}
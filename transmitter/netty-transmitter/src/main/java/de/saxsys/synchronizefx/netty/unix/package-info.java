@@ -0,0 +1,29 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Provides server and client implementations that use Unix domain sockets to connect JVMs on the same host.
+ * 
+ * <p>
+ * They have less latency and need less CPU time than TCP connections over the loopback interface. Messages are
+ * framed like in {@link de.saxsys.synchronizefx.netty.tcp}. Unix domain sockets require the native epoll transport
+ * of Netty and are therefore only available on Linux.
+ * </p>
+ */
+package de.saxsys.synchronizefx.netty.unix;
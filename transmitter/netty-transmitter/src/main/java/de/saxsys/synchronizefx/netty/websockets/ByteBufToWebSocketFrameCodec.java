@@ -23,10 +23,11 @@ import java.util.LinkedList;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
@@ -36,6 +37,11 @@ import org.slf4j.LoggerFactory;
 /**
  * A codec that collects coherent messages as {@link ByteBuf}s by using {@link BinaryWebSocketFrame}s.
  * 
+ * <p>
+ * Messages that are fragmented into several websocket frames are reassembled. Messages that grow larger than the
+ * maximum message size while they are reassembled are rejected.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 class ByteBufToWebSocketFrameCodec extends MessageToMessageCodec<WebSocketFrame, ByteBuf> {
@@ -44,23 +50,36 @@ class ByteBufToWebSocketFrameCodec extends MessageToMessageCodec<WebSocketFrame,
     private static final Logger LOG = LoggerFactory.getLogger(ByteBufToWebSocketFrameCodec.class);
 
     private final List<ByteBuf> fragments = new LinkedList<>();
+    private final int maxMessageSize;
+    private long fragmentsSize;
 
     /**
      * Initializes the codec.
+     * 
+     * @param maxMessageSize The size in bytes of the largest message that is accepted.
      */
-    ByteBufToWebSocketFrameCodec() {
+    ByteBufToWebSocketFrameCodec(final int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
     }
 
     @Override
     protected void encode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out) throws Exception {
-        out.add(new BinaryWebSocketFrame(msg));
+        // MessageToMessageCodec releases the message after encoding, but the frame shares its content.
+        out.add(new BinaryWebSocketFrame(msg.retain()));
     }
 
     @Override
     protected void decode(final ChannelHandlerContext ctx, final WebSocketFrame msg, final List<Object> out)
         throws Exception {
-        if (msg instanceof BinaryWebSocketFrame) {
+        final boolean continuation = msg instanceof ContinuationWebSocketFrame && !fragments.isEmpty();
+        if (msg instanceof BinaryWebSocketFrame || continuation) {
             ByteBuf content = msg.content();
+            fragmentsSize += content.readableBytes();
+            if (fragmentsSize > maxMessageSize) {
+                releaseFragments();
+                throw new TooLongFrameException("Received a websocket message that is larger than the maximum message "
+                        + "size of " + maxMessageSize + " bytes.");
+            }
             // the content is passed to other handlers so they need to be retained.
             content.retain();
             fragments.add(content);
@@ -69,12 +88,26 @@ class ByteBufToWebSocketFrameCodec extends MessageToMessageCodec<WebSocketFrame,
                     out.add(fragments.get(0));
                 } else {
                     ByteBuf[] array = fragments.toArray(BYTE_BUF_TYPE);
-                    out.add(Unpooled.wrappedBuffer(array));
+                    out.add(ctx.alloc().compositeBuffer(array.length).addComponents(true, array));
                 }
                 fragments.clear();
+                fragmentsSize = 0;
             }
         } else if (msg instanceof TextWebSocketFrame) {
             LOG.warn("Recieved a Websocket text frame. This was not expected. Ignoring it.");
         }
     }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        releaseFragments();
+    }
+
+    private void releaseFragments() {
+        for (final ByteBuf fragment : fragments) {
+            fragment.release();
+        }
+        fragments.clear();
+        fragmentsSize = 0;
+    }
 }
@@ -28,7 +28,9 @@ import java.util.concurrent.TimeUnit;
 
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
 import de.saxsys.synchronizefx.netty.base.client.BasicChannelInitializerClient;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
 import de.saxsys.synchronizefx.netty.base.client.NettyBasicClient;
 
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
@@ -49,6 +51,7 @@ public class NettyWebsocketClient extends NettyBasicClient {
     private final URI serverUri;
     private final Serializer serializer;
     private final Map<String, Object> httpHeaders;
+    private final FrameCompression compression;
     private final boolean useSsl;
 
     /**
@@ -74,20 +77,56 @@ public class NettyWebsocketClient extends NettyBasicClient {
      */
     public NettyWebsocketClient(final URI serverUri, final String channelName, final Serializer serializer,
             final Map<String, Object> httpHeaders) {
+        this(serverUri, channelName, serializer, httpHeaders, null);
+    }
+
+    /**
+     * Initializes the transmitter.
+     * 
+     * @param serverUri The URI for the server to connect to. The scheme must be <code>ws</code> for a HTTP based
+     *            websocket connection and <code>wss</code> for a HTTPS based connection.
+     * @param channelName The name of the channel to connect to at the given server URI.
+     * @param serializer The serializer to use to serialize SynchronizeFX messages.
+     * @param httpHeaders header parameter for the http connection
+     * @param compression The settings for compressing messages with the permessage-deflate extension or
+     *            <code>null</code> if the extension should not be offered to the server. The threshold of the
+     *            settings is not used as the extension compresses all messages.
+     */
+    public NettyWebsocketClient(final URI serverUri, final String channelName, final Serializer serializer,
+            final Map<String, Object> httpHeaders, final FrameCompression compression) {
         super(new InetSocketAddress(serverUri.getHost(), serverUri.getPort()));
         this.serverUri = concatUri(serverUri, channelName);
         this.serializer = serializer;
-        this.httpHeaders = new HashMap<>(httpHeaders);
+        this.httpHeaders = httpHeaders == null ? new HashMap<String, Object>() : new HashMap<>(httpHeaders);
+        this.compression = compression;
         this.useSsl = uriRequiresSslOrFail();
     }
 
     @Override
     protected BasicChannelInitializerClient createChannelInitializer() {
-        WebsocketChannelInitializer codec = new WebsocketChannelInitializer(serverUri, httpHeaders);
+        WebsocketChannelInitializer codec = new WebsocketChannelInitializer(serverUri, httpHeaders, compression);
         return new BasicChannelInitializerClient(serializer, codec, useSsl);
 
     }
 
+    /**
+     * Session resumption is not supported for websocket connections yet.
+     * 
+     * <p>
+     * The session handshake would be sent before the websocket handshake is complete.
+     * </p>
+     * 
+     * @param sessionResumption Must be <code>null</code>.
+     * @throws UnsupportedOperationException When <code>sessionResumption</code> is not <code>null</code>.
+     */
+    @Override
+    public void setSessionResumption(final SessionResumption sessionResumption) {
+        if (sessionResumption != null) {
+            throw new UnsupportedOperationException("Websocket clients can't resume sessions.");
+        }
+        super.setSessionResumption(null);
+    }
+
     @Override
     public void disconnect() {
         eventLoopGroup.schedule(new Runnable() {
@@ -0,0 +1,79 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.server.NettyBasicMultiplexingServer;
+
+/**
+ * A server side transmitter implementation for SynchronizeFX that uses websockets on top of Netty.
+ * 
+ * <p>
+ * Unlike the servlet based websocket servers this server needs no thread per client. All frames are written by the
+ * event loops of Netty and the binary frames share the buffers the commands were serialized into.
+ * </p>
+ * 
+ * <p>
+ * A single instance of this class can handle multiple {@link SynchronizeFxServer}s at the same time. A client
+ * wishing to connect to a specific {@link SynchronizeFxServer} must open a websocket connection to
+ * <code>ws://&lt;host&gt;:&lt;port&gt;&lt;base-path&gt;/&lt;channel-name&gt;</code> with the sub-protocol
+ * "v2.websocket.synchronizefx.saxsys.de". {@link NettyWebsocketClient} does this when it is given the base URI and
+ * the channel name.
+ * </p>
+ */
+public class NettyWebsocketServer extends NettyBasicMultiplexingServer {
+
+    private final String basePath;
+    private final boolean compression;
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param basePath The path below which the channels can be reached, e.g. <code>"/synchronizefx"</code>.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     */
+    public NettyWebsocketServer(final int port, final String basePath, final Serializer serializer) {
+        this(port, basePath, serializer, false);
+    }
+
+    /**
+     * Takes the required informations needed to start the server but doesn't actually start it.
+     * 
+     * @param port The port to which to listen for new connections.
+     * @param basePath The path below which the channels can be reached, e.g. <code>"/synchronizefx"</code>.
+     * @param serializer The serializer that should be used to serialize SynchronizeFX messages.
+     * @param compression <code>true</code> if the permessage-deflate extension should be accepted when clients offer
+     *            it.
+     */
+    public NettyWebsocketServer(final int port, final String basePath, final Serializer serializer,
+            final boolean compression) {
+        super(port, serializer);
+        this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        this.compression = compression;
+    }
+
+    @Override
+    protected Codec createCodec() {
+        return new WebsocketServerChannelInitializer(basePath.isEmpty() ? "/" : basePath, compression);
+    }
+}
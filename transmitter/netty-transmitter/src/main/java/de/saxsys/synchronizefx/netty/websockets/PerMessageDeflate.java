@@ -0,0 +1,176 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import java.util.zip.Deflater;
+
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+/**
+ * Creates the handlers that negotiate the permessage-deflate extension for websocket connections.
+ * 
+ * <p>
+ * The negotiation and the compression of outgoing messages is done by Netty. Incoming messages are inflated by a
+ * {@link PerMessageDeflateInflater} that respects the maximum message size.
+ * </p>
+ */
+final class PerMessageDeflate {
+
+    private static final int DEFAULT_LEVEL = 6;
+    private static final int MAX_WINDOW_SIZE = 15;
+
+    private PerMessageDeflate() {
+    }
+
+    /**
+     * Creates the handler that offers the extension to the server.
+     * 
+     * @param compression The settings for compressing outgoing messages.
+     * @param maxMessageSize The size in bytes up to which incoming messages are inflated.
+     * @return The handler for the pipeline of the client.
+     */
+    static ChannelHandler clientHandler(final FrameCompression compression, final int maxMessageSize) {
+        final int level = compression.getLevel() == Deflater.DEFAULT_COMPRESSION ? DEFAULT_LEVEL
+                : compression.getLevel();
+        final WebSocketClientExtensionHandshaker handshaker =
+                new PerMessageDeflateClientExtensionHandshaker(level, false, MAX_WINDOW_SIZE, false, false);
+        return new WebSocketClientExtensionHandler(new BoundedClientHandshaker(handshaker, maxMessageSize));
+    }
+
+    /**
+     * Creates the handler that accepts the extension when clients offer it.
+     * 
+     * @param maxMessageSize The size in bytes up to which incoming messages are inflated.
+     * @return The handler for the pipeline of the server.
+     */
+    static ChannelHandler serverHandler(final int maxMessageSize) {
+        return new WebSocketServerExtensionHandler(new BoundedServerHandshaker(
+                new PerMessageDeflateServerExtensionHandshaker(), maxMessageSize));
+    }
+
+    /**
+     * Negotiates the extension like Netty does but replaces the decoder.
+     */
+    private static final class BoundedClientHandshaker implements WebSocketClientExtensionHandshaker {
+        private final WebSocketClientExtensionHandshaker delegate;
+        private final int maxMessageSize;
+
+        /**
+         * Initializes the handshaker.
+         * 
+         * @param delegate The handshaker of Netty.
+         * @param maxMessageSize The size in bytes up to which incoming messages are inflated.
+         */
+        BoundedClientHandshaker(final WebSocketClientExtensionHandshaker delegate, final int maxMessageSize) {
+            this.delegate = delegate;
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        @Override
+        public WebSocketExtensionData newRequestData() {
+            return delegate.newRequestData();
+        }
+
+        @Override
+        public WebSocketClientExtension handshakeExtension(final WebSocketExtensionData extensionData) {
+            final WebSocketClientExtension extension = delegate.handshakeExtension(extensionData);
+            if (extension == null) {
+                return null;
+            }
+            return new WebSocketClientExtension() {
+                @Override
+                public int rsv() {
+                    return extension.rsv();
+                }
+
+                @Override
+                public WebSocketExtensionEncoder newExtensionEncoder() {
+                    return extension.newExtensionEncoder();
+                }
+
+                @Override
+                public WebSocketExtensionDecoder newExtensionDecoder() {
+                    return new PerMessageDeflateInflater(maxMessageSize);
+                }
+            };
+        }
+    }
+
+    /**
+     * Accepts the extension like Netty does but replaces the decoder.
+     */
+    private static final class BoundedServerHandshaker implements WebSocketServerExtensionHandshaker {
+        private final WebSocketServerExtensionHandshaker delegate;
+        private final int maxMessageSize;
+
+        /**
+         * Initializes the handshaker.
+         * 
+         * @param delegate The handshaker of Netty.
+         * @param maxMessageSize The size in bytes up to which incoming messages are inflated.
+         */
+        BoundedServerHandshaker(final WebSocketServerExtensionHandshaker delegate, final int maxMessageSize) {
+            this.delegate = delegate;
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        @Override
+        public WebSocketServerExtension handshakeExtension(final WebSocketExtensionData extensionData) {
+            final WebSocketServerExtension extension = delegate.handshakeExtension(extensionData);
+            if (extension == null) {
+                return null;
+            }
+            return new WebSocketServerExtension() {
+                @Override
+                public int rsv() {
+                    return extension.rsv();
+                }
+
+                @Override
+                public WebSocketExtensionEncoder newExtensionEncoder() {
+                    return extension.newExtensionEncoder();
+                }
+
+                @Override
+                public WebSocketExtensionDecoder newExtensionDecoder() {
+                    return new PerMessageDeflateInflater(maxMessageSize);
+                }
+
+                @Override
+                public WebSocketExtensionData newReponseData() {
+                    return extension.newReponseData();
+                }
+            };
+        }
+    }
+}
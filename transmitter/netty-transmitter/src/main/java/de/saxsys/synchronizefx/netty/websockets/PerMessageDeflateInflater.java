@@ -0,0 +1,162 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+
+/**
+ * Inflates websocket messages that were compressed with the permessage-deflate extension.
+ * 
+ * <p>
+ * Other than the decoder of Netty this one stops inflating as soon as a message grows larger than the maximum
+ * message size. So a small compressed frame can't expand to an arbitrarily large one before the size of the message
+ * is checked. The dictionary is kept across messages which works regardless of whether the peer takes over its
+ * compression context or not.
+ * </p>
+ * 
+ * <p>
+ * Each channel needs its own instance of this decoder.
+ * </p>
+ */
+class PerMessageDeflateInflater extends WebSocketExtensionDecoder {
+
+    private static final byte[] MESSAGE_TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int maxMessageSize;
+
+    private Inflater inflater;
+    private boolean compressedMessage;
+    private long messageSize;
+
+    /**
+     * Initializes the decoder.
+     * 
+     * @param maxMessageSize The size in bytes up to which messages are inflated.
+     */
+    PerMessageDeflateInflater(final int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public boolean acceptInboundMessage(final Object msg) throws Exception {
+        if (!super.acceptInboundMessage(msg)) {
+            return false;
+        }
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            return (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0;
+        }
+        return msg instanceof ContinuationWebSocketFrame && compressedMessage;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final WebSocketFrame msg, final List<Object> out)
+        throws Exception {
+        if (!(msg instanceof ContinuationWebSocketFrame)) {
+            compressedMessage = true;
+            messageSize = 0;
+        }
+        final ByteBuf content = inflate(ctx, msg.content(), msg.isFinalFragment());
+        final int rsv = msg.rsv() & ~WebSocketExtension.RSV1;
+        if (msg instanceof TextWebSocketFrame) {
+            out.add(new TextWebSocketFrame(msg.isFinalFragment(), rsv, content));
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            out.add(new BinaryWebSocketFrame(msg.isFinalFragment(), rsv, content));
+        } else {
+            out.add(new ContinuationWebSocketFrame(msg.isFinalFragment(), rsv, content));
+        }
+        if (msg.isFinalFragment()) {
+            compressedMessage = false;
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        end();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+        end();
+        super.handlerRemoved(ctx);
+    }
+
+    private ByteBuf inflate(final ChannelHandlerContext ctx, final ByteBuf compressed, final boolean lastFragment)
+        throws DataFormatException {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        // The sender removes the tail of the sync flush from the last fragment of each message.
+        final int tail = lastFragment ? MESSAGE_TAIL.length : 0;
+        final byte[] input = new byte[compressed.readableBytes() + tail];
+        compressed.getBytes(compressed.readerIndex(), input, 0, compressed.readableBytes());
+        System.arraycopy(MESSAGE_TAIL, 0, input, compressed.readableBytes(), tail);
+        inflater.setInput(input);
+
+        final ByteBuf frame = ctx.alloc().heapBuffer(
+                (int) Math.min((long) input.length * 2, maxMessageSize) + CHUNK_SIZE);
+        boolean success = false;
+        try {
+            int writable;
+            int read;
+            do {
+                frame.ensureWritable(CHUNK_SIZE);
+                writable = frame.writableBytes();
+                read = inflater.inflate(frame.array(), frame.arrayOffset() + frame.writerIndex(), writable);
+                frame.writerIndex(frame.writerIndex() + read);
+                messageSize += read;
+                if (messageSize > maxMessageSize) {
+                    throw new TooLongFrameException("A compressed websocket message inflates to more than the "
+                            + "maximum message size of " + maxMessageSize + " bytes.");
+                }
+            } while (read == writable);
+            if (inflater.needsDictionary()) {
+                throw new CorruptedFrameException("The compressed websocket message requires a preset dictionary.");
+            }
+            success = true;
+            return frame;
+        } finally {
+            if (!success) {
+                frame.release();
+            }
+        }
+    }
+
+    private void end() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
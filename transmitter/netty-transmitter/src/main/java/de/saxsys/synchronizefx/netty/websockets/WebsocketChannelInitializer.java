@@ -23,6 +23,9 @@ import java.net.URI;
 import java.util.Map;
 
 import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.FrameCompressionHandler;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
 
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
@@ -37,6 +40,12 @@ import io.netty.handler.codec.http.websocketx.WebSocketVersion;
 /**
  * Sets up a {@link SocketChannel} for client side, web socket based SynchronizeFX communication.
  * 
+ * <p>
+ * If compression is enabled, the client offers the permessage-deflate extension to the server. If the server accepts
+ * it, all messages are compressed with a deflate stream whose dictionary is kept across messages. Incoming messages
+ * are inflated only up to the maximum frame size.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 class WebsocketChannelInitializer implements Codec {
@@ -45,6 +54,7 @@ class WebsocketChannelInitializer implements Codec {
 
     private final URI serverUri;
     private final Map<String, Object> httpHeaders;
+    private final FrameCompression compression;
 
     /**
      * Gathers all dependencies for this class.
@@ -52,22 +62,32 @@ class WebsocketChannelInitializer implements Codec {
      * @param serverUri the uri of the server to connect to.
      * @param httpHeaders optional headers that should be passed to the server when initializing the HTTP connection.
      *            If no user defined headers should be passed this parameter can be <code>null</code>
+     * @param compression The settings for compressing outgoing messages or <code>null</code> if the permessage-deflate
+     *            extension should not be offered to the server.
      */
-    WebsocketChannelInitializer(final URI serverUri, final Map<String, Object> httpHeaders) {
+    WebsocketChannelInitializer(final URI serverUri, final Map<String, Object> httpHeaders,
+            final FrameCompression compression) {
         this.serverUri = serverUri;
         this.httpHeaders = httpHeaders;
+        this.compression = compression;
     }
 
     @Override
-    public void addToPipeline(final ChannelPipeline pipeline) {
+    public void addToPipeline(final ChannelPipeline pipeline, final FrameLimits limits) {
         pipeline.addLast("http-codec", new HttpClientCodec());
         pipeline.addLast("aggregator", new HttpObjectAggregator(8192));
+        if (compression != null) {
+            pipeline.addLast("websocket-compression",
+                    PerMessageDeflate.clientHandler(compression, limits.getMaxFrameSize()));
+        }
 
+        // Frames that are compressed with the permessage-deflate extension may be slightly larger than a message.
+        final int maxFramePayload = FrameCompressionHandler.maxEncodedSize(limits.getMaxFrameSize());
         final WebSocketClientHandshaker handShaker = new WhiteSpaceInPathWebSocketClientHandshaker13(serverUri,
-                WebSocketVersion.V13, PROTOCOL, false, createHttpHeaders(httpHeaders), Integer.MAX_VALUE);
+                WebSocketVersion.V13, PROTOCOL, true, createHttpHeaders(httpHeaders), maxFramePayload);
         pipeline.addLast("websocket-protocol-handler", new WebSocketClientProtocolHandler(handShaker));
 
-        pipeline.addLast("websocket-frame-codec", new ByteBufToWebSocketFrameCodec());
+        pipeline.addLast("websocket-frame-codec", new ByteBufToWebSocketFrameCodec(limits.getMaxFrameSize()));
     }
 
     private HttpHeaders createHttpHeaders(final Map<String, Object> headerParams) {
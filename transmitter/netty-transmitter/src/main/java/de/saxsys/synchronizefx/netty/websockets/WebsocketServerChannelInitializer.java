@@ -0,0 +1,116 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.FrameCompressionHandler;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler.HandshakeComplete;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Sets up a {@link SocketChannel} for server side, web socket based SynchronizeFX communication.
+ * 
+ * <p>
+ * The path of the upgrade request behind the base path of the server is taken as channel name. It is passed on as
+ * the first message of the connection which is the way channels are selected in a
+ * {@link de.saxsys.synchronizefx.netty.base.server.NettyBasicMultiplexingServer}. HTTP requests that are not
+ * websocket upgrade requests to the base path are answered with <code>404 Not Found</code>.
+ * </p>
+ */
+class WebsocketServerChannelInitializer implements Codec {
+
+    private static final String PROTOCOL = "v2.websocket.synchronizefx.saxsys.de";
+    private static final int MAX_HANDSHAKE_SIZE = 65536;
+
+    private final String basePath;
+    private final boolean compression;
+
+    /**
+     * Gathers all dependencies for this class.
+     * 
+     * @param basePath The path below which the channels can be reached.
+     * @param compression <code>true</code> if the permessage-deflate extension should be accepted when clients offer
+     *            it.
+     */
+    WebsocketServerChannelInitializer(final String basePath, final boolean compression) {
+        this.basePath = basePath;
+        this.compression = compression;
+    }
+
+    @Override
+    public void addToPipeline(final ChannelPipeline pipeline, final FrameLimits limits) {
+        pipeline.addLast("http-codec", new HttpServerCodec());
+        pipeline.addLast("aggregator", new HttpObjectAggregator(MAX_HANDSHAKE_SIZE));
+        if (compression) {
+            pipeline.addLast("websocket-compression", PerMessageDeflate.serverHandler(limits.getMaxFrameSize()));
+        }
+        // Frames that are compressed with the permessage-deflate extension may be slightly larger than a message.
+        final int maxFramePayload = FrameCompressionHandler.maxEncodedSize(limits.getMaxFrameSize());
+        pipeline.addLast("websocket-protocol-handler",
+                new WebSocketServerProtocolHandler(basePath, PROTOCOL, true, maxFramePayload, false, true));
+        pipeline.addLast("websocket-frame-codec", new ByteBufToWebSocketFrameCodec(limits.getMaxFrameSize()));
+        pipeline.addLast("websocket-channel-name", new ChannelInboundHandlerAdapter() {
+            @Override
+            public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
+                if (evt instanceof HandshakeComplete) {
+                    final String channelName = getChannelName(((HandshakeComplete) evt).requestUri());
+                    ctx.fireChannelRead(ByteBufUtil.writeUtf8(ctx.alloc(), channelName));
+                    ctx.pipeline().remove(this);
+                }
+                ctx.fireUserEventTriggered(evt);
+            }
+
+            @Override
+            public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+                if (!(msg instanceof FullHttpRequest)) {
+                    ctx.fireChannelRead(msg);
+                    return;
+                }
+                ReferenceCountUtil.release(msg);
+                // The protocol handler would try to send a websocket close frame over this plain HTTP connection.
+                ctx.pipeline().remove(WebSocketServerProtocolHandler.class);
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND))
+                        .addListener(ChannelFutureListener.CLOSE);
+            }
+        });
+    }
+
+    private String getChannelName(final String requestUri) {
+        final String path = new QueryStringDecoder(requestUri).path();
+        final String channelPath = path.length() > basePath.length() ? path.substring(basePath.length()) : "";
+        return channelPath.startsWith("/") ? channelPath.substring(1) : channelPath;
+    }
+}
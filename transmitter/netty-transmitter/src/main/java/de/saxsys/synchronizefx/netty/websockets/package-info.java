@@ -20,6 +20,8 @@
 /**
  * Contains a codec for sending and recieving messages in a websocket conform way. 
  * 
- * At the moment only the client side is implemented. For the server side you can use the tomcat-transmitter.
+ * {@link de.saxsys.synchronizefx.netty.websockets.NettyWebsocketClient} connects to any SynchronizeFX websocket
+ * server. {@link de.saxsys.synchronizefx.netty.websockets.NettyWebsocketServer} serves many channels without a
+ * servlet container.
  */
 package de.saxsys.synchronizefx.netty.websockets;
\ No newline at end of file
@@ -0,0 +1,304 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.saxsys.synchronizefx.netty.base;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link CommandToBinaryByteBuf} splits large lists of commands into frames that respect the maximum
+ * frame size and decodes received buffers without copying them.
+ */
+public class CommandToBinaryByteBufTest {
+
+    private static final int PROPERTIES = 10;
+
+    private final List<UUID> properties = new ArrayList<>();
+
+    /**
+     * Initializes the ids of the properties that are changed by the commands.
+     */
+    public CommandToBinaryByteBufTest() {
+        for (int i = 0; i < PROPERTIES; i++) {
+            properties.add(UUID.randomUUID());
+        }
+    }
+
+    /**
+     * A connection serializer should never have to serialize commands twice, so the peer knows all handles.
+     */
+    @Test
+    public void shouldSplitListsWithoutDiscardingTheOutputOfConnectionSerializers() {
+        final HandleKeepingSerializer serializer = new HandleKeepingSerializer(true);
+        final EmbeddedChannel sender = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 20000));
+        final EmbeddedChannel receiver = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 20000));
+        final List<Command> commands = changes(600, 50);
+
+        sender.writeOutbound(commands);
+
+        final List<ByteBuf> frames = readFrames(sender);
+        assertThat(frames.size()).isGreaterThan(1);
+        for (final ByteBuf frame : frames) {
+            assertThat(frame.readableBytes()).isLessThanOrEqualTo(20000);
+        }
+        assertReceived(receiver, frames, commands);
+    }
+
+    /**
+     * The estimate of a connection serializer should be conservative enough for commands that grow in size.
+     */
+    @Test
+    public void shouldSplitListsOfGrowingCommandsWithConnectionSerializers() {
+        final HandleKeepingSerializer serializer = new HandleKeepingSerializer(true);
+        final EmbeddedChannel sender = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final EmbeddedChannel receiver = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final List<Command> commands = growingChanges();
+
+        sender.writeOutbound(commands);
+
+        final List<ByteBuf> frames = readFrames(sender);
+        for (final ByteBuf frame : frames) {
+            assertThat(frame.readableBytes()).isLessThanOrEqualTo(2000);
+        }
+        assertReceived(receiver, frames, commands);
+    }
+
+    /**
+     * Stateless serializers may serialize commands again in smaller parts when the estimate was too low.
+     */
+    @Test
+    public void shouldSerializeAgainInSmallerPartsWithStatelessSerializers() {
+        final HandleKeepingSerializer serializer = new HandleKeepingSerializer(false);
+        final EmbeddedChannel sender = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final EmbeddedChannel receiver = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final List<Command> commands = growingChanges();
+
+        sender.writeOutbound(commands);
+
+        final List<ByteBuf> frames = readFrames(sender);
+        for (final ByteBuf frame : frames) {
+            assertThat(frame.readableBytes()).isLessThanOrEqualTo(2000);
+        }
+        assertReceived(receiver, frames, commands);
+    }
+
+    /**
+     * When a single command is too large, no part of the list should be written. The connection can't be used any
+     * more with a connection serializer.
+     */
+    @Test
+    public void shouldWriteNothingAndCloseTheChannelWhenASingleCommandIsTooLarge() {
+        final EmbeddedChannel sender =
+                new EmbeddedChannel(new CommandToBinaryByteBuf(new HandleKeepingSerializer(true), 2000));
+        final List<Command> commands =
+                Arrays.<Command> asList(change(0, 10), change(1, 3000), change(2, 10));
+
+        assertTooLongFrame(sender, commands);
+
+        assertThat(sender.outboundMessages()).isEmpty();
+        assertThat(sender.isOpen()).isFalse();
+    }
+
+    /**
+     * Stateless serializers can continue to write commands after a command was too large.
+     */
+    @Test
+    public void shouldKeepTheChannelOpenWhenASingleCommandIsTooLargeForAStatelessSerializer() {
+        final EmbeddedChannel sender =
+                new EmbeddedChannel(new CommandToBinaryByteBuf(new HandleKeepingSerializer(false), 2000));
+
+        assertTooLongFrame(sender, Arrays.<Command> asList(change(0, 10), change(1, 3000)));
+
+        assertThat(sender.outboundMessages()).isEmpty();
+        assertThat(sender.isOpen()).isTrue();
+        sender.writeOutbound(Arrays.<Command> asList(change(2, 10)));
+        assertThat(readFrames(sender)).hasSize(1);
+    }
+
+    /**
+     * Heap and direct buffers should be passed to the serializer as {@link ByteBuffer} views of their readable bytes.
+     */
+    @Test
+    public void shouldDecodeHeapAndDirectBuffersAsByteBuffers() {
+        final RecordingSerializer serializer = new RecordingSerializer();
+        final EmbeddedChannel receiver = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final List<Command> commands = changes(3, 10);
+        final byte[] frame = frame(commands);
+
+        final ByteBuf heap = Unpooled.buffer().writeByte(42).writeBytes(frame);
+        heap.skipBytes(1);
+        receiver.writeInbound(heap);
+        final ByteBuf direct = Unpooled.directBuffer().writeByte(42).writeBytes(frame);
+        direct.skipBytes(1);
+        receiver.writeInbound(direct);
+
+        assertThat(receiver.<List<Command>> readInbound()).isEqualTo(commands);
+        assertThat(receiver.<List<Command>> readInbound()).isEqualTo(commands);
+        assertThat(serializer.byteBuffers).isEqualTo(2);
+        assertThat(serializer.directByteBuffers).isEqualTo(1);
+        assertThat(serializer.streams).isZero();
+        assertThat(heap.refCnt()).isZero();
+        assertThat(direct.refCnt()).isZero();
+    }
+
+    /**
+     * Buffers composed of several memory regions should be streamed to the serializer.
+     */
+    @Test
+    public void shouldStreamCompositeBuffers() {
+        final RecordingSerializer serializer = new RecordingSerializer();
+        final EmbeddedChannel receiver = new EmbeddedChannel(new CommandToBinaryByteBuf(serializer, 2000));
+        final List<Command> commands = changes(3, 10);
+        final byte[] frame = frame(commands);
+        final CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(frame, 0, 10));
+        composite.addComponent(true, Unpooled.directBuffer().writeBytes(frame, 10, frame.length - 10));
+
+        receiver.writeInbound(composite);
+
+        assertThat(receiver.<List<Command>> readInbound()).isEqualTo(commands);
+        assertThat(serializer.streams).isEqualTo(1);
+        assertThat(serializer.byteBuffers).isZero();
+    }
+
+    private void assertTooLongFrame(final EmbeddedChannel sender, final List<Command> commands) {
+        try {
+            sender.writeOutbound(commands);
+            fail("A single command that exceeds the maximum frame size should not be written.");
+        } catch (final EncoderException e) {
+            assertThat(e.getCause()).isInstanceOf(TooLongFrameException.class);
+        }
+    }
+
+    private List<ByteBuf> readFrames(final EmbeddedChannel sender) {
+        final List<ByteBuf> frames = new ArrayList<>();
+        for (ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private void assertReceived(final EmbeddedChannel receiver, final List<ByteBuf> frames,
+            final List<Command> expected) {
+        final List<Command> received = new ArrayList<>();
+        for (final ByteBuf frame : frames) {
+            receiver.writeInbound(frame);
+            final List<Command> commands = receiver.readInbound();
+            received.addAll(commands);
+        }
+        assertThat(received).isEqualTo(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            final SetPropertyValue expectedChange = (SetPropertyValue) expected.get(i);
+            final SetPropertyValue receivedChange = (SetPropertyValue) received.get(i);
+            assertThat(receivedChange.getPropertyId()).isEqualTo(expectedChange.getPropertyId());
+            assertThat(receivedChange.getValue().getSimpleObjectValue()).isEqualTo(
+                    expectedChange.getValue().getSimpleObjectValue());
+        }
+    }
+
+    private byte[] frame(final List<Command> commands) {
+        return new HandleKeepingSerializer(false).serialize(commands);
+    }
+
+    private List<Command> growingChanges() {
+        final List<Command> commands = new ArrayList<>();
+        commands.addAll(changes(5, 1));
+        commands.addAll(changes(20, 500));
+        return commands;
+    }
+
+    private List<Command> changes(final int count, final int valueLength) {
+        final List<Command> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            commands.add(change(i, valueLength));
+        }
+        return commands;
+    }
+
+    private SetPropertyValue change(final int index, final int valueLength) {
+        final char[] value = new char[valueLength];
+        Arrays.fill(value, (char) ('a' + index % 26));
+        return new SetPropertyValue(UUID.randomUUID(), properties.get(index % PROPERTIES),
+                new Value(new String(value)));
+    }
+
+    /**
+     * A stateless serializer that counts how received buffers are passed to it.
+     */
+    private static final class RecordingSerializer implements StreamingSerializer {
+        private final StreamingSerializer delegate =
+                StreamingSerializerAdapter.adapt(new HandleKeepingSerializer(false));
+        private int byteBuffers;
+        private int directByteBuffers;
+        private int streams;
+
+        @Override
+        public byte[] serialize(final List<Command> commands) {
+            return delegate.serialize(commands);
+        }
+
+        @Override
+        public List<Command> deserialize(final byte[] commands) {
+            return delegate.deserialize(commands);
+        }
+
+        @Override
+        public void serialize(final List<Command> commands, final OutputStream destination) {
+            delegate.serialize(commands, destination);
+        }
+
+        @Override
+        public List<Command> deserialize(final InputStream source) {
+            streams++;
+            return delegate.deserialize(source);
+        }
+
+        @Override
+        public List<Command> deserialize(final ByteBuffer source) {
+            byteBuffers++;
+            if (source.isDirect()) {
+                directByteBuffers++;
+            }
+            return delegate.deserialize(source);
+        }
+    }
+}
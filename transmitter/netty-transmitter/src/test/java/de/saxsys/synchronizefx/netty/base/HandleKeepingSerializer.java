@@ -0,0 +1,132 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.saxsys.synchronizefx.netty.base;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+/**
+ * A serializer for {@link SetPropertyValue} commands with string values that can replace property ids with handles.
+ * 
+ * <p>
+ * When handles are kept, a property id is only written the first time it is serialized by a connection serializer.
+ * Later it is referenced by a handle that the peer must have received before. Data that was discarded by the sender
+ * therefore results in an unknown handle on the peer.
+ * </p>
+ */
+public class HandleKeepingSerializer implements ConnectionScopedSerializer {
+
+    private final boolean keepHandles;
+    private final Map<UUID, Integer> sentHandles = new HashMap<>();
+    private final List<UUID> receivedHandles = new ArrayList<>();
+
+    /**
+     * Initializes the serializer.
+     * 
+     * @param keepHandles <code>true</code> if connection serializers should replace property ids with handles,
+     *            <code>false</code> if this serializer should be stateless.
+     */
+    public HandleKeepingSerializer(final boolean keepHandles) {
+        this.keepHandles = keepHandles;
+    }
+
+    @Override
+    public Serializer newConnectionSerializer() {
+        return keepHandles ? new HandleKeepingSerializer(true) : this;
+    }
+
+    @Override
+    public byte[] serialize(final List<Command> commands) throws SynchronizeFXException {
+        final Map<UUID, Integer> handles = keepHandles ? sentHandles : new HashMap<UUID, Integer>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(commands.size());
+            for (final Command command : commands) {
+                final SetPropertyValue change = (SetPropertyValue) command;
+                final Integer handle = handles.get(change.getPropertyId());
+                out.writeBoolean(handle == null);
+                if (handle == null) {
+                    handles.put(change.getPropertyId(), handles.size());
+                    writeUuid(change.getPropertyId(), out);
+                } else {
+                    out.writeInt(handle);
+                }
+                writeUuid(change.getCommandId(), out);
+                out.writeUTF((String) change.getValue().getSimpleObjectValue());
+            }
+            out.flush();
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Could not serialize the commands.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public List<Command> deserialize(final byte[] commands) throws SynchronizeFXException {
+        final List<UUID> handles = keepHandles ? receivedHandles : new ArrayList<UUID>();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(commands));
+        try {
+            final int count = in.readInt();
+            final List<Command> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final UUID propertyId;
+                if (in.readBoolean()) {
+                    propertyId = readUuid(in);
+                    handles.add(propertyId);
+                } else {
+                    final int handle = in.readInt();
+                    if (handle >= handles.size()) {
+                        throw new SynchronizeFXException("Received the unknown handle " + handle + ".");
+                    }
+                    propertyId = handles.get(handle);
+                }
+                final UUID commandId = readUuid(in);
+                result.add(new SetPropertyValue(commandId, propertyId, new Value(in.readUTF())));
+            }
+            return result;
+        } catch (final IOException e) {
+            throw new SynchronizeFXException("Could not deserialize the commands.", e);
+        }
+    }
+
+    private void writeUuid(final UUID uuid, final DataOutputStream out) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private UUID readUuid(final DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
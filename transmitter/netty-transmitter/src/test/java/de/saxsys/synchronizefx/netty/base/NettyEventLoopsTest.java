@@ -0,0 +1,70 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link NettyEventLoops} uses the transport that matches event loops created by the user.
+ */
+public class NettyEventLoopsTest {
+
+    private final EventLoopGroup nio = new NioEventLoopGroup(1);
+
+    /**
+     * Stops the event loops.
+     */
+    @After
+    public void shutdown() {
+        nio.shutdownGracefully();
+    }
+
+    /**
+     * The automatic transport should be derived from the event loops instead of from the current system.
+     */
+    @Test
+    public void shouldDeriveAutomaticTransportFromTheEventLoops() {
+        assertThat(new NettyEventLoops(NettyTransport.AUTO, nio, nio).getTransport()).isEqualTo(NettyTransport.NIO);
+        assertThat(new NettyEventLoops(NettyTransport.AUTO, nio.next(), nio.next()).getTransport()).isEqualTo(
+                NettyTransport.NIO);
+    }
+
+    /**
+     * The transport should be accepted when it matches the event loops.
+     */
+    @Test
+    public void shouldAcceptMatchingTransport() {
+        assertThat(new NettyEventLoops(NettyTransport.NIO, nio, nio).getTransport()).isEqualTo(NettyTransport.NIO);
+    }
+
+    /**
+     * A transport that does not match the event loops should be rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTransportThatDoesNotMatchTheEventLoops() {
+        new NettyEventLoops(NettyTransport.EPOLL, nio, nio);
+    }
+}
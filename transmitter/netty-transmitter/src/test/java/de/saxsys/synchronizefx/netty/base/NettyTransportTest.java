@@ -0,0 +1,180 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link NettyTransport} selects the I/O implementation that matches the current system.
+ */
+public class NettyTransportTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * NIO should always be available and use the NIO channels.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldUseNioChannelsForNio() throws SynchronizeFXException {
+        assertThat(NettyTransport.NIO.resolve()).isEqualTo(NettyTransport.NIO);
+        assertThat(NettyTransport.NIO.serverChannelType()).isEqualTo(NioServerSocketChannel.class);
+        assertThat(NettyTransport.NIO.socketChannelType()).isEqualTo(NioSocketChannel.class);
+    }
+
+    /**
+     * The automatic transport should prefer epoll when it is available.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldResolveAutomaticTransportByAvailability() throws SynchronizeFXException {
+        assertThat(NettyTransport.AUTO.resolve()).isEqualTo(
+                Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO);
+    }
+
+    /**
+     * Epoll should use the native channels when it is available.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldUseNativeChannelsForEpoll() throws SynchronizeFXException {
+        Assume.assumeTrue(Epoll.isAvailable());
+
+        assertThat(NettyTransport.EPOLL.serverChannelType()).isEqualTo(EpollServerSocketChannel.class);
+        assertThat(NettyTransport.EPOLL.socketChannelType()).isEqualTo(EpollSocketChannel.class);
+    }
+
+    /**
+     * Requesting epoll explicitly should fail when it is not available.
+     * 
+     * @throws SynchronizeFXException expected
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldFailForEpollWhenItIsNotAvailable() throws SynchronizeFXException {
+        Assume.assumeFalse(Epoll.isAvailable());
+
+        NettyTransport.EPOLL.resolve();
+    }
+
+    /**
+     * Unix domain sockets are only available with epoll.
+     * 
+     * @throws SynchronizeFXException expected
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldRejectDomainSocketsForNio() throws SynchronizeFXException {
+        NettyTransport.NIO.domainServerChannelType();
+    }
+
+    /**
+     * The transport of event loops should be recognized.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldRecognizeTheTransportOfEventLoops() throws SynchronizeFXException {
+        final EventLoopGroup group = NettyTransport.AUTO.newEventLoopGroup(1);
+        try {
+            assertThat(NettyTransport.of(group)).isEqualTo(NettyTransport.AUTO.resolve());
+            assertThat(NettyTransport.of(group.next())).isEqualTo(NettyTransport.AUTO.resolve());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Data should be exchanged over loopback with NIO.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldTransferDataWithNio() throws Exception {
+        assertTransfersData(NettyTransport.NIO);
+    }
+
+    /**
+     * Data should be exchanged over loopback with epoll where it is available.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldTransferDataWithEpoll() throws Exception {
+        Assume.assumeTrue(Epoll.isAvailable());
+
+        assertTransfersData(NettyTransport.EPOLL);
+    }
+
+    private void assertTransfersData(final NettyTransport transport) throws Exception {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        final EventLoopGroup group = transport.newEventLoopGroup(1);
+        try {
+            final Channel server = new ServerBootstrap().group(group).channel(transport.serverChannelType())
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+                            received.add(((ByteBuf) msg).toString(CharsetUtil.UTF_8));
+                            ReferenceCountUtil.release(msg);
+                        }
+                    }).bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+            final Channel client = new Bootstrap().group(group).channel(transport.socketChannelType())
+                    .handler(new ChannelInboundHandlerAdapter()).connect(server.localAddress()).sync().channel();
+            assertThat(((InetSocketAddress) client.remoteAddress()).getPort()).isEqualTo(
+                    ((InetSocketAddress) server.localAddress()).getPort());
+
+            client.writeAndFlush(Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8)).sync();
+
+            assertThat(received.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo("hello");
+            client.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
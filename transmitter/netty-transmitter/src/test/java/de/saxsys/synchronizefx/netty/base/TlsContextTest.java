@@ -0,0 +1,132 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base;
+
+import java.io.File;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.CharsetUtil;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that servers and clients that use {@link TlsContext}s can establish encrypted connections.
+ */
+public class TlsContextTest {
+
+    private static File certificate;
+    private static File key;
+
+    /**
+     * Finds the self-signed certificate of the server and its key.
+     * 
+     * @throws Exception not expected
+     */
+    @BeforeClass
+    public static void findCertificate() throws Exception {
+        certificate = new File(TlsContextTest.class.getResource("server.crt").toURI());
+        key = new File(TlsContextTest.class.getResource("server.key").toURI());
+    }
+
+    /**
+     * Both sides should be able to communicate when they use the TLS implementation of the JDK.
+     */
+    @Test
+    public void shouldExchangeMessagesWithTheJdkEngine() {
+        exchange(TlsEngine.JDK, TlsEngine.JDK);
+    }
+
+    /**
+     * Both sides should be able to communicate when they use the native TLS implementation.
+     */
+    @Test
+    public void shouldExchangeMessagesWithTheOpenSslEngine() {
+        Assume.assumeTrue(OpenSsl.isAvailable());
+        exchange(TlsEngine.OPENSSL, TlsEngine.OPENSSL);
+    }
+
+    /**
+     * A client using the native TLS implementation should be able to communicate with a server using the one of the
+     * JDK.
+     */
+    @Test
+    public void shouldExchangeMessagesBetweenDifferentEngines() {
+        Assume.assumeTrue(OpenSsl.isAvailable());
+        exchange(TlsEngine.JDK, TlsEngine.OPENSSL);
+    }
+
+    /**
+     * A configuration wrapping a context of the caller should use exactly that context.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldWrapContextsOfTheCaller() throws Exception {
+        final TlsContext tls = TlsContext.of(SslContextBuilder.forClient().build());
+
+        assertThat(TlsContext.of(tls.getSslContext()).getSslContext()).isSameAs(tls.getSslContext());
+    }
+
+    private static void exchange(final TlsEngine serverEngine, final TlsEngine clientEngine) {
+        final TlsContext serverTls = TlsContext.forServer(certificate, key, serverEngine);
+        final TlsContext clientTls = TlsContext.insecureClient(clientEngine);
+        final EmbeddedChannel server = new EmbeddedChannel();
+        final EmbeddedChannel client = new EmbeddedChannel();
+        final SslHandler serverHandler = serverTls.newHandler(server.alloc(), null);
+        final SslHandler clientHandler = clientTls.newHandler(client.alloc(), null);
+        server.pipeline().addLast(serverHandler);
+        client.pipeline().addLast(clientHandler);
+
+        for (int i = 0; i < 20 && !(serverHandler.handshakeFuture().isDone()
+                && clientHandler.handshakeFuture().isDone()); i++) {
+            transfer(client, server);
+            transfer(server, client);
+        }
+        assertThat(clientHandler.handshakeFuture().isSuccess()).isTrue();
+        assertThat(serverHandler.handshakeFuture().isSuccess()).isTrue();
+        assertThat(clientHandler.engine().getSession().getProtocol()).startsWith("TLSv1.");
+
+        client.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8));
+        transfer(client, server);
+
+        final ByteBuf received = server.readInbound();
+        assertThat(received.toString(CharsetUtil.UTF_8)).isEqualTo("hello");
+        received.release();
+        client.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+    }
+
+    private static void transfer(final EmbeddedChannel from, final EmbeddedChannel to) {
+        from.runPendingTasks();
+        for (Object data = from.readOutbound(); data != null; data = from.readOutbound()) {
+            to.writeInbound(data);
+        }
+        to.runPendingTasks();
+    }
+}
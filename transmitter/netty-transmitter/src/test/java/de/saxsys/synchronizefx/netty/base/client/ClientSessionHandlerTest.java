@@ -0,0 +1,170 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link ClientSessionHandler} and {@link ClientSession} start and resume the session with the server.
+ */
+public class ClientSessionHandlerTest {
+
+    private static final int HISTORY_SIZE = 3;
+
+    private final UUID id = UUID.randomUUID();
+
+    private ClientSession session;
+    private EmbeddedChannel first;
+
+    /**
+     * Starts a session through a first connection.
+     */
+    @Before
+    public void setUp() {
+        session = new ClientSession(HISTORY_SIZE);
+        first = new EmbeddedChannel(new ClientSessionHandler(session));
+
+        final ByteBuf handshake = first.readOutbound();
+        assertThat(handshake.readByte()).isEqualTo(SessionHandshake.NEW);
+        handshake.release();
+        first.writeInbound(SessionHandshake.message(first.alloc(), SessionHandshake.ACCEPTED, id, 0));
+    }
+
+    /**
+     * A reconnecting client should present the number of received messages and resend what the server missed.
+     */
+    @Test
+    public void shouldResendMissedMessagesWithinTheHistory() {
+        final List<Command> a = commands();
+        final List<Command> b = commands();
+        final List<Command> c = commands();
+        send(a, b, c);
+        first.writeInbound(Unpooled.wrappedBuffer(new byte[] {42 }));
+        final ByteBuf received = first.readInbound();
+        received.release();
+        first.close();
+
+        final EmbeddedChannel second = reconnect(1);
+        second.writeInbound(SessionHandshake.message(second.alloc(), SessionHandshake.RESUMED, 1));
+
+        assertThat(next(second)).isEqualTo(b);
+        assertThat(next(second)).isEqualTo(c);
+        assertThat(second.outboundMessages()).isEmpty();
+        assertThat(session.isRejected()).isFalse();
+    }
+
+    /**
+     * The session should fail when the server missed messages that are no longer in the history.
+     */
+    @Test
+    public void shouldFailWhenMissedMessagesLeftTheHistory() {
+        send(commands(), commands(), commands(), commands());
+        first.close();
+
+        final EmbeddedChannel second = reconnect(0);
+        try {
+            second.writeInbound(SessionHandshake.message(second.alloc(), SessionHandshake.RESUMED, 0));
+            fail("Resuming should fail when the server missed messages that are no longer known.");
+        } catch (final SynchronizeFXException e) {
+            assertThat(session.isRejected()).isTrue();
+            assertThat(second.outboundMessages()).isEmpty();
+        }
+    }
+
+    /**
+     * The session should fail when the server does not know it anymore.
+     */
+    @Test
+    public void shouldFailWhenTheServerRejects() {
+        first.close();
+
+        final EmbeddedChannel second = reconnect(0);
+        try {
+            second.writeInbound(SessionHandshake.message(second.alloc(), SessionHandshake.REJECTED));
+            fail("Resuming should fail when the server rejects the session.");
+        } catch (final SynchronizeFXException e) {
+            assertThat(session.isRejected()).isTrue();
+        }
+    }
+
+    /**
+     * Messages sent while the client is disconnected should be held back and sent when the session is resumed.
+     */
+    @Test
+    public void shouldHoldBackMessagesWhileDetached() {
+        final List<Command> a = commands();
+        send(a);
+        first.close();
+
+        final List<Command> b = commands();
+        session.send(b);
+        assertThat(first.outboundMessages()).isEmpty();
+
+        final EmbeddedChannel second = reconnect(0);
+        second.writeInbound(SessionHandshake.message(second.alloc(), SessionHandshake.RESUMED, 1));
+
+        assertThat(next(second)).isEqualTo(b);
+        assertThat(second.outboundMessages()).isEmpty();
+    }
+
+    private EmbeddedChannel reconnect(final long expectedReceivedCount) {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ClientSessionHandler(session));
+        final ByteBuf handshake = channel.readOutbound();
+        assertThat(handshake.readByte()).isEqualTo(SessionHandshake.RESUME);
+        assertThat(SessionHandshake.readSessionId(handshake)).isEqualTo(id);
+        assertThat(handshake.readLong()).isEqualTo(expectedReceivedCount);
+        handshake.release();
+        return channel;
+    }
+
+    @SafeVarargs
+    private final void send(final List<Command>... messages) {
+        for (final List<Command> message : messages) {
+            session.send(message);
+            assertThat(next(first)).isEqualTo(message);
+        }
+    }
+
+    private static Object next(final EmbeddedChannel channel) {
+        return channel.readOutbound();
+    }
+
+    private static List<Command> commands() {
+        return Collections.<Command> singletonList(new SetPropertyValue(UUID.randomUUID(), new Value("value")));
+    }
+}
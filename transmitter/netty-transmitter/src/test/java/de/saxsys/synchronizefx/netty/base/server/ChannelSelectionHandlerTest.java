@@ -0,0 +1,155 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.Codec;
+import de.saxsys.synchronizefx.netty.base.HandleKeepingSerializer;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link ChannelSelectionHandler} passes connections to the channel the client selected and closes
+ * connections that select no or an unknown channel.
+ */
+public class ChannelSelectionHandlerTest {
+
+    private final List<Object> connected = new CopyOnWriteArrayList<>();
+
+    private final NettyBasicMultiplexingServer server =
+            new NettyBasicMultiplexingServer(0, new HandleKeepingSerializer(false)) {
+                @Override
+                protected Codec createCodec() {
+                    return null;
+                }
+            };
+
+    /**
+     * Creates and starts the channel "models" of the server.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Before
+    public void setUp() throws SynchronizeFXException {
+        final MultiplexedChannel channel = server.createChannel("models");
+        channel.setTopologyLayerCallback(new NetworkToTopologyCallbackServer() {
+            @Override
+            public void recive(final List<Command> commands, final Object sender) {
+            }
+
+            @Override
+            public void onConnect(final Object newClient) {
+                connected.add(newClient);
+            }
+
+            @Override
+            public void onClientConnectionError(final Object client, final SynchronizeFXException e) {
+            }
+
+            @Override
+            public void onFatalError(final SynchronizeFXException e) {
+            }
+        });
+        channel.start();
+    }
+
+    /**
+     * Shuts the channel down.
+     */
+    @After
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    /**
+     * A client that selects an existing channel should be connected to it.
+     */
+    @Test
+    public void shouldPassTheConnectionToTheSelectedChannel() {
+        final EmbeddedChannel connection = new EmbeddedChannel(new ChannelSelectionHandler(server));
+
+        connection.writeInbound(Unpooled.copiedBuffer("models", CharsetUtil.UTF_8));
+
+        assertThat(connection.isOpen()).isTrue();
+        assertThat(connection.pipeline().get(ChannelSelectionHandler.class)).isNull();
+        assertThat(connection.pipeline().get("command-handler")).isNotNull();
+        assertThat(connected).containsExactly(connection);
+    }
+
+    /**
+     * A client that selects a channel that does not exist should be disconnected.
+     */
+    @Test
+    public void shouldCloseConnectionsThatSelectAnUnknownChannel() {
+        final EmbeddedChannel connection = new EmbeddedChannel(new ChannelSelectionHandler(server));
+
+        connection.writeInbound(Unpooled.copiedBuffer("other", CharsetUtil.UTF_8));
+
+        assertThat(connection.isOpen()).isFalse();
+        assertThat(connected).isEmpty();
+    }
+
+    /**
+     * A client that does not select a channel in time should be disconnected.
+     * 
+     * @throws InterruptedException not expected
+     */
+    @Test
+    public void shouldCloseConnectionsThatDoNotSelectAChannelInTime() throws InterruptedException {
+        final EmbeddedChannel connection = new EmbeddedChannel(new ChannelSelectionHandler(server, 10));
+        assertThat(connection.isOpen()).isTrue();
+
+        Thread.sleep(50);
+        connection.runScheduledPendingTasks();
+
+        assertThat(connection.isOpen()).isFalse();
+        assertThat(connected).isEmpty();
+    }
+
+    /**
+     * The timeout should no longer apply once a client selected a channel.
+     * 
+     * @throws InterruptedException not expected
+     */
+    @Test
+    public void shouldKeepConnectionsThatSelectedAChannelInTime() throws InterruptedException {
+        final EmbeddedChannel connection = new EmbeddedChannel(new ChannelSelectionHandler(server, 10));
+
+        connection.writeInbound(Unpooled.copiedBuffer("models", CharsetUtil.UTF_8));
+        Thread.sleep(50);
+        connection.runScheduledPendingTasks();
+
+        assertThat(connection.isOpen()).isTrue();
+        assertThat(connected).containsExactly(connection);
+    }
+}
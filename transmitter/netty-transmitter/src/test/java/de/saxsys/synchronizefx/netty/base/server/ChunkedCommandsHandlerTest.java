@@ -0,0 +1,139 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.metamodel.commands.ClearReferences;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link ChunkedCommandsHandler} writes chunks in order and only while the channel is writable.
+ */
+public class ChunkedCommandsHandlerTest {
+
+    private final List<Command> commands = Arrays.<Command> asList(new ClearReferences(), new ClearReferences(),
+            new ClearReferences(), new ClearReferences(), new ClearReferences());
+    private final List<Command> later = Arrays.<Command> asList(new ClearReferences());
+
+    /**
+     * Messages written after chunks should wait until all chunks were written.
+     */
+    @Test
+    public void shouldWriteChunksInOrderBeforeLaterMessages() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ChunkedCommandsHandler());
+
+        final ChannelFuture chunksWritten = channel.write(new CommandChunks(commands, 2));
+        channel.writeAndFlush(later);
+
+        assertThat(readAll(channel)).containsExactly(commands.subList(0, 2), commands.subList(2, 4),
+                commands.subList(4, 5), later);
+        assertThat(chunksWritten.isSuccess()).isTrue();
+    }
+
+    /**
+     * No further chunk should be serialized while the channel is not writable.
+     */
+    @Test
+    public void shouldWriteChunksOnlyWhileTheChannelIsWritable() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new Gate(1, false), new ChunkedCommandsHandler());
+
+        final ChannelFuture chunksWritten = channel.write(new CommandChunks(commands, 2));
+        channel.writeAndFlush(later);
+
+        assertThat(readAll(channel)).containsExactly(commands.subList(0, 2));
+        assertThat(chunksWritten.isDone()).isFalse();
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+
+        assertThat(readAll(channel)).containsExactly(commands.subList(2, 4), commands.subList(4, 5), later);
+        assertThat(chunksWritten.isSuccess()).isTrue();
+    }
+
+    /**
+     * A change of the writability that is fired while a chunk is written should not write chunks twice.
+     */
+    @Test
+    public void shouldNotWriteChunksTwiceWhenWritabilityChangesWhileWriting() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new Gate(0, true), new ChunkedCommandsHandler());
+
+        final ChannelFuture chunksWritten = channel.write(new CommandChunks(commands, 2));
+        channel.writeAndFlush(later);
+
+        assertThat(readAll(channel)).containsExactly(commands.subList(0, 2), commands.subList(2, 4),
+                commands.subList(4, 5), later);
+        assertThat(chunksWritten.isSuccess()).isTrue();
+    }
+
+    private List<Object> readAll(final EmbeddedChannel channel) {
+        final List<Object> messages = new ArrayList<>();
+        for (Object message = channel.readOutbound(); message != null; message = channel.readOutbound()) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Changes the writability of the channel while messages are written.
+     */
+    private static final class Gate extends ChannelOutboundHandlerAdapter {
+        private final int closeAfter;
+        private final boolean fireOnEachWrite;
+        private int writes;
+
+        /**
+         * Initializes the gate.
+         * 
+         * @param closeAfter The number of messages after which the channel becomes unwritable or 0 if it should stay
+         *            writable.
+         * @param fireOnEachWrite <code>true</code> if a writability change should be fired on the same call stack
+         *            for each message.
+         */
+        Gate(final int closeAfter, final boolean fireOnEachWrite) {
+            this.closeAfter = closeAfter;
+            this.fireOnEachWrite = fireOnEachWrite;
+        }
+
+        @Override
+        public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+            throws Exception {
+            ctx.write(msg, promise);
+            writes++;
+            if (writes == closeAfter) {
+                ctx.channel().unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+            }
+            if (fireOnEachWrite) {
+                ctx.pipeline().fireChannelWritabilityChanged();
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+import de.saxsys.synchronizefx.netty.base.HandleKeepingSerializer;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link NettyBasicServer} serializes commands that are sent to several clients only once and into buffers
+ * of its allocator.
+ */
+public class NettyBasicServerTest {
+
+    private final CountingSerializer serializer = new CountingSerializer(false);
+    private final List<EmbeddedChannel> clients = new ArrayList<>();
+    private NettyBasicServer server;
+
+    /**
+     * Shuts the server down and releases the messages that were not read.
+     */
+    @After
+    public void tearDown() {
+        server.shutdown();
+        for (final EmbeddedChannel client : clients) {
+            client.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * All clients should get the same serialized form of the commands.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldSerializeCommandsOnceForAllClients() throws SynchronizeFXException {
+        start(serializer, 3);
+        final List<Command> commands = changes();
+
+        server.sendToAll(commands);
+
+        assertThat(serializer.serialized).isEqualTo(1);
+        final byte[] expected = serializer.serialize(commands);
+        for (final EmbeddedChannel client : clients) {
+            assertThat(received(client)).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * The echo of a change to its sender should reuse the serialized form that was sent to the other clients.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldReuseTheSerializedFormForTheEcho() throws SynchronizeFXException {
+        start(serializer, 3);
+        final List<Command> commands = changes();
+        final EmbeddedChannel sender = clients.get(0);
+
+        server.sendToAllExcept(commands, sender);
+
+        assertThat(sender.outboundMessages()).isEmpty();
+        assertThat(received(clients.get(1))).isEqualTo(received(clients.get(2)));
+
+        server.send(new ArrayList<>(commands), sender);
+
+        assertThat(serializer.serialized).isEqualTo(1);
+        assertThat(received(sender)).isEqualTo(serializer.serialize(commands));
+    }
+
+    /**
+     * Other commands than the kept ones should be serialized again for the sender.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldNotReuseTheSerializedFormForOtherCommands() throws SynchronizeFXException {
+        start(serializer, 2);
+        final EmbeddedChannel sender = clients.get(0);
+        server.sendToAllExcept(changes(), sender);
+        ReferenceCountUtil.release(clients.get(1).readOutbound());
+
+        final List<Command> other = changes();
+        server.send(other, sender);
+
+        assertThat(sender.<Object> readOutbound()).isSameAs(other);
+    }
+
+    /**
+     * Serializers that keep state per connection can't share their output so each channel gets the commands.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldLetEachChannelSerializeWithConnectionSerializers() throws SynchronizeFXException {
+        final CountingSerializer connectionScoped = new CountingSerializer(true);
+        start(connectionScoped, 2);
+        final List<Command> commands = changes();
+
+        server.sendToAll(commands);
+
+        assertThat(connectionScoped.serialized).isZero();
+        for (final EmbeddedChannel client : clients) {
+            assertThat(client.<Object> readOutbound()).isSameAs(commands);
+        }
+    }
+
+    /**
+     * Broadcasts should be serialized into buffers of the allocator that was set.
+     * 
+     * @throws SynchronizeFXException not expected
+     */
+    @Test
+    public void shouldSerializeBroadcastsWithTheConfiguredAllocator() throws SynchronizeFXException {
+        final ByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+        start(serializer, 1, allocator);
+
+        server.sendToAll(changes());
+
+        final SerializedCommands message = clients.get(0).readOutbound();
+        try {
+            assertThat(message.content().alloc()).isSameAs(allocator);
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * The allocator is mandatory.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMissingAllocators() {
+        server = newServer(serializer);
+        server.setAllocator(null);
+    }
+
+    private void start(final HandleKeepingSerializer usedSerializer, final int clientCount)
+        throws SynchronizeFXException {
+        start(usedSerializer, clientCount, null);
+    }
+
+    private void start(final HandleKeepingSerializer usedSerializer, final int clientCount,
+            final ByteBufAllocator allocator) throws SynchronizeFXException {
+        server = newServer(usedSerializer);
+        if (allocator != null) {
+            server.setAllocator(allocator);
+        }
+        server.start();
+        for (int i = 0; i < clientCount; i++) {
+            // Channel groups identify channels by their id which is the same for all embedded channels by default.
+            final EmbeddedChannel client = new EmbeddedChannel(DefaultChannelId.newInstance());
+            clients.add(client);
+            server.onConnectFinished(client);
+        }
+    }
+
+    private static NettyBasicServer newServer(final HandleKeepingSerializer usedSerializer) {
+        return new NettyBasicServer(0, usedSerializer) {
+            @Override
+            protected BasicChannelInitializerServer createChannelInitializer() {
+                return new BasicChannelInitializerServer(usedSerializer, null, false);
+            }
+
+            @Override
+            void bind(final BasicChannelInitializerServer channelInitializer) {
+                // The clients are connected directly.
+            }
+        };
+    }
+
+    private byte[] received(final EmbeddedChannel client) {
+        final SerializedCommands message = client.readOutbound();
+        try {
+            return ByteBufUtil.getBytes(message.content());
+        } finally {
+            message.release();
+        }
+    }
+
+    private static List<Command> changes() {
+        return Arrays.<Command> asList(new SetPropertyValue(UUID.randomUUID(), new Value("first")),
+                new SetPropertyValue(UUID.randomUUID(), new Value("second")));
+    }
+
+    /**
+     * Counts how often commands are serialized.
+     */
+    private static final class CountingSerializer extends HandleKeepingSerializer {
+        private int serialized;
+
+        CountingSerializer(final boolean keepHandles) {
+            super(keepHandles);
+        }
+
+        @Override
+        public byte[] serialize(final List<Command> commands) {
+            serialized++;
+            return super.serialize(commands);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.netty.base.SessionHandshake;
+import de.saxsys.synchronizefx.netty.base.SessionResumption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link ServerSessionHandler} and {@link ServerSession} resume sessions of clients that reconnect.
+ */
+public class ServerSessionHandlerTest {
+
+    private static final int HISTORY_SIZE = 3;
+
+    private ServerSessions sessions;
+    private EmbeddedChannel first;
+    private UUID id;
+
+    /**
+     * Starts a session through a first connection.
+     */
+    @Before
+    public void setUp() {
+        sessions = new ServerSessions(new SessionResumption(HISTORY_SIZE, 1024 * 1024, 60000), new Callback());
+        first = new EmbeddedChannel(new ServerSessionHandler(sessions));
+        first.writeInbound(SessionHandshake.message(first.alloc(), SessionHandshake.NEW));
+
+        final ByteBuf accepted = first.readOutbound();
+        assertThat(accepted.readByte()).isEqualTo(SessionHandshake.ACCEPTED);
+        id = SessionHandshake.readSessionId(accepted);
+        accepted.release();
+    }
+
+    /**
+     * Releases all messages the sessions keep.
+     */
+    @After
+    public void tearDown() {
+        sessions.clear();
+        first.finishAndReleaseAll();
+    }
+
+    /**
+     * A client that reconnects should get the messages it did not receive as long as they are in the history.
+     */
+    @Test
+    public void shouldResendMissedMessagesWithinTheHistory() {
+        send(first, "a", "b", "c");
+        first.close();
+
+        final EmbeddedChannel second = resume(1);
+
+        assertResumed(second);
+        assertThat(read(second)).isEqualTo("b");
+        assertThat(read(second)).isEqualTo("c");
+        assertThat(second.isOpen()).isTrue();
+        second.finishAndReleaseAll();
+    }
+
+    /**
+     * A client that missed messages which are no longer in the history should be rejected and disconnected.
+     */
+    @Test
+    public void shouldRejectResumingWhenMissedMessagesLeftTheHistory() {
+        send(first, "a", "b", "c", "d");
+        first.close();
+
+        final EmbeddedChannel second = resume(0);
+
+        final ByteBuf rejected = second.readOutbound();
+        assertThat(rejected.readByte()).isEqualTo(SessionHandshake.REJECTED);
+        rejected.release();
+        second.runPendingTasks();
+        assertThat(second.isOpen()).isFalse();
+        second.finishAndReleaseAll();
+    }
+
+    /**
+     * Messages sent while the client is disconnected should be held back and sent when it resumes the session.
+     */
+    @Test
+    public void shouldHoldBackMessagesWhileDetached() {
+        send(first, "a");
+        first.close();
+        final ServerSession session = ServerSession.of(first);
+
+        session.write(message("b"));
+        assertThat(first.outboundMessages()).isEmpty();
+
+        final EmbeddedChannel second = resume(1);
+
+        assertResumed(second);
+        assertThat(read(second)).isEqualTo("b");
+        assertThat(second.outboundMessages()).isEmpty();
+        second.finishAndReleaseAll();
+    }
+
+    /**
+     * A message that is still written to the old connection when the session moved should be sent through the new
+     * connection and be counted only once.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldMoveWritesInFlightToTheNewConnection() throws Exception {
+        send(first, "a");
+        // The write reaches the handler of the old connection only after the session moved. The channel is torn down
+        // by then, so the handler is invoked directly.
+        final ChannelHandlerContext oldContext = first.pipeline().context(ServerSessionHandler.class);
+        final ServerSessionHandler oldHandler = (ServerSessionHandler) oldContext.handler();
+
+        // The server did not notice yet that the first connection was lost.
+        final EmbeddedChannel second = resume(1);
+        assertResumed(second);
+        assertThat(first.isOpen()).isFalse();
+
+        final ChannelPromise promise = oldContext.newPromise();
+        oldHandler.write(oldContext, message("b"), promise);
+
+        assertThat(promise.isSuccess()).isTrue();
+        assertThat(first.outboundMessages()).isEmpty();
+        assertThat(read(second)).isEqualTo("b");
+        assertThat(second.outboundMessages()).isEmpty();
+        second.close();
+
+        // "b" is in the history exactly once, so a client that received only "a" gets just "b" again.
+        final EmbeddedChannel third = resume(1);
+        assertResumed(third);
+        assertThat(read(third)).isEqualTo("b");
+        assertThat(third.outboundMessages()).isEmpty();
+        second.finishAndReleaseAll();
+        third.finishAndReleaseAll();
+    }
+
+    private EmbeddedChannel resume(final long receivedCount) {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ServerSessionHandler(sessions));
+        channel.writeInbound(SessionHandshake.message(channel.alloc(), SessionHandshake.RESUME, id, receivedCount));
+        return channel;
+    }
+
+    private static void assertResumed(final EmbeddedChannel channel) {
+        final ByteBuf resumed = channel.readOutbound();
+        assertThat(resumed.readByte()).isEqualTo(SessionHandshake.RESUMED);
+        assertThat(resumed.readLong()).isEqualTo(0);
+        resumed.release();
+    }
+
+    private static void send(final EmbeddedChannel channel, final String... messages) {
+        for (final String message : messages) {
+            channel.writeOutbound(message(message));
+            assertThat(read(channel)).isEqualTo(message);
+        }
+    }
+
+    private static ByteBuf message(final String content) {
+        return Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
+    }
+
+    private static String read(final EmbeddedChannel channel) {
+        final ByteBuf message = channel.readOutbound();
+        try {
+            return message.toString(CharsetUtil.UTF_8);
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * Ignores all events of the server.
+     */
+    private static final class Callback implements NetworkToTopologyCallbackServer {
+
+        @Override
+        public void recive(final List<Command> commands, final Object sender) {
+        }
+
+        @Override
+        public void onConnect(final Object newClient) {
+        }
+
+        @Override
+        public void onClientConnectionError(final Object client, final SynchronizeFXException e) {
+        }
+
+        @Override
+        public void onFatalError(final SynchronizeFXException e) {
+        }
+    }
+}
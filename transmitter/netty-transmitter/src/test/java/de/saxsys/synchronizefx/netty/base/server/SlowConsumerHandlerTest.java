@@ -0,0 +1,90 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.saxsys.synchronizefx.netty.base.server;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link SlowConsumerHandler} holds back commands while the channel is not writable.
+ */
+public class SlowConsumerHandlerTest {
+
+    private final UUID property = UUID.randomUUID();
+    private final SetPropertyValue olderChange = new SetPropertyValue(property, new Value(1));
+    private final SetPropertyValue ownChange = new SetPropertyValue(property, new Value(2));
+    private final SetPropertyValue newerChange = new SetPropertyValue(property, new Value(3));
+
+    private final EmbeddedChannel channel =
+            new EmbeddedChannel(new SlowConsumerHandler(SlowConsumerPolicy.conflate(10)));
+
+    /**
+     * Values of other clients should be conflated but the echo of a change of the client itself must reach it.
+     */
+    @Test
+    public void shouldNotConflateTheEchoOfChangesOfTheClient() {
+        channel.writeInbound(Arrays.<Command> asList(ownChange));
+        final List<Command> received = channel.readInbound();
+        assertThat(received).containsExactly(ownChange);
+
+        setWritable(false);
+        channel.writeAndFlush(Arrays.<Command> asList(olderChange));
+        channel.writeAndFlush(Arrays.<Command> asList(ownChange));
+        channel.writeAndFlush(Arrays.<Command> asList(newerChange));
+        final Object nothing = channel.readOutbound();
+        assertThat(nothing).isNull();
+
+        setWritable(true);
+
+        final List<Command> sent = channel.readOutbound();
+        assertThat(sent).containsExactly(ownChange, newerChange);
+    }
+
+    /**
+     * Values the client did not wait for should be conflated.
+     */
+    @Test
+    public void shouldConflateValuesOfOtherClients() {
+        setWritable(false);
+        channel.writeAndFlush(Arrays.<Command> asList(olderChange));
+        channel.writeAndFlush(Arrays.<Command> asList(ownChange));
+
+        setWritable(true);
+
+        final List<Command> sent = channel.readOutbound();
+        assertThat(sent).containsExactly(ownChange);
+    }
+
+    private void setWritable(final boolean writable) {
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+        channel.runPendingTasks();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.saxsys.synchronizefx.netty.tcp;
+
+import java.util.zip.Deflater;
+
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link LengthFieldBasedCodec} rejects incoming frames that exceed the {@link FrameLimits} and keeps the
+ * plain frame format when compression is disabled.
+ */
+public class LengthFieldBasedCodecTest {
+
+    private static final int MAX_FRAME_SIZE = 1000;
+
+    private static final byte HELLO = 0;
+    private static final byte RAW = 1;
+    private static final byte DEFLATED = 2;
+
+    private EmbeddedChannel channel;
+
+    /**
+     * Sets up a channel with a compressing codec and receives the hello frame of the peer.
+     */
+    @Before
+    public void setUp() {
+        channel = channel(new FrameCompression());
+        channel.writeInbound(frame(new byte[] {HELLO, 1 }));
+    }
+
+    /**
+     * Frames within the limit should be passed on.
+     */
+    @Test
+    public void shouldPassFramesWithinTheLimit() {
+        final byte[] content = new byte[MAX_FRAME_SIZE];
+        content[0] = RAW;
+
+        channel.writeInbound(frame(content));
+
+        final ByteBuf received = channel.readInbound();
+        assertThat(received.readableBytes()).isEqualTo(MAX_FRAME_SIZE - 1);
+        received.release();
+    }
+
+    /**
+     * A frame that announces a size above the limit should be rejected before its content arrived.
+     */
+    @Test
+    public void shouldRejectFramesThatAnnounceATooLargeSize() {
+        final ByteBuf header = Unpooled.buffer(5).writeInt(100 * MAX_FRAME_SIZE).writeByte(RAW);
+
+        assertTooLongFrame(header);
+    }
+
+    /**
+     * A small deflated frame that inflates to more than the limit should be rejected.
+     */
+    @Test
+    public void shouldRejectDeflatedFramesThatInflateAboveTheLimit() {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(new byte[100 * MAX_FRAME_SIZE]);
+        final byte[] compressed = new byte[MAX_FRAME_SIZE];
+        final int length = deflater.deflate(compressed, 1, compressed.length - 1, Deflater.SYNC_FLUSH);
+        deflater.end();
+        assertThat(length).isLessThan(MAX_FRAME_SIZE - 1);
+        compressed[0] = DEFLATED;
+
+        assertTooLongFrame(frame(compressed, length + 1));
+    }
+
+    /**
+     * Without compression frames should be sent and received as they are, without a hello frame or frame headers.
+     */
+    @Test
+    public void shouldNotChangeTheFramesWithoutCompression() {
+        final EmbeddedChannel plain = channel(null);
+        assertThat(plain.outboundMessages()).isEmpty();
+
+        plain.writeOutbound(Unpooled.wrappedBuffer(new byte[] {5, 6, 7 }));
+        final ByteBuf sent = Unpooled.buffer();
+        for (Object message = plain.readOutbound(); message != null; message = plain.readOutbound()) {
+            sent.writeBytes((ByteBuf) message);
+            ((ByteBuf) message).release();
+        }
+        assertThat(toArray(sent)).isEqualTo(new byte[] {0, 0, 0, 3, 5, 6, 7 });
+
+        plain.writeInbound(frame(new byte[] {RAW, 8 }));
+        final ByteBuf received = plain.readInbound();
+        assertThat(toArray(received)).isEqualTo(new byte[] {RAW, 8 });
+    }
+
+    /**
+     * Without compression a frame of exactly the maximum size should be passed on and larger frames rejected.
+     */
+    @Test
+    public void shouldEnforceTheLimitWithoutCompression() {
+        channel = channel(null);
+
+        channel.writeInbound(frame(new byte[MAX_FRAME_SIZE]));
+        final ByteBuf received = channel.readInbound();
+        assertThat(received.readableBytes()).isEqualTo(MAX_FRAME_SIZE);
+        received.release();
+
+        assertTooLongFrame(frame(new byte[MAX_FRAME_SIZE + 1]));
+    }
+
+    private EmbeddedChannel channel(final FrameCompression compression) {
+        final EmbeddedChannel created = new EmbeddedChannel();
+        new LengthFieldBasedCodec(compression).addToPipeline(created.pipeline(), new FrameLimits(MAX_FRAME_SIZE, 10));
+        return created;
+    }
+
+    private byte[] toArray(final ByteBuf buffer) {
+        final byte[] array = new byte[buffer.readableBytes()];
+        buffer.readBytes(array);
+        buffer.release();
+        return array;
+    }
+
+    private void assertTooLongFrame(final ByteBuf frame) {
+        try {
+            channel.writeInbound(frame);
+            fail("A frame that exceeds the maximum frame size should be rejected.");
+        } catch (final TooLongFrameException e) {
+            assertThat(channel.inboundMessages()).isEmpty();
+        } catch (final DecoderException e) {
+            assertThat(e.getCause()).isInstanceOf(TooLongFrameException.class);
+            assertThat(channel.inboundMessages()).isEmpty();
+        }
+    }
+
+    private ByteBuf frame(final byte[] content) {
+        return frame(content, content.length);
+    }
+
+    private ByteBuf frame(final byte[] content, final int length) {
+        return Unpooled.buffer(4 + length).writeInt(length).writeBytes(content, 0, length);
+    }
+}
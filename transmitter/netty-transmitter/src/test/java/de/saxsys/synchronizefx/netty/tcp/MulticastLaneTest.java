@@ -0,0 +1,259 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.tcp;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.CreateObservableObject;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+import de.saxsys.synchronizefx.netty.base.MulticastLane;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that clients on a {@link MulticastLane} receive value changes of lossy properties as datagrams and get the
+ * latest values over TCP when datagrams are lost.
+ * 
+ * <p>
+ * The server and the clients run in this JVM and use the loopback interface.
+ * </p>
+ */
+public class MulticastLaneTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final UUID objectId = UUID.randomUUID();
+    private final UUID positionId = UUID.randomUUID();
+    private final Serializer serializer = new ReferenceSerializer();
+
+    private NetworkInterface loopback;
+    private InetAddress groupAddress;
+    private int tcpPort;
+    private int multicastPort;
+
+    private NettyServer server;
+    private NettyClient client;
+
+    /**
+     * Looks up the loopback interface and free ports.
+     * 
+     * @throws IOException When no free port could be found.
+     */
+    @Before
+    public void setUp() throws IOException {
+        loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        Assume.assumeNotNull(loopback);
+        groupAddress = InetAddress.getByName("239.255.73.47");
+        try (ServerSocket socket = new ServerSocket(0)) {
+            tcpPort = socket.getLocalPort();
+        }
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            multicastPort = socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Disconnects the client and shuts the server down.
+     */
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.disconnect();
+        }
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * A client on the lane should receive a change as datagram long before the server sends it over TCP.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldReceiveChangesOfLossyPropertiesAsDatagrams() throws Exception {
+        startServer(TimeUnit.HOURS.toMillis(1));
+        final BlockingQueue<Object> positions = connectClient(multicastPort);
+
+        server.sendToAll(Collections.<Command> singletonList(new SetPropertyValue(positionId, new Value(42))));
+
+        assertThat(positions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(42);
+    }
+
+    /**
+     * A client that lost the datagrams should receive the latest value of the property over TCP.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldSendTheLatestValuesOverTcpWhenDatagramsAreLost() throws Exception {
+        startServer(100);
+        // The client listens on another port so that all datagrams of the server are lost for it.
+        final BlockingQueue<Object> positions = connectClient(multicastPort + 1);
+
+        for (int position = 1; position <= 3; position++) {
+            server.sendToAll(Collections.<Command> singletonList(new SetPropertyValue(positionId,
+                    new Value(position))));
+        }
+
+        assertThat(positions.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(positions.poll(300, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private void startServer(final long refreshIntervalMillis) throws SynchronizeFXException {
+        server = new NettyServer(tcpPort, serializer);
+        server.setMulticastLane(lane(multicastPort, refreshIntervalMillis));
+        server.setTopologyLayerCallback(new NetworkToTopologyCallbackServer() {
+            @Override
+            public void recive(final List<Command> commands, final Object sender) {
+            }
+
+            @Override
+            public void onConnect(final Object newClient) {
+                server.send(Collections.<Command> singletonList(creation()), newClient);
+                server.onConnectFinished(newClient);
+            }
+
+            @Override
+            public void onClientConnectionError(final Object client, final SynchronizeFXException e) {
+            }
+
+            @Override
+            public void onFatalError(final SynchronizeFXException e) {
+            }
+        });
+        try {
+            server.start();
+        } catch (final SynchronizeFXException e) {
+            Assume.assumeNoException("The loopback interface does not support multicast.", e);
+        }
+    }
+
+    /**
+     * Connects a client and waits until it received the domain model.
+     * 
+     * @param port The port on which the client listens for datagrams.
+     * @return The values that the client receives for the lossy property.
+     * @throws Exception When the client could not connect.
+     */
+    private BlockingQueue<Object> connectClient(final int port) throws Exception {
+        final BlockingQueue<Object> created = new LinkedBlockingQueue<>();
+        final BlockingQueue<Object> positions = new LinkedBlockingQueue<>();
+        client = new NettyClient("localhost", tcpPort, serializer);
+        client.setMulticastLane(lane(port, TimeUnit.HOURS.toMillis(1)));
+        client.setTopologyCallback(new NetworkToTopologyCallbackClient() {
+            @Override
+            public void recive(final List<Command> commands) {
+                for (final Command command : commands) {
+                    if (command instanceof SetPropertyValue) {
+                        positions.add(((SetPropertyValue) command).getValue().getSimpleObjectValue());
+                    } else {
+                        created.add(command);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(final SynchronizeFXException e) {
+            }
+
+            @Override
+            public void onServerDisconnect() {
+            }
+        });
+        client.connect();
+        assertThat(created.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isNotNull();
+        return positions;
+    }
+
+    private MulticastLane lane(final int port, final long refreshIntervalMillis) {
+        return new MulticastLane(new InetSocketAddress(groupAddress, port), loopback, refreshIntervalMillis,
+                MulticastLane.DEFAULT_TIME_TO_LIVE).lossy(Cursor.class, "position");
+    }
+
+    private CreateObservableObject creation() {
+        final CreateObservableObject creation = new CreateObservableObject();
+        creation.setObjectId(objectId);
+        creation.setClassName(Cursor.class.getName());
+        final Map<String, UUID> properties = new HashMap<>();
+        properties.put("position", positionId);
+        creation.setPropertyNameToId(properties);
+        return creation;
+    }
+
+    /**
+     * The class of the domain model whose position is sent over the multicast lane.
+     */
+    static final class Cursor {
+    }
+
+    /**
+     * Transfers only a reference to the commands which is possible because server and clients run in the same JVM.
+     */
+    private static final class ReferenceSerializer implements Serializer {
+
+        private final Map<UUID, List<Command>> serialized = new ConcurrentHashMap<>();
+
+        @Override
+        public byte[] serialize(final List<Command> commands) {
+            final UUID reference = UUID.randomUUID();
+            serialized.put(reference, commands);
+            return ByteBuffer.allocate(16).putLong(reference.getMostSignificantBits())
+                    .putLong(reference.getLeastSignificantBits()).array();
+        }
+
+        @Override
+        public List<Command> deserialize(final byte[] commands) throws SynchronizeFXException {
+            final ByteBuffer buffer = ByteBuffer.wrap(commands);
+            final List<Command> deserialized = serialized.get(new UUID(buffer.getLong(), buffer.getLong()));
+            if (deserialized == null) {
+                throw new SynchronizeFXException("Unknown commands " + Arrays.toString(commands) + ".");
+            }
+            return deserialized;
+        }
+    }
+}
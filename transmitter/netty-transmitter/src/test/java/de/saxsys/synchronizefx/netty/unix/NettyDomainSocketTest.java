@@ -0,0 +1,185 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.unix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+import de.saxsys.synchronizefx.netty.base.FrameCompression;
+import de.saxsys.synchronizefx.netty.base.HandleKeepingSerializer;
+
+import io.netty.channel.epoll.Epoll;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link NettyDomainSocketServer} and {@link NettyDomainSocketClient} exchange commands over a Unix
+ * domain socket.
+ */
+public class NettyDomainSocketTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final Serializer serializer = new HandleKeepingSerializer(false);
+    private final UUID propertyId = UUID.randomUUID();
+    private final BlockingQueue<Command> receivedByServer = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Command> receivedByClient = new LinkedBlockingQueue<>();
+
+    private File socket;
+    private NettyDomainSocketServer server;
+    private NettyDomainSocketClient client;
+
+    /**
+     * Chooses the path of the socket.
+     * 
+     * @throws IOException When no temporary file could be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Epoll.isAvailable());
+        socket = File.createTempFile("synchronizefx", ".sock");
+        // The server creates the socket file on its own.
+        assertThat(socket.delete()).isTrue();
+    }
+
+    /**
+     * Disconnects the client, shuts the server down and removes the socket.
+     */
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.disconnect();
+        }
+        if (server != null) {
+            server.shutdown();
+        }
+        if (socket != null) {
+            socket.delete();
+        }
+    }
+
+    /**
+     * The client should receive the domain model and changes of the server and the server the changes of the
+     * client.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldExchangeCommandsInBothDirections() throws Exception {
+        server = new NettyDomainSocketServer(socket.getPath(), serializer);
+        client = new NettyDomainSocketClient(socket.getPath(), serializer);
+
+        assertExchangesCommands();
+    }
+
+    /**
+     * Compressed frames should be exchanged when both sides enable compression.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldExchangeCompressedCommands() throws Exception {
+        server = new NettyDomainSocketServer(socket.getPath(), serializer, new FrameCompression());
+        client = new NettyDomainSocketClient(socket.getPath(), serializer, new FrameCompression());
+
+        assertExchangesCommands();
+    }
+
+    private void assertExchangesCommands() throws Exception {
+        startServer();
+        connectClient();
+        assertThat(value(receivedByClient.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS))).isEqualTo("initial");
+
+        client.send(change("from client"));
+        assertThat(value(receivedByServer.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS))).isEqualTo("from client");
+
+        server.sendToAll(change("from server"));
+        assertThat(value(receivedByClient.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS))).isEqualTo("from server");
+    }
+
+    private void startServer() throws SynchronizeFXException {
+        server.setTopologyLayerCallback(new NetworkToTopologyCallbackServer() {
+            @Override
+            public void recive(final List<Command> commands, final Object sender) {
+                receivedByServer.addAll(commands);
+            }
+
+            @Override
+            public void onConnect(final Object newClient) {
+                server.send(change("initial"), newClient);
+                server.onConnectFinished(newClient);
+            }
+
+            @Override
+            public void onClientConnectionError(final Object client, final SynchronizeFXException e) {
+            }
+
+            @Override
+            public void onFatalError(final SynchronizeFXException e) {
+            }
+        });
+        server.start();
+    }
+
+    private void connectClient() throws SynchronizeFXException {
+        client.setTopologyCallback(new NetworkToTopologyCallbackClient() {
+            @Override
+            public void recive(final List<Command> commands) {
+                receivedByClient.addAll(commands);
+            }
+
+            @Override
+            public void onError(final SynchronizeFXException e) {
+            }
+
+            @Override
+            public void onServerDisconnect() {
+            }
+        });
+        client.connect();
+    }
+
+    private List<Command> change(final String value) {
+        return Collections.<Command> singletonList(new SetPropertyValue(propertyId, new Value(value)));
+    }
+
+    private static Object value(final Command command) {
+        assertThat(command).isInstanceOf(SetPropertyValue.class);
+        return ((SetPropertyValue) command).getValue().getSimpleObjectValue();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.util.CharsetUtil;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link ByteBufToWebSocketFrameCodec} reassembles fragmented messages without copying them.
+ */
+public class ByteBufToWebSocketFrameCodecTest {
+
+    private final ByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+
+    /**
+     * The fragments of a message should be combined in a composite buffer of the allocator of the channel.
+     */
+    @Test
+    public void shouldReassembleFragmentsWithTheAllocatorOfTheChannel() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ByteBufToWebSocketFrameCodec(1024));
+        channel.config().setAllocator(allocator);
+        final ByteBuf first = Unpooled.copiedBuffer("first ", CharsetUtil.UTF_8);
+        final ByteBuf second = Unpooled.copiedBuffer("second", CharsetUtil.UTF_8);
+
+        channel.writeInbound(new BinaryWebSocketFrame(false, 0, first));
+        assertThat(channel.inboundMessages()).isEmpty();
+        channel.writeInbound(new ContinuationWebSocketFrame(true, 0, second));
+
+        final ByteBuf message = channel.readInbound();
+        try {
+            assertThat(message).isInstanceOf(CompositeByteBuf.class);
+            assertThat(message.alloc()).isSameAs(allocator);
+            assertThat(((CompositeByteBuf) message).numComponents()).isEqualTo(2);
+            assertThat(message.toString(CharsetUtil.UTF_8)).isEqualTo("first second");
+        } finally {
+            message.release();
+        }
+        assertThat(first.refCnt()).isZero();
+        assertThat(second.refCnt()).isZero();
+    }
+
+    /**
+     * A message in a single frame should be passed on as it is.
+     */
+    @Test
+    public void shouldPassUnfragmentedMessagesOn() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ByteBufToWebSocketFrameCodec(1024));
+        final ByteBuf content = Unpooled.copiedBuffer("complete", CharsetUtil.UTF_8);
+
+        channel.writeInbound(new BinaryWebSocketFrame(content));
+
+        final ByteBuf message = channel.readInbound();
+        assertThat(message).isSameAs(content);
+        message.release();
+    }
+}
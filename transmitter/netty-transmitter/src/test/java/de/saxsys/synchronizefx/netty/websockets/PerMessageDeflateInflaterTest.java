@@ -0,0 +1,127 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link PerMessageDeflateInflater} inflates messages only up to the maximum message size.
+ */
+public class PerMessageDeflateInflaterTest {
+
+    private static final int MAX_MESSAGE_SIZE = 1000;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    private final EmbeddedChannel channel = new EmbeddedChannel(new PerMessageDeflateInflater(MAX_MESSAGE_SIZE));
+
+    /**
+     * Compressed messages should be inflated with a dictionary that is kept across messages.
+     */
+    @Test
+    public void shouldInflateMessages() {
+        for (int i = 0; i < 2; i++) {
+            channel.writeInbound(new BinaryWebSocketFrame(true, WebSocketExtension.RSV1, compress("Hello World")));
+
+            final WebSocketFrame frame = channel.readInbound();
+            assertThat(frame.rsv()).isEqualTo(0);
+            assertThat(frame.content().toString(StandardCharsets.UTF_8)).isEqualTo("Hello World");
+            frame.release();
+        }
+    }
+
+    /**
+     * Uncompressed messages should be passed on unchanged.
+     */
+    @Test
+    public void shouldPassUncompressedMessages() {
+        final BinaryWebSocketFrame uncompressed = new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[] {1 }));
+
+        channel.writeInbound(uncompressed);
+
+        final Object received = channel.readInbound();
+        assertThat(received).isSameAs(uncompressed);
+        uncompressed.release();
+    }
+
+    /**
+     * Fragments of a message should count towards the limit together.
+     */
+    @Test
+    public void shouldRejectFragmentedMessagesThatInflateAboveTheLimit() {
+        final byte[] half = new byte[MAX_MESSAGE_SIZE / 2 + 1];
+        channel.writeInbound(new BinaryWebSocketFrame(false, WebSocketExtension.RSV1, compress(half, false)));
+        final WebSocketFrame first = channel.readInbound();
+        first.release();
+
+        assertTooLongFrame(new ContinuationWebSocketFrame(true, 0, compress(half)));
+    }
+
+    /**
+     * A small compressed frame should not be inflated beyond the limit.
+     */
+    @Test
+    public void shouldRejectMessagesThatInflateAboveTheLimit() {
+        final ByteBuf compressed = compress(new byte[100 * MAX_MESSAGE_SIZE]);
+        assertThat(compressed.readableBytes()).isLessThan(MAX_MESSAGE_SIZE);
+
+        assertTooLongFrame(new BinaryWebSocketFrame(true, WebSocketExtension.RSV1, compressed));
+    }
+
+    private void assertTooLongFrame(final WebSocketFrame frame) {
+        try {
+            channel.writeInbound(frame);
+            fail("A message that inflates above the maximum message size should be rejected.");
+        } catch (final TooLongFrameException e) {
+            assertThat(channel.inboundMessages()).isEmpty();
+        }
+    }
+
+    private ByteBuf compress(final String text) {
+        return compress(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ByteBuf compress(final byte[] data) {
+        return compress(data, true);
+    }
+
+    private ByteBuf compress(final byte[] data, final boolean lastFragment) {
+        deflater.setInput(data);
+        final byte[] buffer = new byte[data.length + 64];
+        final int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        // The permessage-deflate extension removes the tail of the sync flush at the end of each message.
+        return Unpooled.wrappedBuffer(Arrays.copyOf(buffer, lastFragment ? length - 4 : length));
+    }
+}
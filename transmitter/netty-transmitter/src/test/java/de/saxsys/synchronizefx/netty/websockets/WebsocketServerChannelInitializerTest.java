@@ -0,0 +1,118 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.netty.websockets;
+
+import de.saxsys.synchronizefx.netty.base.FrameLimits;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link WebsocketServerChannelInitializer} accepts websocket connections below the base path and passes
+ * the requested channel name and the received messages on.
+ */
+public class WebsocketServerChannelInitializerTest {
+
+    private static final String PROTOCOL = "v2.websocket.synchronizefx.saxsys.de";
+
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+
+    /**
+     * Sets up the pipeline of the embedded channel.
+     */
+    public WebsocketServerChannelInitializerTest() {
+        new WebsocketServerChannelInitializer("/synchronizefx", false).addToPipeline(channel.pipeline(),
+                new FrameLimits());
+    }
+
+    /**
+     * The path behind the base path should be passed on as channel name once the handshake completed.
+     */
+    @Test
+    public void shouldPassTheChannelNameOnAfterTheHandshake() {
+        channel.writeInbound(upgradeRequest("/synchronizefx/models?client=1"));
+
+        assertThat(readResponse()).startsWith("HTTP/1.1 101").contains(PROTOCOL);
+        assertThat(readInbound()).isEqualTo("models");
+    }
+
+    /**
+     * Binary websocket frames should be passed on as their content.
+     */
+    @Test
+    public void shouldPassTheContentOfBinaryFramesOn() {
+        channel.writeInbound(upgradeRequest("/synchronizefx/models"));
+        readResponse();
+        readInbound();
+
+        final EmbeddedChannel client = new EmbeddedChannel(new WebSocket13FrameEncoder(true));
+        client.writeOutbound(new BinaryWebSocketFrame(Unpooled.copiedBuffer("commands", CharsetUtil.UTF_8)));
+        channel.writeInbound(client.<ByteBuf> readOutbound());
+
+        assertThat(readInbound()).isEqualTo("commands");
+    }
+
+    /**
+     * Requests for other paths should be answered with 404 and the connection should be closed.
+     */
+    @Test
+    public void shouldAnswerOtherRequestsWithNotFound() {
+        channel.writeInbound(Unpooled.copiedBuffer("GET /other HTTP/1.1\r\nHost: localhost\r\n\r\n",
+                CharsetUtil.US_ASCII));
+
+        assertThat(readResponse()).startsWith("HTTP/1.1 404");
+        assertThat(channel.isOpen()).isFalse();
+        assertThat(channel.inboundMessages()).isEmpty();
+    }
+
+    private static ByteBuf upgradeRequest(final String uri) {
+        return Unpooled.copiedBuffer("GET " + uri + " HTTP/1.1\r\n" + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n" + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" + "Sec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Protocol: " + PROTOCOL + "\r\n\r\n", CharsetUtil.US_ASCII);
+    }
+
+    private String readResponse() {
+        final StringBuilder response = new StringBuilder();
+        for (Object part = channel.readOutbound(); part != null; part = channel.readOutbound()) {
+            response.append(((ByteBuf) part).toString(CharsetUtil.US_ASCII));
+            ReferenceCountUtil.release(part);
+        }
+        return response.toString();
+    }
+
+    private String readInbound() {
+        final ByteBuf message = channel.readInbound();
+        try {
+            return message.toString(CharsetUtil.UTF_8);
+        } finally {
+            message.release();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for data in a shared memory ring by spinning first, then yielding and finally parking the current thread.
+ * 
+ * <p>
+ * Spinning reacts fastest to new data but keeps a CPU core busy. The time a thread is parked is doubled on each
+ * call up to a maximum so that an idle connection costs almost no CPU time. Each thread needs its own instance.
+ * </p>
+ */
+final class Backoff {
+
+    private static final int SPINS = 10000;
+    private static final int YIELDS = 100;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private int calls;
+    private long parkNanos = MIN_PARK_NANOS;
+
+    /**
+     * Waits a little before the caller checks for data again.
+     */
+    void idle() {
+        if (calls < SPINS) {
+            calls++;
+        } else if (calls < SPINS + YIELDS) {
+            calls++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Starts to spin again after data was available.
+     */
+    void reset() {
+        calls = 0;
+        parkNanos = MIN_PARK_NANOS;
+    }
+}
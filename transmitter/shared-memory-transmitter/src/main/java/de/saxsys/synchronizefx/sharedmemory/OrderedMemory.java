@@ -0,0 +1,121 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Reads and writes numbers in a memory-mapped file with the memory ordering that is needed to exchange data with
+ * other processes.
+ * 
+ * <p>
+ * Values written with the ordered methods become visible to other processes only after all writes that were done
+ * before. Values read with the volatile methods are read before all reads that are done afterwards. Numbers are
+ * stored in the native byte order at offsets that are a multiple of their size so that each is read and written with
+ * a single access. Long values are therefore only atomic on 64 bit JVMs.
+ * </p>
+ * 
+ * <p>
+ * Java 7 has no public API for fences, so they are built from a write and a subsequent read of a volatile field.
+ * The Java Memory Model forbids to reorder any memory access across this pair and JIT compilers implement that with
+ * barriers that apply to all memory, including memory-mapped files.
+ * </p>
+ */
+final class OrderedMemory {
+
+    private static volatile int fence;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Initializes an instance for a mapped file.
+     * 
+     * @param mapped The mapped file.
+     */
+    OrderedMemory(final MappedByteBuffer mapped) {
+        this.buffer = mapped.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Reads a number that was written by another thread or process.
+     * 
+     * @param offset The offset of the number in the file.
+     * @return The number.
+     */
+    long getLongVolatile(final int offset) {
+        final long value = buffer.getLong(checked(offset, 8));
+        fullFence();
+        return value;
+    }
+
+    /**
+     * Writes a number after all writes that were done before.
+     * 
+     * @param offset The offset of the number in the file.
+     * @param value The number.
+     */
+    void putLongOrdered(final int offset, final long value) {
+        fullFence();
+        buffer.putLong(checked(offset, 8), value);
+    }
+
+    /**
+     * Reads a number that was written by another thread or process.
+     * 
+     * @param offset The offset of the number in the file.
+     * @return The number.
+     */
+    int getIntVolatile(final int offset) {
+        final int value = buffer.getInt(checked(offset, 4));
+        fullFence();
+        return value;
+    }
+
+    /**
+     * Writes a number after all writes that were done before.
+     * 
+     * @param offset The offset of the number in the file.
+     * @param value The number.
+     */
+    void putIntOrdered(final int offset, final int value) {
+        fullFence();
+        buffer.putInt(checked(offset, 4), value);
+    }
+
+    /**
+     * Prevents that memory accesses before this call are reordered with memory accesses after it.
+     * 
+     * @return The value of the field that is used as fence. It has no meaning.
+     */
+    private static int fullFence() {
+        fence = 0;
+        return fence;
+    }
+
+    private int checked(final int offset, final int size) {
+        // Values that are not aligned may be written with several accesses and be seen half written.
+        if (offset % size != 0) {
+            throw new IndexOutOfBoundsException("Invalid offset " + offset + " for a value of " + size + " bytes.");
+        }
+        return offset;
+    }
+}
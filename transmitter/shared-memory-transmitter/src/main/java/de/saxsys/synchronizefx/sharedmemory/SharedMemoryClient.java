@@ -0,0 +1,156 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferClient;
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+/**
+ * A {@link CommandTransferClient} that connects to a {@link SharedMemoryServer} in another JVM on the same host.
+ */
+public class SharedMemoryClient implements CommandTransferClient, SharedMemoryConnection.MessageListener {
+
+    /**
+     * The number of bytes each direction of a connection can buffer by default.
+     */
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final long WRITE_TIMEOUT_MILLIS = 10000;
+
+    private final File directory;
+    private final int capacity;
+    private final StreamingSerializer serializer;
+
+    private NetworkToTopologyCallbackClient callback;
+    private SharedMemoryConnection connection;
+    private Thread reader;
+
+    /**
+     * Initializes the client with {@link #DEFAULT_CAPACITY}.
+     * 
+     * @param directory The directory the server watches for new connections.
+     * @param serializer The serializer to use to serialize the commands send to the server and deserialize commands
+     *            received from the server.
+     */
+    public SharedMemoryClient(final File directory, final Serializer serializer) {
+        this(directory, serializer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes the client.
+     * 
+     * @param directory The directory the server watches for new connections.
+     * @param serializer The serializer to use to serialize the commands send to the server and deserialize commands
+     *            received from the server.
+     * @param capacity The number of bytes each direction of the connection can buffer. This must be a power of two.
+     *            Larger messages are still transfered but the writer has to wait for the reader in between.
+     */
+    public SharedMemoryClient(final File directory, final Serializer serializer, final int capacity) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.serializer = StreamingSerializerAdapter.adapt(serializer instanceof ConnectionScopedSerializer
+                ? ((ConnectionScopedSerializer) serializer).newConnectionSerializer() : serializer);
+    }
+
+    @Override
+    public void setTopologyCallback(final NetworkToTopologyCallbackClient callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void connect() throws SynchronizeFXException {
+        final SharedMemoryConnection newConnection = SharedMemoryConnection.create(directory, capacity);
+        if (!newConnection.awaitAccepted(CONNECT_TIMEOUT_MILLIS)) {
+            newConnection.close();
+            throw new SynchronizeFXException("No server accepted the connection in " + directory + ".");
+        }
+        this.connection = newConnection;
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read(newConnection);
+            }
+        }, "SynchronizeFX shared memory reader " + newConnection.getFile().getName());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void read(final SharedMemoryConnection readConnection) {
+        try {
+            readConnection.read(this);
+        } catch (final SynchronizeFXException e) {
+            if (!readConnection.isClosed()) {
+                readConnection.close();
+                callback.onError(e);
+            }
+            return;
+        }
+        if (!readConnection.isClosed()) {
+            readConnection.close();
+            callback.onServerDisconnect();
+        }
+    }
+
+    @Override
+    public void onMessage(final ByteBuffer message) throws SynchronizeFXException {
+        callback.recive(serializer.deserialize(message));
+    }
+
+    @Override
+    public void send(final List<Command> commands) {
+        final SharedMemoryConnection currentConnection = connection;
+        if (currentConnection == null || currentConnection.isClosed()) {
+            return;
+        }
+        try {
+            currentConnection.write(serializer.serialize(commands), WRITE_TIMEOUT_MILLIS);
+        } catch (final SynchronizeFXException e) {
+            if (!currentConnection.isClosed()) {
+                currentConnection.close();
+                callback.onError(e);
+            }
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (connection != null) {
+            connection.close();
+        }
+        if (reader != null && reader != Thread.currentThread()) {
+            try {
+                reader.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection between a client and a server through a memory-mapped file.
+ * 
+ * <p>
+ * The file starts with a header followed by a {@link SharedMemoryRing} from the client to the server and one from the
+ * server to the client. The client creates the file in the directory of the server and the server accepts it by
+ * setting a flag in the header. Messages are written as frames that consist of their length as 4 byte integer
+ * followed by their content. Frames can be larger than the rings as they are written in parts when necessary.
+ * </p>
+ * 
+ * <p>
+ * Each end holds a lock on its own byte of the header as long as it uses the connection. The operating system
+ * releases the lock when the process dies so that the other end notices when it is gone.
+ * </p>
+ * 
+ * <p>
+ * Writing is Thread-safe. Reading must be done by a single thread. Closing never waits for a thread that writes. That
+ * thread stops as soon as it notices that the connection was closed and finishes closing it.
+ * </p>
+ */
+final class SharedMemoryConnection {
+
+    /**
+     * The ending of the names of the files that contain connections.
+     */
+    static final String FILE_SUFFIX = ".ring";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedMemoryConnection.class);
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x53465852;
+    private static final int MIN_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 256 * 1024 * 1024;
+    private static final long LIVENESS_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int ACCEPTED_OFFSET = 8;
+    private static final int CLIENT_CLOSED_OFFSET = 12;
+    private static final int SERVER_CLOSED_OFFSET = 16;
+    private static final int CLIENT_LOCK_OFFSET = 20;
+    private static final int SERVER_LOCK_OFFSET = 21;
+    private static final int HEADER_SIZE = 64;
+
+    private final File file;
+    private final FileChannel channel;
+    private final OrderedMemory memory;
+    private final boolean serverSide;
+    private final SharedMemoryRing in;
+    private final SharedMemoryRing out;
+    private FileLock lock;
+
+    // Guards writing to the ring and "finished".
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final byte[] lengthField = new byte[4];
+    private final Backoff writeBackoff = new Backoff();
+    private final Backoff readBackoff = new Backoff();
+    private long lastLivenessCheck = System.nanoTime();
+    private volatile boolean closed;
+    private boolean finished;
+
+    private SharedMemoryConnection(final File file, final FileChannel channel, final MappedByteBuffer mapped,
+            final int capacity, final boolean serverSide) {
+        this.file = file;
+        this.channel = channel;
+        this.memory = new OrderedMemory(mapped);
+        this.serverSide = serverSide;
+        final SharedMemoryRing toServer = new SharedMemoryRing(mapped, memory, HEADER_SIZE, capacity);
+        final SharedMemoryRing toClient =
+                new SharedMemoryRing(mapped, memory, HEADER_SIZE + SharedMemoryRing.size(capacity), capacity);
+        this.in = serverSide ? toServer : toClient;
+        this.out = serverSide ? toClient : toServer;
+    }
+
+    /**
+     * Creates a new connection file for a client in the directory of a server.
+     * 
+     * @param directory The directory the server watches for new connections.
+     * @param capacity The number of bytes each ring can hold. This must be a power of two.
+     * @return The connection. It can be used as soon as the server accepted it.
+     * @throws SynchronizeFXException When the file could not be created.
+     * @see #awaitAccepted(long)
+     */
+    static SharedMemoryConnection create(final File directory, final int capacity) throws SynchronizeFXException {
+        if (!isValidCapacity(capacity)) {
+            throw new IllegalArgumentException("The capacity must be a power of two between " + MIN_CAPACITY
+                    + " and " + MAX_CAPACITY + " bytes.");
+        }
+        final String name = UUID.randomUUID().toString();
+        final File temporary = new File(directory, name + TEMPORARY_SUFFIX);
+        final File file = new File(directory, name + FILE_SUFFIX);
+        RandomAccessFile access = null;
+        try {
+            access = new RandomAccessFile(temporary, "rw");
+            final int size = fileSize(capacity);
+            access.setLength(size);
+            final FileChannel channel = access.getChannel();
+            final MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE, 0, size);
+            mapped.putInt(MAGIC_OFFSET, MAGIC);
+            mapped.putInt(CAPACITY_OFFSET, capacity);
+
+            final SharedMemoryConnection connection =
+                    new SharedMemoryConnection(file, channel, mapped, capacity, false);
+            connection.lock = channel.lock(CLIENT_LOCK_OFFSET, 1, false);
+            // The server must only see completely initialized files.
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return connection;
+        } catch (final IOException e) {
+            closeQuietly(access);
+            temporary.delete();
+            throw new SynchronizeFXException("The shared memory file for the connection could not be created in "
+                    + directory + ".", e);
+        }
+    }
+
+    /**
+     * Accepts a connection file that was created by a client.
+     * 
+     * @param file The file of the connection.
+     * @return The connection.
+     * @throws SynchronizeFXException When the file is not a valid connection file or is used by another server.
+     */
+    static SharedMemoryConnection accept(final File file) throws SynchronizeFXException {
+        RandomAccessFile access = null;
+        try {
+            access = new RandomAccessFile(file, "rw");
+            final FileChannel channel = access.getChannel();
+            final long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new SynchronizeFXException("The file is too small.");
+            }
+            final MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE, 0, size);
+            final int capacity = mapped.getInt(CAPACITY_OFFSET);
+            if (mapped.getInt(MAGIC_OFFSET) != MAGIC || !isValidCapacity(capacity) || size != fileSize(capacity)) {
+                throw new SynchronizeFXException("The file is not a SynchronizeFX connection.");
+            }
+
+            final SharedMemoryConnection connection = new SharedMemoryConnection(file, channel, mapped, capacity, true);
+            connection.lock = channel.tryLock(SERVER_LOCK_OFFSET, 1, false);
+            if (connection.lock == null) {
+                throw new SynchronizeFXException("The connection is used by another server.");
+            }
+            connection.memory.putIntOrdered(ACCEPTED_OFFSET, 1);
+            return connection;
+        } catch (final IOException | OverlappingFileLockException | SynchronizeFXException e) {
+            closeQuietly(access);
+            throw new SynchronizeFXException("The connection file " + file + " could not be accepted.", e);
+        }
+    }
+
+    private static boolean isValidCapacity(final int capacity) {
+        return capacity >= MIN_CAPACITY && capacity <= MAX_CAPACITY && Integer.bitCount(capacity) == 1;
+    }
+
+    private static int fileSize(final int capacity) {
+        return HEADER_SIZE + 2 * SharedMemoryRing.size(capacity);
+    }
+
+    /**
+     * Waits until the server accepted a connection created by a client.
+     * 
+     * @param timeoutMillis The maximal time to wait in milliseconds.
+     * @return <code>true</code> if the server accepted the connection and <code>false</code> if it did not in time.
+     */
+    boolean awaitAccepted(final long timeoutMillis) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final Backoff backoff = new Backoff();
+        while (memory.getIntVolatile(ACCEPTED_OFFSET) == 0) {
+            if (closed || System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            backoff.idle();
+        }
+        return true;
+    }
+
+    /**
+     * Writes a message to the other end of the connection.
+     * 
+     * <p>
+     * This method blocks while the ring to the other end is full.
+     * </p>
+     * 
+     * @param message The message.
+     * @param timeoutMillis The maximal time in milliseconds to wait for the other end to read older messages.
+     * @throws SynchronizeFXException When the message could not be written completely. The connection can't be used
+     *             anymore in this case.
+     */
+    void write(final byte[] message, final long timeoutMillis) throws SynchronizeFXException {
+        writeLock.lock();
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            ByteBuffer.wrap(lengthField).putInt(message.length);
+            writeFully(lengthField, deadline);
+            writeFully(message, deadline);
+        } finally {
+            writeLock.unlock();
+            finishCloseIfClosed();
+        }
+    }
+
+    private void writeFully(final byte[] source, final long deadline) throws SynchronizeFXException {
+        int written = 0;
+        while (written < source.length) {
+            if (closed) {
+                throw new SynchronizeFXException("The connection was closed.");
+            }
+            final int writable = Math.min(out.writableBytes(), source.length - written);
+            if (writable > 0) {
+                out.write(source, written, writable);
+                written += writable;
+                writeBackoff.reset();
+                continue;
+            }
+            if (isPeerClosed()) {
+                throw new SynchronizeFXException("The connection was closed.");
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new SynchronizeFXException("The other end of the connection did not read messages in time.");
+            }
+            writeBackoff.idle();
+        }
+    }
+
+    /**
+     * Reads messages from the other end of the connection until it or this end closes it.
+     * 
+     * @param listener The listener to pass the messages to.
+     * @throws SynchronizeFXException When a message could not be read completely or the listener failed.
+     */
+    void read(final MessageListener listener) throws SynchronizeFXException {
+        while (awaitReadable(lengthField.length)) {
+            in.read(lengthField, 0, lengthField.length);
+            final int length = ByteBuffer.wrap(lengthField).getInt();
+            if (length < 0) {
+                throw new SynchronizeFXException("The connection file is corrupted.");
+            }
+
+            final ByteBuffer view = in.readableBytes() >= length ? in.view(length) : null;
+            if (view != null) {
+                // Messages that are not wrapped around the end of the ring are passed without copying them.
+                listener.onMessage(view);
+                in.skip(length);
+                continue;
+            }
+            final byte[] message = new byte[length];
+            int read = 0;
+            while (read < length) {
+                if (!awaitReadable(1)) {
+                    throw new SynchronizeFXException("The connection was closed in the middle of a message.");
+                }
+                final int readable = Math.min(in.readableBytes(), length - read);
+                in.read(message, read, readable);
+                read += readable;
+            }
+            listener.onMessage(ByteBuffer.wrap(message));
+        }
+    }
+
+    /**
+     * Waits until bytes can be read.
+     * 
+     * @param count The number of bytes that should be readable.
+     * @return <code>true</code> if the bytes can be read and <code>false</code> if the connection was closed before.
+     */
+    private boolean awaitReadable(final int count) {
+        while (in.readableBytes() < count) {
+            if (closed) {
+                return false;
+            }
+            // The other end writes all messages before it marks the connection as closed.
+            if (isPeerClosed() && in.readableBytes() < count) {
+                return false;
+            }
+            if (System.nanoTime() - lastLivenessCheck > LIVENESS_CHECK_NANOS) {
+                lastLivenessCheck = System.nanoTime();
+                if (!isPeerAlive()) {
+                    LOG.warn("The other end of the connection " + file + " terminated without closing it.");
+                    return false;
+                }
+            }
+            readBackoff.idle();
+        }
+        readBackoff.reset();
+        return true;
+    }
+
+    private boolean isPeerClosed() {
+        return memory.getIntVolatile(serverSide ? CLIENT_CLOSED_OFFSET : SERVER_CLOSED_OFFSET) != 0;
+    }
+
+    private boolean isPeerAlive() {
+        try {
+            final FileLock peerLock = channel.tryLock(serverSide ? CLIENT_LOCK_OFFSET : SERVER_LOCK_OFFSET, 1, false);
+            if (peerLock == null) {
+                return true;
+            }
+            peerLock.release();
+            return false;
+        } catch (final OverlappingFileLockException e) {
+            // The other end runs in the same JVM.
+            return true;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the connection and deletes its file.
+     * 
+     * <p>
+     * Messages that were written completely before are still read by the other end. This method does not block. If
+     * another thread is currently writing, the write fails and that thread finishes closing the connection.
+     * </p>
+     */
+    void close() {
+        closed = true;
+        finishCloseIfClosed();
+    }
+
+    private void finishCloseIfClosed() {
+        // Either close() gets the lock or the writer that holds it sees the flag after it released the lock.
+        if (!closed || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            memory.putIntOrdered(serverSide ? SERVER_CLOSED_OFFSET : CLIENT_CLOSED_OFFSET, 1);
+            if (lock != null) {
+                lock.release();
+            }
+            channel.close();
+        } catch (final IOException e) {
+            LOG.warn("The shared memory file " + file + " could not be closed.", e);
+        } finally {
+            writeLock.unlock();
+        }
+        file.delete();
+    }
+
+    /**
+     * @return <code>true</code> if this end closed the connection.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return The file of the connection.
+     */
+    File getFile() {
+        return file;
+    }
+
+    private static void closeQuietly(final RandomAccessFile access) {
+        if (access == null) {
+            return;
+        }
+        try {
+            access.close();
+        } catch (final IOException e) {
+            LOG.debug("A shared memory file could not be closed.", e);
+        }
+    }
+
+    /**
+     * Receives the messages read from a connection.
+     */
+    interface MessageListener {
+
+        /**
+         * Handles a message.
+         * 
+         * @param message A buffer whose remaining bytes are the message. It is only valid during this call.
+         * @throws SynchronizeFXException When the message could not be handled.
+         */
+        void onMessage(ByteBuffer message) throws SynchronizeFXException;
+    }
+}
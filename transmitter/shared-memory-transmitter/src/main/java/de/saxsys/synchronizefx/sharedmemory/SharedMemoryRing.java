@@ -0,0 +1,176 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * A ring buffer in a memory-mapped file that transfers bytes from a single writer to a single reader.
+ * 
+ * <p>
+ * The ring consists of a header with the positions of the writer and the reader followed by the data. Positions only
+ * grow and are mapped to the data by their remainder of the capacity, which must be a power of two. The writer
+ * publishes its position after the data was written and the reader publishes its position after the data was read
+ * so that neither overtakes the other.
+ * </p>
+ * 
+ * <p>
+ * Both ends of the connection use their own instance for the same ring, one of them only writes and the other only
+ * reads. Instances are not Thread-safe.
+ * </p>
+ */
+final class SharedMemoryRing {
+
+    /**
+     * The number of bytes in front of the data of the ring.
+     */
+    static final int HEADER_SIZE = 128;
+
+    private static final int WRITE_POSITION = 0;
+    // Placed in another cache line than the write position so that reader and writer don't slow each other down.
+    private static final int READ_POSITION = 64;
+
+    private final OrderedMemory memory;
+    private final int header;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+
+    private long writePosition;
+    private long readPosition;
+
+    /**
+     * Initializes an instance for a ring in a mapped file.
+     * 
+     * @param file The mapped file.
+     * @param memory The ordered access to <code>file</code>.
+     * @param offset The offset of the ring in the file.
+     * @param capacity The number of bytes the ring can hold. This must be a power of two.
+     */
+    SharedMemoryRing(final MappedByteBuffer file, final OrderedMemory memory, final int offset, final int capacity) {
+        this.memory = memory;
+        this.header = offset;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        final ByteBuffer region = file.duplicate();
+        region.limit(offset + HEADER_SIZE + capacity).position(offset + HEADER_SIZE);
+        this.data = region.slice();
+        this.writePosition = memory.getLongVolatile(header + WRITE_POSITION);
+        this.readPosition = memory.getLongVolatile(header + READ_POSITION);
+    }
+
+    /**
+     * The number of bytes a ring with a given capacity needs in the file.
+     * 
+     * @param capacity The capacity of the ring.
+     * @return The number of bytes.
+     */
+    static int size(final int capacity) {
+        return HEADER_SIZE + capacity;
+    }
+
+    /**
+     * The number of bytes the writer can write without overwriting data the reader has not read yet.
+     * 
+     * @return The byte count.
+     */
+    int writableBytes() {
+        return capacity - (int) (writePosition - memory.getLongVolatile(header + READ_POSITION));
+    }
+
+    /**
+     * Writes bytes to the ring and makes them visible to the reader.
+     * 
+     * @param source The array that contains the bytes.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write. It must not exceed {@link #writableBytes()}.
+     */
+    void write(final byte[] source, final int offset, final int length) {
+        final int index = (int) (writePosition & mask);
+        final int untilEnd = Math.min(length, capacity - index);
+        data.position(index);
+        data.put(source, offset, untilEnd);
+        if (untilEnd < length) {
+            data.position(0);
+            data.put(source, offset + untilEnd, length - untilEnd);
+        }
+        writePosition += length;
+        memory.putLongOrdered(header + WRITE_POSITION, writePosition);
+    }
+
+    /**
+     * The number of bytes the writer made visible that were not read yet.
+     * 
+     * @return The byte count.
+     */
+    int readableBytes() {
+        return (int) (memory.getLongVolatile(header + WRITE_POSITION) - readPosition);
+    }
+
+    /**
+     * Reads bytes from the ring and makes their space available to the writer.
+     * 
+     * @param destination The array to copy the bytes to.
+     * @param offset The offset in <code>destination</code> for the first byte.
+     * @param length The number of bytes to read. It must not exceed {@link #readableBytes()}.
+     */
+    void read(final byte[] destination, final int offset, final int length) {
+        final int index = (int) (readPosition & mask);
+        final int untilEnd = Math.min(length, capacity - index);
+        data.position(index);
+        data.get(destination, offset, untilEnd);
+        if (untilEnd < length) {
+            data.position(0);
+            data.get(destination, offset + untilEnd, length - untilEnd);
+        }
+        skip(length);
+    }
+
+    /**
+     * Provides the next bytes to read without copying them if they are not wrapped around the end of the ring.
+     * 
+     * <p>
+     * The bytes stay reserved for the reader until {@link #skip(int)} is called.
+     * </p>
+     * 
+     * @param length The number of bytes to read. It must not exceed {@link #readableBytes()}.
+     * @return A buffer whose remaining bytes are the requested ones or <code>null</code> if they are wrapped around.
+     */
+    ByteBuffer view(final int length) {
+        final int index = (int) (readPosition & mask);
+        if (index + length > capacity) {
+            return null;
+        }
+        final ByteBuffer view = data.duplicate();
+        view.limit(index + length).position(index);
+        return view.slice();
+    }
+
+    /**
+     * Marks bytes as read and makes their space available to the writer.
+     * 
+     * @param length The number of bytes. It must not exceed {@link #readableBytes()}.
+     */
+    void skip(final int length) {
+        readPosition += length;
+        memory.putLongOrdered(header + READ_POSITION, readPosition);
+    }
+}
@@ -0,0 +1,442 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.saxsys.synchronizefx.core.clientserver.CommandBacklog;
+import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link CommandTransferServer} for clients in other JVMs on the same host that exchanges commands through
+ * memory-mapped files.
+ * 
+ * <p>
+ * The server watches a directory in which each client creates a file for its connection. To avoid disk I/O the
+ * directory should be on a memory based file system like <code>/dev/shm</code> on Linux.
+ * </p>
+ * 
+ * <p>
+ * Each client has a thread that writes to its connection. A client that does not read fast enough only blocks its
+ * own thread. Commands sent to it while the previous message is still written are held back according to a
+ * {@link SlowConsumerPolicy} and written as a single message afterwards.
+ * </p>
+ * 
+ * @see SharedMemoryClient
+ */
+public class SharedMemoryServer implements CommandTransferServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedMemoryServer.class);
+
+    private static final long ACCEPT_INTERVAL_MILLIS = 50;
+    private static final long WRITE_TIMEOUT_MILLIS = 10000;
+
+    private static final FileFilter CONNECTION_FILES = new FileFilter() {
+        @Override
+        public boolean accept(final File file) {
+            return file.isFile() && file.getName().endsWith(SharedMemoryConnection.FILE_SUFFIX);
+        }
+    };
+
+    private final File directory;
+    private final Serializer serializer;
+    private final List<Client> connections = new CopyOnWriteArrayList<>();
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    private NetworkToTopologyCallbackServer callback;
+    private SlowConsumerPolicy slowConsumerPolicy =
+            SlowConsumerPolicy.buffer(SlowConsumerPolicy.DEFAULT_MAX_QUEUED_COMMANDS);
+    private StreamingSerializer broadcastSerializer;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * Initializes the server.
+     * 
+     * @param directory The directory in which clients create the files for their connections. It is created if it
+     *            doesn't exist.
+     * @param serializer The serializer to use to serialize the commands send to clients and deserialize commands
+     *            received from clients.
+     */
+    public SharedMemoryServer(final File directory, final Serializer serializer) {
+        this.directory = directory;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Sets how commands for clients that receive them slower than they are produced are treated.
+     * 
+     * <p>
+     * Use this method only before {@link #start()} is called. A client is considered slow while the previous message
+     * for it is still written to its connection.
+     * </p>
+     * 
+     * @param policy The policy to use. The default holds back up to
+     *            {@link SlowConsumerPolicy#DEFAULT_MAX_QUEUED_COMMANDS} commands per client.
+     * @throws IllegalArgumentException When <code>policy</code> is <code>null</code>.
+     */
+    public void setSlowConsumerPolicy(final SlowConsumerPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The slow consumer policy must not be null.");
+        }
+        this.slowConsumerPolicy = policy;
+    }
+
+    /**
+     * The number of commands currently held back for a client because it receives them too slowly.
+     * 
+     * @param client The client as passed to {@link NetworkToTopologyCallbackServer#onConnect(Object)}.
+     * @return The command count.
+     * @see #setSlowConsumerPolicy(SlowConsumerPolicy)
+     */
+    public int getQueuedCommands(final Object client) {
+        return ((Client) client).getQueuedCommands();
+    }
+
+    @Override
+    public void setTopologyLayerCallback(final NetworkToTopologyCallbackServer callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void start() throws SynchronizeFXException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new SynchronizeFXException("The directory " + directory + " for the connections of the clients "
+                    + "could not be created.");
+        }
+        broadcastSerializer = createBroadcastSerializer();
+        running = true;
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "SynchronizeFX shared memory acceptor " + directory);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private StreamingSerializer createBroadcastSerializer() {
+        if (serializer instanceof ConnectionScopedSerializer
+                && ((ConnectionScopedSerializer) serializer).newConnectionSerializer() != serializer) {
+            return null;
+        }
+        return StreamingSerializerAdapter.adapt(serializer);
+    }
+
+    private void acceptConnections() {
+        final Set<File> seen = new HashSet<>();
+        while (running) {
+            final File[] files = directory.listFiles(CONNECTION_FILES);
+            if (files != null) {
+                final Set<File> present = new HashSet<>();
+                for (final File file : files) {
+                    present.add(file);
+                    if (seen.add(file)) {
+                        accept(file);
+                    }
+                }
+                // Forget deleted files so that the set does not grow forever.
+                seen.retainAll(present);
+            }
+            try {
+                Thread.sleep(ACCEPT_INTERVAL_MILLIS);
+            } catch (final InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void accept(final File file) {
+        final SharedMemoryConnection connection;
+        try {
+            connection = SharedMemoryConnection.accept(file);
+        } catch (final SynchronizeFXException e) {
+            LOG.warn("Ignoring the file " + file + ".", e);
+            return;
+        }
+        final Serializer connectionSerializer = serializer instanceof ConnectionScopedSerializer
+                ? ((ConnectionScopedSerializer) serializer).newConnectionSerializer() : serializer;
+        final Client client = new Client(connection, StreamingSerializerAdapter.adapt(connectionSerializer));
+        connections.add(client);
+        if (!running) {
+            client.close();
+            return;
+        }
+        callback.onConnect(client);
+        client.startReading();
+    }
+
+    @Override
+    public void onConnectFinished(final Object client) {
+        clients.add((Client) client);
+    }
+
+    @Override
+    public void sendToAll(final List<Command> commands) {
+        final byte[] serialized = serialize(commands);
+        for (final Client client : clients) {
+            client.send(serialized, commands, true);
+        }
+    }
+
+    @Override
+    public void send(final List<Command> commands, final Object client) {
+        // Commands for a single client are echoes or the initial domain model which the client waits for.
+        ((Client) client).send(null, commands, false);
+    }
+
+    @Override
+    public void sendToAllExcept(final List<Command> commands, final Object nonReciver) {
+        final byte[] serialized = serialize(commands);
+        for (final Client client : clients) {
+            if (client != nonReciver) {
+                client.send(serialized, commands, true);
+            }
+        }
+    }
+
+    /**
+     * Serializes commands once for all clients if possible.
+     * 
+     * @param commands The commands to serialize.
+     * @return The serialized commands or <code>null</code> if each client has to serialize them on its own.
+     */
+    private byte[] serialize(final List<Command> commands) {
+        if (broadcastSerializer == null) {
+            return null;
+        }
+        try {
+            return broadcastSerializer.serialize(commands);
+        } catch (final SynchronizeFXException e) {
+            // Let the clients fail on their own so that the usual handling of connection errors applies.
+            return null;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        if (acceptor != null) {
+            acceptor.interrupt();
+            try {
+                acceptor.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            acceptor = null;
+        }
+        for (final Client client : connections) {
+            client.close();
+        }
+        connections.clear();
+        clients.clear();
+    }
+
+    private void onClientError(final Client client, final SynchronizeFXException error) {
+        final boolean wasOpen = connections.remove(client);
+        clients.remove(client);
+        client.close();
+        if (wasOpen && running) {
+            callback.onClientConnectionError(client, error);
+        }
+    }
+
+    /**
+     * The connection to a single client.
+     */
+    private final class Client implements SharedMemoryConnection.MessageListener {
+
+        private final SharedMemoryConnection connection;
+        private final StreamingSerializer connectionSerializer;
+        private final Thread reader;
+        private final ExecutorService writer;
+        // Use "this" for synchronized access to "backlog" and "writing".
+        private final CommandBacklog backlog = new CommandBacklog(slowConsumerPolicy);
+        private boolean writing;
+
+        /**
+         * Initializes the client.
+         * 
+         * @param connection The connection to the client.
+         * @param connectionSerializer The serializer used for this connection only.
+         */
+        Client(final SharedMemoryConnection connection, final StreamingSerializer connectionSerializer) {
+            this.connection = connection;
+            this.connectionSerializer = connectionSerializer;
+            final String name = connection.getFile().getName();
+            this.reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    read();
+                }
+            }, "SynchronizeFX shared memory reader " + name);
+            this.reader.setDaemon(true);
+            this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "SynchronizeFX shared memory writer " + name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Starts reading commands from the client in a new thread.
+         */
+        void startReading() {
+            reader.start();
+        }
+
+        private void read() {
+            try {
+                connection.read(this);
+            } catch (final SynchronizeFXException e) {
+                onClientError(this, e);
+                return;
+            }
+            if (!connection.isClosed()) {
+                onClientError(this, new SynchronizeFXException("The client closed the connection."));
+            }
+        }
+
+        @Override
+        public void onMessage(final ByteBuffer message) throws SynchronizeFXException {
+            callback.recive(connectionSerializer.deserialize(message), this);
+        }
+
+        /**
+         * Sends commands to the client or holds them back if the previous message is still written.
+         * 
+         * <p>
+         * This method does not block. A client that exceeds the limit of the {@link SlowConsumerPolicy} is
+         * disconnected.
+         * </p>
+         * 
+         * @param shared The commands serialized with the shared serializer or <code>null</code> if they need to be
+         *            serialized for this client.
+         * @param commands The commands.
+         * @param conflatable <code>false</code> if the client waits for the commands, like for the echo of its own
+         *            changes, and they therefore must not be conflated.
+         */
+        void send(final byte[] shared, final List<Command> commands, final boolean conflatable) {
+            synchronized (this) {
+                if (connection.isClosed()) {
+                    return;
+                }
+                if (!writing) {
+                    writing = true;
+                    writer.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            write(shared, commands);
+                        }
+                    });
+                    return;
+                }
+                if (backlog.add(commands, conflatable)) {
+                    return;
+                }
+            }
+            onClientError(this, new SynchronizeFXException("The client does not receive commands fast enough for the "
+                    + slowConsumerPolicy + "."));
+        }
+
+        /**
+         * Writes commands and all commands that are held back in the meantime in the thread of the writer.
+         * 
+         * @param shared The commands serialized with the shared serializer or <code>null</code> if they need to be
+         *            serialized for this client.
+         * @param commands The commands.
+         */
+        private void write(final byte[] shared, final List<Command> commands) {
+            byte[] message = shared;
+            List<Command> next = commands;
+            while (true) {
+                try {
+                    // Serializing in the thread of the writer ensures that the data is written in the same order in
+                    // which the connection serializer created it.
+                    connection.write(message != null ? message : connectionSerializer.serialize(next),
+                            WRITE_TIMEOUT_MILLIS);
+                } catch (final SynchronizeFXException e) {
+                    onClientError(this, e);
+                    return;
+                }
+                synchronized (this) {
+                    if (backlog.isEmpty() || connection.isClosed()) {
+                        writing = false;
+                        return;
+                    }
+                    next = backlog.drain();
+                    message = null;
+                }
+            }
+        }
+
+        /**
+         * @return The number of commands that are currently held back for this client.
+         */
+        synchronized int getQueuedCommands() {
+            return backlog.size();
+        }
+
+        /**
+         * Closes the connection to the client.
+         * 
+         * <p>
+         * This method does not block. A message that is currently written is aborted within the time the writer
+         * waits between two attempts to write.
+         * </p>
+         */
+        void close() {
+            connection.close();
+            synchronized (this) {
+                backlog.drain();
+            }
+            writer.shutdown();
+        }
+
+        @Override
+        public String toString() {
+            return "shared memory client " + connection.getFile().getName();
+        }
+    }
+}
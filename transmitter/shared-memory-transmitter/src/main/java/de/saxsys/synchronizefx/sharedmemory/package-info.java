@@ -0,0 +1,31 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A {@link de.saxsys.synchronizefx.core.clientserver.CommandTransferServer} and a
+ * {@link de.saxsys.synchronizefx.core.clientserver.CommandTransferClient} that connect JVMs on the same host through
+ * memory-mapped files.
+ * 
+ * <p>
+ * Each connection is a file with two ring buffers, one for each direction. Every ring has a single writer. Messages
+ * are written as length-prefixed frames and readers spin for a short time before they park when no message is
+ * available. Placing the files in <code>/dev/shm</code> keeps them in memory on Linux.
+ * </p>
+ */
+package de.saxsys.synchronizefx.sharedmemory;
@@ -0,0 +1,180 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link SharedMemoryConnection} transfers messages between a client and a server.
+ */
+public class SharedMemoryConnectionTest {
+
+    private static final int CAPACITY = 4096;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private File directory;
+    private SharedMemoryConnection client;
+    private SharedMemoryConnection server;
+
+    /**
+     * Connects a client to a server through a temporary directory.
+     * 
+     * @throws Exception not expected
+     */
+    @Before
+    public void connect() throws Exception {
+        directory = Files.createTempDirectory("synchronizefx").toFile();
+        client = SharedMemoryConnection.create(directory, CAPACITY);
+        final File[] files = directory.listFiles();
+        assertThat(files.length).isEqualTo(1);
+        server = SharedMemoryConnection.accept(files[0]);
+        assertThat(client.awaitAccepted(TIMEOUT_MILLIS)).isTrue();
+    }
+
+    /**
+     * Closes both ends of the connection and deletes the temporary directory.
+     */
+    @After
+    public void close() {
+        client.close();
+        server.close();
+        directory.delete();
+    }
+
+    /**
+     * Messages should arrive in order, also when they wrap around the end of the ring or are larger than it.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldTransferMessagesOfAnySize() throws Exception {
+        final List<byte[]> sent = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sent.add(message(i * 700, (byte) i));
+        }
+        sent.add(message(CAPACITY * 3 + 17, (byte) 42));
+        sent.add(message(0, (byte) 0));
+
+        final List<byte[]> received = readInBackground(server, sent.size());
+        for (final byte[] message : sent) {
+            client.write(message, TIMEOUT_MILLIS);
+        }
+        awaitSize(received, sent.size());
+
+        for (int i = 0; i < sent.size(); i++) {
+            assertThat(received.get(i)).isEqualTo(sent.get(i));
+        }
+    }
+
+    /**
+     * Messages written before one end closes the connection should still be read by the other end.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldReadRemainingMessagesAfterTheOtherEndClosed() throws Exception {
+        final byte[] message = message(100, (byte) 7);
+        server.write(message, TIMEOUT_MILLIS);
+        server.close();
+
+        final List<byte[]> received = new ArrayList<>();
+        client.read(new SharedMemoryConnection.MessageListener() {
+            @Override
+            public void onMessage(final ByteBuffer buffer) {
+                received.add(copy(buffer));
+            }
+        });
+
+        assertThat(received.size()).isEqualTo(1);
+        assertThat(received.get(0)).isEqualTo(message);
+    }
+
+    /**
+     * Writing should fail instead of blocking forever when the other end closed the connection and does not read.
+     * 
+     * @throws Exception expected
+     */
+    @Test(expected = SynchronizeFXException.class)
+    public void shouldFailToWriteWhenTheOtherEndClosed() throws Exception {
+        server.close();
+        client.write(message(CAPACITY * 2, (byte) 1), TIMEOUT_MILLIS);
+    }
+
+    private List<byte[]> readInBackground(final SharedMemoryConnection connection, final int count) {
+        final List<byte[]> received = new ArrayList<>();
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    connection.read(new SharedMemoryConnection.MessageListener() {
+                        @Override
+                        public void onMessage(final ByteBuffer buffer) {
+                            synchronized (received) {
+                                received.add(copy(buffer));
+                                received.notifyAll();
+                            }
+                        }
+                    });
+                } catch (final SynchronizeFXException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        return received;
+    }
+
+    private void awaitSize(final List<byte[]> received, final int size) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        synchronized (received) {
+            while (received.size() < size && System.currentTimeMillis() < deadline) {
+                received.wait(TIMEOUT_MILLIS);
+            }
+            assertThat(received.size()).isEqualTo(size);
+        }
+    }
+
+    private static byte[] message(final int length, final byte seed) {
+        final byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) (seed + i);
+        }
+        return message;
+    }
+
+    private static byte[] copy(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * This file is part of SynchronizeFX.
+ * 
+ * Copyright (C) 2013-2014 Saxonia Systems AG
+ *
+ * SynchronizeFX is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SynchronizeFX is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SynchronizeFX. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.saxsys.synchronizefx.sharedmemory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
+import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
+import de.saxsys.synchronizefx.core.metamodel.commands.Command;
+import de.saxsys.synchronizefx.core.metamodel.commands.SetPropertyValue;
+import de.saxsys.synchronizefx.core.metamodel.commands.Value;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link SharedMemoryServer} does not block on clients that do not read.
+ */
+public class SharedMemoryServerTest {
+
+    private static final int CAPACITY = 4096;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final Callback callback = new Callback();
+
+    private File directory;
+    private SharedMemoryServer server;
+    private SharedMemoryConnection client;
+
+    /**
+     * Starts a server that holds back up to two commands and connects a client that never reads.
+     * 
+     * @throws Exception not expected
+     */
+    @Before
+    public void connect() throws Exception {
+        directory = Files.createTempDirectory("synchronizefx").toFile();
+        server = new SharedMemoryServer(directory, new LargeMessageSerializer());
+        server.setSlowConsumerPolicy(SlowConsumerPolicy.buffer(2));
+        server.setTopologyLayerCallback(callback);
+        server.start();
+        client = SharedMemoryConnection.create(directory, CAPACITY);
+        assertThat(client.awaitAccepted(TIMEOUT_MILLIS)).isTrue();
+        assertThat(callback.connected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        server.onConnectFinished(callback.client);
+    }
+
+    /**
+     * Stops the server, closes the client and deletes the temporary directory.
+     */
+    @After
+    public void close() {
+        server.shutdown();
+        client.close();
+        for (final File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Broadcasts should return immediately and be held back while a message for the client is still written.
+     */
+    @Test
+    public void shouldNotBlockWhileTheClientDoesNotRead() {
+        final long start = System.currentTimeMillis();
+        server.sendToAll(commands());
+        server.sendToAll(commands());
+        server.sendToAll(commands());
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(TIMEOUT_MILLIS);
+        assertThat(server.getQueuedCommands(callback.client)).isEqualTo(2);
+        assertThat(callback.failed.getCount()).isEqualTo(1);
+    }
+
+    /**
+     * A client should be disconnected without waiting for the write timeout when more commands are held back than the
+     * policy allows.
+     * 
+     * @throws Exception not expected
+     */
+    @Test
+    public void shouldDisconnectTheClientWhenTheLimitIsExceeded() throws Exception {
+        final long start = System.currentTimeMillis();
+        server.sendToAll(commands());
+        server.sendToAll(commands());
+        server.sendToAll(commands());
+        server.sendToAllExcept(commands(), null);
+
+        assertThat(callback.failed.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(System.currentTimeMillis() - start).isLessThan(TIMEOUT_MILLIS);
+        assertThat(callback.failedClient).isSameAs(callback.client);
+    }
+
+    private static List<Command> commands() {
+        return Collections.<Command> singletonList(new SetPropertyValue(UUID.randomUUID(), new Value("value")));
+    }
+
+    /**
+     * Serializes every list of commands to a message that is much larger than the ring of the connection.
+     */
+    private static final class LargeMessageSerializer implements Serializer {
+
+        @Override
+        public byte[] serialize(final List<Command> objects) {
+            return new byte[CAPACITY * 4];
+        }
+
+        @Override
+        public List<Command> deserialize(final byte[] commands) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Records the connected client and connection errors.
+     */
+    private static final class Callback implements NetworkToTopologyCallbackServer {
+
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private final CountDownLatch failed = new CountDownLatch(1);
+        private volatile Object client;
+        private volatile Object failedClient;
+
+        @Override
+        public void recive(final List<Command> commands, final Object sender) {
+        }
+
+        @Override
+        public void onConnect(final Object newClient) {
+            client = newClient;
+            connected.countDown();
+        }
+
+        @Override
+        public void onClientConnectionError(final Object failed, final SynchronizeFXException e) {
+            failedClient = failed;
+            this.failed.countDown();
+        }
+
+        @Override
+        public void onFatalError(final SynchronizeFXException e) {
+        }
+    }
+}
@@ -0,0 +1 @@
+memberSearchIndex = [{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"connect()"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"DEFAULT_CAPACITY"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"disconnect()"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"getQueuedCommands(Object)","url":"getQueuedCommands(java.lang.Object)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"onConnectFinished(Object)","url":"onConnectFinished(java.lang.Object)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"onMessage(ByteBuffer)","url":"onMessage(java.nio.ByteBuffer)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"send(List<Command>, Object)","url":"send(java.util.List,java.lang.Object)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"send(List<Command>)","url":"send(java.util.List)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"sendToAll(List<Command>)","url":"sendToAll(java.util.List)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"sendToAllExcept(List<Command>, Object)","url":"sendToAllExcept(java.util.List,java.lang.Object)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"setSlowConsumerPolicy(SlowConsumerPolicy)","url":"setSlowConsumerPolicy(de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"setTopologyCallback(NetworkToTopologyCallbackClient)","url":"setTopologyCallback(de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackClient)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"setTopologyLayerCallback(NetworkToTopologyCallbackServer)","url":"setTopologyLayerCallback(de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"SharedMemoryClient(File, Serializer, int)","url":"%3Cinit%3E(java.io.File,de.saxsys.synchronizefx.core.clientserver.Serializer,int)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryClient","l":"SharedMemoryClient(File, Serializer)","url":"%3Cinit%3E(java.io.File,de.saxsys.synchronizefx.core.clientserver.Serializer)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"SharedMemoryServer(File, Serializer)","url":"%3Cinit%3E(java.io.File,de.saxsys.synchronizefx.core.clientserver.Serializer)"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"shutdown()"},{"p":"de.saxsys.synchronizefx.sharedmemory","c":"SharedMemoryServer","l":"start()"}]
\ No newline at end of file
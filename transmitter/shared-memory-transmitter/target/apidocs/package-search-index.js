@@ -0,0 +1 @@
+packageSearchIndex = [{"l":"All Packages","url":"allpackages-index.html"},{"l":"de.saxsys.synchronizefx.sharedmemory"}]
\ No newline at end of file
@@ -0,0 +1 @@
+typeSearchIndex = [{"l":"All Classes","url":"allclasses-index.html"},{"p":"de.saxsys.synchronizefx.sharedmemory","l":"SharedMemoryClient"},{"p":"de.saxsys.synchronizefx.sharedmemory","l":"SharedMemoryServer"}]
\ No newline at end of file
@@ -22,16 +22,23 @@ package de.saxsys.synchronizefx.tomcat;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
+import de.saxsys.synchronizefx.core.clientserver.CommandBacklog;
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
 import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
 
@@ -43,6 +50,12 @@ import org.slf4j.LoggerFactory;
 /**
  * A set of clients that share the same synchronized model.
  * 
+ * <p>
+ * Only one message per client is passed to the thread of its connection at a time. Commands that are sent while
+ * the previous message is still being written are held back according to the {@link SlowConsumerPolicy} and are
+ * sent together afterwards.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 class SynchronizeFXTomcatChannel implements CommandTransferServer {
@@ -50,21 +63,36 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
     private static final Logger LOG = LoggerFactory.getLogger(SynchronizeFXTomcatChannel.class);
 
     private final SynchronizeFXTomcatServlet parent;
-    private final Serializer serializer;
+    private final Serializer originalSerializer;
+    private final StreamingSerializer serializer;
+    private final boolean connectionScoped;
+    private final SlowConsumerPolicy slowConsumerPolicy;
     private NetworkToTopologyCallbackServer callback;
 
     private final List<MessageInbound> connections = new LinkedList<>();
     private final Map<MessageInbound, ExecutorService> connectionThreads = new HashMap<>();
+    // Use "connections" for synchronized access to "connectionSerializers".
+    private final Map<MessageInbound, StreamingSerializer> connectionSerializers = new HashMap<>();
+    // Use "connections" for synchronized access to "backlogs" and "sending".
+    private final Map<MessageInbound, CommandBacklog> backlogs = new HashMap<>();
+    private final Set<MessageInbound> sending = new HashSet<>();
 
     /**
      * Initializes an instance with all its dependencies.
      * 
      * @param parent Used to inform when this channel was closed.
      * @param serializer The serializer that should be used to send data to clients.
+     * @param slowConsumerPolicy Defines how commands for clients that receive them too slowly are treated.
      */
-    SynchronizeFXTomcatChannel(final SynchronizeFXTomcatServlet parent, final Serializer serializer) {
+    SynchronizeFXTomcatChannel(final SynchronizeFXTomcatServlet parent, final Serializer serializer,
+            final SlowConsumerPolicy slowConsumerPolicy) {
         this.parent = parent;
-        this.serializer = serializer;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.originalSerializer = serializer;
+        this.serializer = StreamingSerializerAdapter.adapt(serializer);
+        // Serializers that don't keep state per connection in their current configuration return themselves.
+        this.connectionScoped = serializer instanceof ConnectionScopedSerializer
+                && ((ConnectionScopedSerializer) serializer).newConnectionSerializer() != serializer;
     }
 
     // CommandTransferServer
@@ -74,6 +102,7 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
         synchronized (connections) {
             final SynchronizeFXTomcatConnection syncFxClient = (SynchronizeFXTomcatConnection) client;
             connections.add(syncFxClient);
+            backlogs.put(syncFxClient, new CommandBacklog(slowConsumerPolicy));
             connectionThreads.put(syncFxClient, Executors.newSingleThreadExecutor(new ThreadFactory() {
                 @Override
                 public Thread newThread(final Runnable runnable) {
@@ -93,15 +122,19 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
 
     @Override
     public void send(final List<Command> commands, final Object destination) {
-        byte[] buffer;
-        try {
-            buffer = serializer.serialize(commands);
-        } catch (final SynchronizeFXException e) {
-            shutdown();
-            callback.onFatalError(e);
-            return;
+        byte[] buffer = null;
+        if (!connectionScoped) {
+            try {
+                buffer = serializer.serialize(commands);
+            } catch (final SynchronizeFXException e) {
+                shutdown();
+                callback.onFatalError(e);
+                return;
+            }
+        }
+        if (!send(commands, buffer, (MessageInbound) destination, false)) {
+            disconnectSlowClient((MessageInbound) destination);
         }
-        send(buffer, destination);
     }
 
     @Override
@@ -111,24 +144,32 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
 
     @Override
     public void sendToAllExcept(final List<Command> commands, final Object nonReciver) {
-        final byte[] buffer;
-        try {
-            buffer = serializer.serialize(commands);
-        } catch (final SynchronizeFXException e) {
-            shutdown();
-            callback.onFatalError(e);
-            return;
+        byte[] buffer = null;
+        // Connection scoped serializers need to serialize the commands for each connection separately.
+        if (!connectionScoped) {
+            try {
+                buffer = serializer.serialize(commands);
+            } catch (final SynchronizeFXException e) {
+                shutdown();
+                callback.onFatalError(e);
+                return;
+            }
         }
+        final List<MessageInbound> slowClients = new LinkedList<>();
         synchronized (connections) {
             // This ensures that no client is added or removed for the connection list while iterating over it.
             // This ensures also that all clients get messages in the correct order for the case that sendToAllExcept
             // as already called a second time.
             for (final MessageInbound connection : connections) {
-                if (connection != nonReciver) {
-                    send(buffer, connection);
+                if (connection != nonReciver && !send(commands, buffer, connection, true)) {
+                    slowClients.add(connection);
                 }
             }
         }
+        // Disconnecting modifies "connections" so it can't be done while iterating over it.
+        for (final MessageInbound slowClient : slowClients) {
+            disconnectSlowClient(slowClient);
+        }
     }
 
     @Override
@@ -158,6 +199,9 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
                 }
             }
             connections.clear();
+            connectionSerializers.clear();
+            backlogs.clear();
+            sending.clear();
         }
         callback = null;
     }
@@ -171,6 +215,12 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
      */
     void clientConnectionReady(final SynchronizeFXTomcatConnection connection) {
         LOG.info("Client connected.");
+        if (connectionScoped) {
+            synchronized (connections) {
+                connectionSerializers.put(connection, StreamingSerializerAdapter
+                        .adapt(((ConnectionScopedSerializer) originalSerializer).newConnectionSerializer()));
+            }
+        }
         callback.onConnect(connection);
     }
 
@@ -187,7 +237,7 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
         }
         List<Command> commands;
         try {
-            commands = serializer.deserialize(message.array());
+            commands = serializerFor(sender).deserialize(message);
         } catch (final SynchronizeFXException e) {
             try {
                 sender.getWsOutbound().close(0, null);
@@ -215,6 +265,9 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
                 executorService.shutdown();
             }
             connectionThreads.remove(connection);
+            connectionSerializers.remove(connection);
+            backlogs.remove(connection);
+            sending.remove(connection);
             connections.remove(connection);
         }
     }
@@ -231,40 +284,158 @@ class SynchronizeFXTomcatChannel implements CommandTransferServer {
     }
 
     /**
-     * Sends send the result of {@link Serializer#serialize(List)} to a destination.
+     * The number of commands that are currently held back for all clients of this server because they receive them
+     * too slowly.
      * 
-     * @param buffer the bytes to send.
+     * @return The command count.
+     */
+    int getQueuedCommands() {
+        synchronized (connections) {
+            int queued = 0;
+            for (final CommandBacklog backlog : backlogs.values()) {
+                queued += backlog.size();
+            }
+            return queued;
+        }
+    }
+
+    private StreamingSerializer serializerFor(final Object connection) {
+        if (!connectionScoped) {
+            return serializer;
+        }
+        synchronized (connections) {
+            final StreamingSerializer connectionSerializer = connectionSerializers.get(connection);
+            // The connection may have been closed in the mean time.
+            return connectionSerializer == null ? serializer : connectionSerializer;
+        }
+    }
+
+    /**
+     * Sends commands to a destination or holds them back if the destination is still busy with previous commands.
+     * 
+     * @param commands The commands to send.
+     * @param buffer The result of {@link Serializer#serialize(List)} for the commands or <code>null</code> if the
+     *            commands should be serialized in the thread of the connection.
      * @param destination The peer to send to.
+     * @param conflatable <code>false</code> if the commands are sent to a single client that may wait for them, like
+     *            for the echo of its own changes, and therefore must not be conflated.
+     * @return <code>false</code> if the destination exceeded the limit of the {@link SlowConsumerPolicy} and needs
+     *         to be disconnected, <code>true</code> otherwise.
      */
-    private void send(final byte[] buffer, final Object destination) {
+    private boolean send(final List<Command> commands, final byte[] buffer, final MessageInbound destination,
+            final boolean conflatable) {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Sending from thread: id: " + Thread.currentThread().getName() + ", name: "
                     + Thread.currentThread().getName());
         }
+        synchronized (connections) {
+            final ExecutorService executorService = connectionThreads.get(destination);
+            if (executorService == null) {
+                // Maybe the client has disconnected in the mean time.
+                return true;
+            }
+            if (sending.add(destination)) {
+                // execute asynchronously to avoid slower clients from interfering with faster clients
+                executorService.execute(new SendTask(commands, buffer, destination));
+                return true;
+            }
+            return backlogs.get(destination).add(commands, conflatable);
+        }
+    }
+
+    /**
+     * Sends the commands that where held back while the last message was sent or marks the destination as idle.
+     * 
+     * @param destination The peer to send to.
+     */
+    private void sendBacklog(final MessageInbound destination) {
+        synchronized (connections) {
+            final ExecutorService executorService = connectionThreads.get(destination);
+            final CommandBacklog backlog = backlogs.get(destination);
+            if (executorService == null || backlog == null || backlog.isEmpty()) {
+                sending.remove(destination);
+                return;
+            }
+            executorService.execute(new SendTask(backlog.drain(), null, destination));
+        }
+    }
+
+    private void disconnectSlowClient(final MessageInbound destination) {
+        LOG.warn("A client does not receive commands fast enough for the " + slowConsumerPolicy
+                + ". Closing connection to this client.");
+        connectionCloses((SynchronizeFXTomcatConnection) destination);
+        try {
+            destination.getWsOutbound().close(1013, null);
+            // CHECKSTYLE:OFF
+        } catch (final IOException e) {
+            // Maybe the connection is already closed.
+        }
+        // CHECKSTYLE:ON
+        final NetworkToTopologyCallbackServer currentCallback = callback;
+        if (currentCallback != null) {
+            currentCallback.onClientConnectionError(destination, new SynchronizeFXException(
+                    "The client does not receive commands fast enough for the " + slowConsumerPolicy + "."));
+        }
+    }
+
+    /**
+     * Sends a single message to a client in the thread of its connection.
+     */
+    private final class SendTask implements Runnable {
+        private final List<Command> commands;
+        private final byte[] buffer;
+        private final MessageInbound destination;
 
-        final WsOutbound outbound = ((MessageInbound) destination).getWsOutbound();
+        /**
+         * Initializes an instance with all its dependencies.
+         * 
+         * @param commands The commands to send.
+         * @param buffer The serialized commands or <code>null</code> if they should be serialized by this task.
+         * @param destination The peer to send to.
+         */
+        SendTask(final List<Command> commands, final byte[] buffer, final MessageInbound destination) {
+            this.commands = commands;
+            this.buffer = buffer;
+            this.destination = destination;
+        }
 
-        final ExecutorService executorService = connectionThreads.get(destination);
-        // execute asynchronously to avoid slower clients from interfering with faster clients
-        executorService.execute(new Runnable() {
-            @Override
-            public void run() {
+        @Override
+        public void run() {
+            final WsOutbound outbound = destination.getWsOutbound();
+            final byte[] data;
+            if (buffer == null) {
+                // Serializing in the connection thread ensures that the data is send in the same order in which
+                // the connection serializer created it.
                 try {
-                    outbound.writeBinaryMessage(ByteBuffer.wrap(buffer));
-                } catch (final IOException e) {
-                    LOG.warn("Sending data to a client failed. Closing connection to this client.");
-                    try {
-                        outbound.close(1002, null);
-                        // CHECKSTYLE:OFF
-                    } catch (final IOException e1) {
-                        // Maybe the connection is already closed. This is no exceptional state but rather the
-                        // default in
-                        // this case. So it's safe to ignore this exception.
+                    data = serializerFor(destination).serialize(commands);
+                } catch (final SynchronizeFXException e) {
+                    final NetworkToTopologyCallbackServer currentCallback = callback;
+                    shutdown();
+                    if (currentCallback != null) {
+                        currentCallback.onFatalError(e);
                     }
-                    // CHECKSTYLE:ON
-                    connectionCloses((SynchronizeFXTomcatConnection) destination);
+                    return;
                 }
+            } else {
+                data = buffer;
             }
-        });
+            try {
+                outbound.writeBinaryMessage(ByteBuffer.wrap(data));
+            } catch (final IOException e) {
+                LOG.warn("Sending data to a client failed. Closing connection to this client.");
+                try {
+                    outbound.close(1002, null);
+                    // CHECKSTYLE:OFF
+                } catch (final IOException e1) {
+                    // Maybe the connection is already closed. This is no exceptional state but rather the
+                    // default in
+                    // this case. So it's safe to ignore this exception.
+                }
+                // CHECKSTYLE:ON
+                connectionCloses((SynchronizeFXTomcatConnection) destination);
+                return;
+            }
+            sendBacklog(destination);
+        }
     }
 }
@@ -31,6 +31,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.core.clientserver.ServerCallback;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
 
 import org.apache.catalina.websocket.StreamInbound;
@@ -76,6 +77,21 @@ public abstract class SynchronizeFXTomcatServlet extends WebSocketServlet {
      */
     protected abstract Serializer newSerializer();
 
+    /**
+     * Returns the {@link SlowConsumerPolicy} that defines how commands for clients that receive them too slowly are
+     * treated.
+     * 
+     * <p>
+     * By default commands are buffered up to {@link SlowConsumerPolicy#DEFAULT_MAX_QUEUED_COMMANDS}. Override this
+     * method to choose another policy.
+     * </p>
+     * 
+     * @return The policy
+     */
+    protected SlowConsumerPolicy newSlowConsumerPolicy() {
+        return SlowConsumerPolicy.buffer(SlowConsumerPolicy.DEFAULT_MAX_QUEUED_COMMANDS);
+    }
+
     /**
      * Creates a new {@link SynchronizeFxServer} that synchronizes it's own model.
      * 
@@ -100,7 +116,8 @@ public abstract class SynchronizeFXTomcatServlet extends WebSocketServlet {
                         + "\" should be created a channel with this name does already exist.");
             }
 
-            final SynchronizeFXTomcatChannel channel = new SynchronizeFXTomcatChannel(this, newSerializer());
+            final SynchronizeFXTomcatChannel channel = new SynchronizeFXTomcatChannel(this, newSerializer(),
+                    newSlowConsumerPolicy());
             final SynchronizeFxServer server = new SynchronizeFxServer(root, channel, callback);
             channels.put(channelName, channel);
             servers.put(server, channel);
@@ -122,6 +139,27 @@ public abstract class SynchronizeFXTomcatServlet extends WebSocketServlet {
         }
     }
 
+    /**
+     * The number of commands that are currently held back for the clients of the given {@link SynchronizeFxServer}
+     * because they receive them too slowly.
+     * 
+     * @param server The server thats queued commands should be counted.
+     * @throws IllegalArgumentException If the {@link SynchronizeFxServer} passed as argument wasn't started by this
+     *             servlet or if it has already been shut down.
+     * @return The count of queued commands summed up over all clients.
+     */
+    public int getQueuedCommands(final SynchronizeFxServer server) {
+        synchronized (channels) {
+            final SynchronizeFXTomcatChannel channel = servers.get(server);
+            if (channel == null) {
+                throw new IllegalArgumentException(
+                        "The SynchronizeFXServer passed as argument was not created by this servlet "
+                                + "or has already been shut down.");
+            }
+            return channel.getQueuedCommands();
+        }
+    }
+
     /**
      * Extracts the name of the channel the client that invoked a request wants to connect to.
      * 
@@ -35,6 +35,7 @@ import javax.websocket.server.PathParam;
 
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
 import de.saxsys.synchronizefx.core.clientserver.ServerCallback;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
 import de.saxsys.synchronizefx.core.metamodel.Optional;
 
@@ -64,9 +65,14 @@ import de.saxsys.synchronizefx.core.metamodel.Optional;
  * Clients wishing to connect to this implementation the Websocket sub-protocol used should be
  * "v2.websocket.synchronizefx.saxsys.de". It must be ensured that this server and the client use {@link Serializer}
  * implementations that are compatible. Ideally both sides use the same implementations. Each command that is created
- * by {@link Serializer#serialize(java.util.List)} must be send as is in a single websocket binary frame. Each
- * content binary frames must be passed through {@link Serializer#deserialize(byte[])} to reproduce the SynchronizeFX
- * commands.
+ * by {@link Serializer#serialize(java.util.List)} must be send as is in a single websocket binary message. The
+ * content of each binary message must be passed through {@link Serializer#deserialize(byte[])} to reproduce the
+ * SynchronizeFX commands.
+ * </p>
+ * 
+ * <p>
+ * Commands for clients that receive them slower than they are produced are held back according to a
+ * {@link SlowConsumerPolicy}.
  * </p>
  * 
  * @author Raik Bieniek
@@ -79,15 +85,34 @@ public class SychronizeFXWebsocketServer {
     private final Map<Session, SynchronizeFXWebsocketChannel> clients = new HashMap<>();
     private boolean isCurrentlyShutingDown;
     private final Serializer serializer;
+    private final SlowConsumerPolicy slowConsumerPolicy;
 
     /**
      * Initializes an instance with all its dependencies.
      * 
+     * <p>
+     * Commands for slow clients are buffered up to {@link SlowConsumerPolicy#DEFAULT_MAX_QUEUED_COMMANDS}.
+     * </p>
+     * 
      * @param serializer The serializer that should be used to serialize and deserialize SynchronizeFX commands.
      */
     public SychronizeFXWebsocketServer(final Serializer serializer) {
-        this.serializer = serializer;
+        this(serializer, SlowConsumerPolicy.buffer(SlowConsumerPolicy.DEFAULT_MAX_QUEUED_COMMANDS));
+    }
 
+    /**
+     * Initializes an instance with all its dependencies.
+     * 
+     * @param serializer The serializer that should be used to serialize and deserialize SynchronizeFX commands.
+     * @param slowConsumerPolicy How commands for clients that can't keep up with sending should be handled.
+     * @throws IllegalArgumentException If the slow consumer policy is <code>null</code>.
+     */
+    public SychronizeFXWebsocketServer(final Serializer serializer, final SlowConsumerPolicy slowConsumerPolicy) {
+        if (slowConsumerPolicy == null) {
+            throw new IllegalArgumentException("The slow consumer policy must not be null.");
+        }
+        this.serializer = serializer;
+        this.slowConsumerPolicy = slowConsumerPolicy;
     }
 
     /**
@@ -119,7 +144,8 @@ public class SychronizeFXWebsocketServer {
                         + "\" should be created a channel with this name does already exist.");
             }
 
-            final SynchronizeFXWebsocketChannel channel = new SynchronizeFXWebsocketChannel(this, serializer);
+            final SynchronizeFXWebsocketChannel channel = new SynchronizeFXWebsocketChannel(this, serializer,
+                    slowConsumerPolicy);
             final SynchronizeFxServer server =
                     modelChangeExecutor == null ? new SynchronizeFxServer(root, channel, callback)
                             : new SynchronizeFxServer(root, channel, modelChangeExecutor, callback);
@@ -162,6 +188,17 @@ public class SychronizeFXWebsocketServer {
         }
     }
 
+    /**
+     * The number of commands that are currently held back for a client because it receives them too slowly.
+     * 
+     * @param session The client thats queue should be checked.
+     * @throws IllegalArgumentException If the client passed as argument isn't registered in any channel.
+     * @return The count of queued commands.
+     */
+    public int getQueuedCommands(final Session session) {
+        return getChannelOrFail(session).getQueuedCommands(session);
+    }
+
     /**
      * Pass {@link OnOpen} events of the Websocket API to this method to handle new clients.
      * 
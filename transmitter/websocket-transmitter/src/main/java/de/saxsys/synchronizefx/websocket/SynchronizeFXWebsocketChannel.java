@@ -20,12 +20,15 @@
 package de.saxsys.synchronizefx.websocket;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -34,9 +37,14 @@ import javax.websocket.CloseReason;
 import javax.websocket.CloseReason.CloseCodes;
 import javax.websocket.Session;
 
+import de.saxsys.synchronizefx.core.clientserver.CommandBacklog;
 import de.saxsys.synchronizefx.core.clientserver.CommandTransferServer;
+import de.saxsys.synchronizefx.core.clientserver.ConnectionScopedSerializer;
 import de.saxsys.synchronizefx.core.clientserver.NetworkToTopologyCallbackServer;
 import de.saxsys.synchronizefx.core.clientserver.Serializer;
+import de.saxsys.synchronizefx.core.clientserver.SlowConsumerPolicy;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializer;
+import de.saxsys.synchronizefx.core.clientserver.StreamingSerializerAdapter;
 import de.saxsys.synchronizefx.core.clientserver.SynchronizeFxServer;
 import de.saxsys.synchronizefx.core.exceptions.SynchronizeFXException;
 import de.saxsys.synchronizefx.core.metamodel.commands.Command;
@@ -44,15 +52,29 @@ import de.saxsys.synchronizefx.core.metamodel.commands.Command;
 /**
  * A single channel that can be used by a single {@link SynchronizeFxServer}.
  * 
+ * <p>
+ * Each client has a thread that sends data to it. At most one message per client is handed to this thread at a time.
+ * Commands sent while the thread is still busy are held back in a {@link CommandBacklog} and sent as a single message
+ * afterwards. Clients that exceed the limit of the {@link SlowConsumerPolicy} are disconnected.
+ * </p>
+ * 
  * @author Raik Bieniek
  */
 class SynchronizeFXWebsocketChannel implements CommandTransferServer {
 
-    private final Serializer serializer;
+    private final Serializer originalSerializer;
+    private final StreamingSerializer serializer;
+    private final boolean connectionScoped;
     private final SychronizeFXWebsocketServer parent;
+    private final SlowConsumerPolicy slowConsumerPolicy;
 
     private final List<Session> connections = new LinkedList<>();
     private final Map<Session, ExecutorService> connectionThreads = new HashMap<>();
+    // Use "connections" for synchronized access to "connectionSerializers".
+    private final Map<Session, StreamingSerializer> connectionSerializers = new HashMap<>();
+    // Use "connections" for synchronized access to "backlogs" and "sending".
+    private final Map<Session, CommandBacklog> backlogs = new HashMap<>();
+    private final Set<Session> sending = new HashSet<>();
 
     private NetworkToTopologyCallbackServer callback;
 
@@ -61,10 +83,17 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
      * 
      * @param parent The server that created and manages this channel.
      * @param serializer Used to deserialize commands from other peers and serialize commands for other peers.
+     * @param slowConsumerPolicy Defines how commands for clients that receive them too slowly are treated.
      */
-    SynchronizeFXWebsocketChannel(final SychronizeFXWebsocketServer parent, final Serializer serializer) {
+    SynchronizeFXWebsocketChannel(final SychronizeFXWebsocketServer parent, final Serializer serializer,
+            final SlowConsumerPolicy slowConsumerPolicy) {
         this.parent = parent;
-        this.serializer = serializer;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.originalSerializer = serializer;
+        this.serializer = StreamingSerializerAdapter.adapt(serializer);
+        // Serializers that don't keep state per connection in their current configuration return themselves.
+        this.connectionScoped = serializer instanceof ConnectionScopedSerializer
+                && ((ConnectionScopedSerializer) serializer).newConnectionSerializer() != serializer;
     }
 
     /**
@@ -74,6 +103,10 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
      */
     void newClient(final Session session) {
         synchronized (connections) {
+            if (connectionScoped) {
+                connectionSerializers.put(session, StreamingSerializerAdapter
+                        .adapt(((ConnectionScopedSerializer) originalSerializer).newConnectionSerializer()));
+            }
             callback.onConnect(session);
         }
     }
@@ -85,7 +118,7 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
      * @param session The client that send the message.
      */
     void newMessage(final byte[] message, final Session session) {
-        callback.recive(serializer.deserialize(message), session);
+        callback.recive(serializerFor(session).deserialize(message), session);
     }
 
     /**
@@ -100,10 +133,26 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
                 executorService.shutdownNow();
             }
             connectionThreads.remove(connection);
+            connectionSerializers.remove(connection);
+            backlogs.remove(connection);
+            sending.remove(connection);
             connections.remove(connection);
         }
     }
 
+    /**
+     * The number of commands that are currently held back for a client because it receives them too slowly.
+     * 
+     * @param session The client.
+     * @return The command count.
+     */
+    int getQueuedCommands(final Session session) {
+        synchronized (connections) {
+            final CommandBacklog backlog = backlogs.get(session);
+            return backlog == null ? 0 : backlog.size();
+        }
+    }
+
     /**
      * The amount of currently connected clients.
      * 
@@ -132,6 +181,7 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
         synchronized (connections) {
             final Session session = (Session) client;
             connections.add(session);
+            backlogs.put(session, new CommandBacklog(slowConsumerPolicy));
 
             // create the thread for sending
             connectionThreads.put(session, Executors.newSingleThreadExecutor(new ThreadFactory() {
@@ -154,15 +204,13 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
 
     @Override
     public void send(final List<Command> commands, final Object destination) {
-        byte[] buffer;
-        try {
-            buffer = serializer.serialize(commands);
-        } catch (final SynchronizeFXException e) {
-            shutdown();
-            callback.onFatalError(e);
-            return;
+        // Commands for a single client are serialized directly into the websocket stream on the connection thread.
+        // Commands for multiple clients are serialized only once in sendToAllExcept(List, Object) if the serializer
+        // is not connection scoped.
+        final Session session = (Session) destination;
+        if (!send(commands, null, session, false)) {
+            disconnectSlowClient(session);
         }
-        send(buffer, (Session) destination);
     }
 
     @Override
@@ -172,21 +220,29 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
 
     @Override
     public void sendToAllExcept(final List<Command> commands, final Object nonReciver) {
-        final byte[] buffer;
-        try {
-            buffer = serializer.serialize(commands);
-        } catch (final SynchronizeFXException e) {
-            shutdown();
-            callback.onFatalError(e);
-            return;
+        byte[] buffer = null;
+        // Connection scoped serializers need to serialize the commands for each connection separately.
+        if (!connectionScoped) {
+            try {
+                buffer = serializer.serialize(commands);
+            } catch (final SynchronizeFXException e) {
+                shutdown();
+                callback.onFatalError(e);
+                return;
+            }
         }
+        final List<Session> slowClients = new LinkedList<>();
         synchronized (connections) {
             for (final Session connection : connections) {
-                if (connection != nonReciver) {
-                    send(buffer, connection);
+                if (connection != nonReciver && !send(commands, buffer, connection, true)) {
+                    slowClients.add(connection);
                 }
             }
         }
+        // Disconnecting modifies "connections" so it can't be done while iterating over it.
+        for (final Session slowClient : slowClients) {
+            disconnectSlowClient(slowClient);
+        }
     }
 
     @Override
@@ -210,51 +266,100 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
                 }
             }
             connections.clear();
+            connectionSerializers.clear();
+            backlogs.clear();
+            sending.clear();
         }
         callback = null;
     }
 
     /**
-     * Sends send the result of {@link Serializer#serialize(List)} to a destination.
+     * Sends commands to a destination or holds them back if the destination is still busy with previous commands.
      * 
-     * @param buffer the bytes to send.
+     * @param commands The commands to send.
+     * @param buffer The result of {@link Serializer#serialize(List)} for the commands or <code>null</code> if the
+     *            commands should be serialized in the thread of the connection.
      * @param destination The peer to send to.
+     * @param conflatable <code>false</code> if the commands are sent to a single client that may wait for them, like
+     *            for the echo of its own changes, and therefore must not be conflated.
+     * @return <code>false</code> if the destination exceeded the limit of the {@link SlowConsumerPolicy} and needs
+     *         to be disconnected, <code>true</code> otherwise.
      */
-    private void send(final byte[] buffer, final Session destination) {
+    private boolean send(final List<Command> commands, final byte[] buffer, final Session destination,
+            final boolean conflatable) {
         synchronized (connections) {
             // execute asynchronously to avoid slower clients from interfering with faster clients
             final ExecutorService connectionThread = connectionThreads.get(destination);
             if (connectionThread == null) {
                 // Maybe the client has disconnected in the mean time.
+                return true;
+            }
+            if (sending.add(destination)) {
+                connectionThread.execute(new SendTask(commands, buffer, destination));
+                return true;
+            }
+            return backlogs.get(destination).add(commands, conflatable);
+        }
+    }
+
+    /**
+     * Sends the commands that where held back while the last message was sent or marks the destination as idle.
+     * 
+     * @param destination The peer to send to.
+     */
+    private void sendBacklog(final Session destination) {
+        synchronized (connections) {
+            final ExecutorService connectionThread = connectionThreads.get(destination);
+            final CommandBacklog backlog = backlogs.get(destination);
+            if (connectionThread == null || backlog == null || backlog.isEmpty()) {
+                sending.remove(destination);
                 return;
             }
-            connectionThread.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        // for the case that the runnable was committed shortly before the connection was closed.
-                        if (destination.isOpen()) {
-                            // FIXME replace with getAsyncRemote and removeconnectionThreads as soon as
-                            // getAsyncRemote on tomcat is thread-safe
-                            destination.getBasicRemote().sendBinary(ByteBuffer.wrap(buffer));
-                        }
-                    } catch (final IOException e) {
-                        try {
-                            if (destination.isOpen()) {
-                                destination.close(new CloseReason(CloseCodes.PROTOCOL_ERROR, "Failed to send data."));
-                            }
-                        } catch (final IOException e1) {
-                            // The outer exception already indicated that something went wrong.
-                            ignore(e1);
-                        }
-                        handleClientError(destination, e);
-                        connectionCloses(destination);
-                    }
-                }
-            });
+            connectionThread.execute(new SendTask(backlog.drain(), null, destination));
+        }
+    }
+
+    private void disconnectSlowClient(final Session destination) {
+        connectionCloses(destination);
+        try {
+            if (destination.isOpen()) {
+                destination.close(new CloseReason(CloseCodes.TRY_AGAIN_LATER, "Receiving commands too slowly."));
+            }
+        } catch (final IOException e) {
+            // The client is disconnected anyway.
+            ignore(e);
+        }
+        final NetworkToTopologyCallbackServer currentCallback = callback;
+        if (currentCallback != null) {
+            currentCallback.onClientConnectionError(destination, new SynchronizeFXException(
+                    "The client does not receive commands fast enough for the " + slowConsumerPolicy + "."));
+        }
+    }
+
+    private StreamingSerializer serializerFor(final Session session) {
+        if (!connectionScoped) {
+            return serializer;
+        }
+        synchronized (connections) {
+            final StreamingSerializer connectionSerializer = connectionSerializers.get(session);
+            // The connection may have been closed in the mean time.
+            return connectionSerializer == null ? serializer : connectionSerializer;
         }
     }
 
+    private void handleSendError(final Session destination, final IOException e) {
+        try {
+            if (destination.isOpen()) {
+                destination.close(new CloseReason(CloseCodes.PROTOCOL_ERROR, "Failed to send data."));
+            }
+        } catch (final IOException e1) {
+            // The outer exception already indicated that something went wrong.
+            ignore(e1);
+        }
+        handleClientError(destination, e);
+        connectionCloses(destination);
+    }
+
     private void handleClientError(final Session destination, final Throwable e) {
         if (!destination.isOpen()) {
             // The connection may has been closed in the mean time.
@@ -266,4 +371,57 @@ class SynchronizeFXWebsocketChannel implements CommandTransferServer {
 
     private void ignore(final IOException e) {
     }
+
+    /**
+     * Sends a single message to a client in the thread of its connection.
+     */
+    private final class SendTask implements Runnable {
+        private final List<Command> commands;
+        private final byte[] buffer;
+        private final Session destination;
+
+        /**
+         * Initializes an instance with all its dependencies.
+         * 
+         * @param commands The commands to send.
+         * @param buffer The serialized commands or <code>null</code> if they should be serialized by this task.
+         * @param destination The peer to send to.
+         */
+        SendTask(final List<Command> commands, final byte[] buffer, final Session destination) {
+            this.commands = commands;
+            this.buffer = buffer;
+            this.destination = destination;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // for the case that the runnable was committed shortly before the connection was closed.
+                if (destination.isOpen()) {
+                    if (buffer == null) {
+                        // Serializing in the connection thread ensures that the data is send in the same order in
+                        // which the connection serializer created it.
+                        final OutputStream stream = destination.getBasicRemote().getSendStream();
+                        serializerFor(destination).serialize(commands, stream);
+                        stream.close();
+                    } else {
+                        // FIXME replace with getAsyncRemote and removeconnectionThreads as soon as
+                        // getAsyncRemote on tomcat is thread-safe
+                        destination.getBasicRemote().sendBinary(ByteBuffer.wrap(buffer));
+                    }
+                }
+            } catch (final SynchronizeFXException e) {
+                final NetworkToTopologyCallbackServer currentCallback = callback;
+                shutdown();
+                if (currentCallback != null) {
+                    currentCallback.onFatalError(e);
+                }
+                return;
+            } catch (final IOException e) {
+                handleSendError(destination, e);
+                return;
+            }
+            sendBacklog(destination);
+        }
+    }
 }